@@ -0,0 +1,44 @@
+package ru.mephi.ozerov.shortlinks.config;
+
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.mephi.ozerov.shortlinks.invalidation.DbChangeLogTransport;
+import ru.mephi.ozerov.shortlinks.invalidation.InvalidationTransport;
+import ru.mephi.ozerov.shortlinks.invalidation.UdpInvalidationTransport;
+import ru.mephi.ozerov.shortlinks.repository.LinkChangeLogRepository;
+
+/**
+ * Выбор транспорта инвалидаций между узлами по {@code shortlinks.invalidation.transport}: none | db
+ * | udp.
+ */
+@Configuration
+public class InvalidationConfig {
+
+    @Bean
+    public InvalidationTransport invalidationTransport(
+            LinkChangeLogRepository linkChangeLogRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${shortlinks.invalidation.transport:none}") String transport,
+            @Value("${shortlinks.invalidation.db.poll-millis:500}") long pollMillis,
+            @Value("${shortlinks.invalidation.db.lookback-millis:5000}") long lookbackMillis,
+            @Value("${shortlinks.invalidation.db.retention-minutes:10}") long retentionMinutes,
+            @Value("${shortlinks.invalidation.udp.port:7400}") int udpPort,
+            @Value("${shortlinks.invalidation.udp.peers:}") String udpPeers) {
+        return switch (transport) {
+            case "none" -> InvalidationTransport.NONE;
+            case "db" -> new DbChangeLogTransport(
+                    linkChangeLogRepository,
+                    transactionManager,
+                    Duration.ofMillis(pollMillis),
+                    Duration.ofMillis(lookbackMillis),
+                    Duration.ofMinutes(retentionMinutes));
+            case "udp" -> new UdpInvalidationTransport(udpPort, udpPeers);
+            default -> throw new IllegalStateException(
+                    "Неизвестный транспорт инвалидаций shortlinks.invalidation.transport: "
+                            + transport);
+        };
+    }
+}
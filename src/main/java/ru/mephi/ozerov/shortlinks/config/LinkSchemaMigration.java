@@ -0,0 +1,59 @@
+package ru.mephi.ozerov.shortlinks.config;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.mephi.ozerov.shortlinks.store.ShortCodeCodec;
+
+/**
+ * Заполняет {@code links.short_code_num} у ссылок, созданных до появления числовых кодов: {@code
+ * ddl-auto: update} добавляет колонку пустой, а поиск по коду идёт по ней. Пачками по id, до старта
+ * приёма переходов; коды, которые не упаковываются, остаются с null и ищутся по строке.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Slf4j
+public class LinkSchemaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void backfillShortCodeNum() {
+        long afterId = 0;
+        int filled = 0;
+        List<Map<String, Object>> rows;
+        do {
+            rows =
+                    jdbcTemplate.queryForList(
+                            "SELECT id, short_code FROM links WHERE short_code_num IS NULL"
+                                    + " AND id > ? ORDER BY id LIMIT ?",
+                            afterId,
+                            BATCH_SIZE);
+            List<Object[]> updates = new ArrayList<>();
+            for (Map<String, Object> row : rows) {
+                afterId = ((Number) row.get("ID")).longValue();
+                long packed = ShortCodeCodec.pack((String) row.get("SHORT_CODE"));
+                if (packed != ShortCodeCodec.NOT_PACKABLE) {
+                    updates.add(new Object[] {packed, afterId});
+                }
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(
+                        "UPDATE links SET short_code_num = ? WHERE id = ?", updates);
+                filled += updates.size();
+            }
+        } while (rows.size() == BATCH_SIZE);
+        if (filled > 0) {
+            log.info("Заполнены числовые коды у {} ссылок", filled);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ru.mephi.ozerov.shortlinks.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.mephi.ozerov.shortlinks.repository.ArchivedLinkRepository;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
+import ru.mephi.ozerov.shortlinks.repository.NotificationRepository;
+import ru.mephi.ozerov.shortlinks.store.InMemoryLinkStore;
+import ru.mephi.ozerov.shortlinks.store.JpaLinkStore;
+import ru.mephi.ozerov.shortlinks.store.LinkStore;
+import ru.mephi.ozerov.shortlinks.store.MvStoreLinkStore;
+import ru.mephi.ozerov.shortlinks.store.ShardedLinkStore;
+import ru.mephi.ozerov.shortlinks.store.WalLinkStore;
+
+/**
+ * Выбор движка хранения ссылок по {@code shortlinks.store.engine}: jpa | memory | mvstore | wal |
+ * sharded. Движки вне таблицы {@code links} продолжают id после наибольшего, упомянутого в архиве и
+ * уведомлениях.
+ */
+@Configuration
+public class LinkStoreConfig {
+
+    @Bean
+    public LinkStore linkStore(
+            LinkRepository linkRepository,
+            ArchivedLinkRepository archivedLinkRepository,
+            NotificationRepository notificationRepository,
+            @Value("${shortlinks.store.engine:jpa}") String engine,
+            @Value("${shortlinks.store.numeric-codes:true}") boolean numericCodes,
+            @Value("${shortlinks.store.mvstore.file:./data/links.kv}") String mvStoreFile,
+            @Value("${shortlinks.store.wal.dir:./data/links-wal}") String walDir,
+            @Value("${shortlinks.store.sharded.dir:./data/links-shards}") String shardsDir,
+            @Value("${shortlinks.store.sharded.shards:4}") int shards) {
+        if ("jpa".equals(engine)) {
+            return new JpaLinkStore(linkRepository, numericCodes);
+        }
+        long lastId =
+                Math.max(
+                        archivedLinkRepository.findMaxId(), notificationRepository.findMaxLinkId());
+        return switch (engine) {
+            case "memory" -> new InMemoryLinkStore(lastId);
+            case "mvstore" -> MvStoreLinkStore.open(mvStoreFile, lastId);
+            case "wal" -> WalLinkStore.open(walDir, lastId);
+            case "sharded" -> ShardedLinkStore.open(shardsDir, shards, lastId);
+            default -> throw new IllegalStateException(
+                    "Неизвестный движок хранения ссылок shortlinks.store.engine: " + engine);
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package ru.mephi.ozerov.shortlinks.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Снимает NOT NULL с колонки {@code notifications.message} в базах, созданных до перехода на
+ * шаблоны: текст уведомления теперь строится при чтении по типу и короткому коду, и новые строки
+ * колонку не заполняют. {@code ddl-auto: update} ограничение не снимает, а без этого вставка без
+ * текста падала бы.
+ *
+ * <p>Колонка остаётся: пока при выкатке работают узлы прежней версии, они пишут и читают её.
+ * Удалить её можно в следующем выпуске, когда прежних узлов не останется. Выполняется после
+ * обновления схемы Hibernate и до старта потоков, пишущих уведомления.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationSchemaMigration {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    void relaxRenderedMessageColumn() {
+        Integer legacy =
+                jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS"
+                                + " WHERE TABLE_NAME = 'NOTIFICATIONS' AND COLUMN_NAME = 'MESSAGE'"
+                                + " AND IS_NULLABLE = 'NO'",
+                        Integer.class);
+        if (legacy != null && legacy > 0) {
+            jdbcTemplate.execute("ALTER TABLE notifications ALTER COLUMN message DROP NOT NULL");
+            log.info(
+                    "Колонка notifications.message больше не заполняется: тексты уведомлений"
+                            + " строятся по шаблонам");
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ru.mephi.ozerov.shortlinks.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import java.util.List;
@@ -8,12 +9,16 @@ import java.util.UUID;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.mephi.ozerov.shortlinks.dto.*;
 import ru.mephi.ozerov.shortlinks.entity.Link;
 import ru.mephi.ozerov.shortlinks.service.LinkService;
+import ru.mephi.ozerov.shortlinks.service.RateLimiter;
+import ru.mephi.ozerov.shortlinks.service.UserVersionService;
 
 @RestController
 @RequestMapping("/api/links")
@@ -21,6 +26,8 @@ import ru.mephi.ozerov.shortlinks.service.LinkService;
 public class LinkController {
 
     private final LinkService linkService;
+    private final UserVersionService userVersionService;
+    private final RateLimiter rateLimiter;
 
     @Value("${shortlinks.base-url:http://localhost:8080}")
     private String baseUrl;
@@ -29,13 +36,26 @@ public class LinkController {
 
     /**
      * Создание короткой ссылки. Если заголовок X-User-Id отсутствует — генерируется новый UUID и
-     * возвращается в ответе (и в заголовке X-User-Id).
+     * возвращается в ответе (и в заголовке X-User-Id). Частота ограничена по пользователю, без
+     * заголовка — по адресу клиента: сверх лимита — 429 с Retry-After.
      */
     @PostMapping
     public ResponseEntity<?> create(
             @RequestHeader(value = USER_ID_HEADER, required = false) UUID userId,
             @Valid @RequestBody CreateLinkRequest request,
+            HttpServletRequest servletRequest,
             HttpServletResponse response) {
+        long waitNanos =
+                rateLimiter.acquire(
+                        RateLimiter.Endpoint.CREATE,
+                        userId != null ? userId : servletRequest.getRemoteAddr());
+        if (waitNanos > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(
+                            HttpHeaders.RETRY_AFTER,
+                            String.valueOf(RateLimiter.retryAfterSeconds(waitNanos)))
+                    .body("Слишком много запросов на создание ссылок, повторите позже");
+        }
         UUID effectiveUserId = userId != null ? userId : UUID.randomUUID();
         Link link =
                 linkService.create(
@@ -46,22 +66,36 @@ public class LinkController {
         return ResponseEntity.status(HttpStatus.CREATED).body(body);
     }
 
-    /** Список ссылок текущего пользователя. X-User-Id обязателен. */
+    /**
+     * Список ссылок текущего пользователя. X-User-Id обязателен. Ответ помечается ETag версии
+     * данных пользователя; при совпадении If-None-Match возвращается 304 без запроса списка.
+     */
     @GetMapping
     public ResponseEntity<?> list(
-            @RequestHeader(value = USER_ID_HEADER, required = false) UUID userId) {
+            @RequestHeader(value = USER_ID_HEADER, required = false) UUID userId,
+            WebRequest webRequest) {
         if (userId == null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body("Заголовок X-User-Id обязателен для просмотра списка ссылок");
         }
+        String etag = userVersionService.etag(userId);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .varyBy(USER_ID_HEADER)
+                    .build();
+        }
         List<LinkResponse> list =
                 linkService.findByUserId(userId).stream()
                         .map(l -> LinkResponse.from(l, baseUrl))
                         .collect(Collectors.toList());
-        return ResponseEntity.ok(list);
+        return ResponseEntity.ok().eTag(etag).varyBy(USER_ID_HEADER).body(list);
     }
 
-    /** Получить одну ссылку по id. Только создатель. */
+    /**
+     * Получить одну ссылку по id. Только создатель. Ссылка, уже перенесённая в архив, читается из
+     * него (archived = true).
+     */
     @GetMapping("/{id}")
     public ResponseEntity<?> getOne(
             @PathVariable Long id,
@@ -72,7 +106,13 @@ public class LinkController {
         }
         return linkService
                 .findByIdAndUserId(id, userId)
-                .map(l -> ResponseEntity.ok(LinkResponse.from(l, baseUrl)))
+                .map(l -> LinkResponse.from(l, baseUrl))
+                .or(
+                        () ->
+                                linkService
+                                        .findArchivedByIdAndUserId(id, userId)
+                                        .map(a -> LinkResponse.fromArchived(a, baseUrl)))
+                .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
 
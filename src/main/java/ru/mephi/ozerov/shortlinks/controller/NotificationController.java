@@ -1,13 +1,30 @@
 package ru.mephi.ozerov.shortlinks.controller;
 
+import jakarta.validation.Valid;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.mephi.ozerov.shortlinks.dto.BulkUpdateResponse;
+import ru.mephi.ozerov.shortlinks.dto.MarkReadRequest;
 import ru.mephi.ozerov.shortlinks.dto.NotificationResponse;
+import ru.mephi.ozerov.shortlinks.dto.UnreadCountResponse;
+import ru.mephi.ozerov.shortlinks.service.NotificationMessages;
 import ru.mephi.ozerov.shortlinks.service.NotificationService;
+import ru.mephi.ozerov.shortlinks.service.UserSummaryService;
+import ru.mephi.ozerov.shortlinks.service.UserVersionService;
 
 @RestController
 @RequestMapping("/api/notifications")
@@ -15,21 +32,110 @@ import ru.mephi.ozerov.shortlinks.service.NotificationService;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final UserVersionService userVersionService;
+    private final UserSummaryService userSummaryService;
+    private final NotificationMessages notificationMessages;
 
     private static final String USER_ID_HEADER = "X-User-Id";
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
 
-    /** Список уведомлений пользователя (лимит исчерпан, ссылка истекла). */
+    /**
+     * Список уведомлений пользователя (лимит исчерпан, ссылка истекла). Текст уведомлений — на
+     * языке из {@code Accept-Language} (по умолчанию русский). Поддерживает условный GET по ETag
+     * версии данных пользователя и языка ответа.
+     */
     @GetMapping
     public ResponseEntity<?> list(
-            @RequestHeader(value = USER_ID_HEADER, required = false) UUID userId) {
+            @RequestHeader(value = USER_ID_HEADER, required = false) UUID userId,
+            WebRequest webRequest,
+            Locale locale) {
         if (userId == null) {
             return ResponseEntity.badRequest().body("Заголовок X-User-Id обязателен");
         }
+        String etag = userVersionService.etag(userId, locale);
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .varyBy(USER_ID_HEADER, HttpHeaders.ACCEPT_LANGUAGE)
+                    .build();
+        }
         List<NotificationResponse> list =
                 notificationService.findByUserId(userId).stream()
-                        .map(NotificationResponse::from)
+                        .map(n -> notificationMessages.toResponse(n, locale))
                         .collect(Collectors.toList());
-        return ResponseEntity.ok(list);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .varyBy(USER_ID_HEADER, HttpHeaders.ACCEPT_LANGUAGE)
+                .body(list);
+    }
+
+    /**
+     * Число непрочитанных уведомлений (бейдж в интерфейсе) — из счётчика сводки: одно чтение строки
+     * по первичному ключу, без выборки уведомлений.
+     */
+    @GetMapping("/unread-count")
+    public ResponseEntity<?> unreadCount(
+            @RequestHeader(value = USER_ID_HEADER, required = false) UUID userId) {
+        if (userId == null) {
+            return ResponseEntity.badRequest().body("Заголовок X-User-Id обязателен");
+        }
+        return ResponseEntity.ok(
+                new UnreadCountResponse(
+                        userSummaryService.getSummary(userId).getUnreadNotifications()));
+    }
+
+    /**
+     * Инкрементальная выборка: уведомления с id больше {@code sinceId} по возрастанию id (не больше
+     * 100 за раз; курсор следующего запроса — id последнего). Если новых нет и задан {@code wait}
+     * (например {@code 30s}, {@code 500ms}; число — секунды), запрос ждёт их без занятого потока и
+     * по истечении ожидания возвращает пустой список.
+     */
+    @GetMapping(params = "sinceId")
+    public DeferredResult<List<NotificationResponse>> since(
+            @RequestHeader(value = USER_ID_HEADER, required = false) UUID userId,
+            @RequestParam long sinceId,
+            @RequestParam(required = false) String wait,
+            Locale locale) {
+        if (userId == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Заголовок X-User-Id обязателен");
+        }
+        return notificationService.poll(userId, sinceId, parseWait(wait), locale);
+    }
+
+    private static Duration parseWait(String wait) {
+        if (wait == null || wait.isBlank()) {
+            return Duration.ZERO;
+        }
+        try {
+            Duration duration = DurationStyle.detectAndParse(wait.trim(), ChronoUnit.SECONDS);
+            if (!duration.isNegative()) {
+                return duration;
+            }
+        } catch (IllegalArgumentException e) {
+            // ниже — общий ответ 400
+        }
+        throw new ResponseStatusException(
+                HttpStatus.BAD_REQUEST, "Некорректный параметр wait: " + wait);
+    }
+
+    /**
+     * Поток новых уведомлений (Server-Sent Events, событие {@code notification}, id события — id
+     * уведомления). При переподключении браузер сам передаёт {@code Last-Event-ID}, и сначала
+     * приходят уведомления, пропущенные за время разрыва.
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<SseEmitter> stream(
+            @RequestHeader(value = USER_ID_HEADER, required = false) UUID userId,
+            @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) Long lastEventId,
+            Locale locale) {
+        if (userId == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "Заголовок X-User-Id обязателен");
+        }
+        return ResponseEntity.ok()
+                .header("X-Accel-Buffering", "no")
+                .body(notificationService.subscribe(userId, lastEventId, locale));
     }
 
     /** Отметить уведомление как прочитанное. */
@@ -43,4 +149,44 @@ public class NotificationController {
         notificationService.markAsRead(id, userId);
         return ResponseEntity.noContent().build();
     }
+
+    /**
+     * Отметить прочитанными все уведомления; с {@code upToId} — только с id не больше него (всё,
+     * что клиент уже показал). Один UPDATE, ответ — {@code {"affected": n}}.
+     */
+    @PatchMapping("/read-all")
+    public ResponseEntity<?> markAllAsRead(
+            @RequestHeader(value = USER_ID_HEADER, required = false) UUID userId,
+            @RequestParam(required = false) Long upToId) {
+        if (userId == null) {
+            return ResponseEntity.badRequest().body("Заголовок X-User-Id обязателен");
+        }
+        int affected =
+                upToId == null
+                        ? notificationService.markAllRead(userId)
+                        : notificationService.markReadUpTo(userId, upToId);
+        return ResponseEntity.ok(new BulkUpdateResponse(affected));
+    }
+
+    /** Отметить прочитанными уведомления из списка {@code {"ids": [...]}}. */
+    @PatchMapping("/read")
+    public ResponseEntity<?> markListAsRead(
+            @RequestHeader(value = USER_ID_HEADER, required = false) UUID userId,
+            @Valid @RequestBody MarkReadRequest request) {
+        if (userId == null) {
+            return ResponseEntity.badRequest().body("Заголовок X-User-Id обязателен");
+        }
+        int affected = notificationService.markRead(userId, request.getIds());
+        return ResponseEntity.ok(new BulkUpdateResponse(affected));
+    }
+
+    /** Удалить прочитанные уведомления. */
+    @DeleteMapping("/read")
+    public ResponseEntity<?> deleteRead(
+            @RequestHeader(value = USER_ID_HEADER, required = false) UUID userId) {
+        if (userId == null) {
+            return ResponseEntity.badRequest().body("Заголовок X-User-Id обязателен");
+        }
+        return ResponseEntity.ok(new BulkUpdateResponse(notificationService.deleteRead(userId)));
+    }
 }
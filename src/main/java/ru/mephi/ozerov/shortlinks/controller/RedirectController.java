@@ -5,18 +5,24 @@ import java.io.IOException;
 import java.util.Optional;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import ru.mephi.ozerov.shortlinks.entity.ArchiveReason;
+import ru.mephi.ozerov.shortlinks.entity.ArchivedLink;
 import ru.mephi.ozerov.shortlinks.entity.Link;
 import ru.mephi.ozerov.shortlinks.service.LinkService;
+import ru.mephi.ozerov.shortlinks.service.RateLimiter;
+import ru.mephi.ozerov.shortlinks.service.RedirectTrafficMonitor;
 
 /**
  * Обрабатывает переход по короткой ссылке: редирект на исходный URL. Доступ только у владельца
- * ссылки — обязателен заголовок X-User-Id, совпадающий с создателем ссылки.
+ * ссылки — обязателен заголовок X-User-Id, совпадающий с создателем ссылки. Частота переходов по
+ * одному коду ограничена ({@link RateLimiter}): сверх лимита — 429 с Retry-After.
  */
 @Controller
 @RequestMapping("/")
@@ -26,6 +32,8 @@ public class RedirectController {
     private static final String USER_ID_HEADER = "X-User-Id";
 
     private final LinkService linkService;
+    private final RedirectTrafficMonitor trafficMonitor;
+    private final RateLimiter rateLimiter;
 
     @GetMapping("/{shortCode}")
     public void redirect(
@@ -33,6 +41,7 @@ public class RedirectController {
             @RequestHeader(value = USER_ID_HEADER, required = false) UUID userId,
             HttpServletResponse response)
             throws IOException {
+        trafficMonitor.record();
         if (userId == null) {
             response.sendError(
                     HttpStatus.BAD_REQUEST.value(),
@@ -40,9 +49,22 @@ public class RedirectController {
             return;
         }
 
-        Optional<Link> opt = linkService.findByShortCode(shortCode);
+        Optional<Link> opt = linkService.findForRedirect(shortCode);
         if (opt.isEmpty()) {
-            response.sendError(HttpStatus.NOT_FOUND.value(), "Ссылка не найдена");
+            redirectArchived(shortCode, userId, response);
+            return;
+        }
+
+        // Бак заводится только для существующей ссылки: перебор несуществующих кодов не
+        // раздувает карту лимитера и не вытесняет баки настоящих ссылок
+        long waitNanos = rateLimiter.acquire(RateLimiter.Endpoint.REDIRECT, shortCode);
+        if (waitNanos > 0) {
+            response.setHeader(
+                    HttpHeaders.RETRY_AFTER,
+                    String.valueOf(RateLimiter.retryAfterSeconds(waitNanos)));
+            response.sendError(
+                    HttpStatus.TOO_MANY_REQUESTS.value(),
+                    "Слишком много переходов по ссылке, повторите позже");
             return;
         }
 
@@ -55,19 +77,19 @@ public class RedirectController {
         }
 
         if (!link.isAvailable()) {
-            if (link.isExpired()) {
-                response.sendError(HttpStatus.GONE.value(), "Время жизни ссылки истекло");
-            } else if (link.isLimitReached()) {
-                response.sendError(HttpStatus.GONE.value(), "Лимит переходов исчерпан");
-            } else {
-                response.sendError(HttpStatus.GONE.value(), "Ссылка недоступна");
-            }
+            rejectUnavailable(link, response);
             return;
         }
 
         Optional<Link> afterIncrement = linkService.resolveAndIncrementClicks(shortCode);
         if (afterIncrement.isEmpty()) {
-            response.sendError(HttpStatus.GONE.value(), "Ссылка недоступна");
+            // Снимок из индекса мог отстать от хранилища: причина — по актуальной ссылке
+            Optional<Link> current = linkService.findByShortCode(shortCode);
+            if (current.isEmpty()) {
+                redirectArchived(shortCode, userId, response);
+            } else {
+                rejectUnavailable(current.get(), response);
+            }
             return;
         }
 
@@ -77,4 +99,32 @@ public class RedirectController {
         }
         response.sendRedirect(targetUrl);
     }
+
+    private void rejectUnavailable(Link link, HttpServletResponse response) throws IOException {
+        if (link.isExpired()) {
+            linkService.expireOnAccess(link);
+            response.sendError(HttpStatus.GONE.value(), "Время жизни ссылки истекло");
+        } else if (link.isLimitReached()) {
+            response.sendError(HttpStatus.GONE.value(), "Лимит переходов исчерпан");
+        } else {
+            response.sendError(HttpStatus.GONE.value(), "Ссылка недоступна");
+        }
+    }
+
+    /** Ссылки нет в горячей таблице: если она в архиве — 410 с причиной, иначе 404. */
+    private void redirectArchived(String shortCode, UUID userId, HttpServletResponse response)
+            throws IOException {
+        Optional<ArchivedLink> archived = linkService.findArchivedByShortCode(shortCode);
+        if (archived.isEmpty()) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "Ссылка не найдена");
+        } else if (!archived.get().getUserId().equals(userId)) {
+            response.sendError(
+                    HttpStatus.FORBIDDEN.value(),
+                    "Доступ запрещён: ссылка принадлежит другому пользователю");
+        } else if (archived.get().getReason() == ArchiveReason.LIMIT_REACHED) {
+            response.sendError(HttpStatus.GONE.value(), "Лимит переходов исчерпан");
+        } else {
+            response.sendError(HttpStatus.GONE.value(), "Время жизни ссылки истекло");
+        }
+    }
 }
@@ -0,0 +1,31 @@
+package ru.mephi.ozerov.shortlinks.controller;
+
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.mephi.ozerov.shortlinks.dto.UserSummaryResponse;
+import ru.mephi.ozerov.shortlinks.service.UserSummaryService;
+
+@RestController
+@RequestMapping("/api/users")
+@RequiredArgsConstructor
+public class UserController {
+
+    private final UserSummaryService userSummaryService;
+
+    private static final String USER_ID_HEADER = "X-User-Id";
+
+    /**
+     * Сводка текущего пользователя: всего / активных / истёкших / с исчерпанным лимитом ссылок и
+     * непрочитанные уведомления. Читается из материализованных счётчиков.
+     */
+    @GetMapping("/me/summary")
+    public ResponseEntity<?> summary(
+            @RequestHeader(value = USER_ID_HEADER, required = false) UUID userId) {
+        if (userId == null) {
+            return ResponseEntity.badRequest().body("Заголовок X-User-Id обязателен");
+        }
+        return ResponseEntity.ok(UserSummaryResponse.from(userSummaryService.getSummary(userId)));
+    }
+}
@@ -0,0 +1,12 @@
+package ru.mephi.ozerov.shortlinks.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/** Результат массовой операции над уведомлениями: сколько строк затронуто. */
+@Data
+@AllArgsConstructor
+public class BulkUpdateResponse {
+
+    private int affected;
+}
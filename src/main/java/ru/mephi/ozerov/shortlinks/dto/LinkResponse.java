@@ -3,6 +3,7 @@ package ru.mephi.ozerov.shortlinks.dto;
 import java.time.Instant;
 import lombok.Builder;
 import lombok.Data;
+import ru.mephi.ozerov.shortlinks.entity.ArchivedLink;
 import ru.mephi.ozerov.shortlinks.entity.Link;
 
 @Data
@@ -19,7 +20,18 @@ public class LinkResponse {
     private Instant createdAt;
     private boolean available;
 
+    /** Ссылка прочитана из холодного архива (истекла или исчерпала лимит и перенесена). */
+    private boolean archived;
+
     public static LinkResponse from(Link link, String baseUrl) {
+        return from(link, baseUrl, false);
+    }
+
+    public static LinkResponse fromArchived(ArchivedLink archivedLink, String baseUrl) {
+        return from(archivedLink.toLink(), baseUrl, true);
+    }
+
+    private static LinkResponse from(Link link, String baseUrl, boolean archived) {
         String shortUrl =
                 baseUrl.endsWith("/")
                         ? baseUrl + link.getShortCode()
@@ -34,6 +46,7 @@ public class LinkResponse {
                 .expiresAt(link.getExpiresAt())
                 .createdAt(link.getCreatedAt())
                 .available(link.isAvailable())
+                .archived(archived)
                 .build();
     }
 }
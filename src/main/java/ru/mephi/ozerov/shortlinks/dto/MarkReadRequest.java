@@ -0,0 +1,16 @@
+package ru.mephi.ozerov.shortlinks.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class MarkReadRequest {
+
+    /** id уведомлений; чужие и несуществующие пропускаются. */
+    @NotEmpty(message = "Список id обязателен")
+    @Size(max = 1000, message = "Не больше 1000 id за запрос")
+    private List<@NotNull(message = "id не может быть null") Long> ids;
+}
@@ -17,16 +17,22 @@ public class NotificationResponse {
     private String message;
     private Instant createdAt;
     private boolean read;
+    private int occurrences;
 
-    public static NotificationResponse from(Notification n) {
+    /**
+     * message — текст, отрисованный по шаблону типа на языке запроса ({@code
+     * NotificationMessages}).
+     */
+    public static NotificationResponse from(Notification n, String message) {
         return NotificationResponse.builder()
                 .id(n.getId())
                 .linkId(n.getLinkId())
                 .shortCode(n.getShortCode())
                 .type(n.getType())
-                .message(n.getMessage())
+                .message(message)
                 .createdAt(n.getCreatedAt())
                 .read(n.getReadFlag())
+                .occurrences(n.getOccurrences() != null ? n.getOccurrences() : 1)
                 .build();
     }
 }
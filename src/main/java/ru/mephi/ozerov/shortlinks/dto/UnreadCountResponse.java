@@ -0,0 +1,11 @@
+package ru.mephi.ozerov.shortlinks.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class UnreadCountResponse {
+
+    private long unread;
+}
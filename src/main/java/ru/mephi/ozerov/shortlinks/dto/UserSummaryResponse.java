@@ -0,0 +1,26 @@
+package ru.mephi.ozerov.shortlinks.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import ru.mephi.ozerov.shortlinks.entity.UserSummary;
+
+@Data
+@Builder
+public class UserSummaryResponse {
+
+    private long totalLinks;
+    private long activeLinks;
+    private long expiredLinks;
+    private long limitReachedLinks;
+    private long unreadNotifications;
+
+    public static UserSummaryResponse from(UserSummary s) {
+        return UserSummaryResponse.builder()
+                .totalLinks(s.getTotalLinks())
+                .activeLinks(s.getActiveLinks())
+                .expiredLinks(s.getExpiredLinks())
+                .limitReachedLinks(s.getLimitReachedLinks())
+                .unreadNotifications(s.getUnreadNotifications())
+                .build();
+    }
+}
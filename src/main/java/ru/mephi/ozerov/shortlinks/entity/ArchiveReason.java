@@ -0,0 +1,9 @@
+package ru.mephi.ozerov.shortlinks.entity;
+
+/** Почему ссылка перенесена в архив. */
+public enum ArchiveReason {
+    /** Истекло время жизни. */
+    EXPIRED,
+    /** Деактивирована из-за исчерпания лимита переходов. */
+    LIMIT_REACHED
+}
@@ -0,0 +1,123 @@
+package ru.mephi.ozerov.shortlinks.entity;
+
+import jakarta.persistence.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Ссылка в холодном архиве (только добавление). Поля, по которым идёт поиск (id, владелец,
+ * shortCode), хранятся открыто; остальное — сжатый Deflate блок {@code payload}, который
+ * распаковывается только при чтении архивной ссылки.
+ */
+@Entity
+@Table(
+        name = "links_archive",
+        indexes = {
+            @Index(name = "idx_links_archive_short_code", columnList = "short_code"),
+            @Index(name = "idx_links_archive_user", columnList = "user_id, reason")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchivedLink implements Persistable<Long> {
+
+    private static final byte PAYLOAD_VERSION = 1;
+
+    /** id ссылки в горячей таблице links. */
+    @Id
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(name = "short_code", nullable = false, length = 16)
+    private String shortCode;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "reason", nullable = false, length = 32)
+    private ArchiveReason reason;
+
+    @Column(name = "archived_at", nullable = false)
+    private Instant archivedAt;
+
+    /** originalUrl, лимит, число переходов, expiresAt и createdAt, сжатые Deflate. */
+    @Column(name = "payload", nullable = false, length = 8192)
+    private byte[] payload;
+
+    public static ArchivedLink of(Link link, ArchiveReason reason, Instant archivedAt) {
+        return ArchivedLink.builder()
+                .id(link.getId())
+                .userId(link.getUserId())
+                .shortCode(link.getShortCode())
+                .reason(reason)
+                .archivedAt(archivedAt)
+                .payload(pack(link))
+                .build();
+    }
+
+    /** Ссылка в виде сущности горячей таблицы (не управляемая JPA, всегда неактивная). */
+    public Link toLink() {
+        try (DataInputStream in =
+                new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(payload)))) {
+            in.readByte();
+            String originalUrl = in.readUTF();
+            int clickLimit = in.readInt();
+            int clicksCount = in.readInt();
+            Instant expiresAt = Instant.ofEpochMilli(in.readLong());
+            Instant createdAt = Instant.ofEpochMilli(in.readLong());
+            return Link.builder()
+                    .id(id)
+                    .userId(userId)
+                    .shortCode(shortCode)
+                    .originalUrl(originalUrl)
+                    .clickLimit(clickLimit < 0 ? null : clickLimit)
+                    .clicksCount(clicksCount)
+                    .expiresAt(expiresAt)
+                    .expiryBucket(Link.expiryBucketOf(expiresAt))
+                    .createdAt(createdAt)
+                    .active(false)
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Повреждённая архивная запись ссылки " + id, e);
+        }
+    }
+
+    /** Архив только дополняется: запись всегда новая, без SELECT перед вставкой. */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    private static byte[] pack(Link link) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream out =
+                new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            out.writeByte(PAYLOAD_VERSION);
+            out.writeUTF(link.getOriginalUrl());
+            out.writeInt(link.getClickLimit() == null ? -1 : link.getClickLimit());
+            out.writeInt(link.getClicksCount());
+            out.writeLong(link.getExpiresAt().toEpochMilli());
+            out.writeLong(link.getCreatedAt().toEpochMilli());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,31 @@
+package ru.mephi.ozerov.shortlinks.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import lombok.*;
+
+/**
+ * Аренда шарда работы по истечению ссылок. Шард ссылки — {@code id % shards}; узел обрабатывает
+ * только шарды, аренда которых принадлежит ему и ещё не истекла. Истёкшую аренду может забрать
+ * любой узел.
+ */
+@Entity
+@Table(name = "expiry_leases")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExpiryLease {
+
+    @Id
+    @Column(name = "shard_id", nullable = false)
+    private Integer shardId;
+
+    /** Идентификатор узла-владельца; null — шард свободен. */
+    @Column(name = "owner", length = 64)
+    private String owner;
+
+    @Column(name = "lease_until")
+    private Instant leaseUntil;
+}
@@ -0,0 +1,26 @@
+package ru.mephi.ozerov.shortlinks.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import lombok.*;
+
+/**
+ * Пульс узла, участвующего в истечении ссылок. По числу живых узлов каждый узел вычисляет свою
+ * справедливую долю шардов — в том числе узел, ещё не владеющий ни одним шардом.
+ */
+@Entity
+@Table(name = "expiry_nodes")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExpiryNode {
+
+    @Id
+    @Column(name = "node_id", length = 64, nullable = false)
+    private String nodeId;
+
+    @Column(name = "alive_until", nullable = false)
+    private Instant aliveUntil;
+}
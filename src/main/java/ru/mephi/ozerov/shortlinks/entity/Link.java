@@ -4,14 +4,22 @@ import jakarta.persistence.*;
 import java.time.Instant;
 import java.util.UUID;
 import lombok.*;
+import ru.mephi.ozerov.shortlinks.store.ShortCodeCodec;
 
 @Entity
-@Table(name = "links", indexes = @Index(columnList = "short_code", unique = true))
+@Table(
+        name = "links",
+        indexes = {
+            @Index(columnList = "short_code", unique = true),
+            @Index(name = "idx_links_short_code_num", columnList = "short_code_num", unique = true),
+            @Index(name = "idx_links_expiry_bucket", columnList = "expiry_bucket, id"),
+            @Index(name = "idx_links_user_created", columnList = "user_id, created_at, id")
+        })
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Link {
 
     @Id
@@ -21,6 +29,13 @@ public class Link {
     @Column(name = "short_code", nullable = false, unique = true, length = 16)
     private String shortCode;
 
+    /**
+     * shortCode, упакованный в число ({@link ShortCodeCodec}): поиск при переходе идёт по индексу
+     * BIGINT, а не по строке. Заполняется при сохранении; null, если код не упаковывается.
+     */
+    @Column(name = "short_code_num")
+    private Long shortCodeNum;
+
     @Column(name = "original_url", nullable = false, length = 2048)
     private String originalUrl;
 
@@ -38,6 +53,14 @@ public class Link {
     @Column(name = "expires_at", nullable = false)
     private Instant expiresAt;
 
+    /**
+     * Корзина истечения — номер часа (epoch-часы) момента expiresAt. Ссылки одной корзины истекают
+     * вместе, и корзина, целиком оставшаяся в прошлом, удаляется без проверки expiresAt каждой
+     * строки. null у ссылок, созданных до появления корзин.
+     */
+    @Column(name = "expiry_bucket")
+    private Long expiryBucket;
+
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
@@ -45,6 +68,37 @@ public class Link {
     @Builder.Default
     private Boolean active = true;
 
+    /**
+     * Когда ссылка деактивирована (исчерпан лимит переходов). Через {@code
+     * shortlinks.archive.inactive-grace-minutes} после этого ссылка переносится в архив.
+     */
+    @Column(name = "deactivated_at")
+    private Instant deactivatedAt;
+
+    /**
+     * Исходящее уведомление (outbox): выставляется тем же UPDATE, что деактивирует ссылку, и
+     * снимается тем же коммитом, что записывает уведомление CLICK_LIMIT_REACHED. Пока флаг стоит,
+     * ссылка не переносится в архив.
+     */
+    @Column(
+            name = "notification_pending",
+            nullable = false,
+            columnDefinition = "boolean default false")
+    @Builder.Default
+    private Boolean notificationPending = false;
+
+    @PrePersist
+    @PreUpdate
+    void packShortCode() {
+        long packed = ShortCodeCodec.pack(shortCode);
+        shortCodeNum = packed != ShortCodeCodec.NOT_PACKABLE ? packed : null;
+    }
+
+    /** Корзина истечения для момента времени: номер часа от начала эпохи. */
+    public static long expiryBucketOf(Instant instant) {
+        return Math.floorDiv(instant.getEpochSecond(), 3600L);
+    }
+
     public boolean isExpired() {
         return Instant.now().isAfter(expiresAt);
     }
@@ -54,6 +108,11 @@ public class Link {
     }
 
     public boolean isAvailable() {
-        return active && !isExpired() && !isLimitReached();
+        return isAvailableAt(Instant.now());
+    }
+
+    /** Принимает ли ссылка переход в момент now: активна, не истекла, лимит не исчерпан. */
+    public boolean isAvailableAt(Instant now) {
+        return active && !now.isAfter(expiresAt) && !isLimitReached();
     }
 }
@@ -0,0 +1,48 @@
+package ru.mephi.ozerov.shortlinks.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.SourceType;
+
+/**
+ * Запись журнала изменений ссылок для рассылки инвалидаций между узлами через общую БД (см. {@link
+ * ru.mephi.ozerov.shortlinks.invalidation.DbChangeLogTransport}). Хранится недолго: узлы читают
+ * только последние секунды журнала.
+ */
+@Entity
+@Table(
+        name = "link_change_log",
+        indexes = {@Index(name = "idx_link_change_log_created", columnList = "created_at, id")})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LinkChangeLogEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Узел, изменивший ссылку. */
+    @Column(name = "origin", length = 64, nullable = false)
+    private String origin;
+
+    /** Порядковый номер изменения на узле-источнике. */
+    @Column(name = "seq", nullable = false)
+    private Long seq;
+
+    @Column(name = "short_code", length = 16, nullable = false)
+    private String shortCode;
+
+    /** Время изменения по часам узла-источника. */
+    @Column(name = "sent_at", nullable = false)
+    private Instant sentAt;
+
+    /** Время записи по часам БД: окно чтения не зависит от расхождения часов узлов. */
+    @CreationTimestamp(source = SourceType.DB)
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -6,7 +6,9 @@ import java.util.UUID;
 import lombok.*;
 
 @Entity
-@Table(name = "notifications", indexes = @Index(columnList = "user_id"))
+@Table(
+        name = "notifications",
+        indexes = {@Index(columnList = "user_id, id"), @Index(columnList = "created_at")})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -31,13 +33,19 @@ public class Notification {
     @Column(name = "type", nullable = false)
     private NotificationType type;
 
-    @Column(name = "message", nullable = false, length = 512)
-    private String message;
-
     @Column(name = "created_at", nullable = false)
     private Instant createdAt;
 
     @Column(name = "read_flag", nullable = false)
     @Builder.Default
     private Boolean readFlag = false;
+
+    /**
+     * Сколько одинаковых уведомлений (тип + ссылка) схлопнуто в эту строку фоновым уплотнением.
+     * Значение по умолчанию в DDL — для строк, вставленных {@code INSERT ... SELECT} и созданных до
+     * появления колонки.
+     */
+    @Column(name = "occurrences", nullable = false, columnDefinition = "integer default 1")
+    @Builder.Default
+    private Integer occurrences = 1;
 }
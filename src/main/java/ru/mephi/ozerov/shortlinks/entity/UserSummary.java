@@ -0,0 +1,55 @@
+package ru.mephi.ozerov.shortlinks.entity;
+
+import jakarta.persistence.*;
+import java.util.UUID;
+import lombok.*;
+
+/**
+ * Материализованная сводка по пользователю. Счётчики поддерживаются инкрементально сервисами ссылок
+ * и уведомлений, поэтому чтение сводки — одна выборка по первичному ключу. Каждое изменение
+ * увеличивает и версию данных пользователя.
+ */
+@Entity
+@Table(name = "user_summaries")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserSummary {
+
+    @Id
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    /** Ссылки пользователя, хранящиеся в системе (активные и деактивированные). */
+    @Column(name = "total_links", nullable = false)
+    @Builder.Default
+    private Long totalLinks = 0L;
+
+    @Column(name = "active_links", nullable = false)
+    @Builder.Default
+    private Long activeLinks = 0L;
+
+    /** Сколько ссылок пользователя было удалено по истечении времени жизни. */
+    @Column(name = "expired_links", nullable = false)
+    @Builder.Default
+    private Long expiredLinks = 0L;
+
+    /** Ссылки, деактивированные из-за исчерпания лимита переходов. */
+    @Column(name = "limit_reached_links", nullable = false)
+    @Builder.Default
+    private Long limitReachedLinks = 0L;
+
+    @Column(name = "unread_notifications", nullable = false)
+    @Builder.Default
+    private Long unreadNotifications = 0L;
+
+    /**
+     * Версия данных пользователя для ETag ({@code UserVersionService}): растёт с каждым изменением
+     * его ссылок и уведомлений, в той же транзакции. Общая для всех узлов.
+     */
+    @Column(name = "version", nullable = false, columnDefinition = "bigint default 0")
+    @Builder.Default
+    private Long version = 0L;
+}
@@ -0,0 +1,162 @@
+package ru.mephi.ozerov.shortlinks.invalidation;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mephi.ozerov.shortlinks.entity.LinkChangeLogEntry;
+import ru.mephi.ozerov.shortlinks.repository.LinkChangeLogRepository;
+
+/**
+ * Инвалидации через журнал {@code link_change_log} общей БД. Отправка — пакетная вставка строк;
+ * каждый узел раз в {@code poll-millis} читает строки, записанные за последние {@code
+ * lookback-millis} (по часам БД), и доставляет ещё не доставленные. Окно назад нужно потому, что
+ * строки с меньшим id могут стать видимыми позже строк с большим (коммиты идут параллельно): курсор
+ * по одному id их бы пропустил. Окно читается страницами по ключу {@code (created_at, id)} до
+ * конца, сколько бы строк в него ни попало, а начало окна при старте берётся по часам БД.
+ *
+ * <p>Транспорт надёжен, пока узел опрашивает журнал чаще, чем строки в нём устаревают: задержка
+ * доставки не больше {@code poll-millis} плюс время коммита. Строки старше {@code retention}
+ * удаляет любой узел.
+ */
+@Slf4j
+public class DbChangeLogTransport implements InvalidationTransport {
+
+    static final int POLL_LIMIT = 10_000;
+    private static final int CLEANUP_EVERY_POLLS = 100;
+
+    private final LinkChangeLogRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration pollInterval;
+    private final Duration lookback;
+    private final Duration retention;
+
+    /** id доставленных строк окна с их временем записи — для отсева повторного чтения. */
+    private final Map<Long, Instant> delivered = new LinkedHashMap<>();
+
+    /** Начало окна по часам БД; до первого опроса не задано. */
+    private Instant since;
+
+    private long polls;
+    private ScheduledExecutorService poller;
+
+    public DbChangeLogTransport(
+            LinkChangeLogRepository repository,
+            PlatformTransactionManager transactionManager,
+            Duration pollInterval,
+            Duration lookback,
+            Duration retention) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.pollInterval = pollInterval;
+        this.lookback = lookback;
+        this.retention = retention;
+    }
+
+    @Override
+    public void send(List<InvalidationMessage> messages) {
+        repository.saveAll(
+                messages.stream()
+                        .map(
+                                m ->
+                                        LinkChangeLogEntry.builder()
+                                                .origin(m.origin())
+                                                .seq(m.seq())
+                                                .shortCode(m.shortCode())
+                                                .sentAt(Instant.ofEpochMilli(m.sentAtMillis()))
+                                                .build())
+                        .toList());
+    }
+
+    @Override
+    public synchronized void start(Consumer<List<InvalidationMessage>> receiver) {
+        since = null;
+        poller =
+                Executors.newSingleThreadScheduledExecutor(
+                        task -> {
+                            Thread thread = new Thread(task, "link-change-log-poller");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        poller.scheduleWithFixedDelay(
+                () -> {
+                    try {
+                        List<InvalidationMessage> fresh = poll();
+                        if (!fresh.isEmpty()) {
+                            receiver.accept(fresh);
+                        }
+                    } catch (RuntimeException e) {
+                        log.warn("Журнал изменений ссылок не прочитан: {}", e.getMessage());
+                    }
+                },
+                0,
+                pollInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean reliable() {
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+    }
+
+    /** Новые строки окна; окно сдвигается за самой поздней прочитанной строкой. */
+    synchronized List<InvalidationMessage> poll() {
+        if (since == null) {
+            since = repository.now().minus(lookback);
+        }
+        List<InvalidationMessage> fresh = new ArrayList<>();
+        Instant latest = null;
+        Instant afterCreatedAt = since;
+        long afterId = Long.MIN_VALUE;
+        List<LinkChangeLogEntry> rows;
+        do {
+            rows = repository.findAfter(afterCreatedAt, afterId, PageRequest.of(0, POLL_LIMIT));
+            for (LinkChangeLogEntry row : rows) {
+                afterCreatedAt = row.getCreatedAt();
+                afterId = row.getId();
+                latest = row.getCreatedAt();
+                if (delivered.putIfAbsent(row.getId(), row.getCreatedAt()) == null) {
+                    fresh.add(
+                            new InvalidationMessage(
+                                    row.getOrigin(),
+                                    row.getSeq(),
+                                    row.getShortCode(),
+                                    row.getSentAt().toEpochMilli()));
+                }
+            }
+        } while (rows.size() == POLL_LIMIT);
+        if (latest != null && latest.minus(lookback).isAfter(since)) {
+            since = latest.minus(lookback);
+            Iterator<Instant> times = delivered.values().iterator();
+            while (times.hasNext()) {
+                if (times.next().isBefore(since)) {
+                    times.remove();
+                }
+            }
+        }
+        if (++polls % CLEANUP_EVERY_POLLS == 0) {
+            Instant before = repository.now().minus(retention);
+            transactionTemplate.executeWithoutResult(status -> repository.deleteBefore(before));
+        }
+        return fresh;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.mephi.ozerov.shortlinks.invalidation;
+
+/**
+ * Инвалидация копии ссылки на других узлах.
+ *
+ * @param origin узел, изменивший ссылку
+ * @param seq порядковый номер на узле-источнике (метка версии): растёт с каждым изменением
+ * @param shortCode код ссылки; null — пульс узла без изменения (seq — последний выданный номер)
+ * @param sentAtMillis время изменения по часам узла-источника
+ */
+public record InvalidationMessage(String origin, long seq, String shortCode, long sentAtMillis) {
+
+    public boolean heartbeat() {
+        return shortCode == null;
+    }
+}
@@ -0,0 +1,56 @@
+package ru.mephi.ozerov.shortlinks.invalidation;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Транспорт инвалидаций между узлами. Выбирается настройкой {@code
+ * shortlinks.invalidation.transport} (см. {@link
+ * ru.mephi.ozerov.shortlinks.config.InvalidationConfig}):
+ *
+ * <ul>
+ *   <li>{@code none} — один узел, рассылки нет ({@link #NONE});
+ *   <li>{@code db} — журнал изменений в общей БД, узлы опрашивают его ({@link
+ *       DbChangeLogTransport});
+ *   <li>{@code udp} — датаграммы известным узлам, в том числе процессам на одной машине через
+ *       loopback ({@link UdpInvalidationTransport}).
+ * </ul>
+ *
+ * Транспорт может доставлять сообщения повторно и не по порядку; отсев — по меткам версий в {@link
+ * ru.mephi.ozerov.shortlinks.service.LinkInvalidationBus}.
+ */
+public interface InvalidationTransport extends AutoCloseable {
+
+    /** Без рассылки: единственный узел. */
+    InvalidationTransport NONE =
+            new InvalidationTransport() {
+                @Override
+                public void send(List<InvalidationMessage> messages) {}
+
+                @Override
+                public void start(Consumer<List<InvalidationMessage>> receiver) {}
+
+                @Override
+                public boolean reliable() {
+                    return true;
+                }
+
+                @Override
+                public void close() {}
+            };
+
+    /** Отправляет сообщения остальным узлам (себе тоже можно: свои сообщения отбрасываются). */
+    void send(List<InvalidationMessage> messages);
+
+    /** Начинает доставку входящих сообщений; получатель вызывается потоком транспорта. */
+    void start(Consumer<List<InvalidationMessage>> receiver);
+
+    /**
+     * Транспорт не теряет сообщения. Для ненадёжного транспорта шина рассылает пульс и по пропуску
+     * номеров сбрасывает модель чтения целиком.
+     */
+    boolean reliable();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,186 @@
+package ru.mephi.ozerov.shortlinks.invalidation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Инвалидации датаграммами UDP заранее известным узлам ({@code host:port} через запятую), в том
+ * числе процессам на одной машине через loopback. Доставка не гарантирована: шина рассылает пульс с
+ * последним номером и по пропуску номеров сбрасывает модель чтения целиком.
+ *
+ * <p>Датаграмма: {@code MAGIC}, узел-источник, число сообщений, затем для каждого — номер, время
+ * отправки и код (пустой — пульс). Сообщения пачки раскладываются по датаграммам не больше {@link
+ * #MAX_DATAGRAM} байт, чтобы не зависеть от фрагментации IP.
+ */
+@Slf4j
+public class UdpInvalidationTransport implements InvalidationTransport {
+
+    static final int MAGIC = 0x534c4931;
+    static final int MAX_DATAGRAM = 1400;
+
+    /** Номер, время и длина кода; сам код — до 16 байт ASCII. */
+    private static final int MESSAGE_BYTES = 8 + 8 + 2 + 16;
+
+    private final DatagramSocket socket;
+    private final List<InetSocketAddress> peers;
+    private Thread receiverThread;
+
+    /**
+     * @param port порт приёма; 0 — любой свободный (см. {@link #localPort()})
+     * @param peers адреса остальных узлов через запятую, {@code host:port}
+     */
+    public UdpInvalidationTransport(int port, String peers) {
+        this.peers = parsePeers(peers);
+        try {
+            this.socket = new DatagramSocket(port);
+        } catch (SocketException e) {
+            throw new UncheckedIOException(
+                    "Порт инвалидаций UDP " + port + " недоступен: " + e.getMessage(), e);
+        }
+    }
+
+    public int localPort() {
+        return socket.getLocalPort();
+    }
+
+    @Override
+    public void send(List<InvalidationMessage> messages) {
+        if (messages.isEmpty() || peers.isEmpty()) {
+            return;
+        }
+        String origin = messages.get(0).origin();
+        int perDatagram = Math.max(1, (MAX_DATAGRAM - 64 - origin.length()) / MESSAGE_BYTES);
+        for (int from = 0; from < messages.size(); from += perDatagram) {
+            byte[] datagram =
+                    encode(
+                            origin,
+                            messages.subList(from, Math.min(messages.size(), from + perDatagram)));
+            for (InetSocketAddress peer : peers) {
+                try {
+                    socket.send(new DatagramPacket(datagram, datagram.length, peer));
+                } catch (IOException e) {
+                    log.debug("Инвалидация не отправлена на {}: {}", peer, e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void start(Consumer<List<InvalidationMessage>> receiver) {
+        receiverThread = new Thread(() -> receive(receiver), "link-invalidation-udp");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+    }
+
+    @Override
+    public boolean reliable() {
+        return false;
+    }
+
+    @Override
+    public synchronized void close() {
+        socket.close();
+        if (receiverThread != null) {
+            try {
+                receiverThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            receiverThread = null;
+        }
+    }
+
+    private void receive(Consumer<List<InvalidationMessage>> receiver) {
+        byte[] buffer = new byte[MAX_DATAGRAM * 2];
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        while (!socket.isClosed()) {
+            try {
+                packet.setLength(buffer.length);
+                socket.receive(packet);
+                List<InvalidationMessage> messages =
+                        decode(Arrays.copyOfRange(buffer, 0, packet.getLength()));
+                if (!messages.isEmpty()) {
+                    receiver.accept(messages);
+                }
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    log.debug("Датаграмма инвалидации не прочитана: {}", e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                log.warn("Инвалидации не применены: {}", e.getMessage());
+            }
+        }
+    }
+
+    static byte[] encode(String origin, List<InvalidationMessage> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(MAX_DATAGRAM);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeUTF(origin);
+            out.writeShort(messages.size());
+            for (InvalidationMessage message : messages) {
+                out.writeLong(message.seq());
+                out.writeLong(message.sentAtMillis());
+                out.writeUTF(message.heartbeat() ? "" : message.shortCode());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Разбирает датаграмму; чужие и повреждённые датаграммы дают пустой список. */
+    static List<InvalidationMessage> decode(byte[] datagram) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(datagram))) {
+            if (in.readInt() != MAGIC) {
+                return List.of();
+            }
+            String origin = in.readUTF();
+            int count = in.readUnsignedShort();
+            List<InvalidationMessage> messages = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long seq = in.readLong();
+                long sentAt = in.readLong();
+                String code = in.readUTF();
+                messages.add(
+                        new InvalidationMessage(origin, seq, code.isEmpty() ? null : code, sentAt));
+            }
+            return messages;
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+
+    private static List<InetSocketAddress> parsePeers(String peers) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        if (peers == null || peers.isBlank()) {
+            return addresses;
+        }
+        for (String peer : peers.split(",")) {
+            String trimmed = peer.trim();
+            int colon = trimmed.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException(
+                        "Адрес узла инвалидаций должен быть host:port: " + trimmed);
+            }
+            addresses.add(
+                    new InetSocketAddress(
+                            trimmed.substring(0, colon),
+                            Integer.parseInt(trimmed.substring(colon + 1))));
+        }
+        return addresses;
+    }
+}
@@ -0,0 +1,25 @@
+package ru.mephi.ozerov.shortlinks.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import ru.mephi.ozerov.shortlinks.entity.ArchiveReason;
+import ru.mephi.ozerov.shortlinks.entity.ArchivedLink;
+
+public interface ArchivedLinkRepository extends JpaRepository<ArchivedLink, Long> {
+
+    Optional<ArchivedLink> findFirstByShortCodeOrderByIdDesc(String shortCode);
+
+    boolean existsByShortCode(String shortCode);
+
+    long countByUserIdAndReason(UUID userId, ArchiveReason reason);
+
+    @Query("SELECT a.id FROM ArchivedLink a WHERE a.id IN :ids")
+    List<Long> findExistingIds(Collection<Long> ids);
+
+    @Query("SELECT COALESCE(MAX(a.id), 0) FROM ArchivedLink a")
+    long findMaxId();
+}
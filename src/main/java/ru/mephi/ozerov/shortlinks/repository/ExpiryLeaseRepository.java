@@ -0,0 +1,38 @@
+package ru.mephi.ozerov.shortlinks.repository;
+
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.mephi.ozerov.shortlinks.entity.ExpiryLease;
+
+public interface ExpiryLeaseRepository extends JpaRepository<ExpiryLease, Integer> {
+
+    /**
+     * Захват шарда одним условным оператором: удаётся, если шард свободен, его аренда истекла или
+     * уже принадлежит узлу (продление). Возвращает 1 при успехе.
+     */
+    @Modifying
+    @Query(
+            "UPDATE ExpiryLease l SET l.owner = :node, l.leaseUntil = :until"
+                    + " WHERE l.shardId = :shard AND (l.owner IS NULL OR l.owner = :node"
+                    + " OR l.leaseUntil < :now)")
+    int tryAcquire(int shard, String node, Instant until, Instant now);
+
+    /** Продление всех аренд узла, которые ещё не забрал другой узел. */
+    @Modifying
+    @Query("UPDATE ExpiryLease l SET l.leaseUntil = :until WHERE l.owner = :node")
+    int renewAll(String node, Instant until);
+
+    @Modifying
+    @Query(
+            "UPDATE ExpiryLease l SET l.owner = null, l.leaseUntil = null"
+                    + " WHERE l.shardId = :shard AND l.owner = :node")
+    int release(int shard, String node);
+
+    @Query(
+            "SELECT l.shardId FROM ExpiryLease l WHERE l.owner = :node AND l.leaseUntil > :now"
+                    + " AND l.shardId < :shards ORDER BY l.shardId")
+    List<Integer> findOwnedShards(String node, Instant now, int shards);
+}
@@ -0,0 +1,21 @@
+package ru.mephi.ozerov.shortlinks.repository;
+
+import java.time.Instant;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.mephi.ozerov.shortlinks.entity.ExpiryNode;
+
+public interface ExpiryNodeRepository extends JpaRepository<ExpiryNode, String> {
+
+    /** Продление пульса узла. Возвращает 0, если узел ещё не зарегистрирован. */
+    @Modifying
+    @Query("UPDATE ExpiryNode n SET n.aliveUntil = :until WHERE n.nodeId = :node")
+    int heartbeat(String node, Instant until);
+
+    long countByAliveUntilAfter(Instant now);
+
+    @Modifying
+    @Query("DELETE FROM ExpiryNode n WHERE n.aliveUntil < :before")
+    int deleteDeadBefore(Instant before);
+}
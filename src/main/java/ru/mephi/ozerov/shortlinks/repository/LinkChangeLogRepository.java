@@ -0,0 +1,28 @@
+package ru.mephi.ozerov.shortlinks.repository;
+
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.mephi.ozerov.shortlinks.entity.LinkChangeLogEntry;
+
+public interface LinkChangeLogRepository extends JpaRepository<LinkChangeLogEntry, Long> {
+
+    /**
+     * Страница журнала после ключа {@code (createdAt, id)}, по индексу {@code (created_at, id)}.
+     */
+    @Query(
+            "SELECT e FROM LinkChangeLogEntry e WHERE e.createdAt > :createdAt"
+                    + " OR (e.createdAt = :createdAt AND e.id > :id) ORDER BY e.createdAt, e.id")
+    List<LinkChangeLogEntry> findAfter(Instant createdAt, long id, Pageable pageable);
+
+    /** Текущее время по часам БД — тем же, которыми проставляется {@code created_at}. */
+    @Query("SELECT instant")
+    Instant now();
+
+    @Modifying
+    @Query("DELETE FROM LinkChangeLogEntry e WHERE e.createdAt < :before")
+    int deleteBefore(Instant before);
+}
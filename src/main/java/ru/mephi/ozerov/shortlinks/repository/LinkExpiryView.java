@@ -0,0 +1,11 @@
+package ru.mephi.ozerov.shortlinks.repository;
+
+import java.time.Instant;
+
+/** Проекция ссылки для планирования истечения: только id и срок жизни. */
+public interface LinkExpiryView {
+
+    Long getId();
+
+    Instant getExpiresAt();
+}
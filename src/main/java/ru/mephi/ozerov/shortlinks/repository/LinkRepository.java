@@ -1,10 +1,15 @@
 package ru.mephi.ozerov.shortlinks.repository;
 
+import jakarta.persistence.LockModeType;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import ru.mephi.ozerov.shortlinks.entity.Link;
 
@@ -14,8 +19,171 @@ public interface LinkRepository extends JpaRepository<Link, Long> {
 
     boolean existsByShortCode(String shortCode);
 
+    Optional<Link> findByShortCodeNum(long shortCodeNum);
+
+    boolean existsByShortCodeNum(long shortCodeNum);
+
     List<Link> findByUserIdOrderByCreatedAtDesc(UUID userId);
 
-    @Query("SELECT l FROM Link l WHERE l.expiresAt < :now AND l.active = true")
-    List<Link> findExpiredActiveLinks(Instant now);
+    long countByUserId(UUID userId);
+
+    List<Link> findByIdGreaterThanOrderByIdAsc(long afterId, Pageable pageable);
+
+    long countByUserIdAndActive(UUID userId, boolean active);
+
+    /**
+     * Условный инкремент для {@link ru.mephi.ozerov.shortlinks.store.JpaLinkStore}: строка
+     * блокируется UPDATE до конца транзакции, параллельные переходы не превышают лимит.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(
+            "UPDATE Link l SET l.clicksCount = l.clicksCount + 1 WHERE l.shortCode = :shortCode"
+                    + " AND l.active = true AND l.expiresAt >= :now"
+                    + " AND (l.clickLimit IS NULL OR l.clicksCount < l.clickLimit)")
+    int incrementClicksIfAvailable(String shortCode, Instant now);
+
+    /** То же по упакованному коду (индекс BIGINT). */
+    @Modifying(clearAutomatically = true)
+    @Query(
+            "UPDATE Link l SET l.clicksCount = l.clicksCount + 1 WHERE l.shortCodeNum = :shortCodeNum"
+                    + " AND l.active = true AND l.expiresAt >= :now"
+                    + " AND (l.clickLimit IS NULL OR l.clicksCount < l.clickLimit)")
+    int incrementClicksIfAvailableByNum(long shortCodeNum, Instant now);
+
+    /** Id ссылок (в любом состоянии), истёкших к моменту now, после afterId по возрастанию. */
+    @Query("SELECT l.id FROM Link l WHERE l.id > :afterId AND l.expiresAt < :now ORDER BY l.id")
+    List<Long> findExpiredIds(long afterId, Instant now, Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM Link l WHERE l.id IN :ids AND l.expiresAt < :now")
+    List<Link> lockExpiredByIds(Collection<Long> ids, Instant now);
+
+    /**
+     * Очередной чанк id истёкших активных ссылок после afterId (по возрастанию id) из шардов {@code
+     * id % shardCount}, арендованных узлом.
+     */
+    @Query(
+            "SELECT l.id FROM Link l WHERE l.expiresAt < :now AND l.active = true"
+                    + " AND l.id > :afterId AND MOD(l.id, :shardCount) IN :shards ORDER BY l.id")
+    List<Long> findExpiredActiveIds(
+            long afterId,
+            Instant now,
+            int shardCount,
+            Collection<Integer> shards,
+            Pageable pageable);
+
+    /**
+     * Истёкшие ссылки чанка с блокировкой строк: архивируются и удаляются ровно они, даже если
+     * параллельно ссылку деактивирует переход.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(
+            "SELECT l FROM Link l WHERE l.id BETWEEN :fromId AND :toId AND l.expiresAt < :now"
+                    + " AND l.active = true AND MOD(l.id, :shardCount) IN :shards")
+    List<Link> lockExpiredActiveInRange(
+            long fromId, long toId, Instant now, int shardCount, Collection<Integer> shards);
+
+    @Modifying
+    @Query(
+            "DELETE FROM Link l WHERE l.id BETWEEN :fromId AND :toId AND l.expiresAt < :now"
+                    + " AND l.active = true AND MOD(l.id, :shardCount) IN :shards")
+    int deleteExpiredActiveInRange(
+            long fromId, long toId, Instant now, int shardCount, Collection<Integer> shards);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM Link l WHERE l.id IN :ids AND l.expiresAt < :now AND l.active = true")
+    List<Link> lockExpiredActiveByIds(Collection<Long> ids, Instant now);
+
+    @Modifying
+    @Query("DELETE FROM Link l WHERE l.id IN :ids AND l.expiresAt < :now AND l.active = true")
+    int deleteExpiredActiveByIds(Collection<Long> ids, Instant now);
+
+    /** Корзины истечения с активными ссылками, целиком оставшиеся в прошлом (номер < bucket). */
+    @Query(
+            "SELECT DISTINCT l.expiryBucket FROM Link l WHERE l.expiryBucket < :bucket"
+                    + " AND l.active = true AND MOD(l.id, :shardCount) IN :shards"
+                    + " ORDER BY l.expiryBucket")
+    List<Long> findActiveExpiryBucketsBefore(
+            long bucket, int shardCount, Collection<Integer> shards);
+
+    @Query(
+            "SELECT l.id FROM Link l WHERE l.expiryBucket = :bucket AND l.active = true"
+                    + " AND MOD(l.id, :shardCount) IN :shards ORDER BY l.id")
+    List<Long> findActiveIdsInBucket(
+            long bucket, int shardCount, Collection<Integer> shards, Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(
+            "SELECT l FROM Link l WHERE l.expiryBucket = :bucket"
+                    + " AND l.id BETWEEN :fromId AND :toId AND l.active = true"
+                    + " AND MOD(l.id, :shardCount) IN :shards")
+    List<Link> lockActiveInBucket(
+            long bucket, long fromId, long toId, int shardCount, Collection<Integer> shards);
+
+    @Modifying
+    @Query(
+            "DELETE FROM Link l WHERE l.expiryBucket = :bucket"
+                    + " AND l.id BETWEEN :fromId AND :toId AND l.active = true"
+                    + " AND MOD(l.id, :shardCount) IN :shards")
+    int deleteActiveInBucket(
+            long bucket, long fromId, long toId, int shardCount, Collection<Integer> shards);
+
+    /**
+     * Страница активных ссылок после afterId (по возрастанию id) — для загрузки колеса истечения.
+     */
+    @Query(
+            "SELECT l.id AS id, l.expiresAt AS expiresAt FROM Link l"
+                    + " WHERE l.active = true AND l.id > :afterId ORDER BY l.id")
+    List<LinkExpiryView> findActiveExpiries(long afterId, Pageable pageable);
+
+    /** Выборка активных ссылок арендованных шардов, начиная со случайного afterId. */
+    @Query(
+            "SELECT l.id AS id, l.expiresAt AS expiresAt FROM Link l"
+                    + " WHERE l.active = true AND l.id > :afterId"
+                    + " AND MOD(l.id, :shardCount) IN :shards ORDER BY l.id")
+    List<LinkExpiryView> findActiveExpiriesInShards(
+            long afterId, int shardCount, Collection<Integer> shards, Pageable pageable);
+
+    /**
+     * Очередная пачка id деактивированных ссылок арендованных шардов, деактивированных раньше
+     * before (или до появления deactivatedAt), — кандидаты в архив.
+     */
+    @Query(
+            "SELECT l.id FROM Link l WHERE l.active = false AND l.notificationPending = false"
+                    + " AND l.id > :afterId"
+                    + " AND (l.deactivatedAt IS NULL OR l.deactivatedAt < :before)"
+                    + " AND MOD(l.id, :shardCount) IN :shards ORDER BY l.id")
+    List<Long> findDeactivatedIds(
+            long afterId,
+            Instant before,
+            int shardCount,
+            Collection<Integer> shards,
+            Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(
+            "SELECT l FROM Link l WHERE l.id IN :ids AND l.active = false"
+                    + " AND l.notificationPending = false")
+    List<Link> lockDeactivatedByIds(Collection<Long> ids);
+
+    /** Ссылки с неотправленным уведомлением (outbox) — для повторной доставки. */
+    @Query(
+            "SELECT l.id FROM Link l WHERE l.notificationPending = true AND l.id > :afterId"
+                    + " ORDER BY l.id")
+    List<Long> findNotificationPendingIds(long afterId, Pageable pageable);
+
+    /**
+     * Ссылки пачки, уведомление по которым ещё не записано, с блокировкой строк: писатель очереди и
+     * повторная доставка не запишут одно уведомление дважды.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT l FROM Link l WHERE l.id IN :ids AND l.notificationPending = true")
+    List<Link> lockNotificationPending(Collection<Long> ids);
+
+    @Modifying
+    @Query("UPDATE Link l SET l.notificationPending = false WHERE l.id IN :ids")
+    int clearNotificationPending(Collection<Long> ids);
+
+    @Query("SELECT MAX(l.id) FROM Link l")
+    Long findMaxId();
 }
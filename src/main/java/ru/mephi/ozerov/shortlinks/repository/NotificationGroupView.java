@@ -0,0 +1,11 @@
+package ru.mephi.ozerov.shortlinks.repository;
+
+import ru.mephi.ozerov.shortlinks.entity.NotificationType;
+
+/** Группа непрочитанных уведомлений одного типа по одной ссылке — кандидат на схлопывание. */
+public interface NotificationGroupView {
+
+    Long getLinkId();
+
+    NotificationType getType();
+}
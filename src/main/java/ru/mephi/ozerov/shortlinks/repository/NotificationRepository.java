@@ -1,13 +1,157 @@
 package ru.mephi.ozerov.shortlinks.repository;
 
+import jakarta.persistence.LockModeType;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import ru.mephi.ozerov.shortlinks.entity.Notification;
+import ru.mephi.ozerov.shortlinks.entity.NotificationType;
 
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
 
     List<Notification> findByUserIdOrderByCreatedAtDesc(UUID userId);
 
     List<Notification> findByUserIdAndReadFlagOrderByCreatedAtDesc(UUID userId, boolean readFlag);
+
+    long countByUserIdAndReadFlag(UUID userId, boolean readFlag);
+
+    /** Уведомления пользователя новее id (по индексу {@code (user_id, id)}) — для SSE-подписки. */
+    List<Notification> findTop100ByUserIdAndIdGreaterThanOrderByIdAsc(UUID userId, Long id);
+
+    @Query("SELECT COALESCE(MAX(n.id), 0) FROM Notification n WHERE n.userId = :userId")
+    long findMaxIdByUserId(UUID userId);
+
+    /** Наибольший id уведомления для каждого из пользователей, у кого уведомления есть. */
+    @Query(
+            "SELECT n.userId AS userId, MAX(n.id) AS maxId FROM Notification n"
+                    + " WHERE n.userId IN :userIds GROUP BY n.userId")
+    List<UserMaxIdView> findMaxIdsByUserIdIn(Collection<UUID> userIds);
+
+    @Query("SELECT COALESCE(MAX(n.linkId), 0) FROM Notification n")
+    long findMaxLinkId();
+
+    /** Уведомления старше cutoff — по возрастанию id, страницами для удаления чанками. */
+    @Query("SELECT n.id FROM Notification n WHERE n.createdAt < :cutoff ORDER BY n.id")
+    List<Long> findIdsCreatedBefore(Instant cutoff, Pageable pageable);
+
+    /** Пользователи, у которых уведомлений больше cap. */
+    @Query("SELECT n.userId FROM Notification n GROUP BY n.userId HAVING COUNT(n) > :cap")
+    List<UUID> findUsersOverCap(long cap, Pageable pageable);
+
+    /**
+     * id уведомлений пользователя от новых к старым; со смещением cap (страница {@code
+     * PageRequest.of(cap, 1)}) — самое новое из тех, что не помещаются в лимит.
+     */
+    @Query("SELECT n.id FROM Notification n WHERE n.userId = :userId ORDER BY n.id DESC")
+    List<Long> findIdsByUserIdNewestFirst(UUID userId, Pageable pageable);
+
+    @Query(
+            "SELECT n.id FROM Notification n WHERE n.userId = :userId AND n.id <= :maxId"
+                    + " ORDER BY n.id")
+    List<Long> findIdsByUserIdUpTo(UUID userId, long maxId, Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT n FROM Notification n WHERE n.id IN :ids")
+    List<Notification> lockByIds(Collection<Long> ids);
+
+    /** Несколько непрочитанных уведомлений одного типа по одной ссылке. */
+    @Query(
+            "SELECT n.linkId AS linkId, n.type AS type FROM Notification n"
+                    + " WHERE n.readFlag = false GROUP BY n.linkId, n.type HAVING COUNT(n) > 1")
+    List<NotificationGroupView> findUnreadDuplicateGroups(Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(
+            "SELECT n FROM Notification n WHERE n.linkId = :linkId AND n.type = :type"
+                    + " AND n.readFlag = false ORDER BY n.id")
+    List<Notification> lockUnreadByLinkAndType(Long linkId, NotificationType type);
+
+    /** Отмечает прочитанными все непрочитанные уведомления пользователя. */
+    @Modifying
+    @Query(
+            "UPDATE Notification n SET n.readFlag = true"
+                    + " WHERE n.userId = :userId AND n.readFlag = false")
+    int markAllRead(UUID userId);
+
+    /** Отмечает прочитанными непрочитанные уведомления пользователя с id не больше upToId. */
+    @Modifying
+    @Query(
+            "UPDATE Notification n SET n.readFlag = true"
+                    + " WHERE n.userId = :userId AND n.id <= :upToId AND n.readFlag = false")
+    int markReadUpTo(UUID userId, long upToId);
+
+    /** Отмечает прочитанными уведомления из списка; чужие и уже прочитанные не затрагиваются. */
+    @Modifying
+    @Query(
+            "UPDATE Notification n SET n.readFlag = true"
+                    + " WHERE n.userId = :userId AND n.id IN :ids AND n.readFlag = false")
+    int markReadByIds(UUID userId, Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM Notification n WHERE n.userId = :userId AND n.readFlag = true")
+    int deleteRead(UUID userId);
+
+    /**
+     * Уведомления CLICK_LIMIT_REACHED для пачки ссылок с флагом outbox — одним оператором (см.
+     * {@code Link#notificationPending}).
+     */
+    @Modifying
+    @Query(
+            nativeQuery = true,
+            value =
+                    "INSERT INTO notifications"
+                            + " (user_id, link_id, short_code, type, created_at, read_flag)"
+                            + " SELECT l.user_id, l.id, l.short_code, 'CLICK_LIMIT_REACHED', :now, FALSE"
+                            + " FROM links l WHERE l.id IN (:ids) AND l.notification_pending = TRUE")
+    int insertLimitReachedForPending(Collection<Long> ids, Instant now);
+
+    /** Уведомления LINK_EXPIRED для истёкших активных ссылок из диапазона id — одним оператором. */
+    @Modifying
+    @Query(
+            nativeQuery = true,
+            value =
+                    "INSERT INTO notifications"
+                            + " (user_id, link_id, short_code, type, created_at, read_flag)"
+                            + " SELECT l.user_id, l.id, l.short_code, 'LINK_EXPIRED', :now, FALSE"
+                            + " FROM links l WHERE l.id BETWEEN :fromId AND :toId"
+                            + " AND l.expires_at < :now AND l.active = TRUE"
+                            + " AND MOD(l.id, :shardCount) IN (:shards)")
+    int insertLinkExpiredForRange(
+            long fromId, long toId, Instant now, int shardCount, Collection<Integer> shards);
+
+    @Modifying
+    @Query(
+            nativeQuery = true,
+            value =
+                    "INSERT INTO notifications"
+                            + " (user_id, link_id, short_code, type, created_at, read_flag)"
+                            + " SELECT l.user_id, l.id, l.short_code, 'LINK_EXPIRED', :now, FALSE"
+                            + " FROM links l WHERE l.id IN :ids"
+                            + " AND l.expires_at < :now AND l.active = TRUE")
+    int insertLinkExpiredForIds(Collection<Long> ids, Instant now);
+
+    /** Уведомления LINK_EXPIRED для части корзины истечения, целиком оставшейся в прошлом. */
+    @Modifying
+    @Query(
+            nativeQuery = true,
+            value =
+                    "INSERT INTO notifications"
+                            + " (user_id, link_id, short_code, type, created_at, read_flag)"
+                            + " SELECT l.user_id, l.id, l.short_code, 'LINK_EXPIRED', :now, FALSE"
+                            + " FROM links l WHERE l.expiry_bucket = :bucket"
+                            + " AND l.id BETWEEN :fromId AND :toId AND l.active = TRUE"
+                            + " AND MOD(l.id, :shardCount) IN (:shards)")
+    int insertLinkExpiredForBucket(
+            long bucket,
+            long fromId,
+            long toId,
+            Instant now,
+            int shardCount,
+            Collection<Integer> shards);
 }
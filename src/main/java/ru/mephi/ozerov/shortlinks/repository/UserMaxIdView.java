@@ -0,0 +1,11 @@
+package ru.mephi.ozerov.shortlinks.repository;
+
+import java.util.UUID;
+
+/** Наибольший id уведомления пользователя — для сверки курсоров подписок. */
+public interface UserMaxIdView {
+
+    UUID getUserId();
+
+    Long getMaxId();
+}
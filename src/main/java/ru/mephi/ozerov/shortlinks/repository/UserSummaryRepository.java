@@ -0,0 +1,36 @@
+package ru.mephi.ozerov.shortlinks.repository;
+
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.mephi.ozerov.shortlinks.entity.UserSummary;
+
+public interface UserSummaryRepository
+        extends JpaRepository<UserSummary, UUID>, UserSummaryRepositoryCustom {
+
+    /**
+     * Атомарно применяет приращения к счётчикам сводки и увеличивает версию данных пользователя.
+     * Возвращает 0, если строки для пользователя ещё нет.
+     */
+    @Modifying
+    @Query(
+            "UPDATE UserSummary s SET s.totalLinks = s.totalLinks + :totalLinks,"
+                    + " s.activeLinks = s.activeLinks + :activeLinks,"
+                    + " s.expiredLinks = s.expiredLinks + :expiredLinks,"
+                    + " s.limitReachedLinks = s.limitReachedLinks + :limitReachedLinks,"
+                    + " s.unreadNotifications = s.unreadNotifications + :unreadNotifications,"
+                    + " s.version = s.version + 1"
+                    + " WHERE s.userId = :userId")
+    int applyDelta(
+            UUID userId,
+            long totalLinks,
+            long activeLinks,
+            long expiredLinks,
+            long limitReachedLinks,
+            long unreadNotifications);
+
+    @Query("SELECT s.version FROM UserSummary s WHERE s.userId = :userId")
+    Optional<Long> findVersion(UUID userId);
+}
@@ -0,0 +1,14 @@
+package ru.mephi.ozerov.shortlinks.repository;
+
+import ru.mephi.ozerov.shortlinks.entity.UserSummary;
+
+public interface UserSummaryRepositoryCustom {
+
+    /**
+     * Вставляет строку сводки, если её ещё нет. Конфликт с параллельной вставкой той же строки не
+     * портит транзакцию вызывающего: вставка идёт под точкой сохранения, которая откатывается.
+     *
+     * @return false — строка уже была (вставил параллельный вызов)
+     */
+    boolean insertIfAbsent(UserSummary summary);
+}
@@ -0,0 +1,62 @@
+package ru.mephi.ozerov.shortlinks.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.mephi.ozerov.shortlinks.entity.UserSummary;
+
+/**
+ * Вставка сводки через JDBC, а не {@code EntityManager}: ошибка ключа в Hibernate помечает всю
+ * транзакцию к откату, а здесь её достаточно откатить до точки сохранения на соединении транзакции.
+ */
+@RequiredArgsConstructor
+public class UserSummaryRepositoryImpl implements UserSummaryRepositoryCustom {
+
+    /** Класс SQLSTATE «нарушение ограничения целостности». */
+    private static final String INTEGRITY_VIOLATION = "23";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public boolean insertIfAbsent(UserSummary summary) {
+        return Boolean.TRUE.equals(
+                jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> insert(con, summary)));
+    }
+
+    private static boolean insert(Connection con, UserSummary summary) throws SQLException {
+        Savepoint savepoint = con.getAutoCommit() ? null : con.setSavepoint();
+        try (PreparedStatement statement =
+                con.prepareStatement(
+                        "INSERT INTO user_summaries (user_id, total_links, active_links,"
+                                + " expired_links, limit_reached_links, unread_notifications,"
+                                + " version) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            statement.setObject(1, summary.getUserId());
+            statement.setLong(2, summary.getTotalLinks());
+            statement.setLong(3, summary.getActiveLinks());
+            statement.setLong(4, summary.getExpiredLinks());
+            statement.setLong(5, summary.getLimitReachedLinks());
+            statement.setLong(6, summary.getUnreadNotifications());
+            statement.setLong(7, summary.getVersion());
+            statement.executeUpdate();
+            return true;
+        } catch (SQLException e) {
+            String state = e.getSQLState();
+            if (state == null || !state.startsWith(INTEGRITY_VIOLATION)) {
+                throw e;
+            }
+            if (savepoint != null) {
+                con.rollback(savepoint);
+                savepoint = null;
+            }
+            return false;
+        } finally {
+            if (savepoint != null) {
+                con.releaseSavepoint(savepoint);
+            }
+        }
+    }
+}
@@ -1,9 +1,14 @@
 package ru.mephi.ozerov.shortlinks.scheduler;
 
+import java.util.List;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import ru.mephi.ozerov.shortlinks.repository.LinkExpiryView;
+import ru.mephi.ozerov.shortlinks.service.AdaptiveExpirySampler;
 import ru.mephi.ozerov.shortlinks.service.LinkService;
 
 @Component
@@ -11,12 +16,49 @@ import ru.mephi.ozerov.shortlinks.service.LinkService;
 @Slf4j
 public class ExpiredLinksScheduler {
 
+    private static final int RECOVERY_PAGE_SIZE = 1000;
+
     private final LinkService linkService;
+    private final LinkExpiryWheel linkExpiryWheel;
+    private final AdaptiveExpirySampler adaptiveExpirySampler;
+
+    /**
+     * Восстановление колеса истечения после перезапуска: все активные ссылки из БД постранично (по
+     * id), без загрузки сущностей целиком.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadExpiryWheel() {
+        long afterId = 0;
+        int loaded = 0;
+        List<LinkExpiryView> page;
+        do {
+            page = linkService.findActiveExpiries(afterId, RECOVERY_PAGE_SIZE);
+            for (LinkExpiryView view : page) {
+                linkExpiryWheel.schedule(view.getId(), view.getExpiresAt());
+                afterId = view.getId();
+            }
+            loaded += page.size();
+        } while (page.size() == RECOVERY_PAGE_SIZE);
+        log.info("Колесо истечения загружено из БД: {} ссылок", loaded);
+    }
+
+    /**
+     * Выборочная проверка истечения: случайные пачки ссылок, ускорение при большой доле истёкших,
+     * пропуск при пиковом трафике (см. {@link AdaptiveExpirySampler}).
+     */
+    @Scheduled(fixedDelayString = "${shortlinks.expiry.sampler.interval-millis:1000}")
+    public void sampleExpiringLinks() {
+        int count = adaptiveExpirySampler.run();
+        if (count > 0) {
+            log.debug("Удалено истёкших ссылок выборочной проверкой: {}", count);
+        }
+    }
 
     /**
-     * Каждые 10 минут проверяем истёкшие ссылки, уведомляем пользователей и удаляем ссылки (по ТЗ).
+     * Периодическая полная проверка истёкших ссылок (по ТЗ): страховка на случай, если ссылка не
+     * попала в колесо. По умолчанию каждые 10 минут.
      */
-    @Scheduled(fixedRate = 600_000)
+    @Scheduled(fixedRateString = "${shortlinks.expiry.sweep-interval-millis:600000}")
     public void deleteExpiredLinks() {
         int count = linkService.deleteExpiredAndNotify();
         if (count > 0) {
@@ -0,0 +1,82 @@
+package ru.mephi.ozerov.shortlinks.scheduler;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.mephi.ozerov.shortlinks.service.ExpiryLeaseService;
+
+/**
+ * Продление аренд шардов истечения в собственном потоке {@code expiry-lease-renewer}. Задачи
+ * {@code @Scheduled} (полная проверка, архив, очистка уведомлений) могут идти дольше запаса аренды;
+ * если бы продление стояло с ними в одной очереди, узел терял бы свои шарды посреди прохода.
+ *
+ * <p>Первое продление — синхронно при старте, до запуска планировщика: первая проверка уже видит
+ * свои шарды. При остановке аренды освобождаются сразу, не дожидаясь истечения.
+ */
+@Component
+@Slf4j
+public class ExpiryLeaseRenewer implements SmartLifecycle {
+
+    private final ExpiryLeaseService expiryLeaseService;
+    private final long renewMillis;
+
+    private volatile boolean running;
+    private ScheduledExecutorService executor;
+
+    public ExpiryLeaseRenewer(
+            ExpiryLeaseService expiryLeaseService,
+            @Value("${shortlinks.expiry.lease.renew-millis:10000}") long renewMillis) {
+        this.expiryLeaseService = expiryLeaseService;
+        this.renewMillis = renewMillis;
+    }
+
+    @Override
+    public synchronized void start() {
+        renew();
+        executor =
+                Executors.newSingleThreadScheduledExecutor(
+                        task -> {
+                            Thread thread = new Thread(task, "expiry-lease-renewer");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        executor.scheduleWithFixedDelay(
+                this::renew, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        try {
+            expiryLeaseService.releaseAll();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось освободить аренды истечения: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Пульс узла, продление аренд шардов и перераспределение шардов между живыми узлами. Ошибка БД
+     * не останавливает поток: аренды просто истекут, и шарды заберут другие узлы.
+     */
+    void renew() {
+        try {
+            expiryLeaseService.rebalance();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось продлить аренды истечения: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package ru.mephi.ozerov.shortlinks.scheduler;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Иерархическое колесо таймеров для идентификаторов (long) с дедлайнами.
+ *
+ * <p>{@value #LEVELS} уровня по {@value #SLOTS} слотов: слот уровня {@code l} покрывает {@code
+ * 64^l} тиков. Элемент кладётся на самый нижний уровень, диапазон которого вмещает оставшееся до
+ * дедлайна время; когда младший уровень совершает оборот, соответствующий слот старшего уровня
+ * «осыпается» вниз. Добавление и срабатывание — O(1) на элемент, без сортировки и без очереди с
+ * приоритетами. Дедлайны дальше горизонта (64^4 тиков) хранятся в отдельном списке и
+ * пересматриваются при каждом обороте старшего уровня.
+ *
+ * <p>Элементы хранятся в примитивных массивах, без объекта на запись. Отмены нет: вызывающий код
+ * сам проверяет актуальность сработавшего элемента. Класс потокобезопасен (синхронизация на
+ * экземпляре).
+ */
+public class HierarchicalTimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final Bucket[][] buckets = new Bucket[LEVELS][SLOTS];
+    private final Bucket overflow = new Bucket();
+    private final Bucket due = new Bucket();
+    private long currentTick;
+    private int size;
+
+    public HierarchicalTimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis должен быть положительным");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = startMillis / tickMillis;
+        for (int l = 0; l < LEVELS; l++) {
+            for (int s = 0; s < SLOTS; s++) {
+                buckets[l][s] = new Bucket();
+            }
+        }
+    }
+
+    /**
+     * Планирует срабатывание id строго после deadlineMillis (на первом тике, начало которого позже
+     * дедлайна). Прошедший дедлайн сработает при ближайшем {@link #advance}.
+     */
+    public synchronized void schedule(long id, long deadlineMillis) {
+        place(id, deadlineMillis / tickMillis + 1);
+        size++;
+    }
+
+    /**
+     * Продвигает колесо до nowMillis и передаёт в sink все сработавшие id.
+     *
+     * @return количество сработавших элементов
+     */
+    public synchronized int advance(long nowMillis, LongConsumer sink) {
+        long targetTick = nowMillis / tickMillis;
+        int fired = 0;
+        if (size == due.size) {
+            currentTick = Math.max(currentTick, targetTick);
+        }
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+            fired += drain(buckets[0][(int) (currentTick & SLOT_MASK)], sink);
+        }
+        fired += drain(due, sink);
+        return fired;
+    }
+
+    /** Количество запланированных элементов. */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void cascade() {
+        for (int l = LEVELS - 1; l >= 1; l--) {
+            long lowerSpanMask = (1L << (SLOT_BITS * l)) - 1;
+            if ((currentTick & lowerSpanMask) != 0) {
+                continue;
+            }
+            if (l == LEVELS - 1) {
+                reinsert(overflow);
+            }
+            reinsert(buckets[l][(int) ((currentTick >>> (SLOT_BITS * l)) & SLOT_MASK)]);
+        }
+    }
+
+    private void reinsert(Bucket bucket) {
+        int n = bucket.size;
+        if (n == 0) {
+            return;
+        }
+        long[] ids = bucket.ids;
+        long[] ticks = bucket.ticks;
+        bucket.reset();
+        for (int i = 0; i < n; i++) {
+            place(ids[i], ticks[i]);
+        }
+    }
+
+    private void place(long id, long deadlineTick) {
+        long delta = deadlineTick - currentTick;
+        if (delta <= 0) {
+            due.add(id, deadlineTick);
+            return;
+        }
+        for (int l = 0; l < LEVELS; l++) {
+            if (delta < 1L << (SLOT_BITS * (l + 1))) {
+                buckets[l][(int) ((deadlineTick >>> (SLOT_BITS * l)) & SLOT_MASK)].add(
+                        id, deadlineTick);
+                return;
+            }
+        }
+        overflow.add(id, deadlineTick);
+    }
+
+    private int drain(Bucket bucket, LongConsumer sink) {
+        int n = bucket.size;
+        if (n == 0) {
+            return 0;
+        }
+        long[] ids = bucket.ids;
+        bucket.reset();
+        size -= n;
+        for (int i = 0; i < n; i++) {
+            sink.accept(ids[i]);
+        }
+        return n;
+    }
+
+    /** Слот колеса: пары (id, тик дедлайна) в растущих примитивных массивах. */
+    private static final class Bucket {
+
+        private static final int INITIAL_CAPACITY = 8;
+
+        private long[] ids = new long[INITIAL_CAPACITY];
+        private long[] ticks = new long[INITIAL_CAPACITY];
+        private int size;
+
+        void add(long id, long tick) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                ticks = Arrays.copyOf(ticks, capacity);
+            }
+            ids[size] = id;
+            ticks[size] = tick;
+            size++;
+        }
+
+        /** Отдаёт текущие массивы вызывающему и начинает с новых. */
+        void reset() {
+            ids = new long[INITIAL_CAPACITY];
+            ticks = new long[INITIAL_CAPACITY];
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ru.mephi.ozerov.shortlinks.scheduler;
+
+import java.time.Instant;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mephi.ozerov.shortlinks.service.LinkArchiveService;
+
+@Component
+@RequiredArgsConstructor
+public class LinkArchiveScheduler {
+
+    private final LinkArchiveService linkArchiveService;
+
+    /** Перенос деактивированных по лимиту ссылок в холодный архив пачками. */
+    @Scheduled(fixedDelayString = "${shortlinks.archive.interval-millis:60000}")
+    public void archiveDeactivatedLinks() {
+        linkArchiveService.archiveDeactivated(Instant.now());
+    }
+}
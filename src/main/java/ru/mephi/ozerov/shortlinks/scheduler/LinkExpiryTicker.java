@@ -0,0 +1,89 @@
+package ru.mephi.ozerov.shortlinks.scheduler;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.mephi.ozerov.shortlinks.service.LinkService;
+
+/**
+ * Шаг колеса истечения в собственном потоке {@code link-expiry-wheel}: полная проверка, архив и
+ * очистка уведомлений на общем потоке планировщика идут минутами и задерживали бы истечение по
+ * колесу на всё это время.
+ */
+@Component
+@Slf4j
+public class LinkExpiryTicker implements SmartLifecycle {
+
+    private final LinkService linkService;
+    private final LinkExpiryWheel linkExpiryWheel;
+    private final long tickMillis;
+    private final int batchSize;
+
+    private volatile boolean running;
+    private ScheduledExecutorService executor;
+
+    public LinkExpiryTicker(
+            LinkService linkService,
+            LinkExpiryWheel linkExpiryWheel,
+            @Value("${shortlinks.expiry.tick-millis:1000}") long tickMillis,
+            @Value("${shortlinks.expiry.batch-size:100}") int batchSize) {
+        this.linkService = linkService;
+        this.linkExpiryWheel = linkExpiryWheel;
+        this.tickMillis = tickMillis;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public synchronized void start() {
+        executor =
+                Executors.newSingleThreadScheduledExecutor(
+                        task -> {
+                            Thread thread = new Thread(task, "link-expiry-wheel");
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        executor.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Удаляет ссылки, срок которых только что истёк, небольшими пачками (каждая — своя транзакция).
+     * Ошибка не останавливает поток: ссылки дождутся полной проверки.
+     */
+    void tick() {
+        try {
+            List<Long> due = linkExpiryWheel.advance(Instant.now());
+            int count = 0;
+            for (int from = 0; from < due.size(); from += batchSize) {
+                count +=
+                        linkService.expireByIds(
+                                due.subList(from, Math.min(from + batchSize, due.size())));
+            }
+            if (count > 0) {
+                log.info("Удалено истёкших ссылок по колесу истечения: {}", count);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Шаг колеса истечения не выполнен: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ru.mephi.ozerov.shortlinks.scheduler;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Колесо таймеров истечения ссылок. Наполняется при создании ссылок и при старте приложения (из
+ * БД), срабатывает с точностью до шага {@code shortlinks.expiry.tick-millis}.
+ *
+ * <p>Колесо — только подсказка «когда проверить»: источником истины остаётся БД, поэтому удалённые
+ * или уже обработанные ссылки просто не найдутся при срабатывании.
+ */
+@Component
+public class LinkExpiryWheel {
+
+    private final HierarchicalTimingWheel wheel;
+
+    public LinkExpiryWheel(@Value("${shortlinks.expiry.tick-millis:1000}") long tickMillis) {
+        this.wheel = new HierarchicalTimingWheel(tickMillis, System.currentTimeMillis());
+    }
+
+    public void schedule(Long linkId, Instant expiresAt) {
+        wheel.schedule(linkId, expiresAt.toEpochMilli());
+    }
+
+    /** Идентификаторы ссылок, срок которых истёк к моменту now. */
+    public List<Long> advance(Instant now) {
+        List<Long> due = new ArrayList<>();
+        wheel.advance(now.toEpochMilli(), due::add);
+        return due;
+    }
+
+    public int size() {
+        return wheel.size();
+    }
+}
@@ -0,0 +1,34 @@
+package ru.mephi.ozerov.shortlinks.scheduler;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mephi.ozerov.shortlinks.store.LinkStore;
+import ru.mephi.ozerov.shortlinks.store.WalLinkStore;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LinkSnapshotScheduler {
+
+    private final LinkStore linkStore;
+
+    /**
+     * Снимок ссылок движка {@code wal}: ограничивает длину журнала, который придётся применять при
+     * старте. Для остальных движков ничего не делает.
+     */
+    @Scheduled(
+            fixedDelayString = "${shortlinks.store.wal.snapshot-millis:300000}",
+            initialDelayString = "${shortlinks.store.wal.snapshot-millis:300000}")
+    public void snapshot() {
+        if (!(linkStore instanceof WalLinkStore walLinkStore)) {
+            return;
+        }
+        try {
+            walLinkStore.snapshot();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось записать снимок ссылок: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package ru.mephi.ozerov.shortlinks.scheduler;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mephi.ozerov.shortlinks.service.NotificationWriter;
+
+@Component
+@RequiredArgsConstructor
+public class NotificationReplayScheduler {
+
+    private final NotificationWriter notificationWriter;
+
+    /** После перезапуска — уведомления, не записанные до остановки (флаг outbox в ссылке). */
+    @EventListener(ApplicationReadyEvent.class)
+    public void replayOnStartup() {
+        notificationWriter.replayPending();
+    }
+
+    /** Страховка на случай переполнения очереди или ошибки записи пачки. */
+    @Scheduled(
+            fixedDelayString = "${shortlinks.notifications.replay-interval-millis:30000}",
+            initialDelayString = "${shortlinks.notifications.replay-interval-millis:30000}")
+    public void replayPending() {
+        notificationWriter.replayPending();
+    }
+}
@@ -0,0 +1,22 @@
+package ru.mephi.ozerov.shortlinks.scheduler;
+
+import java.time.Instant;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mephi.ozerov.shortlinks.service.NotificationRetentionService;
+
+@Component
+@RequiredArgsConstructor
+public class NotificationRetentionScheduler {
+
+    private final NotificationRetentionService notificationRetentionService;
+
+    /** Схлопывание повторов и удаление старых и лишних уведомлений чанками. */
+    @Scheduled(
+            fixedDelayString = "${shortlinks.notifications.retention.interval-millis:3600000}",
+            initialDelayString = "${shortlinks.notifications.retention.interval-millis:3600000}")
+    public void enforceRetention() {
+        notificationRetentionService.enforce(Instant.now());
+    }
+}
@@ -0,0 +1,21 @@
+package ru.mephi.ozerov.shortlinks.scheduler;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mephi.ozerov.shortlinks.service.NotificationStreamRegistry;
+
+@Component
+@RequiredArgsConstructor
+public class NotificationStreamScheduler {
+
+    private final NotificationStreamRegistry notificationStreamRegistry;
+
+    /** Пульс SSE-подписок: закрывает оборванные соединения, не давая им копиться в реестре. */
+    @Scheduled(
+            fixedDelayString = "${shortlinks.notifications.stream.heartbeat-millis:15000}",
+            initialDelayString = "${shortlinks.notifications.stream.heartbeat-millis:15000}")
+    public void heartbeat() {
+        notificationStreamRegistry.heartbeat();
+    }
+}
@@ -0,0 +1,21 @@
+package ru.mephi.ozerov.shortlinks.scheduler;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.mephi.ozerov.shortlinks.service.RedirectIndex;
+
+@Component
+@RequiredArgsConstructor
+public class RedirectIndexScheduler {
+
+    private final RedirectIndex redirectIndex;
+
+    /** Горячие коды индекса перехода на диск: прогрев после аварийной остановки начнётся с них. */
+    @Scheduled(
+            fixedDelayString = "${shortlinks.redirect-index.warm-up.hot-keys-save-millis:60000}",
+            initialDelayString = "${shortlinks.redirect-index.warm-up.hot-keys-save-millis:60000}")
+    public void saveHotKeys() {
+        redirectIndex.saveHotKeys();
+    }
+}
@@ -0,0 +1,114 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import ru.mephi.ozerov.shortlinks.repository.LinkExpiryView;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
+
+/**
+ * Выборочная проверка истечения в духе Redis: каждый запуск берёт пачку активных ссылок своих
+ * шардов, начиная со случайного id, и удаляет истёкшие. Если истёкших в пачке больше порога ({@code
+ * shortlinks.expiry.sampler.expired-threshold}), берётся следующая случайная пачка — пока не
+ * кончится бюджет времени запуска. Так работа по истечению распределяется равномерно, а не копится
+ * до полной проверки.
+ *
+ * <p>При пиковом трафике переходов (не меньше {@code shortlinks.expiry.sampler.peak-rps}) запуск
+ * пропускается: истёкшие ссылки всё равно удалят колесо, обращение к ссылке или полная проверка.
+ */
+@Service
+@Slf4j
+public class AdaptiveExpirySampler {
+
+    private final LinkRepository linkRepository;
+    private final LinkExpiryService linkExpiryService;
+    private final ExpiryLeaseService expiryLeaseService;
+    private final RedirectTrafficMonitor trafficMonitor;
+    private final boolean enabled;
+    private final int sampleSize;
+    private final double expiredThreshold;
+    private final long budgetNanos;
+    private final double peakRps;
+
+    private final Counter rounds;
+    private final Counter skipped;
+
+    public AdaptiveExpirySampler(
+            LinkRepository linkRepository,
+            LinkExpiryService linkExpiryService,
+            ExpiryLeaseService expiryLeaseService,
+            RedirectTrafficMonitor trafficMonitor,
+            MeterRegistry meterRegistry,
+            @Value("${shortlinks.expiry.sampler.enabled:true}") boolean enabled,
+            @Value("${shortlinks.expiry.sampler.sample-size:20}") int sampleSize,
+            @Value("${shortlinks.expiry.sampler.expired-threshold:0.25}") double expiredThreshold,
+            @Value("${shortlinks.expiry.sampler.budget-millis:25}") long budgetMillis,
+            @Value("${shortlinks.expiry.sampler.peak-rps:500}") double peakRps) {
+        this.linkRepository = linkRepository;
+        this.linkExpiryService = linkExpiryService;
+        this.expiryLeaseService = expiryLeaseService;
+        this.trafficMonitor = trafficMonitor;
+        this.enabled = enabled;
+        this.sampleSize = sampleSize;
+        this.expiredThreshold = expiredThreshold;
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.peakRps = peakRps;
+        this.rounds = meterRegistry.counter("shortlinks.expiry.sampler.rounds");
+        this.skipped = meterRegistry.counter("shortlinks.expiry.sampler.skipped");
+    }
+
+    /**
+     * Один запуск выборочной проверки.
+     *
+     * @return количество удалённых ссылок
+     */
+    public int run() {
+        if (!enabled) {
+            return 0;
+        }
+        double rate = trafficMonitor.ratePerSecond();
+        if (rate >= peakRps) {
+            skipped.increment();
+            log.debug("Выборочная проверка истечения пропущена: {} переходов/с", (long) rate);
+            return 0;
+        }
+        Set<Integer> shards = expiryLeaseService.ownedShards();
+        Long maxId = linkRepository.findMaxId();
+        if (shards.isEmpty() || maxId == null) {
+            return 0;
+        }
+        int shardCount = expiryLeaseService.shardCount();
+        long deadline = System.nanoTime() + budgetNanos;
+        int total = 0;
+        double expiredRatio;
+        do {
+            long afterId = ThreadLocalRandom.current().nextLong(maxId);
+            List<LinkExpiryView> sample =
+                    linkRepository.findActiveExpiriesInShards(
+                            afterId, shardCount, shards, PageRequest.of(0, sampleSize));
+            rounds.increment();
+            if (sample.isEmpty()) {
+                break;
+            }
+            Instant now = Instant.now();
+            List<Long> due =
+                    sample.stream()
+                            .filter(view -> view.getExpiresAt().isBefore(now))
+                            .map(LinkExpiryView::getId)
+                            .toList();
+            if (!due.isEmpty()) {
+                total += linkExpiryService.expireSampled(due, now);
+            }
+            expiredRatio = (double) due.size() / sample.size();
+        } while (expiredRatio > expiredThreshold && System.nanoTime() < deadline);
+        return total;
+    }
+}
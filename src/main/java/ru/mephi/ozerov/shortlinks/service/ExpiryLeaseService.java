@@ -0,0 +1,174 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.mephi.ozerov.shortlinks.entity.ExpiryLease;
+import ru.mephi.ozerov.shortlinks.entity.ExpiryNode;
+import ru.mephi.ozerov.shortlinks.repository.ExpiryLeaseRepository;
+import ru.mephi.ozerov.shortlinks.repository.ExpiryNodeRepository;
+
+/**
+ * Распределение работы по истечению ссылок между узлами через аренды в общей БД. Ссылки делятся на
+ * {@code shortlinks.expiry.lease.shards} шардов по {@code id % shards}; каждый узел периодически
+ * продлевает свои аренды, отдаёт лишние сверх справедливой доли (шарды / живые узлы, с округлением
+ * вверх) и забирает свободные или истёкшие. Захват — один условный UPDATE, поэтому у шарда в каждый
+ * момент не больше одного владельца.
+ *
+ * <p>Узел считает шарды своими только до {@code leaseUntil - ttl / 3}: если продление задержалось
+ * (пауза GC, потеря связи с БД), узел перестаёт обрабатывать шарды раньше, чем их сможет забрать
+ * другой. Проходы по многим чанкам читают {@link #ownedShards} перед каждым чанком и
+ * останавливаются, как только набор сократился.
+ */
+@Service
+@Slf4j
+public class ExpiryLeaseService {
+
+    private final ExpiryLeaseRepository leaseRepository;
+    private final ExpiryNodeRepository nodeRepository;
+    private final String nodeId;
+    private final int shardCount;
+    private final Duration ttl;
+
+    private volatile Ownership ownership = new Ownership(Set.of(), Instant.EPOCH);
+
+    public ExpiryLeaseService(
+            ExpiryLeaseRepository leaseRepository,
+            ExpiryNodeRepository nodeRepository,
+            @Value("${shortlinks.node-id:${random.uuid}}") String nodeId,
+            @Value("${shortlinks.expiry.lease.shards:16}") int shardCount,
+            @Value("${shortlinks.expiry.lease.ttl-millis:30000}") long ttlMillis) {
+        this.leaseRepository = leaseRepository;
+        this.nodeRepository = nodeRepository;
+        this.nodeId = nodeId;
+        this.shardCount = shardCount;
+        this.ttl = Duration.ofMillis(ttlMillis);
+    }
+
+    /**
+     * Пульс узла, продление аренд и перераспределение шардов. Новый набор шардов вступает в силу
+     * после коммита.
+     *
+     * @return шарды, которыми узел владеет после перераспределения
+     */
+    @Transactional
+    public Set<Integer> rebalance() {
+        Instant now = Instant.now();
+        Instant until = now.plus(ttl);
+        ensureShards();
+        if (nodeRepository.heartbeat(nodeId, until) == 0) {
+            nodeRepository.save(new ExpiryNode(nodeId, until));
+        }
+        nodeRepository.deleteDeadBefore(now.minus(ttl));
+        leaseRepository.renewAll(nodeId, until);
+
+        long liveNodes = Math.max(1, nodeRepository.countByAliveUntilAfter(now));
+        int fairShare = (int) ((shardCount + liveNodes - 1) / liveNodes);
+        List<Integer> owned =
+                new ArrayList<>(leaseRepository.findOwnedShards(nodeId, now, shardCount));
+        while (owned.size() > fairShare) {
+            leaseRepository.release(owned.remove(owned.size() - 1), nodeId);
+        }
+        if (owned.size() < fairShare) {
+            List<Integer> candidates =
+                    IntStream.range(0, shardCount)
+                            .filter(shard -> !owned.contains(shard))
+                            .boxed()
+                            .collect(Collectors.toCollection(ArrayList::new));
+            Collections.shuffle(candidates);
+            for (int shard : candidates) {
+                if (owned.size() >= fairShare) {
+                    break;
+                }
+                if (leaseRepository.tryAcquire(shard, nodeId, until, now) == 1) {
+                    owned.add(shard);
+                }
+            }
+        }
+
+        Ownership next = new Ownership(Set.copyOf(owned), until.minus(ttl.dividedBy(3)));
+        publish(next);
+        log.debug(
+                "Аренды истечения узла {}: {} из {} шардов, живых узлов {}",
+                nodeId,
+                owned.size(),
+                shardCount,
+                liveNodes);
+        return next.shards();
+    }
+
+    /** Освобождение всех аренд узла при остановке, чтобы другие узлы забрали шарды сразу. */
+    @Transactional
+    public void releaseAll() {
+        for (int shard : leaseRepository.findOwnedShards(nodeId, Instant.EPOCH, shardCount)) {
+            leaseRepository.release(shard, nodeId);
+        }
+        nodeRepository.deleteById(nodeId);
+        ownership = new Ownership(Set.of(), Instant.EPOCH);
+    }
+
+    /** Шарды, которые узел вправе обрабатывать сейчас; пусто, если аренда не продлена вовремя. */
+    public Set<Integer> ownedShards() {
+        Ownership current = ownership;
+        return Instant.now().isBefore(current.validUntil()) ? current.shards() : Set.of();
+    }
+
+    /** Принадлежит ли ссылка шарду, арендованному этим узлом. */
+    public boolean owns(long linkId) {
+        return ownedShards().contains(shardOf(linkId));
+    }
+
+    public int shardOf(long linkId) {
+        return (int) Math.floorMod(linkId, (long) shardCount);
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /** Строки аренды для всех шардов (первый узел создаёт их, остальные находят готовыми). */
+    private void ensureShards() {
+        if (leaseRepository.count() >= shardCount) {
+            return;
+        }
+        Set<Integer> existing = new HashSet<>();
+        leaseRepository.findAll().forEach(lease -> existing.add(lease.getShardId()));
+        for (int shard = 0; shard < shardCount; shard++) {
+            if (!existing.contains(shard)) {
+                leaseRepository.save(ExpiryLease.builder().shardId(shard).build());
+            }
+        }
+    }
+
+    private void publish(Ownership next) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            ownership = next;
+                        }
+                    });
+        } else {
+            ownership = next;
+        }
+    }
+
+    private record Ownership(Set<Integer> shards, Instant validUntil) {}
+}
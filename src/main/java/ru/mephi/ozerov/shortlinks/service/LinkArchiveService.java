@@ -0,0 +1,152 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mephi.ozerov.shortlinks.entity.ArchiveReason;
+import ru.mephi.ozerov.shortlinks.entity.ArchivedLink;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.repository.ArchivedLinkRepository;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
+
+/**
+ * Холодный архив ссылок: таблица {@code links_archive} (только добавление, данные ссылки сжаты, см.
+ * {@link ArchivedLink}). Истёкшие ссылки попадают в архив в той же транзакции, в которой удаляются
+ * из горячей таблицы ({@link LinkExpiryService}); деактивированные по лимиту переносятся фоновой
+ * задачей пачками через {@code shortlinks.archive.inactive-grace-minutes} после деактивации. Так в
+ * горячей таблице links остаются только живые и недавно деактивированные ссылки.
+ */
+@Service
+@Slf4j
+public class LinkArchiveService {
+
+    private final ArchivedLinkRepository archivedLinkRepository;
+    private final LinkRepository linkRepository;
+    private final UserSummaryService userSummaryService;
+    private final ExpiryLeaseService expiryLeaseService;
+    private final LinkChangeStream linkChangeStream;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration inactiveGrace;
+    private final int batchSize;
+
+    private final Counter archived;
+
+    public LinkArchiveService(
+            ArchivedLinkRepository archivedLinkRepository,
+            LinkRepository linkRepository,
+            UserSummaryService userSummaryService,
+            ExpiryLeaseService expiryLeaseService,
+            LinkChangeStream linkChangeStream,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${shortlinks.archive.inactive-grace-minutes:60}") long inactiveGraceMinutes,
+            @Value("${shortlinks.archive.batch-size:500}") int batchSize) {
+        this.archivedLinkRepository = archivedLinkRepository;
+        this.linkRepository = linkRepository;
+        this.userSummaryService = userSummaryService;
+        this.expiryLeaseService = expiryLeaseService;
+        this.linkChangeStream = linkChangeStream;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.inactiveGrace = Duration.ofMinutes(inactiveGraceMinutes);
+        this.batchSize = batchSize;
+        this.archived = meterRegistry.counter("shortlinks.archive.archived");
+    }
+
+    /**
+     * Добавляет ссылки в архив в транзакции вызывающего (пакетной вставкой, без SELECT) и убирает
+     * их из моделей чтения (после коммита).
+     */
+    public void archive(List<Link> links, ArchiveReason reason, Instant now) {
+        archivedLinkRepository.saveAll(
+                links.stream().map(link -> ArchivedLink.of(link, reason, now)).toList());
+        linkChangeStream.removed(links);
+        archived.increment(links.size());
+    }
+
+    /**
+     * Переносит в архив деактивированные ссылки арендованных шардов пачками по {@code
+     * shortlinks.archive.batch-size}, каждая пачка — своя транзакция.
+     *
+     * @return количество перенесённых ссылок
+     */
+    public int archiveDeactivated(Instant now) {
+        Set<Integer> shards = expiryLeaseService.ownedShards();
+        if (shards.isEmpty()) {
+            return 0;
+        }
+        Instant before = now.minus(inactiveGrace);
+        long afterId = 0;
+        int total = 0;
+        List<Long> ids;
+        do {
+            // Аренда перепроверяется перед каждой пачкой: отданные шарды не обрабатываются
+            if (!expiryLeaseService.ownedShards().containsAll(shards)) {
+                log.info("Аренда шардов {} потеряна во время переноса в архив", shards);
+                break;
+            }
+            ids =
+                    linkRepository.findDeactivatedIds(
+                            afterId,
+                            before,
+                            expiryLeaseService.shardCount(),
+                            shards,
+                            PageRequest.of(0, batchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<Long> batch = ids;
+            total += transactionTemplate.execute(s -> archiveDeactivatedBatch(batch, now));
+            afterId = ids.get(ids.size() - 1);
+        } while (ids.size() == batchSize);
+        if (total > 0) {
+            log.info("В архив перенесено деактивированных ссылок: {}", total);
+        }
+        return total;
+    }
+
+    public Optional<ArchivedLink> findById(Long id) {
+        return archivedLinkRepository.findById(id);
+    }
+
+    public Optional<ArchivedLink> findByShortCode(String shortCode) {
+        return archivedLinkRepository.findFirstByShortCodeOrderByIdDesc(shortCode);
+    }
+
+    /** Какие из переданных id уже лежат в архиве. */
+    public Set<Long> findArchivedIds(Collection<Long> ids) {
+        return new HashSet<>(archivedLinkRepository.findExistingIds(ids));
+    }
+
+    public boolean existsByShortCode(String shortCode) {
+        return archivedLinkRepository.existsByShortCode(shortCode);
+    }
+
+    private int archiveDeactivatedBatch(List<Long> ids, Instant now) {
+        List<Link> links = linkRepository.lockDeactivatedByIds(ids);
+        if (links.isEmpty()) {
+            return 0;
+        }
+        archive(links, ArchiveReason.LIMIT_REACHED, now);
+        linkRepository.deleteAllByIdInBatch(links.stream().map(Link::getId).toList());
+        Map<UUID, Long> perUser =
+                links.stream()
+                        .collect(Collectors.groupingBy(Link::getUserId, Collectors.counting()));
+        perUser.forEach(userSummaryService::onLinksArchived);
+        return links.size();
+    }
+}
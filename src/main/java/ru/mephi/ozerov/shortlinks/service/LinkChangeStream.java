@@ -0,0 +1,223 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+
+/**
+ * Поток изменений ссылок для моделей чтения (первая — {@link RedirectIndex}). Изменения ссылок
+ * (создание, переход, правка, удаление, архивация) публикуются после коммита в ограниченную очередь
+ * и применяются выделенным потоком пачками, поэтому ни управление ссылками, ни переход не ждут
+ * обновления модели чтения.
+ *
+ * <p>Модели чтения неавторитетны: отставшее или потерянное изменение (переполнение очереди,
+ * остановка процесса) исправляется на пути перехода, который перепроверяет ссылку по хранилищу.
+ * Порядок применения — порядок публикации; изменения несут итоговое состояние ссылки, а не дельту.
+ *
+ * <p>Метрики: {@code shortlinks.link.events.published}, {@code shortlinks.link.events.dropped},
+ * {@code shortlinks.link.events.queue.size}, {@code shortlinks.link.events.lag} (от публикации до
+ * применения).
+ */
+@Service
+@Slf4j
+public class LinkChangeStream implements SmartLifecycle {
+
+    /**
+     * Изменение ссылки.
+     *
+     * @param link снимок ссылки после изменения; null — ссылки больше нет
+     * @param invalidating изменение делает устаревшими копии ссылки на других узлах (правка,
+     *     деактивация, удаление), в отличие от создания и обычного перехода
+     */
+    public record Change(String shortCode, Link link, boolean invalidating, long publishedNanos) {
+
+        public boolean removed() {
+            return link == null;
+        }
+    }
+
+    /** Модель чтения, которая применяет изменения ссылок. */
+    public interface Listener {
+
+        /** Вызывается потоком применения; исключение не останавливает поток. */
+        void onLinkChanges(List<Change> changes);
+    }
+
+    private final List<Listener> listeners;
+    private final BlockingQueue<Change> queue;
+    private final int batchSize;
+    private final AtomicLong pending = new AtomicLong();
+
+    private final Counter published;
+    private final Counter dropped;
+    private final Timer lag;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public LinkChangeStream(
+            List<Listener> listeners,
+            MeterRegistry meterRegistry,
+            @Value("${shortlinks.link-events.queue-capacity:10000}") int capacity,
+            @Value("${shortlinks.link-events.batch-size:500}") int batchSize) {
+        this.listeners = listeners;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.published = meterRegistry.counter("shortlinks.link.events.published");
+        this.dropped = meterRegistry.counter("shortlinks.link.events.dropped");
+        this.lag = meterRegistry.timer("shortlinks.link.events.lag");
+        meterRegistry.gauge("shortlinks.link.events.queue.size", queue, BlockingQueue::size);
+    }
+
+    /** Ссылка создана или по ней был переход. Снимок берётся сразу, публикуется после коммита. */
+    public void changed(Link link) {
+        publishSnapshot(link, false);
+    }
+
+    /** Ссылка отредактирована или деактивирована: копии на других узлах устарели. */
+    public void updated(Link link) {
+        publishSnapshot(link, true);
+    }
+
+    /** Ссылки с этим кодом больше нет в горячем хранилище. */
+    public void removed(String shortCode) {
+        afterCommit(List.of(new Change(shortCode, null, true, 0)));
+    }
+
+    public void removed(Collection<Link> links) {
+        afterCommit(links.stream().map(l -> new Change(l.getShortCode(), null, true, 0)).toList());
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        thread = new Thread(this::run, "link-change-stream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Остановка: поток применяет то, что уже в очереди. */
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Ждёт, пока все опубликованные изменения будут применены.
+     *
+     * @return false, если не дождались за timeout
+     */
+    public boolean awaitApplied(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (pending.get() > 0) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    private void publishSnapshot(Link link, boolean invalidating) {
+        Link snapshot = link.toBuilder().build();
+        afterCommit(List.of(new Change(snapshot.getShortCode(), snapshot, invalidating, 0)));
+    }
+
+    private void afterCommit(List<Change> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            publish(changes);
+                        }
+                    });
+        } else {
+            publish(changes);
+        }
+    }
+
+    private void publish(List<Change> changes) {
+        long now = System.nanoTime();
+        for (Change change : changes) {
+            if (queue.offer(
+                    new Change(change.shortCode(), change.link(), change.invalidating(), now))) {
+                pending.incrementAndGet();
+                published.increment();
+            } else {
+                dropped.increment();
+            }
+        }
+    }
+
+    private void run() {
+        List<Change> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Change first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                apply(batch);
+            } catch (InterruptedException e) {
+                if (!running && queue.isEmpty()) {
+                    return;
+                }
+            } finally {
+                pending.addAndGet(-batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void apply(List<Change> batch) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onLinkChanges(batch);
+            } catch (RuntimeException e) {
+                log.warn(
+                        "Изменения ссылок не применены к {}: {}",
+                        listener.getClass().getSimpleName(),
+                        e.getMessage());
+            }
+        }
+        long now = System.nanoTime();
+        for (Change change : batch) {
+            lag.record(now - change.publishedNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mephi.ozerov.shortlinks.entity.ArchiveReason;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.entity.Notification;
+import ru.mephi.ozerov.shortlinks.entity.NotificationType;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
+import ru.mephi.ozerov.shortlinks.repository.NotificationRepository;
+import ru.mephi.ozerov.shortlinks.store.LinkStore;
+
+/**
+ * Массовое истечение ссылок множественными операторами. Каждый чанк — отдельная короткая транзакция
+ * с одним и тем же условием во всех операторах: выборка строк с блокировкой (для архива и сводок),
+ * {@code INSERT ... SELECT} уведомлений LINK_EXPIRED, пакетная вставка в холодный архив ({@link
+ * LinkArchiveService}) и {@code DELETE} ссылок. Полная проверка идёт по диапазонам id размером
+ * {@code shortlinks.expiry.chunk-size}, колесо истечения передаёт пачки id.
+ *
+ * <p>При {@code shortlinks.expiry.bucketed=true} полная проверка сначала опустошает корзины
+ * истечения (час expiresAt, см. {@link Link#getExpiryBucket()}), целиком оставшиеся в прошлом:
+ * условие — равенство номера корзины по индексу {@code (expiry_bucket, id)}, без проверки expiresAt
+ * каждой строки. Текущий час и ссылки без корзины обрабатываются обычными диапазонами id.
+ *
+ * <p>При нескольких узлах каждый обрабатывает только ссылки из арендованных им шардов ({@link
+ * ExpiryLeaseService}): условие {@code MOD(id, shards) IN (...)} входит во все операторы, пачки
+ * колеса фильтруются по тем же шардам. Узел без аренд ничего не удаляет.
+ *
+ * <p>Всё перечисленное относится к движку хранения {@code jpa}. Для остальных движков ({@link
+ * LinkStore#backedByLinksTable()} = false) SQL по таблице {@code links} неприменим: ссылки,
+ * истёкшие к моменту проверки, сначала записываются в БД (уведомления, архив, сводки), и только
+ * после коммита удаляются из хранилища ({@link LinkStore#removeExpired}): сбой БД не теряет ссылку
+ * без следа. Если узел упал между коммитом и удалением, следующий проход найдёт ссылку уже в архиве
+ * и только удалит её, не записывая последствия повторно. Деактивированные ссылки таких движков
+ * архивируются здесь же, по истечении срока жизни. Шарды не применяются: хранилище принадлежит
+ * узлу, а проходы по нему на узле идут по очереди.
+ *
+ * <p>Метрики: {@code shortlinks.expiry.expired} (tag source = sweep | bucket | wheel | access |
+ * sample), время чанка {@code shortlinks.expiry.chunk}, последний обработанный id полной проверки
+ * {@code shortlinks.expiry.sweep.last-id} и её пропускная способность {@code
+ * shortlinks.expiry.sweep.throughput} (ссылок в секунду).
+ */
+@Service
+@Slf4j
+public class LinkExpiryService {
+
+    private final LinkRepository linkRepository;
+    private final LinkStore linkStore;
+    private final NotificationRepository notificationRepository;
+    private final UserSummaryService userSummaryService;
+    private final ExpiryLeaseService expiryLeaseService;
+    private final LinkArchiveService linkArchiveService;
+    private final NotificationStreamRegistry streamRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final boolean bucketed;
+
+    private final Timer chunkTimer;
+    private final Counter sweepExpired;
+    private final Counter bucketExpired;
+    private final Counter wheelExpired;
+    private final Counter accessExpired;
+    private final Counter sampleExpired;
+    private final AtomicLong sweepLastId = new AtomicLong();
+    private final AtomicLong sweepThroughput = new AtomicLong();
+
+    /** Колесо, полная проверка и переход не записывают одну ссылку в архив дважды. */
+    private final Object storedExpiry = new Object();
+
+    public LinkExpiryService(
+            LinkRepository linkRepository,
+            LinkStore linkStore,
+            NotificationRepository notificationRepository,
+            UserSummaryService userSummaryService,
+            ExpiryLeaseService expiryLeaseService,
+            LinkArchiveService linkArchiveService,
+            NotificationStreamRegistry streamRegistry,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${shortlinks.expiry.chunk-size:1000}") int chunkSize,
+            @Value("${shortlinks.expiry.bucketed:false}") boolean bucketed) {
+        this.linkRepository = linkRepository;
+        this.linkStore = linkStore;
+        this.notificationRepository = notificationRepository;
+        this.userSummaryService = userSummaryService;
+        this.expiryLeaseService = expiryLeaseService;
+        this.linkArchiveService = linkArchiveService;
+        this.streamRegistry = streamRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.bucketed = bucketed;
+        this.chunkTimer = meterRegistry.timer("shortlinks.expiry.chunk");
+        this.sweepExpired = meterRegistry.counter("shortlinks.expiry.expired", "source", "sweep");
+        this.bucketExpired = meterRegistry.counter("shortlinks.expiry.expired", "source", "bucket");
+        this.wheelExpired = meterRegistry.counter("shortlinks.expiry.expired", "source", "wheel");
+        this.accessExpired = meterRegistry.counter("shortlinks.expiry.expired", "source", "access");
+        this.sampleExpired = meterRegistry.counter("shortlinks.expiry.expired", "source", "sample");
+        meterRegistry.gauge("shortlinks.expiry.sweep.last-id", sweepLastId);
+        meterRegistry.gauge("shortlinks.expiry.sweep.throughput", sweepThroughput);
+    }
+
+    /**
+     * Полная проверка: все ссылки арендованных шардов, истёкшие к моменту now, чанками по
+     * возрастанию id.
+     *
+     * @return количество удалённых ссылок
+     */
+    public int expireAllDue(Instant now) {
+        if (!linkStore.backedByLinksTable()) {
+            return expireStoredDue(now);
+        }
+        Set<Integer> shards = expiryLeaseService.ownedShards();
+        if (shards.isEmpty()) {
+            return 0;
+        }
+        int shardCount = expiryLeaseService.shardCount();
+        long started = System.nanoTime();
+        long afterId = 0;
+        int total = bucketed ? expirePastBuckets(now, shardCount, shards) : 0;
+        int chunks = 0;
+        List<Long> ids;
+        do {
+            if (!stillOwned(shards)) {
+                break;
+            }
+            ids =
+                    linkRepository.findExpiredActiveIds(
+                            afterId, now, shardCount, shards, PageRequest.of(0, chunkSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            long fromId = ids.get(0);
+            long toId = ids.get(ids.size() - 1);
+            int expired =
+                    chunkTimer.record(
+                            () ->
+                                    transactionTemplate.execute(
+                                            s ->
+                                                    expireRange(
+                                                            fromId,
+                                                            toId,
+                                                            now,
+                                                            shardCount,
+                                                            shards)));
+            total += expired;
+            chunks++;
+            sweepExpired.increment(expired);
+            sweepLastId.set(toId);
+            log.debug(
+                    "Чанк истечения [{}..{}]: удалено {}, всего {}", fromId, toId, expired, total);
+            afterId = toId;
+        } while (ids.size() == chunkSize);
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        if (total > 0) {
+            sweepThroughput.set(total * 1000L / Math.max(elapsedMillis, 1));
+            log.info(
+                    "Полная проверка истечения: {} ссылок, {} чанков за {} мс",
+                    total,
+                    chunks,
+                    elapsedMillis);
+        }
+        return total;
+    }
+
+    /** Опустошает корзины истечения, целиком оставшиеся в прошлом, чанками внутри корзины. */
+    private int expirePastBuckets(Instant now, int shardCount, Set<Integer> shards) {
+        int total = 0;
+        List<Long> buckets =
+                linkRepository.findActiveExpiryBucketsBefore(
+                        Link.expiryBucketOf(now), shardCount, shards);
+        for (long bucket : buckets) {
+            List<Long> ids;
+            do {
+                if (!stillOwned(shards)) {
+                    return total;
+                }
+                ids =
+                        linkRepository.findActiveIdsInBucket(
+                                bucket, shardCount, shards, PageRequest.of(0, chunkSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                long fromId = ids.get(0);
+                long toId = ids.get(ids.size() - 1);
+                int expired =
+                        chunkTimer.record(
+                                () ->
+                                        transactionTemplate.execute(
+                                                s ->
+                                                        expireBucketRange(
+                                                                bucket,
+                                                                fromId,
+                                                                toId,
+                                                                now,
+                                                                shardCount,
+                                                                shards)));
+                total += expired;
+                bucketExpired.increment(expired);
+            } while (ids.size() == chunkSize);
+            log.debug("Корзина истечения {} опустошена", bucket);
+        }
+        return total;
+    }
+
+    /**
+     * Аренда перепроверяется перед каждым чанком: проход длиннее запаса аренды не должен
+     * обрабатывать шарды, которые узел уже отдал или не продлил.
+     */
+    private boolean stillOwned(Set<Integer> shards) {
+        if (expiryLeaseService.ownedShards().containsAll(shards)) {
+            return true;
+        }
+        log.info("Аренда шардов {} потеряна во время прохода истечения, проход прерван", shards);
+        return false;
+    }
+
+    /**
+     * Истечение конкретных ссылок (пачка от колеса истечения) в одной транзакции. Ссылки чужих
+     * шардов пропускаются — их удалит узел-владелец.
+     */
+    public int expireIds(Collection<Long> ids, Instant now) {
+        return expireOwned(ids, now, wheelExpired);
+    }
+
+    /** Ленивое истечение ссылки, к которой обратились после срока жизни. */
+    public int expireOnAccess(long id, Instant now) {
+        return expireOwned(List.of(id), now, accessExpired);
+    }
+
+    /** Истечение ссылок, найденных выборочной проверкой ({@link AdaptiveExpirySampler}). */
+    public int expireSampled(Collection<Long> ids, Instant now) {
+        return expireOwned(ids, now, sampleExpired);
+    }
+
+    private int expireOwned(Collection<Long> ids, Instant now, Counter counter) {
+        if (!linkStore.backedByLinksTable()) {
+            int expired = chunkTimer.record(() -> expireStored(ids, now));
+            counter.increment(expired);
+            return expired;
+        }
+        List<Long> owned = ids.stream().filter(expiryLeaseService::owns).toList();
+        if (owned.isEmpty()) {
+            return 0;
+        }
+        int expired = chunkTimer.record(() -> transactionTemplate.execute(s -> expire(owned, now)));
+        counter.increment(expired);
+        return expired;
+    }
+
+    private int expireRange(
+            long fromId, long toId, Instant now, int shardCount, Set<Integer> shards) {
+        List<Link> links =
+                linkRepository.lockExpiredActiveInRange(fromId, toId, now, shardCount, shards);
+        if (links.isEmpty()) {
+            return 0;
+        }
+        notificationRepository.insertLinkExpiredForRange(fromId, toId, now, shardCount, shards);
+        linkArchiveService.archive(links, ArchiveReason.EXPIRED, now);
+        int deleted =
+                linkRepository.deleteExpiredActiveInRange(fromId, toId, now, shardCount, shards);
+        applyToUsers(links);
+        return deleted;
+    }
+
+    private int expireBucketRange(
+            long bucket, long fromId, long toId, Instant now, int shardCount, Set<Integer> shards) {
+        List<Link> links =
+                linkRepository.lockActiveInBucket(bucket, fromId, toId, shardCount, shards);
+        if (links.isEmpty()) {
+            return 0;
+        }
+        notificationRepository.insertLinkExpiredForBucket(
+                bucket, fromId, toId, now, shardCount, shards);
+        linkArchiveService.archive(links, ArchiveReason.EXPIRED, now);
+        int deleted = linkRepository.deleteActiveInBucket(bucket, fromId, toId, shardCount, shards);
+        applyToUsers(links);
+        return deleted;
+    }
+
+    private int expire(Collection<Long> ids, Instant now) {
+        List<Link> links = linkRepository.lockExpiredActiveByIds(ids, now);
+        if (links.isEmpty()) {
+            return 0;
+        }
+        notificationRepository.insertLinkExpiredForIds(ids, now);
+        linkArchiveService.archive(links, ArchiveReason.EXPIRED, now);
+        int deleted = linkRepository.deleteExpiredActiveByIds(ids, now);
+        applyToUsers(links);
+        return deleted;
+    }
+
+    /** Полная проверка для движков вне таблицы {@code links}: чанки id истёкших ссылок. */
+    private int expireStoredDue(Instant now) {
+        int total = 0;
+        long afterId = 0;
+        List<Long> ids;
+        do {
+            ids = linkStore.findExpiredIds(afterId, now, chunkSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<Long> chunk = ids;
+            int expired = chunkTimer.record(() -> expireStored(chunk, now));
+            total += expired;
+            sweepExpired.increment(expired);
+            afterId = ids.get(ids.size() - 1);
+            sweepLastId.set(afterId);
+        } while (ids.size() == chunkSize);
+        if (total > 0) {
+            log.info("Полная проверка истечения (хранилище ссылок): {} ссылок", total);
+        }
+        return total;
+    }
+
+    /**
+     * Истечение ссылок хранилища: последствия в БД отдельной транзакцией (активные — уведомление
+     * LINK_EXPIRED и архив EXPIRED, деактивированные лимитом — архив LIMIT_REACHED), затем, после
+     * коммита, удаление из хранилища. Ссылки, уже лежащие в архиве, только удаляются.
+     */
+    private int expireStored(Collection<Long> ids, Instant now) {
+        synchronized (storedExpiry) {
+            List<Link> links = new ArrayList<>();
+            for (Long id : ids) {
+                linkStore
+                        .findById(id)
+                        .filter(l -> l.getExpiresAt().isBefore(now))
+                        .ifPresent(links::add);
+            }
+            if (links.isEmpty()) {
+                return 0;
+            }
+            List<Long> expiredIds = links.stream().map(Link::getId).toList();
+            Set<Long> archived = linkArchiveService.findArchivedIds(expiredIds);
+            List<Link> fresh = links.stream().filter(l -> !archived.contains(l.getId())).toList();
+            if (!fresh.isEmpty()) {
+                transactionTemplate.executeWithoutResult(s -> recordExpired(fresh, now));
+            }
+            return linkStore.removeExpired(expiredIds, now).size();
+        }
+    }
+
+    private void recordExpired(List<Link> links, Instant now) {
+        List<Link> active = new ArrayList<>();
+        List<Link> deactivated = new ArrayList<>();
+        links.forEach(l -> (l.getActive() ? active : deactivated).add(l));
+        if (!active.isEmpty()) {
+            notificationRepository.saveAll(
+                    active.stream()
+                            .map(
+                                    l ->
+                                            Notification.builder()
+                                                    .userId(l.getUserId())
+                                                    .linkId(l.getId())
+                                                    .shortCode(l.getShortCode())
+                                                    .type(NotificationType.LINK_EXPIRED)
+                                                    .createdAt(now)
+                                                    .readFlag(false)
+                                                    .build())
+                            .toList());
+            linkArchiveService.archive(active, ArchiveReason.EXPIRED, now);
+            applyToUsers(active);
+        }
+        if (!deactivated.isEmpty()) {
+            linkArchiveService.archive(deactivated, ArchiveReason.LIMIT_REACHED, now);
+            deactivated.stream()
+                    .collect(Collectors.groupingBy(Link::getUserId, Collectors.counting()))
+                    .forEach(userSummaryService::onLinksArchived);
+        }
+    }
+
+    private void applyToUsers(List<Link> links) {
+        Map<UUID, Long> perUser =
+                links.stream()
+                        .collect(Collectors.groupingBy(Link::getUserId, Collectors.counting()));
+        perUser.forEach(
+                (userId, count) -> {
+                    userSummaryService.onLinksExpired(userId, count);
+                    streamRegistry.signalAfterCommit(userId);
+                });
+    }
+}
@@ -0,0 +1,193 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import ru.mephi.ozerov.shortlinks.invalidation.InvalidationMessage;
+import ru.mephi.ozerov.shortlinks.invalidation.InvalidationTransport;
+
+/**
+ * Шина инвалидаций между узлами: правки, деактивации и удаления ссылок из {@link LinkChangeStream}
+ * рассылаются остальным узлам, а входящие инвалидации удаляют копию ссылки из {@link RedirectIndex}
+ * этого узла.
+ *
+ * <p>Каждое сообщение несёт номер изменения на узле-источнике. Применение — удаление копии по коду,
+ * оно идемпотентно, поэтому повторы и обгоны не отсеиваются: номера нужны только для поиска потерь.
+ * Номера разных источников не сравниваются: часы узлов могут расходиться. Источник — {@code
+ * shortlinks.node-id} плюс время запуска, поэтому номера перезапущенного узла не путаются с
+ * прежними.
+ *
+ * <p>Для ненадёжного транспорта узел раз в {@code heartbeat-millis} рассылает пульс с последним
+ * отправленным номером. Пропуск номера (сообщение через номер или пульс впереди применённого)
+ * означает потерю, и индекс перехода очищается целиком: устаревшая копия живёт не дольше интервала
+ * пульса. Индекс неавторитетен — устаревшая запись не даёт неверного перехода, а лишь лишний поход
+ * в хранилище, — поэтому шина сокращает промахи, а не исправляет ответы.
+ *
+ * <p>Метрики: {@code shortlinks.invalidation.sent}, {@code shortlinks.invalidation.received},
+ * {@code shortlinks.invalidation.gaps}, {@code shortlinks.invalidation.send.failed}, {@code
+ * shortlinks.invalidation.lag} (от изменения на источнике до удаления копии здесь; включает
+ * расхождение часов).
+ */
+@Service
+@Slf4j
+public class LinkInvalidationBus implements LinkChangeStream.Listener, SmartLifecycle {
+
+    private final InvalidationTransport transport;
+    private final RedirectIndex redirectIndex;
+    private final String origin;
+    private final long heartbeatMillis;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong lastSent = new AtomicLong();
+
+    /** Наибольший номер каждого источника — для поиска пропусков. */
+    private final Map<String, Long> lastSeqByOrigin = new ConcurrentHashMap<>();
+
+    private final Counter sent;
+    private final Counter received;
+    private final Counter gaps;
+    private final Counter sendFailed;
+    private final Timer lag;
+
+    private volatile boolean running;
+    private ScheduledExecutorService heartbeat;
+
+    public LinkInvalidationBus(
+            InvalidationTransport transport,
+            RedirectIndex redirectIndex,
+            MeterRegistry meterRegistry,
+            @Value("${shortlinks.node-id:${random.uuid}}") String nodeId,
+            @Value("${shortlinks.invalidation.heartbeat-millis:1000}") long heartbeatMillis) {
+        this.transport = transport;
+        this.redirectIndex = redirectIndex;
+        this.origin = nodeId + "#" + Long.toString(System.currentTimeMillis(), 36);
+        this.heartbeatMillis = heartbeatMillis;
+        this.sent = meterRegistry.counter("shortlinks.invalidation.sent");
+        this.received = meterRegistry.counter("shortlinks.invalidation.received");
+        this.gaps = meterRegistry.counter("shortlinks.invalidation.gaps");
+        this.sendFailed = meterRegistry.counter("shortlinks.invalidation.send.failed");
+        this.lag = meterRegistry.timer("shortlinks.invalidation.lag");
+    }
+
+    public String origin() {
+        return origin;
+    }
+
+    /** Рассылает изменения, делающие устаревшими копии на других узлах. */
+    @Override
+    public void onLinkChanges(List<LinkChangeStream.Change> changes) {
+        long now = System.currentTimeMillis();
+        List<InvalidationMessage> messages = new ArrayList<>();
+        for (LinkChangeStream.Change change : changes) {
+            if (change.invalidating()) {
+                messages.add(
+                        new InvalidationMessage(
+                                origin, sequence.incrementAndGet(), change.shortCode(), now));
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+        try {
+            transport.send(messages);
+            sent.increment(messages.size());
+        } catch (RuntimeException e) {
+            sendFailed.increment(messages.size());
+            log.warn("Инвалидации не разосланы: {}", e.getMessage());
+        } finally {
+            lastSent.set(messages.get(messages.size() - 1).seq());
+        }
+    }
+
+    /** Применяет входящие инвалидации; вызывается потоком транспорта. */
+    public void receive(List<InvalidationMessage> messages) {
+        long now = System.currentTimeMillis();
+        for (InvalidationMessage message : messages) {
+            if (origin.equals(message.origin())) {
+                continue;
+            }
+            if (!transport.reliable() && lost(message)) {
+                gaps.increment();
+                log.info("Пропуск инвалидаций от {}: индекс перехода очищен", message.origin());
+                redirectIndex.invalidateAll();
+            }
+            if (message.heartbeat()) {
+                continue;
+            }
+            received.increment();
+            redirectIndex.remove(message.shortCode());
+            lag.record(Math.max(0, now - message.sentAtMillis()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        transport.start(this::receive);
+        if (!transport.reliable() && heartbeatMillis > 0) {
+            heartbeat =
+                    Executors.newSingleThreadScheduledExecutor(
+                            task -> {
+                                Thread thread = new Thread(task, "link-invalidation-heartbeat");
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+            heartbeat.scheduleAtFixedRate(
+                    this::sendHeartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        }
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+            heartbeat = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    void sendHeartbeat() {
+        try {
+            transport.send(
+                    List.of(
+                            new InvalidationMessage(
+                                    origin, lastSent.get(), null, System.currentTimeMillis())));
+        } catch (RuntimeException e) {
+            log.debug("Пульс инвалидаций не отправлен: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Обновляет наибольший номер источника и сообщает, пропущены ли номера перед этим сообщением.
+     * Первое сообщение источника пропуском не считается.
+     */
+    private boolean lost(InvalidationMessage message) {
+        long seq = message.seq();
+        Long previous = lastSeqByOrigin.put(message.origin(), seq);
+        if (previous == null) {
+            return false;
+        }
+        if (previous > seq) {
+            lastSeqByOrigin.merge(message.origin(), previous, Math::max);
+            return false;
+        }
+        return message.heartbeat() ? seq > previous : seq > previous + 1;
+    }
+}
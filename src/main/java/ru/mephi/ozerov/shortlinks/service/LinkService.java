@@ -2,6 +2,7 @@ package ru.mephi.ozerov.shortlinks.service;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -9,31 +10,48 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.mephi.ozerov.shortlinks.entity.ArchivedLink;
 import ru.mephi.ozerov.shortlinks.entity.Link;
 import ru.mephi.ozerov.shortlinks.entity.NotificationType;
-import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
-
+import ru.mephi.ozerov.shortlinks.repository.LinkExpiryView;
+import ru.mephi.ozerov.shortlinks.scheduler.LinkExpiryWheel;
+import ru.mephi.ozerov.shortlinks.store.LinkStore;
+
+/**
+ * Операции над ссылками поверх {@link LinkStore}: движок хранения выбирается настройкой {@code
+ * shortlinks.store.engine}.
+ */
 @Service
 @RequiredArgsConstructor
 public class LinkService {
 
-    private final LinkRepository linkRepository;
+    private final LinkStore linkStore;
     private final ShortCodeGenerator shortCodeGenerator;
+    private final NotificationQueue notificationQueue;
     private final NotificationService notificationService;
+    private final UserSummaryService userSummaryService;
+    private final UserVersionService userVersionService;
+    private final LinkExpiryWheel linkExpiryWheel;
+    private final LinkExpiryService linkExpiryService;
+    private final LinkArchiveService linkArchiveService;
+    private final RedirectIndex redirectIndex;
+    private final LinkChangeStream linkChangeStream;
 
     @Value("${shortlinks.ttl-hours:24}")
     private int ttlHours;
 
     /**
      * Создаёт короткую ссылку. Уникальный shortCode для каждого вызова (разные пользователи —
-     * разные ссылки).
+     * разные ссылки); коды архивных ссылок повторно не выдаются.
      */
     @Transactional
     public Link create(String originalUrl, Integer clickLimit, UUID userId) {
+        String prefix = linkStore.codePrefix();
         String shortCode;
         do {
-            shortCode = shortCodeGenerator.generate();
-        } while (linkRepository.existsByShortCode(shortCode));
+            shortCode = shortCodeGenerator.generate(prefix);
+        } while (linkStore.existsByShortCode(shortCode)
+                || linkArchiveService.existsByShortCode(shortCode));
 
         Instant now = Instant.now();
         Instant expiresAt = now.plus(Duration.ofHours(ttlHours));
@@ -46,51 +64,99 @@ public class LinkService {
                         .clickLimit(clickLimit)
                         .clicksCount(0)
                         .expiresAt(expiresAt)
+                        .expiryBucket(Link.expiryBucketOf(expiresAt))
                         .createdAt(now)
                         .active(true)
                         .build();
-        return linkRepository.save(link);
+        Link saved = linkStore.create(link);
+        linkChangeStream.changed(saved);
+        userSummaryService.onLinkCreated(userId);
+        linkExpiryWheel.schedule(saved.getId(), expiresAt);
+        return saved;
     }
 
     /**
-     * Находит ссылку по shortCode и увеличивает счётчик переходов. Если лимит исчерпан после
-     * перехода — создаёт уведомление и деактивирует ссылку.
+     * Увеличивает счётчик переходов доступной ссылки (условный инкремент хранилища). Если лимит
+     * исчерпан после перехода — деактивирует ссылку. Для таблицы {@code links} в той же строке
+     * ставится флаг исходящего уведомления, само уведомление записывает {@link NotificationWriter}
+     * после коммита, вне транзакции перехода; для остальных движков outbox нет, и уведомление
+     * записывается сразу.
      */
     @Transactional
     public Optional<Link> resolveAndIncrementClicks(String shortCode) {
-        Optional<Link> opt = linkRepository.findByShortCode(shortCode);
-        if (opt.isEmpty()) return Optional.empty();
+        Optional<Link> opt = linkStore.incrementClicks(shortCode, Instant.now());
+        if (opt.isEmpty()) {
+            linkChangeStream.removed(shortCode);
+            return Optional.empty();
+        }
 
         Link link = opt.get();
-        if (!link.isAvailable()) return Optional.empty();
-
-        link.setClicksCount(link.getClicksCount() + 1);
-        linkRepository.save(link);
-
         if (link.isLimitReached()) {
             link.setActive(false);
-            linkRepository.save(link);
-            notificationService.create(
-                    link.getUserId(),
-                    link.getId(),
-                    link.getShortCode(),
-                    NotificationType.CLICK_LIMIT_REACHED,
-                    "Лимит переходов по ссылке " + link.getShortCode() + " исчерпан.");
+            link.setDeactivatedAt(Instant.now());
+            userSummaryService.onLinkLimitReached(link.getUserId());
+            if (linkStore.backedByLinksTable()) {
+                link.setNotificationPending(true);
+                linkStore.update(link);
+                notificationQueue.publishAfterCommit(link.getId());
+            } else {
+                linkStore.update(link);
+                notificationService.create(
+                        link.getUserId(),
+                        link.getId(),
+                        link.getShortCode(),
+                        NotificationType.CLICK_LIMIT_REACHED);
+            }
+        } else {
+            // счётчик переходов виден в списке ссылок, а в сводке его нет
+            userVersionService.bump(link.getUserId());
+        }
+        if (link.getActive()) {
+            linkChangeStream.changed(link);
+        } else {
+            linkChangeStream.updated(link);
         }
         return Optional.of(link);
     }
 
+    /**
+     * Ссылка для проверки перед переходом: снимок из модели чтения {@link RedirectIndex}, если по
+     * нему ссылка доступна, иначе — из хранилища (с заполнением индекса). Снимок неполный и годится
+     * только для проверки владельца и доступности. Изменения ссылок попадают в индекс асинхронно
+     * через {@link LinkChangeStream}.
+     */
+    public Optional<Link> findForRedirect(String shortCode) {
+        Optional<Link> indexed = redirectIndex.find(shortCode).filter(Link::isAvailable);
+        if (indexed.isPresent()) {
+            return indexed;
+        }
+        Optional<Link> link = linkStore.findByShortCode(shortCode);
+        link.ifPresentOrElse(redirectIndex::put, () -> redirectIndex.remove(shortCode));
+        return link;
+    }
+
     /** Только получить ссылку по shortCode (без инкремента). Для проверки доступности. */
     public Optional<Link> findByShortCode(String shortCode) {
-        return linkRepository.findByShortCode(shortCode);
+        return linkStore.findByShortCode(shortCode);
     }
 
     public List<Link> findByUserId(UUID userId) {
-        return linkRepository.findByUserIdOrderByCreatedAtDesc(userId);
+        return linkStore.findByUserId(userId);
     }
 
     public Optional<Link> findByIdAndUserId(Long id, UUID userId) {
-        return linkRepository.findById(id).filter(l -> l.getUserId().equals(userId));
+        return linkStore.findById(id).filter(l -> l.getUserId().equals(userId));
+    }
+
+    /**
+     * Архивная ссылка по id (холодный путь, когда в горячей таблице её уже нет). Только создатель.
+     */
+    public Optional<ArchivedLink> findArchivedByIdAndUserId(Long id, UUID userId) {
+        return linkArchiveService.findById(id).filter(a -> a.getUserId().equals(userId));
+    }
+
+    public Optional<ArchivedLink> findArchivedByShortCode(String shortCode) {
+        return linkArchiveService.findByShortCode(shortCode);
     }
 
     @Transactional
@@ -101,7 +167,10 @@ public class LinkService {
                             if (originalUrl != null && !originalUrl.isBlank())
                                 link.setOriginalUrl(originalUrl);
                             if (clickLimit != null) link.setClickLimit(clickLimit);
-                            return linkRepository.save(link);
+                            userVersionService.bump(userId);
+                            Link saved = linkStore.update(link);
+                            linkChangeStream.updated(saved);
+                            return saved;
                         });
     }
 
@@ -110,7 +179,9 @@ public class LinkService {
         return findByIdAndUserId(id, userId)
                 .map(
                         link -> {
-                            linkRepository.delete(link);
+                            linkStore.delete(link.getId());
+                            linkChangeStream.removed(link.getShortCode());
+                            userSummaryService.onLinkDeleted(userId, link.getActive());
                             return true;
                         })
                 .orElse(false);
@@ -118,20 +189,33 @@ public class LinkService {
 
     /**
      * Планируемая задача: уведомить пользователей и автоматически удалить истёкшие ссылки (по ТЗ).
+     * Полная проверка — страховка; основной путь — {@link #expireByIds} по сигналам колеса
+     * истечения. Выполняется чанками, каждый в своей транзакции (см. {@link LinkExpiryService}).
      */
-    @Transactional
     public int deleteExpiredAndNotify() {
-        Instant now = Instant.now();
-        List<Link> expired = linkRepository.findExpiredActiveLinks(now);
-        for (Link link : expired) {
-            notificationService.create(
-                    link.getUserId(),
-                    link.getId(),
-                    link.getShortCode(),
-                    NotificationType.LINK_EXPIRED,
-                    "Время жизни ссылки " + link.getShortCode() + " истекло.");
-            linkRepository.delete(link);
+        return linkExpiryService.expireAllDue(Instant.now());
+    }
+
+    /**
+     * Удаляет с уведомлением те ссылки из переданных, срок которых действительно истёк. Ссылки,
+     * которых уже нет или которые ещё живы, пропускаются.
+     */
+    public int expireByIds(Collection<Long> ids) {
+        return linkExpiryService.expireIds(ids, Instant.now());
+    }
+
+    /**
+     * Ленивое истечение: ссылка, к которой обратились после срока жизни, удаляется с уведомлением
+     * сразу, не дожидаясь колеса или полной проверки.
+     */
+    public void expireOnAccess(Link link) {
+        if (link.getActive() && link.isExpired()) {
+            linkExpiryService.expireOnAccess(link.getId(), Instant.now());
         }
-        return expired.size();
+    }
+
+    /** Страница активных ссылок (id и срок жизни) после afterId — для загрузки колеса истечения. */
+    public List<LinkExpiryView> findActiveExpiries(long afterId, int limit) {
+        return linkStore.findActiveExpiries(afterId, limit);
     }
 }
@@ -0,0 +1,32 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import java.util.Locale;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.MessageSource;
+import org.springframework.stereotype.Service;
+import ru.mephi.ozerov.shortlinks.dto.NotificationResponse;
+import ru.mephi.ozerov.shortlinks.entity.Notification;
+
+/**
+ * Текст уведомления при чтении: шаблон {@code notification.<TYPE>} из {@code messages*.properties}
+ * (русский по умолчанию, английский — {@code messages_en}), параметры — короткий код ссылки и число
+ * повторов. В строке уведомления хранятся только тип и параметры; разобранные шаблоны кэшируются
+ * {@link MessageSource}.
+ */
+@Service
+@RequiredArgsConstructor
+public class NotificationMessages {
+
+    private final MessageSource messageSource;
+
+    public String render(Notification n, Locale locale) {
+        return messageSource.getMessage(
+                "notification." + n.getType().name(),
+                new Object[] {n.getShortCode(), n.getOccurrences()},
+                locale);
+    }
+
+    public NotificationResponse toResponse(Notification n, Locale locale) {
+        return NotificationResponse.from(n, render(n, locale));
+    }
+}
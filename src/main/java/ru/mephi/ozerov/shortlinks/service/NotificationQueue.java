@@ -0,0 +1,83 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Ограниченная очередь уведомлений в памяти процесса: id ссылок, по которым нужно записать
+ * уведомление (флаг outbox уже стоит в строке ссылки). Публикация никогда не блокирует вызывающего:
+ * при переполнении id отбрасывается и учитывается в {@code shortlinks.notifications.dropped} —
+ * уведомление доставит повторная доставка по флагу outbox.
+ *
+ * <p>Метрики: {@code shortlinks.notifications.queue.size} (текущая длина), {@code
+ * shortlinks.notifications.published}, {@code shortlinks.notifications.dropped}.
+ */
+@Service
+public class NotificationQueue {
+
+    private final BlockingQueue<Long> queue;
+    private final Counter published;
+    private final Counter dropped;
+
+    public NotificationQueue(
+            MeterRegistry meterRegistry,
+            @Value("${shortlinks.notifications.queue-capacity:10000}") int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.published = meterRegistry.counter("shortlinks.notifications.published");
+        this.dropped = meterRegistry.counter("shortlinks.notifications.dropped");
+        meterRegistry.gauge("shortlinks.notifications.queue.size", queue, BlockingQueue::size);
+    }
+
+    /** Публикует ссылку после коммита текущей транзакции (или сразу, если транзакции нет). */
+    public void publishAfterCommit(long linkId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            publish(linkId);
+                        }
+                    });
+        } else {
+            publish(linkId);
+        }
+    }
+
+    public void publish(long linkId) {
+        if (queue.offer(linkId)) {
+            published.increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Пачка до max id: ждёт первый элемент не дольше wait, остальные забирает без ожидания.
+     *
+     * @return пустой список, если за wait ничего не пришло
+     */
+    public List<Long> poll(int max, Duration wait) throws InterruptedException {
+        Long first = queue.poll(wait.toMillis(), TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return List.of();
+        }
+        List<Long> batch = new ArrayList<>(Math.min(max, queue.size() + 1));
+        batch.add(first);
+        queue.drainTo(batch, max - 1);
+        return batch;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+}
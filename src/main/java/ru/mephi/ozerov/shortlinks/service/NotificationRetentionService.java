@@ -0,0 +1,227 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mephi.ozerov.shortlinks.entity.Notification;
+import ru.mephi.ozerov.shortlinks.repository.NotificationGroupView;
+import ru.mephi.ozerov.shortlinks.repository.NotificationRepository;
+
+/**
+ * Ограничивает таблицу уведомлений, чтобы индекс по {@code user_id} оставался в памяти:
+ *
+ * <ul>
+ *   <li>уведомления старше {@code shortlinks.notifications.retention.max-age-days} удаляются;
+ *   <li>у пользователя остаётся не больше {@code max-per-user} самых новых уведомлений;
+ *   <li>несколько непрочитанных уведомлений одного типа по одной ссылке схлопываются в самое новое
+ *       из них, в {@code occurrences} которого суммируются повторы.
+ * </ul>
+ *
+ * <p>Удаление идёт чанками по {@code chunk-size}, каждый чанк — своя короткая транзакция: строки
+ * блокируются, удаляются одним DELETE, счётчик непрочитанных в сводке уменьшается на число
+ * удалённых непрочитанных. Блокировка делает очистку безопасной при параллельной отметке о
+ * прочтении и при запуске на нескольких узлах.
+ *
+ * <p>Метрики: {@code shortlinks.notifications.purged} (tag reason = age | cap), {@code
+ * shortlinks.notifications.coalesced}.
+ */
+@Service
+@Slf4j
+public class NotificationRetentionService {
+
+    private final NotificationRepository notificationRepository;
+    private final UserSummaryService userSummaryService;
+    private final UserVersionService userVersionService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration maxAge;
+    private final int maxPerUser;
+    private final int chunkSize;
+
+    private final Counter purgedByAge;
+    private final Counter purgedByCap;
+    private final Counter coalesced;
+
+    public NotificationRetentionService(
+            NotificationRepository notificationRepository,
+            UserSummaryService userSummaryService,
+            UserVersionService userVersionService,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${shortlinks.notifications.retention.enabled:true}") boolean enabled,
+            @Value("${shortlinks.notifications.retention.max-age-days:90}") long maxAgeDays,
+            @Value("${shortlinks.notifications.retention.max-per-user:1000}") int maxPerUser,
+            @Value("${shortlinks.notifications.retention.chunk-size:500}") int chunkSize) {
+        this.notificationRepository = notificationRepository;
+        this.userSummaryService = userSummaryService;
+        this.userVersionService = userVersionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxAge = Duration.ofDays(maxAgeDays);
+        this.maxPerUser = maxPerUser;
+        this.chunkSize = chunkSize;
+        this.purgedByAge =
+                meterRegistry.counter("shortlinks.notifications.purged", "reason", "age");
+        this.purgedByCap =
+                meterRegistry.counter("shortlinks.notifications.purged", "reason", "cap");
+        this.coalesced = meterRegistry.counter("shortlinks.notifications.coalesced");
+    }
+
+    /** Полный проход: схлопывание, затем удаление по возрасту и по лимиту на пользователя. */
+    public void enforce(Instant now) {
+        if (!enabled) {
+            return;
+        }
+        int merged = coalesce();
+        int byAge = purgeOlderThan(now.minus(maxAge));
+        int byCap = purgeOverCap();
+        if (merged + byAge + byCap > 0) {
+            log.info(
+                    "Уведомления: схлопнуто {}, удалено по возрасту {}, по лимиту {}",
+                    merged,
+                    byAge,
+                    byCap);
+        }
+    }
+
+    /** Удаляет уведомления, созданные раньше cutoff. */
+    public int purgeOlderThan(Instant cutoff) {
+        int total = 0;
+        List<Long> ids;
+        do {
+            ids = notificationRepository.findIdsCreatedBefore(cutoff, PageRequest.of(0, chunkSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            total += deleteChunk(ids);
+        } while (ids.size() == chunkSize);
+        purgedByAge.increment(total);
+        return total;
+    }
+
+    /** Оставляет каждому пользователю не больше max-per-user самых новых уведомлений. */
+    public int purgeOverCap() {
+        int total = 0;
+        List<UUID> users;
+        do {
+            users =
+                    notificationRepository.findUsersOverCap(
+                            maxPerUser, PageRequest.of(0, chunkSize));
+            for (UUID userId : users) {
+                total += purgeOverCap(userId);
+            }
+        } while (users.size() == chunkSize);
+        purgedByCap.increment(total);
+        return total;
+    }
+
+    /**
+     * Схлопывает повторяющиеся непрочитанные уведомления (тип + ссылка) в самое новое.
+     *
+     * @return сколько строк удалено при схлопывании
+     */
+    public int coalesce() {
+        int total = 0;
+        List<NotificationGroupView> groups;
+        do {
+            groups = notificationRepository.findUnreadDuplicateGroups(PageRequest.of(0, chunkSize));
+            if (groups.isEmpty()) {
+                break;
+            }
+            List<NotificationGroupView> page = groups;
+            total += transactionTemplate.execute(s -> coalesceGroups(page));
+        } while (groups.size() == chunkSize);
+        coalesced.increment(total);
+        return total;
+    }
+
+    private int purgeOverCap(UUID userId) {
+        List<Long> boundary =
+                notificationRepository.findIdsByUserIdNewestFirst(
+                        userId, PageRequest.of(maxPerUser, 1));
+        if (boundary.isEmpty()) {
+            return 0;
+        }
+        long maxId = boundary.get(0);
+        int total = 0;
+        List<Long> ids;
+        do {
+            ids =
+                    notificationRepository.findIdsByUserIdUpTo(
+                            userId, maxId, PageRequest.of(0, chunkSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            total += deleteChunk(ids);
+        } while (ids.size() == chunkSize);
+        return total;
+    }
+
+    private int deleteChunk(List<Long> ids) {
+        return transactionTemplate.execute(
+                s -> {
+                    List<Notification> rows = notificationRepository.lockByIds(ids);
+                    if (rows.isEmpty()) {
+                        return 0;
+                    }
+                    notificationRepository.deleteAllByIdInBatch(
+                            rows.stream().map(Notification::getId).toList());
+                    applyRemoved(rows);
+                    return rows.size();
+                });
+    }
+
+    private int coalesceGroups(List<NotificationGroupView> groups) {
+        int removed = 0;
+        for (NotificationGroupView group : groups) {
+            List<Notification> rows =
+                    notificationRepository.lockUnreadByLinkAndType(
+                            group.getLinkId(), group.getType());
+            if (rows.size() < 2) {
+                continue;
+            }
+            Notification keeper = rows.get(rows.size() - 1);
+            List<Notification> merged = rows.subList(0, rows.size() - 1);
+            keeper.setOccurrences(
+                    keeper.getOccurrences()
+                            + merged.stream().mapToInt(Notification::getOccurrences).sum());
+            notificationRepository.deleteAllByIdInBatch(
+                    merged.stream().map(Notification::getId).toList());
+            applyRemoved(merged);
+            removed += merged.size();
+        }
+        return removed;
+    }
+
+    private void applyRemoved(List<Notification> rows) {
+        Map<UUID, Long> unreadPerUser =
+                rows.stream()
+                        .filter(n -> !n.getReadFlag())
+                        .collect(
+                                Collectors.groupingBy(
+                                        Notification::getUserId, Collectors.counting()));
+        rows.stream()
+                .map(Notification::getUserId)
+                .distinct()
+                .forEach(
+                        userId -> {
+                            long unread = unreadPerUser.getOrDefault(userId, 0L);
+                            if (unread > 0) {
+                                userSummaryService.onNotificationsRemoved(userId, unread);
+                            } else {
+                                userVersionService.bump(userId);
+                            }
+                        });
+    }
+}
@@ -1,13 +1,23 @@
 package ru.mephi.ozerov.shortlinks.service;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.mephi.ozerov.shortlinks.dto.NotificationResponse;
+import ru.mephi.ozerov.shortlinks.entity.Link;
 import ru.mephi.ozerov.shortlinks.entity.Notification;
 import ru.mephi.ozerov.shortlinks.entity.NotificationType;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
 import ru.mephi.ozerov.shortlinks.repository.NotificationRepository;
 
 @Service
@@ -15,36 +25,117 @@ import ru.mephi.ozerov.shortlinks.repository.NotificationRepository;
 public class NotificationService {
 
     private final NotificationRepository notificationRepository;
+    private final UserSummaryService userSummaryService;
+    private final UserVersionService userVersionService;
+    private final LinkRepository linkRepository;
+    private final NotificationStreamRegistry streamRegistry;
 
     @Transactional
-    public Notification create(
-            UUID userId, Long linkId, String shortCode, NotificationType type, String message) {
+    public Notification create(UUID userId, Long linkId, String shortCode, NotificationType type) {
         Notification n =
                 Notification.builder()
                         .userId(userId)
                         .linkId(linkId)
                         .shortCode(shortCode)
                         .type(type)
-                        .message(message)
                         .createdAt(Instant.now())
                         .readFlag(false)
                         .build();
-        return notificationRepository.save(n);
+        Notification saved = notificationRepository.save(n);
+        userSummaryService.onNotificationCreated(userId);
+        streamRegistry.signalAfterCommit(userId);
+        return saved;
+    }
+
+    /**
+     * Записывает уведомления CLICK_LIMIT_REACHED для пачки ссылок с флагом outbox: блокировка
+     * строк, один {@code INSERT ... SELECT} и снятие флага — в одной транзакции. Ссылки без флага
+     * (уже доставлено другим писателем) пропускаются.
+     *
+     * @return количество записанных уведомлений
+     */
+    @Transactional
+    public int writeLimitReached(Collection<Long> linkIds) {
+        List<Link> links = linkRepository.lockNotificationPending(linkIds);
+        if (links.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = links.stream().map(Link::getId).toList();
+        int inserted = notificationRepository.insertLimitReachedForPending(ids, Instant.now());
+        linkRepository.clearNotificationPending(ids);
+        Map<UUID, Long> perUser =
+                links.stream()
+                        .collect(Collectors.groupingBy(Link::getUserId, Collectors.counting()));
+        perUser.forEach(
+                (userId, count) -> {
+                    userSummaryService.onNotificationsCreated(userId, count);
+                    streamRegistry.signalAfterCommit(userId);
+                });
+        return inserted;
+    }
+
+    /**
+     * SSE-подписка на новые уведомления пользователя: с {@code lastEventId} сначала уходят
+     * пропущенные после него, без него — только созданные после подключения.
+     */
+    public SseEmitter subscribe(UUID userId, Long lastEventId, Locale locale) {
+        return streamRegistry.subscribe(userId, lastEventId, locale);
+    }
+
+    /** Уведомления новее курсора {@code sinceId}; если их нет — ожидание без потока до wait. */
+    public DeferredResult<List<NotificationResponse>> poll(
+            UUID userId, long sinceId, Duration wait, Locale locale) {
+        return streamRegistry.poll(userId, sinceId, wait, locale);
     }
 
     public List<Notification> findByUserId(UUID userId) {
         return notificationRepository.findByUserIdOrderByCreatedAtDesc(userId);
     }
 
+    /** Отметить уведомление прочитанным; чужое или уже прочитанное не затрагивается. */
     @Transactional
     public void markAsRead(Long notificationId, UUID userId) {
-        notificationRepository
-                .findById(notificationId)
-                .filter(n -> n.getUserId().equals(userId))
-                .ifPresent(
-                        n -> {
-                            n.setReadFlag(true);
-                            notificationRepository.save(n);
-                        });
+        markRead(userId, List.of(notificationId));
+    }
+
+    /**
+     * Массовые операции ниже — один UPDATE/DELETE с условием на владельца, без загрузки сущностей;
+     * счётчик непрочитанных в сводке уменьшается на число затронутых строк.
+     *
+     * @return количество затронутых уведомлений
+     */
+    @Transactional
+    public int markRead(UUID userId, Collection<Long> notificationIds) {
+        return afterRead(userId, notificationRepository.markReadByIds(userId, notificationIds));
+    }
+
+    @Transactional
+    public int markAllRead(UUID userId) {
+        return afterRead(userId, notificationRepository.markAllRead(userId));
+    }
+
+    @Transactional
+    public int markReadUpTo(UUID userId, long upToId) {
+        return afterRead(userId, notificationRepository.markReadUpTo(userId, upToId));
+    }
+
+    /**
+     * Удаляет прочитанные уведомления пользователя (сводка не меняется — в ней только
+     * непрочитанные).
+     */
+    @Transactional
+    public int deleteRead(UUID userId) {
+        int deleted = notificationRepository.deleteRead(userId);
+        if (deleted > 0) {
+            userVersionService.bump(userId);
+        }
+        return deleted;
+    }
+
+    private int afterRead(UUID userId, int read) {
+        if (read > 0) {
+            userSummaryService.onNotificationsRead(userId, read);
+        }
+        return read;
     }
 }
@@ -0,0 +1,478 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.mephi.ozerov.shortlinks.dto.NotificationResponse;
+import ru.mephi.ozerov.shortlinks.entity.Notification;
+import ru.mephi.ozerov.shortlinks.repository.NotificationRepository;
+import ru.mephi.ozerov.shortlinks.repository.UserMaxIdView;
+
+/**
+ * Реестр SSE-подписок и ожидающих long-poll запросов на уведомления. Соединение не держит поток:
+ * {@link SseEmitter} и {@link DeferredResult} работают на асинхронном сервлете, а отправка идёт из
+ * небольшого пула {@code notification-stream} ({@code sender-threads}), так что тысячи
+ * простаивающих подписок стоят лишь записи в реестре.
+ *
+ * <p>Сигнал о новых уведомлениях пользователя ({@link #signalAfterCommit}) подаётся после коммита
+ * записи. Подписка помнит id последнего отправленного уведомления и по сигналу дочитывает из БД
+ * всё, что новее; повторные сигналы до отправки схлопываются, а одну подписку в каждый момент
+ * обслуживает не больше одного потока. Тот же механизм даёт продолжение по {@code Last-Event-ID}
+ * после переподключения: пропущенное за время разрыва уходит первым. Long-poll запрос ({@link
+ * #poll}) ждёт первого сигнала, после которого в БД есть уведомления новее его курсора, и
+ * завершается ими.
+ *
+ * <p>Сигнал локален: уведомление, записанное другим узлом (например, истечение ссылки чужим
+ * шардом), этот узел не видит. Поэтому пульс ({@link #heartbeat}) одним сгруппированным запросом
+ * сверяет курсоры всех подписок и ожидающих запросов с наибольшим id уведомлений их пользователей и
+ * дочитывает отставших: задержка доставки между узлами — не больше периода пульса.
+ *
+ * <p>Медленный клиент не задерживает остальных: пока поток пула пишет в его соединение, новые
+ * задачи для этой подписки не ставятся. Если запись висит дольше {@code send-timeout-millis},
+ * подписка удаляется из реестра; поток освобождается, когда контейнер прервёт запись по своему
+ * таймауту, и тогда же соединение закрывается.
+ *
+ * <p>Метрики: {@code shortlinks.notifications.stream.connections} (открытые подписки), {@code
+ * shortlinks.notifications.stream.sent}, {@code shortlinks.notifications.stream.slow} (отключённые
+ * медленные клиенты), {@code shortlinks.notifications.poll.waiting} (ожидающие long-poll запросы).
+ */
+@Service
+@Slf4j
+public class NotificationStreamRegistry {
+
+    private static final int PAGE = 100;
+    private static final int MAX_IDS_BATCH = 1000;
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationMessages notificationMessages;
+    private final long timeoutMillis;
+    private final long sendTimeoutNanos;
+    private final Duration maxPollWait;
+    private final Map<UUID, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final Counter sent;
+    private final Counter slow;
+    private final ExecutorService sender;
+
+    public NotificationStreamRegistry(
+            NotificationRepository notificationRepository,
+            NotificationMessages notificationMessages,
+            MeterRegistry meterRegistry,
+            @Value("${shortlinks.notifications.stream.timeout-millis:1800000}") long timeoutMillis,
+            @Value("${shortlinks.notifications.stream.sender-threads:4}") int senderThreads,
+            @Value("${shortlinks.notifications.stream.send-timeout-millis:10000}")
+                    long sendTimeoutMillis,
+            @Value("${shortlinks.notifications.poll.max-wait-millis:60000}")
+                    long maxPollWaitMillis) {
+        this.notificationRepository = notificationRepository;
+        this.notificationMessages = notificationMessages;
+        this.timeoutMillis = timeoutMillis;
+        this.sendTimeoutNanos = Duration.ofMillis(sendTimeoutMillis).toNanos();
+        this.maxPollWait = Duration.ofMillis(maxPollWaitMillis);
+        this.sent = meterRegistry.counter("shortlinks.notifications.stream.sent");
+        this.slow = meterRegistry.counter("shortlinks.notifications.stream.slow");
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.sender =
+                Executors.newFixedThreadPool(
+                        Math.max(1, senderThreads),
+                        r -> {
+                            Thread t =
+                                    new Thread(
+                                            r,
+                                            "notification-stream-"
+                                                    + threadNumber.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+        meterRegistry.gauge("shortlinks.notifications.stream.connections", connections);
+        meterRegistry.gauge("shortlinks.notifications.poll.waiting", waiting);
+    }
+
+    /**
+     * Открывает подписку пользователя.
+     *
+     * @param lastEventId id последнего полученного клиентом уведомления; {@code null} — только
+     *     новые уведомления
+     * @param locale язык текстов уведомлений (из запроса подписки)
+     */
+    public SseEmitter subscribe(UUID userId, Long lastEventId, Locale locale) {
+        long fromId =
+                lastEventId != null
+                        ? lastEventId
+                        : notificationRepository.findMaxIdByUserId(userId);
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscription sub = new Subscription(userId, emitter, fromId, locale);
+        subscriptions.compute(
+                userId,
+                (k, subs) -> {
+                    Set<Subscription> set = subs != null ? subs : ConcurrentHashMap.newKeySet();
+                    set.add(sub);
+                    return set;
+                });
+        connections.incrementAndGet();
+        emitter.onCompletion(() -> remove(sub));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> remove(sub));
+        // Уведомление могло закоммититься между чтением max(id) и регистрацией подписки
+        sub.unread.set(true);
+        schedule(sub);
+        return emitter;
+    }
+
+    /**
+     * Уведомления пользователя новее курсора, по возрастанию id (не больше {@value #PAGE}). Если
+     * таких нет, запрос паркуется без потока до сигнала о новых уведомлениях или до истечения
+     * ожидания (ограничено {@code shortlinks.notifications.poll.max-wait-millis}) — тогда ответ
+     * пуст.
+     */
+    public DeferredResult<List<NotificationResponse>> poll(
+            UUID userId, long sinceId, Duration wait, Locale locale) {
+        List<NotificationResponse> ready = newer(userId, sinceId, locale);
+        Duration timeout = wait.compareTo(maxPollWait) > 0 ? maxPollWait : wait;
+        if (!ready.isEmpty() || timeout.isZero()) {
+            DeferredResult<List<NotificationResponse>> result = new DeferredResult<>();
+            result.setResult(ready);
+            return result;
+        }
+        DeferredResult<List<NotificationResponse>> result =
+                new DeferredResult<>(timeout.toMillis(), List::of);
+        Waiter waiter = new Waiter(userId, sinceId, locale, result);
+        waiters.compute(
+                userId,
+                (k, set) -> {
+                    Set<Waiter> ws = set != null ? set : ConcurrentHashMap.newKeySet();
+                    ws.add(waiter);
+                    return ws;
+                });
+        waiting.incrementAndGet();
+        result.onCompletion(() -> removeWaiter(waiter));
+        // Уведомление могло закоммититься между первым чтением и регистрацией
+        schedule(waiter);
+        return result;
+    }
+
+    /** Сигнал о новых уведомлениях пользователя — после коммита текущей транзакции. */
+    public void signalAfterCommit(UUID userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            signal(userId);
+                        }
+                    });
+        } else {
+            signal(userId);
+        }
+    }
+
+    public void signal(UUID userId) {
+        Set<Subscription> subs = subscriptions.get(userId);
+        if (subs != null) {
+            subs.forEach(
+                    sub -> {
+                        sub.unread.set(true);
+                        schedule(sub);
+                    });
+        }
+        Set<Waiter> ws = waiters.get(userId);
+        if (ws != null) {
+            ws.forEach(this::schedule);
+        }
+    }
+
+    /**
+     * Пульс: отключает зависших на записи клиентов, дочитывает уведомления, записанные другими
+     * узлами, и шлёт комментарий-пульс остальным подпискам — он держит соединение через прокси и
+     * выявляет разрывы.
+     */
+    public void heartbeat() {
+        Map<UUID, Long> maxIds = maxIds();
+        long now = System.nanoTime();
+        subscriptions.values().stream()
+                .flatMap(Set::stream)
+                .forEach(
+                        sub -> {
+                            long sendingSince = sub.sendingSince;
+                            if (sendingSince != 0 && now - sendingSince > sendTimeoutNanos) {
+                                dropSlow(sub);
+                                return;
+                            }
+                            if (maxIds.getOrDefault(sub.userId, 0L) > sub.lastId) {
+                                sub.unread.set(true);
+                            }
+                            sub.heartbeatDue.set(true);
+                            schedule(sub);
+                        });
+        waiters.values().stream()
+                .flatMap(Set::stream)
+                .filter(waiter -> maxIds.getOrDefault(waiter.userId, 0L) > waiter.sinceId)
+                .forEach(this::schedule);
+    }
+
+    public int connectionCount() {
+        return connections.get();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sender.shutdownNow();
+        subscriptions.values().stream().flatMap(Set::stream).forEach(sub -> sub.emitter.complete());
+    }
+
+    /** Наибольшие id уведомлений пользователей с подписками и ожиданиями — пачками по IN. */
+    private Map<UUID, Long> maxIds() {
+        Set<UUID> users = new HashSet<>(subscriptions.keySet());
+        users.addAll(waiters.keySet());
+        Map<UUID, Long> maxIds = new HashMap<>();
+        List<UUID> batch = new ArrayList<>(Math.min(users.size(), MAX_IDS_BATCH));
+        try {
+            for (UUID userId : users) {
+                batch.add(userId);
+                if (batch.size() == MAX_IDS_BATCH) {
+                    collectMaxIds(batch, maxIds);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                collectMaxIds(batch, maxIds);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сверить курсоры подписок: {}", e.getMessage());
+        }
+        return maxIds;
+    }
+
+    private void collectMaxIds(List<UUID> batch, Map<UUID, Long> maxIds) {
+        for (UserMaxIdView row : notificationRepository.findMaxIdsByUserIdIn(batch)) {
+            maxIds.put(row.getUserId(), row.getMaxId());
+        }
+    }
+
+    private void schedule(Subscription sub) {
+        if (sub.pending.compareAndSet(false, true)) {
+            submit(() -> run(sub));
+        }
+    }
+
+    private void schedule(Waiter waiter) {
+        if (waiter.pending.compareAndSet(false, true)) {
+            submit(() -> check(waiter));
+        }
+    }
+
+    private void submit(Runnable task) {
+        try {
+            sender.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Остановка приложения: подписки закрываются в shutdown()
+        }
+    }
+
+    /**
+     * Обслуживает подписку, пока для неё есть работа. Если подписку уже обслуживает другой поток,
+     * задача сразу завершается: тот поток увидит флаг {@code pending} и выполнит работу сам.
+     */
+    private void run(Subscription sub) {
+        if (!sub.running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while (sub.pending.getAndSet(false)) {
+                boolean delivered = sub.unread.getAndSet(false) && deliver(sub);
+                if (sub.heartbeatDue.getAndSet(false) && !delivered) {
+                    send(sub, SseEmitter.event().comment("heartbeat"));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            drop(sub, e);
+        } catch (RuntimeException e) {
+            log.warn("Не удалось отправить уведомления пользователю {}", sub.userId, e);
+        } finally {
+            sub.running.set(false);
+        }
+        // Работа могла появиться между последней проверкой и снятием флага running
+        if (sub.pending.get()) {
+            submit(() -> run(sub));
+        }
+    }
+
+    /** Отправляет всё новее курсора подписки; {@code true} — отправлено хоть одно уведомление. */
+    private boolean deliver(Subscription sub) throws IOException {
+        boolean any = false;
+        List<Notification> page;
+        do {
+            page =
+                    notificationRepository.findTop100ByUserIdAndIdGreaterThanOrderByIdAsc(
+                            sub.userId, sub.lastId);
+            for (Notification n : page) {
+                send(
+                        sub,
+                        SseEmitter.event()
+                                .id(Long.toString(n.getId()))
+                                .name("notification")
+                                .data(
+                                        notificationMessages.toResponse(n, sub.locale),
+                                        MediaType.APPLICATION_JSON));
+                sub.lastId = n.getId();
+                sent.increment();
+                any = true;
+            }
+        } while (page.size() == PAGE);
+        return any;
+    }
+
+    /** Запись в соединение с отметкой начала: по ней пульс находит зависших клиентов. */
+    private void send(Subscription sub, SseEmitter.SseEventBuilder event) throws IOException {
+        if (sub.dropped) {
+            throw new IllegalStateException("Подписка отключена как медленная");
+        }
+        sub.sendingSince = System.nanoTime();
+        try {
+            sub.emitter.send(event);
+        } finally {
+            sub.sendingSince = 0;
+        }
+    }
+
+    private void check(Waiter waiter) {
+        waiter.pending.set(false);
+        if (waiter.result.isSetOrExpired()) {
+            removeWaiter(waiter);
+            return;
+        }
+        try {
+            List<NotificationResponse> ready = newer(waiter.userId, waiter.sinceId, waiter.locale);
+            if (!ready.isEmpty()) {
+                removeWaiter(waiter);
+                waiter.result.setResult(ready);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Не удалось прочитать уведомления пользователя {}", waiter.userId, e);
+        }
+    }
+
+    private List<NotificationResponse> newer(UUID userId, long sinceId, Locale locale) {
+        return notificationRepository
+                .findTop100ByUserIdAndIdGreaterThanOrderByIdAsc(userId, sinceId)
+                .stream()
+                .map(n -> notificationMessages.toResponse(n, locale))
+                .toList();
+    }
+
+    /**
+     * Медленный клиент: только удаление из реестра. Закрыть соединение из этого потока нельзя —
+     * эмиттер занят зависшей записью; его закроет поток отправки, когда запись завершится.
+     */
+    private void dropSlow(Subscription sub) {
+        sub.dropped = true;
+        slow.increment();
+        log.debug("SSE-подписка пользователя {} отключена: клиент не читает", sub.userId);
+        remove(sub);
+    }
+
+    private void drop(Subscription sub, Exception e) {
+        log.debug("SSE-подписка пользователя {} закрыта: {}", sub.userId, e.toString());
+        remove(sub);
+        sub.emitter.completeWithError(e);
+    }
+
+    private void remove(Subscription sub) {
+        // Добавление и удаление — под блокировкой ключа, чтобы не потерять подписку в удалённом
+        // из реестра пустом множестве
+        subscriptions.computeIfPresent(
+                sub.userId,
+                (k, subs) -> {
+                    if (subs.remove(sub)) {
+                        connections.decrementAndGet();
+                    }
+                    return subs.isEmpty() ? null : subs;
+                });
+    }
+
+    private void removeWaiter(Waiter waiter) {
+        waiters.computeIfPresent(
+                waiter.userId,
+                (k, ws) -> {
+                    if (ws.remove(waiter)) {
+                        waiting.decrementAndGet();
+                    }
+                    return ws.isEmpty() ? null : ws;
+                });
+    }
+
+    private record Waiter(
+            UUID userId,
+            long sinceId,
+            Locale locale,
+            DeferredResult<List<NotificationResponse>> result,
+            AtomicBoolean pending) {
+
+        private Waiter(
+                UUID userId,
+                long sinceId,
+                Locale locale,
+                DeferredResult<List<NotificationResponse>> result) {
+            this(userId, sinceId, locale, result, new AtomicBoolean());
+        }
+    }
+
+    private static final class Subscription {
+
+        private final UUID userId;
+        private final SseEmitter emitter;
+        private final Locale locale;
+
+        /** Задача поставлена или обслуживающий поток должен пройти ещё круг. */
+        private final AtomicBoolean pending = new AtomicBoolean();
+
+        /** Подписку обслуживает поток пула. */
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        /** В БД могут быть уведомления новее курсора. */
+        private final AtomicBoolean unread = new AtomicBoolean();
+
+        private final AtomicBoolean heartbeatDue = new AtomicBoolean();
+
+        /** Пишется только обслуживающим потоком. */
+        private volatile long lastId;
+
+        /** {@link System#nanoTime()} начала текущей записи; 0 — записи нет. */
+        private volatile long sendingSince;
+
+        private volatile boolean dropped;
+
+        private Subscription(UUID userId, SseEmitter emitter, long lastId, Locale locale) {
+            this.userId = userId;
+            this.emitter = emitter;
+            this.locale = locale;
+            this.lastId = lastId;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
+
+/**
+ * Выделенный поток записи уведомлений: забирает из {@link NotificationQueue} пачки id ссылок и
+ * записывает уведомления одним {@code INSERT ... SELECT} на пачку ({@link
+ * NotificationService#writeLimitReached}). Транзакция перехода по ссылке в этом не участвует.
+ *
+ * <p>Доставка гарантируется флагом outbox в строке ссылки: если пачка не записалась (ошибка БД,
+ * переполнение очереди, остановка процесса), {@link #replayPending()} при старте и периодически
+ * дописывает уведомления по всем ссылкам с флагом.
+ *
+ * <p>Метрики: {@code shortlinks.notifications.written}, {@code shortlinks.notifications.replayed},
+ * время пачки {@code shortlinks.notifications.batch}.
+ */
+@Service
+@Slf4j
+public class NotificationWriter implements SmartLifecycle {
+
+    private final NotificationQueue notificationQueue;
+    private final NotificationService notificationService;
+    private final LinkRepository linkRepository;
+    private final int batchSize;
+    private final Duration maxWait;
+
+    private final Counter written;
+    private final Counter replayed;
+    private final Timer batchTimer;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    public NotificationWriter(
+            NotificationQueue notificationQueue,
+            NotificationService notificationService,
+            LinkRepository linkRepository,
+            MeterRegistry meterRegistry,
+            @Value("${shortlinks.notifications.batch-size:200}") int batchSize,
+            @Value("${shortlinks.notifications.max-wait-millis:100}") long maxWaitMillis) {
+        this.notificationQueue = notificationQueue;
+        this.notificationService = notificationService;
+        this.linkRepository = linkRepository;
+        this.batchSize = batchSize;
+        this.maxWait = Duration.ofMillis(maxWaitMillis);
+        this.written = meterRegistry.counter("shortlinks.notifications.written");
+        this.replayed = meterRegistry.counter("shortlinks.notifications.replayed");
+        this.batchTimer = meterRegistry.timer("shortlinks.notifications.batch");
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        thread = new Thread(this::run, "notification-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Остановка: поток дописывает то, что уже в очереди, остальное доставит повторная доставка. */
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Дописывает уведомления по всем ссылкам с флагом outbox пачками.
+     *
+     * @return количество записанных уведомлений
+     */
+    public int replayPending() {
+        long afterId = 0;
+        int total = 0;
+        List<Long> ids;
+        do {
+            ids = linkRepository.findNotificationPendingIds(afterId, PageRequest.of(0, batchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            total += write(ids);
+            afterId = ids.get(ids.size() - 1);
+        } while (ids.size() == batchSize);
+        if (total > 0) {
+            replayed.increment(total);
+            log.info("Повторно доставлено уведомлений: {}", total);
+        }
+        return total;
+    }
+
+    private void run() {
+        while (running || notificationQueue.size() > 0) {
+            try {
+                List<Long> batch = notificationQueue.poll(batchSize, maxWait);
+                if (!batch.isEmpty()) {
+                    written.increment(write(batch));
+                }
+            } catch (InterruptedException e) {
+                if (!running && notificationQueue.size() == 0) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                log.warn(
+                        "Пачка уведомлений не записана, её доставит повторная доставка: {}",
+                        e.getMessage());
+            }
+        }
+    }
+
+    private int write(List<Long> linkIds) {
+        return batchTimer.record(() -> notificationService.writeLimitReached(linkIds));
+    }
+}
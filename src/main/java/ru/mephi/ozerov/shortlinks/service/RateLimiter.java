@@ -0,0 +1,166 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Ограничение частоты запросов на горячих точках: создание ссылок — по пользователю ({@code
+ * X-User-Id}, без заголовка — по адресу клиента), переход — по коду ссылки. Каждая точка — свой
+ * маркерный бак: {@code per-second} запросов в секунду и запас {@code burst} подряд.
+ *
+ * <p>Состояние ключа — одно число: теоретическое время следующего запроса (алгоритм GCRA,
+ * эквивалентный маркерному баку). Решение — чтение карты и CAS этого числа, без блокировок и
+ * выделения памяти для уже известного ключа. Ключ, чей бак снова полон, ничем не отличается от
+ * отсутствующего; поэтому при заполнении карты до {@code max-keys} выбрасываются только такие
+ * ключи. Частично опустевшие баки не сбрасываются никогда: если места всё равно нет, новые ключи
+ * делят один общий бак переполнения с тем же лимитом, пока какой-нибудь бак не наполнится.
+ *
+ * <p>Метрики: {@code shortlinks.rate-limit.rejected} (tag endpoint = create | redirect).
+ */
+@Service
+public class RateLimiter {
+
+    /** Точка с отдельным лимитом. */
+    public enum Endpoint {
+        CREATE,
+        REDIRECT
+    }
+
+    private final Limit create;
+    private final Limit redirect;
+    private final int maxKeys;
+
+    /** Начало отсчёта: время в баках неотрицательно, ноль — «бак полон». */
+    private final long epoch = System.nanoTime();
+
+    public RateLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${shortlinks.rate-limit.enabled:true}") boolean enabled,
+            @Value("${shortlinks.rate-limit.max-keys:100000}") int maxKeys,
+            @Value("${shortlinks.rate-limit.create.per-second:5}") double createPerSecond,
+            @Value("${shortlinks.rate-limit.create.burst:50}") int createBurst,
+            @Value("${shortlinks.rate-limit.redirect.per-second:200}") double redirectPerSecond,
+            @Value("${shortlinks.rate-limit.redirect.burst:1000}") int redirectBurst) {
+        this.maxKeys = maxKeys;
+        this.create =
+                new Limit(
+                        enabled ? createPerSecond : 0,
+                        createBurst,
+                        meterRegistry.counter(
+                                "shortlinks.rate-limit.rejected", "endpoint", "create"));
+        this.redirect =
+                new Limit(
+                        enabled ? redirectPerSecond : 0,
+                        redirectBurst,
+                        meterRegistry.counter(
+                                "shortlinks.rate-limit.rejected", "endpoint", "redirect"));
+    }
+
+    /**
+     * Забирает маркер для ключа.
+     *
+     * @return 0 — запрос разрешён; иначе через сколько наносекунд появится маркер
+     */
+    public long acquire(Endpoint endpoint, Object key) {
+        return acquire(endpoint, key, System.nanoTime() - epoch);
+    }
+
+    /** Значение Retry-After: целые секунды с округлением вверх, не меньше одной. */
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + 999_999_999) / 1_000_000_000);
+    }
+
+    long acquire(Endpoint endpoint, Object key, long now) {
+        Limit limit = endpoint == Endpoint.CREATE ? create : redirect;
+        return limit.intervalNanos == 0 ? 0 : limit.acquire(key, now);
+    }
+
+    int size(Endpoint endpoint) {
+        return (endpoint == Endpoint.CREATE ? create : redirect).buckets.size();
+    }
+
+    private final class Limit {
+
+        /** Промежуток между маркерами; 0 — ограничение выключено. */
+        private final long intervalNanos;
+
+        /** Насколько теоретическое время может убежать вперёд: запас бака. */
+        private final long toleranceNanos;
+
+        private final Counter rejected;
+        private final Map<Object, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final AtomicBoolean evicting = new AtomicBoolean();
+
+        /** Общий бак ключей, которым не хватило места в карте. */
+        private final AtomicLong overflow = new AtomicLong();
+
+        /** Раньше этого момента ни один бак карты не наполнится: проход не нужен. */
+        private volatile long nextEvictionAt;
+
+        Limit(double perSecond, int burst, Counter rejected) {
+            this.intervalNanos = perSecond > 0 ? Math.max(1, (long) (1e9 / perSecond)) : 0;
+            this.toleranceNanos = intervalNanos * Math.max(1, burst);
+            this.rejected = rejected;
+        }
+
+        long acquire(Object key, long now) {
+            AtomicLong bucket = buckets.get(key);
+            if (bucket == null) {
+                if (buckets.size() >= maxKeys) {
+                    evict(now);
+                }
+                bucket =
+                        buckets.size() < maxKeys
+                                ? buckets.computeIfAbsent(key, k -> new AtomicLong())
+                                : overflow;
+            }
+            while (true) {
+                long tat = bucket.get();
+                long next = Math.max(tat, now) + intervalNanos;
+                long ahead = next - now - toleranceNanos;
+                if (ahead > 0) {
+                    rejected.increment();
+                    return ahead;
+                }
+                if (bucket.compareAndSet(tat, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * Выбрасывает ключи с полным баком. Если выбросить нечего, следующий проход — не раньше,
+         * чем наполнится самый ранний бак: поток новых ключей не сканирует карту на каждом запросе.
+         * Один поток за раз.
+         */
+        private void evict(long now) {
+            if (now < nextEvictionAt || !evicting.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                long earliest = Long.MAX_VALUE;
+                boolean removed = false;
+                Iterator<AtomicLong> it = buckets.values().iterator();
+                while (it.hasNext()) {
+                    long tat = it.next().get();
+                    if (tat <= now) {
+                        it.remove();
+                        removed = true;
+                    } else {
+                        earliest = Math.min(earliest, tat);
+                    }
+                }
+                nextEvictionAt = removed ? 0 : earliest;
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.store.LinkStore;
+import ru.mephi.ozerov.shortlinks.store.OffHeapLinkIndex;
+
+/**
+ * Индекс пути перехода: снимки ссылок в {@link OffHeapLinkIndex} вне кучи, чтобы проверка владельца
+ * и доступности при переходе не читала хранилище. Счётчик переходов по-прежнему увеличивает
+ * хранилище (условный инкремент) — индекс лишь отвечает на вопрос «есть ли смысл его вызывать».
+ *
+ * <p>Это модель чтения пути перехода: изменения ссылок (создание, переход, правка, удаление,
+ * архивация) приходят асинхронно из {@link LinkChangeStream}, а промах заполняется чтением
+ * хранилища. Отставшая запись безопасна: по записи, где ссылка недоступна, путь перехода
+ * перечитывает хранилище, а неудавшийся инкремент удаляет запись.
+ *
+ * <p>Файл индекса ({@code shortlinks.redirect-index.file}) переживает перезапуск; после аварийной
+ * остановки, при изменении раскладки или с {@code rebuild-on-start=true} индекс прогревается по
+ * хранилищу при старте. Прогрев сначала загружает горячие коды прошлого запуска (файл {@code
+ * hot-keys-file}, пишется раз в {@code hot-keys-save-millis} и при остановке), затем параллельно
+ * сканирует диапазоны id. Готовность принимать трафик публикуется, когда просканирована доля {@code
+ * ready-fraction}; остаток догружается в фоне. Когда таблица или куча URL заполняются больше чем на
+ * 90%, индекс перестраивается в фоне тем же сканированием — так освобождаются удалённые записи и
+ * URL.
+ *
+ * <p>Метрики: {@code shortlinks.redirect.index} (tag result = hit | miss), {@code
+ * shortlinks.redirect.index.size}, {@code shortlinks.redirect.index.rejected} (запись не
+ * поместилась), {@code shortlinks.redirect.index.warmup.progress} (доля, 0..1), {@code
+ * shortlinks.redirect.index.warmup} (время прогрева).
+ */
+@Service
+@Slf4j
+public class RedirectIndex implements LinkChangeStream.Listener {
+
+    private static final int REBUILD_PAGE = 1000;
+    private static final double COMPACT_LOAD = 0.9;
+
+    private final LinkStore linkStore;
+    private final OffHeapLinkIndex index;
+    private final boolean rebuildOnStart;
+    private final int parallelism;
+    private final double readyFraction;
+    private final long readyTimeoutMillis;
+    private final Path hotKeysFile;
+    private final AtomicReferenceArray<String> hotKeys;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    /** Доля просканированного диапазона id в текущей или последней перестройке, 0..1. */
+    private volatile double progress = 1;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter rejected;
+    private final Timer warmUpTimer;
+
+    public RedirectIndex(
+            LinkStore linkStore,
+            MeterRegistry meterRegistry,
+            @Value("${shortlinks.redirect-index.enabled:true}") boolean enabled,
+            @Value("${shortlinks.redirect-index.file:./data/redirect-index.bin}") String file,
+            @Value("${shortlinks.redirect-index.capacity:1048576}") int capacity,
+            @Value("${shortlinks.redirect-index.url-heap-mb:64}") int urlHeapMb,
+            @Value("${shortlinks.redirect-index.rebuild-on-start:false}") boolean rebuildOnStart,
+            @Value("${shortlinks.redirect-index.warm-up.parallelism:4}") int parallelism,
+            @Value("${shortlinks.redirect-index.warm-up.ready-fraction:0.8}") double readyFraction,
+            @Value("${shortlinks.redirect-index.warm-up.ready-timeout-millis:60000}")
+                    long readyTimeoutMillis,
+            @Value(
+                            "${shortlinks.redirect-index.warm-up.hot-keys-file:./data/redirect-hot-keys.txt}")
+                    String hotKeysFile,
+            @Value("${shortlinks.redirect-index.warm-up.hot-keys:10000}") int hotKeys) {
+        this.linkStore = linkStore;
+        this.rebuildOnStart = rebuildOnStart;
+        this.parallelism = Math.max(1, parallelism);
+        this.readyFraction = readyFraction;
+        this.readyTimeoutMillis = readyTimeoutMillis;
+        this.hotKeysFile = hotKeysFile.isBlank() ? null : Path.of(hotKeysFile);
+        this.hotKeys = new AtomicReferenceArray<>(Math.max(1, hotKeys));
+        this.index =
+                enabled
+                        ? OffHeapLinkIndex.open(
+                                file.isBlank() ? null : Path.of(file),
+                                capacity,
+                                urlHeapMb * 1024 * 1024)
+                        : null;
+        this.hits = meterRegistry.counter("shortlinks.redirect.index", "result", "hit");
+        this.misses = meterRegistry.counter("shortlinks.redirect.index", "result", "miss");
+        this.rejected = meterRegistry.counter("shortlinks.redirect.index.rejected");
+        this.warmUpTimer = meterRegistry.timer("shortlinks.redirect.index.warmup");
+        if (index != null) {
+            meterRegistry.gauge("shortlinks.redirect.index.size", index, OffHeapLinkIndex::size);
+            meterRegistry.gauge(
+                    "shortlinks.redirect.index.warmup.progress", this, RedirectIndex::progress);
+        }
+    }
+
+    /**
+     * Прогрев при старте, если файл индекса не подходит или так задано настройкой. Выполняется до
+     * {@code ApplicationReadyEvent}, поэтому готовность ({@code ReadinessState.ACCEPTING_TRAFFIC})
+     * публикуется только после того, как просканирована доля {@code ready-fraction} (или истёк
+     * {@code ready-timeout-millis}); остаток догружается в фоне.
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void warmUp() {
+        if (index == null || (index.reopened() && !rebuildOnStart)) {
+            return;
+        }
+        CompletableFuture<Integer> done = rebuildAsync(loadHotKeys());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(readyTimeoutMillis);
+        while (!done.isDone() && progress < readyFraction) {
+            if (System.nanoTime() > deadline) {
+                log.warn(
+                        "Прогрев индекса перехода не достиг {} за {} мс (просканировано {}),"
+                                + " готовность без него",
+                        readyFraction,
+                        readyTimeoutMillis,
+                        progress);
+                return;
+            }
+            try {
+                done.get(50, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Проверяем долю и срок заново
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // Ошибка уже в логе перестройки; старт не прерывается — индекс самовосстановится
+                return;
+            }
+        }
+        log.info("Индекс перехода прогрет на {}%, сервис готов", Math.round(progress * 100));
+    }
+
+    /** Снимок ссылки из индекса (неполный, см. {@link OffHeapLinkIndex#get}). */
+    public Optional<Link> find(String shortCode) {
+        if (index == null) {
+            return Optional.empty();
+        }
+        // Приблизительный набор недавно запрошенных кодов: слот по хешу, коллизия вытесняет
+        hotKeys.lazySet(Math.floorMod(shortCode.hashCode(), hotKeys.length()), shortCode);
+        Optional<Link> link = index.get(shortCode);
+        (link.isPresent() ? hits : misses).increment();
+        return link;
+    }
+
+    @Override
+    public void onLinkChanges(List<LinkChangeStream.Change> changes) {
+        for (LinkChangeStream.Change change : changes) {
+            if (change.removed()) {
+                remove(change.shortCode());
+            } else {
+                put(change.link());
+            }
+        }
+    }
+
+    public void put(Link link) {
+        if (index == null || index.put(link)) {
+            return;
+        }
+        rejected.increment();
+        if (index.load() > COMPACT_LOAD) {
+            rebuildAsync(List.of());
+        }
+    }
+
+    public void remove(String shortCode) {
+        if (index != null) {
+            index.remove(shortCode);
+        }
+    }
+
+    /**
+     * Забывает все записи: переходы снова читают хранилище и заполняют индекс промахами. Для
+     * случаев, когда неизвестно, какие записи устарели (потерянные инвалидации с других узлов).
+     */
+    public void invalidateAll() {
+        if (index != null) {
+            index.clear();
+        }
+    }
+
+    /**
+     * Заново заполняет индекс всеми ссылками хранилища и ждёт окончания.
+     *
+     * @return количество записей в индексе; 0, если перестройка уже идёт или индекс выключен
+     */
+    public int rebuild() {
+        return rebuildAsync(List.of()).join();
+    }
+
+    public double progress() {
+        return progress;
+    }
+
+    @PreDestroy
+    void close() {
+        if (index != null) {
+            saveHotKeys();
+            index.close();
+        }
+    }
+
+    /**
+     * Очищает индекс, загружает горячие коды и запускает параллельное сканирование диапазонов id.
+     * Параллельная перестройка не запускается.
+     */
+    private CompletableFuture<Integer> rebuildAsync(List<String> hot) {
+        if (index == null || !rebuilding.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(0);
+        }
+        long started = System.nanoTime();
+        progress = 0;
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService pool =
+                Executors.newFixedThreadPool(
+                        parallelism,
+                        task -> {
+                            Thread thread =
+                                    new Thread(
+                                            task,
+                                            "redirect-index-warmup-" + threads.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+        CompletableFuture<Integer> done;
+        try {
+            index.clear();
+            loadHot(hot, pool);
+            done = scanRanges(pool);
+        } catch (RuntimeException e) {
+            done = CompletableFuture.failedFuture(e);
+        }
+        return done.whenComplete(
+                (size, error) -> {
+                    pool.shutdown();
+                    rebuilding.set(false);
+                    if (error != null) {
+                        log.warn("Перестройка индекса перехода не удалась: {}", error.getMessage());
+                        return;
+                    }
+                    long elapsed = System.nanoTime() - started;
+                    warmUpTimer.record(Duration.ofNanos(elapsed));
+                    log.info(
+                            "Индекс перехода перестроен: {} ссылок ({} горячих) за {} мс, {} потоков",
+                            size,
+                            hot.size(),
+                            elapsed / 1_000_000,
+                            parallelism);
+                });
+    }
+
+    /** Горячие коды прошлого запуска — первыми, чтобы первые переходы после старта попадали. */
+    private void loadHot(List<String> hot, ExecutorService pool) {
+        int chunk = Math.max(1, (hot.size() + parallelism - 1) / parallelism);
+        List<CompletableFuture<Void>> loads = new ArrayList<>();
+        for (int from = 0; from < hot.size(); from += chunk) {
+            List<String> codes = hot.subList(from, Math.min(from + chunk, hot.size()));
+            loads.add(
+                    CompletableFuture.runAsync(
+                            () ->
+                                    codes.forEach(
+                                            code ->
+                                                    linkStore
+                                                            .findByShortCode(code)
+                                                            .ifPresent(this::putQuietly)),
+                            pool));
+        }
+        CompletableFuture.allOf(loads.toArray(CompletableFuture[]::new)).join();
+    }
+
+    /** Делит (0, maxId] на равные диапазоны — по одному на поток — и сканирует их страницами. */
+    private CompletableFuture<Integer> scanRanges(ExecutorService pool) {
+        long maxId = linkStore.findMaxId();
+        if (maxId == 0) {
+            progress = 1;
+            return CompletableFuture.completedFuture(index.size());
+        }
+        int ranges = (int) Math.min(parallelism, maxId);
+        long span = (maxId + ranges - 1) / ranges;
+        AtomicLong scanned = new AtomicLong();
+        List<CompletableFuture<Void>> scans = new ArrayList<>();
+        for (int r = 0; r < ranges; r++) {
+            long fromExclusive = r * span;
+            long toInclusive = Math.min(maxId, fromExclusive + span);
+            scans.add(
+                    CompletableFuture.runAsync(
+                            () -> scanRange(fromExclusive, toInclusive, maxId, scanned), pool));
+        }
+        return CompletableFuture.allOf(scans.toArray(CompletableFuture[]::new))
+                .thenApply(
+                        ignored -> {
+                            progress = 1;
+                            return index.size();
+                        });
+    }
+
+    private void scanRange(long fromExclusive, long toInclusive, long maxId, AtomicLong scanned) {
+        long afterId = fromExclusive;
+        while (afterId < toInclusive) {
+            List<Link> page = linkStore.findPage(afterId, REBUILD_PAGE);
+            for (Link link : page) {
+                if (link.getId() > toInclusive) {
+                    break;
+                }
+                putQuietly(link);
+            }
+            long next =
+                    page.size() < REBUILD_PAGE
+                            ? toInclusive
+                            : Math.min(page.get(page.size() - 1).getId(), toInclusive);
+            progress = (double) scanned.addAndGet(next - afterId) / maxId;
+            afterId = next;
+        }
+    }
+
+    /** Вставка при перестройке: переполнение только считается, новая перестройка не запускается. */
+    private void putQuietly(Link link) {
+        if (!index.put(link)) {
+            rejected.increment();
+        }
+    }
+
+    private List<String> loadHotKeys() {
+        if (hotKeysFile == null || !Files.exists(hotKeysFile)) {
+            return List.of();
+        }
+        try {
+            return Files.readAllLines(hotKeysFile).stream()
+                    .filter(line -> !line.isBlank())
+                    .limit(hotKeys.length())
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Не удалось прочитать горячие коды {}: {}", hotKeysFile, e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Сохраняет недавно запрошенные коды для прогрева следующего запуска. Вызывается периодически и
+     * при остановке: прогрев нужен прежде всего после аварийной остановки, когда {@link #close} не
+     * выполняется.
+     */
+    public synchronized void saveHotKeys() {
+        if (index == null || hotKeysFile == null) {
+            return;
+        }
+        Set<String> codes = new LinkedHashSet<>();
+        for (int i = 0; i < hotKeys.length(); i++) {
+            String code = hotKeys.get(i);
+            if (code != null) {
+                codes.add(code);
+            }
+        }
+        try {
+            Path parent = hotKeysFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = parent.resolve(hotKeysFile.getFileName() + ".tmp");
+            Files.write(tmp, codes);
+            Files.move(
+                    tmp,
+                    hotKeysFile,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Не удалось сохранить горячие коды {}: {}", hotKeysFile, e.getMessage());
+        }
+    }
+}
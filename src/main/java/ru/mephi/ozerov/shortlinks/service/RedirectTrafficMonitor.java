@@ -0,0 +1,28 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.stereotype.Service;
+
+/**
+ * Счётчик переходов по коротким ссылкам для фоновых задач, которым нужно уступать трафику. Запись —
+ * один {@link LongAdder} без блокировок на горячем пути; темп считается при чтении за интервал с
+ * предыдущего чтения, поэтому читатель должен быть один ({@link AdaptiveExpirySampler}).
+ */
+@Service
+public class RedirectTrafficMonitor {
+
+    private final LongAdder requests = new LongAdder();
+    private long lastReadNanos = System.nanoTime();
+
+    public void record() {
+        requests.increment();
+    }
+
+    /** Переходов в секунду с предыдущего вызова. */
+    public synchronized double ratePerSecond() {
+        long now = System.nanoTime();
+        long elapsed = Math.max(now - lastReadNanos, 1);
+        lastReadNanos = now;
+        return requests.sumThenReset() * 1_000_000_000.0 / elapsed;
+    }
+}
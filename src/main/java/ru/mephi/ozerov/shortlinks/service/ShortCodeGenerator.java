@@ -27,4 +27,12 @@ public class ShortCodeGenerator {
     public String generate() {
         return generate(DEFAULT_LENGTH);
     }
+
+    /**
+     * Код стандартной длины, начинающийся с prefix (подсказка хранилища, см. {@link
+     * ru.mephi.ozerov.shortlinks.store.LinkStore#codePrefix()}); остаток — случайный.
+     */
+    public String generate(String prefix) {
+        return prefix + generate(Math.max(DEFAULT_LENGTH - prefix.length(), 1));
+    }
 }
@@ -0,0 +1,162 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.mephi.ozerov.shortlinks.entity.ArchiveReason;
+import ru.mephi.ozerov.shortlinks.entity.UserSummary;
+import ru.mephi.ozerov.shortlinks.repository.ArchivedLinkRepository;
+import ru.mephi.ozerov.shortlinks.repository.NotificationRepository;
+import ru.mephi.ozerov.shortlinks.repository.UserSummaryRepository;
+import ru.mephi.ozerov.shortlinks.store.LinkStore;
+
+/**
+ * Поддерживает сводку по пользователю (ссылки и непрочитанные уведомления). Каждое изменение — один
+ * атомарный UPDATE счётчиков и версии данных пользователя в транзакции вызывающего сервиса.
+ *
+ * <p>Если строки сводки ещё нет (пользователь создан до появления сводки), она один раз
+ * пересчитывается по хранилищу ссылок, таблицам архива и уведомлений. Пересчёт выполняется после
+ * изменения, поэтому приращение в этом случае не применяется. Два первых изменения одного
+ * пользователя могут пересчитывать сводку одновременно: строку вставляет первый, а второй, получив
+ * конфликт ключа, применяет к ней своё приращение (его изменение первому ещё не было видно).
+ */
+@Service
+@RequiredArgsConstructor
+public class UserSummaryService {
+
+    private final UserSummaryRepository userSummaryRepository;
+    private final LinkStore linkStore;
+    private final NotificationRepository notificationRepository;
+    private final ArchivedLinkRepository archivedLinkRepository;
+
+    /** Сводка пользователя. Для неизвестного пользователя — нулевая, без записи в БД. */
+    @Transactional
+    public UserSummary getSummary(UUID userId) {
+        return userSummaryRepository
+                .findById(userId)
+                .orElseGet(
+                        () -> {
+                            UserSummary rebuilt = rebuild(userId);
+                            if (isEmpty(rebuilt) || userSummaryRepository.insertIfAbsent(rebuilt)) {
+                                return rebuilt;
+                            }
+                            return userSummaryRepository.findById(userId).orElse(rebuilt);
+                        });
+    }
+
+    /**
+     * Данные пользователя изменились без изменения счётчиков (правка ссылки, переход): только
+     * версия.
+     */
+    @Transactional
+    public void touch(UUID userId) {
+        apply(userId, 0, 0, 0, 0, 0);
+    }
+
+    @Transactional
+    public void onLinkCreated(UUID userId) {
+        apply(userId, 1, 1, 0, 0, 0);
+    }
+
+    /** Ссылка деактивирована из-за исчерпания лимита переходов. */
+    @Transactional
+    public void onLinkLimitReached(UUID userId) {
+        apply(userId, 0, -1, 0, 1, 0);
+    }
+
+    /**
+     * Активные ссылки пользователя удалены по истечении времени жизни, для каждой создано
+     * непрочитанное уведомление.
+     */
+    @Transactional
+    public void onLinksExpired(UUID userId, long count) {
+        apply(userId, -count, -count, count, 0, count);
+    }
+
+    /**
+     * Деактивированные ссылки перенесены в холодный архив: они больше не хранятся в горячей
+     * таблице, но остаются в числе исчерпавших лимит.
+     */
+    @Transactional
+    public void onLinksArchived(UUID userId, long count) {
+        apply(userId, -count, 0, 0, 0, 0);
+    }
+
+    /** Ссылка удалена владельцем; wasActive — была ли она активна на момент удаления. */
+    @Transactional
+    public void onLinkDeleted(UUID userId, boolean wasActive) {
+        apply(userId, -1, wasActive ? -1 : 0, 0, wasActive ? 0 : -1, 0);
+    }
+
+    @Transactional
+    public void onNotificationCreated(UUID userId) {
+        onNotificationsCreated(userId, 1);
+    }
+
+    @Transactional
+    public void onNotificationsCreated(UUID userId, long count) {
+        apply(userId, 0, 0, 0, 0, count);
+    }
+
+    /** Уведомления удалены очисткой или схлопнуты; unread — сколько из них были непрочитанными. */
+    @Transactional
+    public void onNotificationsRemoved(UUID userId, long unread) {
+        apply(userId, 0, 0, 0, 0, -unread);
+    }
+
+    @Transactional
+    public void onNotificationsRead(UUID userId, long count) {
+        apply(userId, 0, 0, 0, 0, -count);
+    }
+
+    private void apply(
+            UUID userId,
+            long totalLinks,
+            long activeLinks,
+            long expiredLinks,
+            long limitReachedLinks,
+            long unreadNotifications) {
+        int updated =
+                userSummaryRepository.applyDelta(
+                        userId,
+                        totalLinks,
+                        activeLinks,
+                        expiredLinks,
+                        limitReachedLinks,
+                        unreadNotifications);
+        if (updated == 0 && !userSummaryRepository.insertIfAbsent(rebuild(userId))) {
+            userSummaryRepository.applyDelta(
+                    userId,
+                    totalLinks,
+                    activeLinks,
+                    expiredLinks,
+                    limitReachedLinks,
+                    unreadNotifications);
+        }
+    }
+
+    /** Пересчёт сводки по текущему состоянию таблиц (изменения текущей транзакции уже видны). */
+    private UserSummary rebuild(UUID userId) {
+        return UserSummary.builder()
+                .userId(userId)
+                .totalLinks(linkStore.countByUserId(userId))
+                .activeLinks(linkStore.countByUserIdAndActive(userId, true))
+                .expiredLinks(
+                        archivedLinkRepository.countByUserIdAndReason(
+                                userId, ArchiveReason.EXPIRED))
+                .limitReachedLinks(
+                        linkStore.countByUserIdAndActive(userId, false)
+                                + archivedLinkRepository.countByUserIdAndReason(
+                                        userId, ArchiveReason.LIMIT_REACHED))
+                .unreadNotifications(notificationRepository.countByUserIdAndReadFlag(userId, false))
+                .version(1L)
+                .build();
+    }
+
+    private static boolean isEmpty(UserSummary s) {
+        return s.getTotalLinks() == 0
+                && s.getExpiredLinks() == 0
+                && s.getUnreadNotifications() == 0;
+    }
+}
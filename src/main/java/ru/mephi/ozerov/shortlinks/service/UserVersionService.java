@@ -0,0 +1,53 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import java.util.Locale;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import ru.mephi.ozerov.shortlinks.repository.UserSummaryRepository;
+
+/**
+ * Версия данных пользователя для условных GET (ETag). Любое изменение ссылок или уведомлений
+ * пользователя увеличивает его версию; контроллеры сравнивают её с If-None-Match и отвечают 304, не
+ * выполняя запрос списка.
+ *
+ * <p>Версия — колонка {@code user_summaries.version} общей БД: её увеличивает каждое приращение
+ * сводки ({@link UserSummaryService}), а изменения без приращения (правка ссылки, переход) — {@link
+ * #bump}. Версия меняется в транзакции изменения, поэтому все узлы видят её вместе с данными, и
+ * проверка ETag — одно чтение по первичному ключу. Пользователь без строки сводки имеет версию 0;
+ * первая же строка создаётся с версией 1.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserVersionService {
+
+    private final UserSummaryService userSummaryService;
+    private final UserSummaryRepository userSummaryRepository;
+
+    /**
+     * Увеличивает версию пользователя в текущей транзакции (для изменений, не меняющих счётчики
+     * сводки).
+     */
+    public void bump(UUID userId) {
+        userSummaryService.touch(userId);
+    }
+
+    public long currentVersion(UUID userId) {
+        return userSummaryRepository.findVersion(userId).orElse(0L);
+    }
+
+    /** Сильный ETag текущей версии данных пользователя. */
+    public String etag(UUID userId) {
+        return "\"" + Integer.toHexString(userId.hashCode()) + "-" + currentVersion(userId) + "\"";
+    }
+
+    /**
+     * Сильный ETag представления, текст которого зависит от языка: тот же ETag с языком локали.
+     * Русский и английский варианты одной версии различаются, поэтому 304 не отдаст клиенту текст
+     * на чужом языке.
+     */
+    public String etag(UUID userId, Locale locale) {
+        String etag = etag(userId);
+        return etag.substring(0, etag.length() - 1) + "-" + locale.getLanguage() + "\"";
+    }
+}
@@ -0,0 +1,248 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import org.springframework.dao.DuplicateKeyException;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.repository.LinkExpiryView;
+
+/**
+ * Ссылки в памяти процесса, без БД: для одиночного узла, тестов и нагрузочных стендов. Содержимое
+ * теряется при перезапуске.
+ *
+ * <p>Ссылки лежат в {@link ConcurrentSkipListMap} по id (упорядоченный обход для колеса и полной
+ * проверки истечения) и не меняются после вставки: каждое изменение заменяет объект целиком, а
+ * инкремент — это {@code computeIfPresent} с проверкой доступности, поэтому лимит не превышается и
+ * без блокировок. Наружу отдаются копии.
+ *
+ * <p>Id продолжают последовательность, начиная после lastId: архив и уведомления ссылаются на
+ * ссылки прошлых запусков по id.
+ */
+public class InMemoryLinkStore implements LinkStore {
+
+    private final ConcurrentSkipListMap<Long, Link> byId = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> byCode = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<Long>> byUser = new ConcurrentHashMap<>();
+    private final AtomicLong sequence;
+
+    public InMemoryLinkStore() {
+        this(0);
+    }
+
+    public InMemoryLinkStore(long lastId) {
+        this.sequence = new AtomicLong(lastId);
+    }
+
+    @Override
+    public Optional<Link> findByShortCode(String shortCode) {
+        Long id = byCode.get(shortCode);
+        return id == null ? Optional.empty() : findById(id);
+    }
+
+    @Override
+    public Optional<Link> findById(long id) {
+        return Optional.ofNullable(byId.get(id)).map(InMemoryLinkStore::copy);
+    }
+
+    @Override
+    public boolean existsByShortCode(String shortCode) {
+        return byCode.containsKey(shortCode);
+    }
+
+    @Override
+    public Link create(Link link) {
+        long id = sequence.incrementAndGet();
+        if (byCode.putIfAbsent(link.getShortCode(), id) != null) {
+            throw new DuplicateKeyException("shortCode уже занят: " + link.getShortCode());
+        }
+        Link stored = link.toBuilder().id(id).build();
+        // Добавление и удаление id пользователя — под блокировкой ключа (см. unindex)
+        byUser.compute(
+                link.getUserId(),
+                (k, set) -> {
+                    Set<Long> userIds = set != null ? set : ConcurrentHashMap.newKeySet();
+                    userIds.add(id);
+                    return userIds;
+                });
+        byId.put(id, stored);
+        link.setId(id);
+        return copy(stored);
+    }
+
+    @Override
+    public Link update(Link link) {
+        Link stored = copy(link);
+        if (byId.replace(link.getId(), stored) == null) {
+            throw new IllegalStateException("Ссылка " + link.getId() + " не найдена");
+        }
+        return copy(stored);
+    }
+
+    @Override
+    public void delete(long id) {
+        Link removed = byId.remove(id);
+        if (removed != null) {
+            unindex(removed);
+        }
+    }
+
+    @Override
+    public List<Link> findByUserId(UUID userId) {
+        return userLinks(userId)
+                .sorted(
+                        Comparator.comparing(Link::getCreatedAt)
+                                .thenComparing(Link::getId)
+                                .reversed())
+                .map(InMemoryLinkStore::copy)
+                .toList();
+    }
+
+    @Override
+    public long countByUserId(UUID userId) {
+        return userLinks(userId).count();
+    }
+
+    @Override
+    public long countByUserIdAndActive(UUID userId, boolean active) {
+        return userLinks(userId).filter(l -> l.getActive() == active).count();
+    }
+
+    @Override
+    public Optional<Link> incrementClicks(String shortCode, Instant now) {
+        Long id = byCode.get(shortCode);
+        if (id == null) {
+            return Optional.empty();
+        }
+        // Функция может быть вызвана повторно при гонке: результат — от последнего вызова
+        AtomicReference<Link> incremented = new AtomicReference<>();
+        byId.computeIfPresent(
+                id,
+                (k, link) -> {
+                    if (!link.isAvailableAt(now)) {
+                        incremented.set(null);
+                        return link;
+                    }
+                    Link next = link.toBuilder().clicksCount(link.getClicksCount() + 1).build();
+                    incremented.set(next);
+                    return next;
+                });
+        return Optional.ofNullable(incremented.get()).map(InMemoryLinkStore::copy);
+    }
+
+    @Override
+    public List<Link> findPage(long afterId, int limit) {
+        return byId.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(InMemoryLinkStore::copy)
+                .toList();
+    }
+
+    @Override
+    public long findMaxId() {
+        Map.Entry<Long, Link> last = byId.lastEntry();
+        return last != null ? last.getKey() : 0;
+    }
+
+    @Override
+    public List<LinkExpiryView> findActiveExpiries(long afterId, int limit) {
+        return byId.tailMap(afterId, false).values().stream()
+                .filter(Link::getActive)
+                .limit(limit)
+                .<LinkExpiryView>map(l -> new LinkExpiry(l.getId(), l.getExpiresAt()))
+                .toList();
+    }
+
+    @Override
+    public List<Long> findExpiredIds(long afterId, Instant now, int limit) {
+        return byId.tailMap(afterId, false).values().stream()
+                .filter(l -> l.getExpiresAt().isBefore(now))
+                .limit(limit)
+                .map(Link::getId)
+                .toList();
+    }
+
+    @Override
+    public List<Link> removeExpired(Collection<Long> ids, Instant now) {
+        List<Link> removed = new ArrayList<>();
+        for (Long id : ids) {
+            Link link;
+            while ((link = byId.get(id)) != null && link.getExpiresAt().isBefore(now)) {
+                // Удаляется только та версия, что проверена: параллельный переход её заменит
+                if (byId.remove(id, link)) {
+                    unindex(link);
+                    removed.add(copy(link));
+                    break;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /** Число ссылок. */
+    int size() {
+        return byId.size();
+    }
+
+    /** Последний выданный id. */
+    long lastId() {
+        return sequence.get();
+    }
+
+    /** Следующие id выдаются после lastId (при восстановлении из снимка). */
+    void advanceSequence(long lastId) {
+        sequence.accumulateAndGet(lastId, Math::max);
+    }
+
+    /** Кладёт ссылку с уже назначенным id (восстановление из снимка и журнала). */
+    void restore(Link link) {
+        Link stored = copy(link);
+        byCode.put(stored.getShortCode(), stored.getId());
+        byUser.compute(
+                stored.getUserId(),
+                (k, set) -> {
+                    Set<Long> userIds = set != null ? set : ConcurrentHashMap.newKeySet();
+                    userIds.add(stored.getId());
+                    return userIds;
+                });
+        byId.put(stored.getId(), stored);
+        advanceSequence(stored.getId());
+    }
+
+    /** Выставляет счётчик переходов без проверок (восстановление из журнала). */
+    void restoreClicks(long id, int clicksCount) {
+        byId.computeIfPresent(id, (k, link) -> link.toBuilder().clicksCount(clicksCount).build());
+    }
+
+    private Stream<Link> userLinks(UUID userId) {
+        return byUser.getOrDefault(userId, Set.of()).stream()
+                .map(byId::get)
+                .filter(Objects::nonNull);
+    }
+
+    private void unindex(Link link) {
+        byCode.remove(link.getShortCode(), link.getId());
+        byUser.computeIfPresent(
+                link.getUserId(),
+                (k, set) -> {
+                    set.remove(link.getId());
+                    return set.isEmpty() ? null : set;
+                });
+    }
+
+    private static Link copy(Link link) {
+        return link.toBuilder().build();
+    }
+}
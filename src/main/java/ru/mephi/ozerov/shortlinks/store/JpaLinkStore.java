@@ -0,0 +1,133 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.repository.LinkExpiryView;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
+
+/**
+ * Ссылки в таблице {@code links} основной БД через {@link LinkRepository}. Инкремент — один
+ * условный UPDATE, после которого строка перечитывается; блокировка строки держится до конца
+ * транзакции вызывающего сервиса.
+ *
+ * <p>С {@code numericCodes} поиск по коду идёт по колонке {@code short_code_num} (код, упакованный
+ * в BIGINT): индекс по long меньше строкового и сравнивает числа, а не строки. Коды, которые не
+ * упаковываются, ищутся по строке.
+ */
+@RequiredArgsConstructor
+public class JpaLinkStore implements LinkStore {
+
+    private final LinkRepository linkRepository;
+    private final boolean numericCodes;
+
+    @Override
+    public Optional<Link> findByShortCode(String shortCode) {
+        long packed = packed(shortCode);
+        return packed != ShortCodeCodec.NOT_PACKABLE
+                ? linkRepository.findByShortCodeNum(packed)
+                : linkRepository.findByShortCode(shortCode);
+    }
+
+    @Override
+    public Optional<Link> findById(long id) {
+        return linkRepository.findById(id);
+    }
+
+    @Override
+    public boolean existsByShortCode(String shortCode) {
+        long packed = packed(shortCode);
+        return packed != ShortCodeCodec.NOT_PACKABLE
+                ? linkRepository.existsByShortCodeNum(packed)
+                : linkRepository.existsByShortCode(shortCode);
+    }
+
+    @Override
+    @Transactional
+    public Link create(Link link) {
+        return linkRepository.save(link);
+    }
+
+    @Override
+    @Transactional
+    public Link update(Link link) {
+        return linkRepository.save(link);
+    }
+
+    @Override
+    @Transactional
+    public void delete(long id) {
+        linkRepository.deleteById(id);
+    }
+
+    @Override
+    public List<Link> findByUserId(UUID userId) {
+        return linkRepository.findByUserIdOrderByCreatedAtDesc(userId);
+    }
+
+    @Override
+    public long countByUserId(UUID userId) {
+        return linkRepository.countByUserId(userId);
+    }
+
+    @Override
+    public long countByUserIdAndActive(UUID userId, boolean active) {
+        return linkRepository.countByUserIdAndActive(userId, active);
+    }
+
+    @Override
+    @Transactional
+    public Optional<Link> incrementClicks(String shortCode, Instant now) {
+        long packed = packed(shortCode);
+        int updated =
+                packed != ShortCodeCodec.NOT_PACKABLE
+                        ? linkRepository.incrementClicksIfAvailableByNum(packed, now)
+                        : linkRepository.incrementClicksIfAvailable(shortCode, now);
+        return updated == 0 ? Optional.empty() : findByShortCode(shortCode);
+    }
+
+    @Override
+    public List<Link> findPage(long afterId, int limit) {
+        return linkRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public long findMaxId() {
+        Long maxId = linkRepository.findMaxId();
+        return maxId != null ? maxId : 0;
+    }
+
+    @Override
+    public List<LinkExpiryView> findActiveExpiries(long afterId, int limit) {
+        return linkRepository.findActiveExpiries(afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<Long> findExpiredIds(long afterId, Instant now, int limit) {
+        return linkRepository.findExpiredIds(afterId, now, PageRequest.of(0, limit));
+    }
+
+    @Override
+    @Transactional
+    public List<Link> removeExpired(Collection<Long> ids, Instant now) {
+        List<Link> links = linkRepository.lockExpiredByIds(ids, now);
+        linkRepository.deleteAllInBatch(links);
+        return links;
+    }
+
+    @Override
+    public boolean backedByLinksTable() {
+        return true;
+    }
+
+    /** Упакованный код, если включён числовой поиск; иначе {@link ShortCodeCodec#NOT_PACKABLE}. */
+    private long packed(String shortCode) {
+        return numericCodes ? ShortCodeCodec.pack(shortCode) : ShortCodeCodec.NOT_PACKABLE;
+    }
+}
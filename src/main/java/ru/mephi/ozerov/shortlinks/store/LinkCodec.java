@@ -0,0 +1,100 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.UUID;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+
+/** Компактная двоичная запись ссылки для движков вне SQL (MVStore, журнал и снимок). */
+final class LinkCodec {
+
+    private static final byte FORMAT = 1;
+
+    private LinkCodec() {}
+
+    static byte[] encode(Link link) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out, link);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Link decode(byte[] value) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value))) {
+            return read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void write(DataOutput out, Link link) throws IOException {
+        out.writeByte(FORMAT);
+        out.writeLong(link.getId());
+        out.writeUTF(link.getShortCode());
+        out.writeUTF(link.getOriginalUrl());
+        out.writeLong(link.getUserId().getMostSignificantBits());
+        out.writeLong(link.getUserId().getLeastSignificantBits());
+        out.writeInt(link.getClickLimit() != null ? link.getClickLimit() : -1);
+        out.writeInt(link.getClicksCount());
+        writeInstant(out, link.getExpiresAt());
+        out.writeBoolean(link.getExpiryBucket() != null);
+        if (link.getExpiryBucket() != null) {
+            out.writeLong(link.getExpiryBucket());
+        }
+        writeInstant(out, link.getCreatedAt());
+        out.writeBoolean(link.getActive());
+        writeInstant(out, link.getDeactivatedAt());
+        out.writeBoolean(link.getNotificationPending());
+    }
+
+    static Link read(DataInput in) throws IOException {
+        byte format = in.readByte();
+        if (format != FORMAT) {
+            throw new IllegalStateException("Неизвестный формат записи ссылки: " + format);
+        }
+        long id = in.readLong();
+        String shortCode = in.readUTF();
+        String originalUrl = in.readUTF();
+        UUID userId = new UUID(in.readLong(), in.readLong());
+        int clickLimit = in.readInt();
+        int clicksCount = in.readInt();
+        Instant expiresAt = readInstant(in);
+        Long expiryBucket = in.readBoolean() ? in.readLong() : null;
+        return Link.builder()
+                .id(id)
+                .shortCode(shortCode)
+                .originalUrl(originalUrl)
+                .userId(userId)
+                .clickLimit(clickLimit >= 0 ? clickLimit : null)
+                .clicksCount(clicksCount)
+                .expiresAt(expiresAt)
+                .expiryBucket(expiryBucket)
+                .createdAt(readInstant(in))
+                .active(in.readBoolean())
+                .deactivatedAt(readInstant(in))
+                .notificationPending(in.readBoolean())
+                .build();
+    }
+
+    private static void writeInstant(DataOutput out, Instant instant) throws IOException {
+        out.writeBoolean(instant != null);
+        if (instant != null) {
+            out.writeLong(instant.getEpochSecond());
+            out.writeInt(instant.getNano());
+        }
+    }
+
+    private static Instant readInstant(DataInput in) throws IOException {
+        return in.readBoolean() ? Instant.ofEpochSecond(in.readLong(), in.readInt()) : null;
+    }
+}
@@ -0,0 +1,14 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import java.time.Instant;
+import lombok.Value;
+import ru.mephi.ozerov.shortlinks.repository.LinkExpiryView;
+
+/** {@link LinkExpiryView} движков, которые строят выборку сами, а не проекцией Spring Data. */
+@Value
+class LinkExpiry implements LinkExpiryView {
+
+    Long id;
+
+    Instant expiresAt;
+}
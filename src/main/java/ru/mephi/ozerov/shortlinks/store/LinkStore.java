@@ -0,0 +1,100 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.repository.LinkExpiryView;
+
+/**
+ * Хранилище горячих ссылок. Движок выбирается настройкой {@code shortlinks.store.engine} (см.
+ * {@link ru.mephi.ozerov.shortlinks.config.LinkStoreConfig}):
+ *
+ * <ul>
+ *   <li>{@code jpa} — таблица {@code links} основной БД ({@link JpaLinkStore}, по умолчанию);
+ *   <li>{@code memory} — конкурентные хэш-таблицы в памяти процесса ({@link InMemoryLinkStore});
+ *   <li>{@code mvstore} — встроенное key-value хранилище H2 MVStore в отдельном файле ({@link
+ *       MvStoreLinkStore});
+ *   <li>{@code wal} — память процесса с журналом и снимками ({@link WalLinkStore});
+ *   <li>{@code sharded} — N шардов MVStore с маршрутизацией по коду ({@link ShardedLinkStore}).
+ * </ul>
+ *
+ * <p>Все движки обязаны вести себя одинаково (см. общий набор тестов {@code
+ * LinkStoreContractTest}): id назначается при создании и растёт монотонно, shortCode уникален,
+ * {@link #incrementClicks} атомарен. Изменения возвращённой ссылки сохраняются только через {@link
+ * #update}: движки вне JPA отдают копии, а не управляемые сущности.
+ */
+public interface LinkStore {
+
+    Optional<Link> findByShortCode(String shortCode);
+
+    Optional<Link> findById(long id);
+
+    boolean existsByShortCode(String shortCode);
+
+    /** Сохраняет новую ссылку и назначает ей id. */
+    Link create(Link link);
+
+    /** Перезаписывает существующую ссылку (по id). */
+    Link update(Link link);
+
+    void delete(long id);
+
+    /** Ссылки пользователя, новые первыми. */
+    List<Link> findByUserId(UUID userId);
+
+    long countByUserId(UUID userId);
+
+    long countByUserIdAndActive(UUID userId, boolean active);
+
+    /**
+     * Условный инкремент счётчика переходов: +1, только если ссылка активна, не истекла к моменту
+     * now и не исчерпала лимит. Проверка и запись атомарны, поэтому параллельные переходы не
+     * превышают лимит.
+     *
+     * @return ссылка после инкремента; пусто, если ссылки нет или она недоступна
+     */
+    Optional<Link> incrementClicks(String shortCode, Instant now);
+
+    /** Страница ссылок после afterId по возрастанию id — для перестройки производных индексов. */
+    List<Link> findPage(long afterId, int limit);
+
+    /** Наибольший id среди хранимых ссылок; 0, если ссылок нет. Граница диапазонов сканирования. */
+    long findMaxId();
+
+    /**
+     * Страница активных ссылок (id и срок жизни) после afterId по возрастанию id — для загрузки
+     * колеса истечения.
+     */
+    List<LinkExpiryView> findActiveExpiries(long afterId, int limit);
+
+    /** Id ссылок (активных и деактивированных), истёкших к моменту now, после afterId. */
+    List<Long> findExpiredIds(long afterId, Instant now, int limit);
+
+    /**
+     * Удаляет из переданных ссылки, истёкшие к моменту now; остальные не трогает.
+     *
+     * @return удалённые ссылки
+     */
+    List<Link> removeExpired(Collection<Long> ids, Instant now);
+
+    /**
+     * Начало, с которого генератор должен начать новый shortCode, — подсказка, по которой движок
+     * потом находит ссылку (у {@link ShardedLinkStore} — символ шарда). Пусто — код любой.
+     */
+    default String codePrefix() {
+        return "";
+    }
+
+    /**
+     * Хранятся ли ссылки в таблице {@code links} основной БД. Только тогда работают фоновые
+     * процессы на множественных SQL-операторах (корзины истечения, выборочная проверка, архив
+     * деактивированных, outbox уведомлений); для остальных движков истечение идёт через {@link
+     * #findExpiredIds} и {@link #removeExpired}.
+     */
+    default boolean backedByLinksTable() {
+        return false;
+    }
+}
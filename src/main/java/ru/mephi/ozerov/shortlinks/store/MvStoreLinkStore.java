@@ -0,0 +1,262 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.springframework.dao.DuplicateKeyException;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.repository.LinkExpiryView;
+
+/**
+ * Ссылки во встроенном key-value хранилище H2 MVStore — отдельном файле без SQL-слоя. Три карты:
+ * ссылка по id (компактная двоичная запись), id по shortCode и индекс пользователя с ключом {@code
+ * userId/id}.
+ *
+ * <p>Инкремент — оптимистичный цикл: прочитать запись, проверить доступность, заменить только если
+ * запись не изменилась ({@link MVMap#replace(Object, Object, Object)}). MVStore сам сбрасывает
+ * изменения на диск в фоне (примерно раз в секунду); {@link #close()} при остановке дописывает
+ * остаток. Без имени файла хранилище работает только в памяти.
+ */
+@Slf4j
+public class MvStoreLinkStore implements LinkStore, AutoCloseable {
+
+    private final MVStore store;
+    private final MVMap<Long, byte[]> links;
+    private final MVMap<String, Long> codes;
+    private final MVMap<String, Long> userIndex;
+    private final AtomicLong sequence;
+
+    private MvStoreLinkStore(MVStore store, long minLastId) {
+        this.store = store;
+        this.links = store.openMap("links");
+        this.codes = store.openMap("codes");
+        this.userIndex = store.openMap("links_by_user");
+        Long lastId = links.lastKey();
+        this.sequence = new AtomicLong(Math.max(lastId != null ? lastId : 0, minLastId));
+    }
+
+    /**
+     * Открывает хранилище.
+     *
+     * @param fileName путь к файлу; пусто — хранилище только в памяти
+     * @param minLastId id не меньше которого уже заняты (архив и уведомления ссылаются на ссылки по
+     *     id, файл хранилища мог быть удалён)
+     */
+    public static MvStoreLinkStore open(String fileName, long minLastId) {
+        MVStore.Builder builder = new MVStore.Builder();
+        if (fileName != null && !fileName.isBlank()) {
+            createParentDirectories(Path.of(fileName));
+            builder.fileName(fileName);
+        }
+        MvStoreLinkStore linkStore = new MvStoreLinkStore(builder.open(), minLastId);
+        log.info("Хранилище ссылок MVStore открыто: {} ссылок", linkStore.links.sizeAsLong());
+        return linkStore;
+    }
+
+    @Override
+    public Optional<Link> findByShortCode(String shortCode) {
+        Long id = codes.get(shortCode);
+        return id == null ? Optional.empty() : findById(id);
+    }
+
+    @Override
+    public Optional<Link> findById(long id) {
+        return Optional.ofNullable(links.get(id)).map(LinkCodec::decode);
+    }
+
+    @Override
+    public boolean existsByShortCode(String shortCode) {
+        return codes.containsKey(shortCode);
+    }
+
+    @Override
+    public Link create(Link link) {
+        return create(link, sequence.incrementAndGet());
+    }
+
+    /** Создание с id, назначенным снаружи (id шардов назначает {@link ShardedLinkStore}). */
+    Link create(Link link, long id) {
+        if (codes.putIfAbsent(link.getShortCode(), id) != null) {
+            throw new DuplicateKeyException("shortCode уже занят: " + link.getShortCode());
+        }
+        Link stored = link.toBuilder().id(id).build();
+        links.put(id, LinkCodec.encode(stored));
+        userIndex.put(userKey(stored), id);
+        link.setId(id);
+        return stored;
+    }
+
+    @Override
+    public Link update(Link link) {
+        if (links.replace(link.getId(), LinkCodec.encode(link)) == null) {
+            throw new IllegalStateException("Ссылка " + link.getId() + " не найдена");
+        }
+        return link.toBuilder().build();
+    }
+
+    @Override
+    public void delete(long id) {
+        byte[] removed = links.remove(id);
+        if (removed != null) {
+            unindex(LinkCodec.decode(removed));
+        }
+    }
+
+    @Override
+    public List<Link> findByUserId(UUID userId) {
+        return userLinks(userId).stream()
+                .sorted(
+                        Comparator.comparing(Link::getCreatedAt)
+                                .thenComparing(Link::getId)
+                                .reversed())
+                .toList();
+    }
+
+    @Override
+    public long countByUserId(UUID userId) {
+        return userLinks(userId).size();
+    }
+
+    @Override
+    public long countByUserIdAndActive(UUID userId, boolean active) {
+        return userLinks(userId).stream().filter(l -> l.getActive() == active).count();
+    }
+
+    @Override
+    public Optional<Link> incrementClicks(String shortCode, Instant now) {
+        Long id = codes.get(shortCode);
+        if (id == null) {
+            return Optional.empty();
+        }
+        while (true) {
+            byte[] current = links.get(id);
+            if (current == null) {
+                return Optional.empty();
+            }
+            Link link = LinkCodec.decode(current);
+            if (!link.isAvailableAt(now)) {
+                return Optional.empty();
+            }
+            link.setClicksCount(link.getClicksCount() + 1);
+            if (links.replace(id, current, LinkCodec.encode(link))) {
+                return Optional.of(link);
+            }
+        }
+    }
+
+    @Override
+    public List<Link> findPage(long afterId, int limit) {
+        List<Link> page = new ArrayList<>();
+        Cursor<Long, byte[]> cursor = links.cursor(afterId + 1);
+        while (page.size() < limit && cursor.hasNext()) {
+            cursor.next();
+            page.add(LinkCodec.decode(cursor.getValue()));
+        }
+        return page;
+    }
+
+    @Override
+    public long findMaxId() {
+        Long lastId = links.lastKey();
+        return lastId != null ? lastId : 0;
+    }
+
+    @Override
+    public List<LinkExpiryView> findActiveExpiries(long afterId, int limit) {
+        List<LinkExpiryView> page = new ArrayList<>();
+        Cursor<Long, byte[]> cursor = links.cursor(afterId + 1);
+        while (page.size() < limit && cursor.hasNext()) {
+            cursor.next();
+            Link link = LinkCodec.decode(cursor.getValue());
+            if (link.getActive()) {
+                page.add(new LinkExpiry(link.getId(), link.getExpiresAt()));
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public List<Long> findExpiredIds(long afterId, Instant now, int limit) {
+        List<Long> page = new ArrayList<>();
+        Cursor<Long, byte[]> cursor = links.cursor(afterId + 1);
+        while (page.size() < limit && cursor.hasNext()) {
+            long id = cursor.next();
+            if (LinkCodec.decode(cursor.getValue()).getExpiresAt().isBefore(now)) {
+                page.add(id);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public List<Link> removeExpired(Collection<Long> ids, Instant now) {
+        List<Link> removed = new ArrayList<>();
+        for (Long id : ids) {
+            byte[] current;
+            while ((current = links.get(id)) != null) {
+                Link link = LinkCodec.decode(current);
+                if (!link.getExpiresAt().isBefore(now)) {
+                    break;
+                }
+                if (links.remove(id, current)) {
+                    unindex(link);
+                    removed.add(link);
+                    break;
+                }
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    private List<Link> userLinks(UUID userId) {
+        String prefix = userId + "/";
+        List<Link> result = new ArrayList<>();
+        Cursor<String, Long> cursor = userIndex.cursor(prefix);
+        while (cursor.hasNext() && cursor.next().startsWith(prefix)) {
+            byte[] value = links.get(cursor.getValue());
+            if (value != null) {
+                result.add(LinkCodec.decode(value));
+            }
+        }
+        return result;
+    }
+
+    private void unindex(Link link) {
+        codes.remove(link.getShortCode(), link.getId());
+        userIndex.remove(userKey(link));
+    }
+
+    /**
+     * Ключ индекса пользователя; id дополнен нулями, чтобы ключи одного пользователя шли подряд.
+     */
+    private static String userKey(Link link) {
+        return link.getUserId() + "/" + String.format("%019d", link.getId());
+    }
+
+    private static void createParentDirectories(Path file) {
+        Path parent = file.toAbsolutePath().getParent();
+        try {
+            Files.createDirectories(parent);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
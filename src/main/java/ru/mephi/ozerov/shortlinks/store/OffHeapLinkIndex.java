@@ -0,0 +1,395 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+
+/**
+ * Индекс shortCode → компактная запись ссылки вне кучи: открытая адресация с линейным пробированием
+ * в одном буфере — отображённом в память файле или direct {@link ByteBuffer}. Ключ — код,
+ * упакованный в long ({@link ShortCodeCodec}); миллионы записей не создают ни объектов, ни нагрузки
+ * на GC.
+ *
+ * <p>Раскладка буфера: заголовок {@value #HEADER} байт, таблица из {@code capacity} слотов по
+ * {@value #SLOT} байт (ключ, id, владелец двумя long, expiresAt в миллисекундах, указатель на URL,
+ * лимит и счётчик переходов, флаги, длина URL), затем куча URL (UTF-8, только добавление). URL
+ * перезаписанной или удалённой записи остаётся в куче до {@link #clear()}.
+ *
+ * <p>Файл переживает перезапуск: заголовок помнит, был ли индекс закрыт штатно ({@link #close()}).
+ * После аварийной остановки или при другой раскладке индекс открывается пустым ({@link #reopened()}
+ * = false) и должен быть перестроен по хранилищу.
+ *
+ * <p>Записи — снимки для быстрой проверки на пути перехода; источник истины — {@link LinkStore}.
+ * Чтения идут параллельно под разделяемой блокировкой, записи — под исключающей.
+ */
+public final class OffHeapLinkIndex implements AutoCloseable {
+
+    static final int HEADER = 64;
+    static final int SLOT = 64;
+
+    private static final long MAGIC = 0x53484f52544c4e4bL;
+    private static final int VERSION = 1;
+    private static final int STATE_CLEAN = 0;
+    private static final int STATE_OPEN = 1;
+
+    private static final long EMPTY = 0;
+    private static final long TOMBSTONE = -1;
+
+    // Заголовок
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 8;
+    private static final int H_CAPACITY = 12;
+    private static final int H_URL_HEAP = 16;
+    private static final int H_SIZE = 20;
+    private static final int H_USED = 24;
+    private static final int H_STATE = 28;
+    private static final int H_URL_USED = 32;
+
+    // Слот
+    private static final int S_KEY = 0;
+    private static final int S_ID = 8;
+    private static final int S_USER_MSB = 16;
+    private static final int S_USER_LSB = 24;
+    private static final int S_EXPIRES = 32;
+    private static final int S_URL_OFFSET = 40;
+    private static final int S_LIMIT = 48;
+    private static final int S_CLICKS = 52;
+    private static final int S_FLAGS = 56;
+    private static final int S_URL_LENGTH = 60;
+
+    private static final int FLAG_ACTIVE = 1;
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final int mask;
+    private final int shift;
+    private final int maxUsed;
+    private final int urlHeapStart;
+    private final int urlHeapBytes;
+    private final boolean reopened;
+    private final StampedLock lock = new StampedLock();
+
+    private int size;
+    private int used;
+    private int urlUsed;
+
+    private OffHeapLinkIndex(
+            ByteBuffer buffer, int capacity, int urlHeapBytes, boolean existingFile) {
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.shift = Long.numberOfLeadingZeros(capacity) + 1;
+        this.maxUsed = capacity / 4 * 3;
+        this.urlHeapStart = HEADER + capacity * SLOT;
+        this.urlHeapBytes = urlHeapBytes;
+        this.reopened = existingFile && headerMatches();
+        if (reopened) {
+            size = buffer.getInt(H_SIZE);
+            used = buffer.getInt(H_USED);
+            urlUsed = (int) buffer.getLong(H_URL_USED);
+        } else {
+            buffer.putLong(H_MAGIC, MAGIC);
+            buffer.putInt(H_VERSION, VERSION);
+            buffer.putInt(H_CAPACITY, capacity);
+            buffer.putInt(H_URL_HEAP, urlHeapBytes);
+            clearSlots();
+        }
+        buffer.putInt(H_STATE, STATE_OPEN);
+    }
+
+    /**
+     * Открывает индекс.
+     *
+     * @param file файл индекса; {@code null} — direct-буфер без сохранения между запусками
+     * @param capacity число слотов, степень двойки (заполняется не больше чем на 3/4)
+     * @param urlHeapBytes размер кучи URL в байтах
+     */
+    public static OffHeapLinkIndex open(Path file, int capacity, int urlHeapBytes) {
+        if (capacity < 16 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(
+                    "Число слотов должно быть степенью двойки: " + capacity);
+        }
+        long total = HEADER + (long) capacity * SLOT + urlHeapBytes;
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Индекс больше 2 ГБ: " + total + " байт");
+        }
+        if (file == null) {
+            return new OffHeapLinkIndex(
+                    ByteBuffer.allocateDirect((int) total), capacity, urlHeapBytes, false);
+        }
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (FileChannel channel =
+                    FileChannel.open(
+                            file,
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.READ,
+                            StandardOpenOption.WRITE)) {
+                boolean existing = channel.size() == total;
+                if (!existing) {
+                    channel.truncate(0);
+                }
+                // Отображение остаётся действительным и после закрытия канала
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, total);
+                return new OffHeapLinkIndex(mapped, capacity, urlHeapBytes, existing);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Открыт ли индекс из файла, закрытого штатно (записи можно использовать без перестройки). */
+    public boolean reopened() {
+        return reopened;
+    }
+
+    /**
+     * Добавляет или заменяет запись ссылки.
+     *
+     * @return false, если код не упаковывается, таблица заполнена или куча URL исчерпана (прежняя
+     *     запись с другим URL тогда удаляется)
+     */
+    public boolean put(Link link) {
+        long key = ShortCodeCodec.pack(link.getShortCode());
+        if (key == ShortCodeCodec.NOT_PACKABLE) {
+            return false;
+        }
+        byte[] url = link.getOriginalUrl().getBytes(StandardCharsets.UTF_8);
+        long stamp = lock.writeLock();
+        try {
+            int found = probe(key);
+            int slot;
+            int urlOffset;
+            if (found >= 0) {
+                slot = found;
+                urlOffset = sameUrl(slot, url) ? urlOffsetOf(slot) : allocateUrl(url);
+                if (urlOffset < 0) {
+                    removeSlot(slot);
+                    return false;
+                }
+            } else {
+                slot = -1 - found;
+                boolean reuse = buffer.getLong(offset(slot) + S_KEY) == TOMBSTONE;
+                if (!reuse && used >= maxUsed) {
+                    return false;
+                }
+                urlOffset = allocateUrl(url);
+                if (urlOffset < 0) {
+                    return false;
+                }
+                if (!reuse) {
+                    used++;
+                }
+                size++;
+            }
+            write(slot, key, link, urlOffset, url.length);
+            writeCounters();
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Запись по коду. Возвращаемая ссылка неполная: нет createdAt, корзины истечения, времени
+     * деактивации; expiresAt — с точностью до миллисекунды.
+     */
+    public Optional<Link> get(String shortCode) {
+        long key = ShortCodeCodec.pack(shortCode);
+        if (key == ShortCodeCodec.NOT_PACKABLE) {
+            return Optional.empty();
+        }
+        long stamp = lock.readLock();
+        try {
+            int slot = probe(key);
+            return slot < 0 ? Optional.empty() : Optional.of(read(slot, shortCode));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean remove(String shortCode) {
+        long key = ShortCodeCodec.pack(shortCode);
+        if (key == ShortCodeCodec.NOT_PACKABLE) {
+            return false;
+        }
+        long stamp = lock.writeLock();
+        try {
+            int slot = probe(key);
+            if (slot < 0) {
+                return false;
+            }
+            removeSlot(slot);
+            writeCounters();
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Очищает таблицу и кучу URL (перед перестройкой). */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            clearSlots();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Заполненность: большая из долей занятых слотов (с удалёнными) и занятой кучи URL. */
+    public double load() {
+        long stamp = lock.readLock();
+        try {
+            return Math.max((double) used / maxUsed, (double) urlUsed / urlHeapBytes);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Помечает индекс закрытым штатно и сбрасывает отображённый файл на диск. */
+    @Override
+    public void close() {
+        long stamp = lock.writeLock();
+        try {
+            writeCounters();
+            buffer.putInt(H_STATE, STATE_CLEAN);
+            if (buffer instanceof MappedByteBuffer mapped) {
+                mapped.force();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private boolean headerMatches() {
+        return buffer.getLong(H_MAGIC) == MAGIC
+                && buffer.getInt(H_VERSION) == VERSION
+                && buffer.getInt(H_CAPACITY) == capacity
+                && buffer.getInt(H_URL_HEAP) == urlHeapBytes
+                && buffer.getInt(H_STATE) == STATE_CLEAN;
+    }
+
+    /** Слот с ключом или {@code -1 - слот для вставки} (первый удалённый по пути либо пустой). */
+    private int probe(long key) {
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+        int free = -1;
+        for (int i = 0; i < capacity; i++) {
+            long current = buffer.getLong(offset(slot) + S_KEY);
+            if (current == key) {
+                return slot;
+            }
+            if (current == EMPTY) {
+                return -1 - (free >= 0 ? free : slot);
+            }
+            if (current == TOMBSTONE && free < 0) {
+                free = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1 - free;
+    }
+
+    private void write(int slot, long key, Link link, int urlOffset, int urlLength) {
+        int base = offset(slot);
+        buffer.putLong(base + S_ID, link.getId());
+        buffer.putLong(base + S_USER_MSB, link.getUserId().getMostSignificantBits());
+        buffer.putLong(base + S_USER_LSB, link.getUserId().getLeastSignificantBits());
+        buffer.putLong(base + S_EXPIRES, link.getExpiresAt().toEpochMilli());
+        buffer.putLong(base + S_URL_OFFSET, urlOffset);
+        buffer.putInt(base + S_LIMIT, link.getClickLimit() != null ? link.getClickLimit() : -1);
+        buffer.putInt(base + S_CLICKS, link.getClicksCount());
+        buffer.putInt(base + S_FLAGS, Boolean.TRUE.equals(link.getActive()) ? FLAG_ACTIVE : 0);
+        buffer.putInt(base + S_URL_LENGTH, urlLength);
+        buffer.putLong(base + S_KEY, key);
+    }
+
+    private Link read(int slot, String shortCode) {
+        int base = offset(slot);
+        int limit = buffer.getInt(base + S_LIMIT);
+        byte[] url = new byte[buffer.getInt(base + S_URL_LENGTH)];
+        buffer.get(urlHeapStart + urlOffsetOf(slot), url);
+        return Link.builder()
+                .id(buffer.getLong(base + S_ID))
+                .shortCode(shortCode)
+                .originalUrl(new String(url, StandardCharsets.UTF_8))
+                .userId(
+                        new UUID(
+                                buffer.getLong(base + S_USER_MSB),
+                                buffer.getLong(base + S_USER_LSB)))
+                .clickLimit(limit >= 0 ? limit : null)
+                .clicksCount(buffer.getInt(base + S_CLICKS))
+                .expiresAt(Instant.ofEpochMilli(buffer.getLong(base + S_EXPIRES)))
+                .active((buffer.getInt(base + S_FLAGS) & FLAG_ACTIVE) != 0)
+                .build();
+    }
+
+    private boolean sameUrl(int slot, byte[] url) {
+        if (buffer.getInt(offset(slot) + S_URL_LENGTH) != url.length) {
+            return false;
+        }
+        byte[] stored = new byte[url.length];
+        buffer.get(urlHeapStart + urlOffsetOf(slot), stored);
+        return Arrays.equals(stored, url);
+    }
+
+    private int urlOffsetOf(int slot) {
+        return (int) buffer.getLong(offset(slot) + S_URL_OFFSET);
+    }
+
+    private int allocateUrl(byte[] url) {
+        if (urlUsed + url.length > urlHeapBytes) {
+            return -1;
+        }
+        int at = urlUsed;
+        buffer.put(urlHeapStart + at, url);
+        urlUsed += url.length;
+        return at;
+    }
+
+    private void removeSlot(int slot) {
+        buffer.putLong(offset(slot) + S_KEY, TOMBSTONE);
+        size--;
+    }
+
+    private void clearSlots() {
+        for (int i = 0; i < capacity; i++) {
+            buffer.putLong(offset(i) + S_KEY, EMPTY);
+        }
+        size = 0;
+        used = 0;
+        urlUsed = 0;
+        writeCounters();
+    }
+
+    private void writeCounters() {
+        buffer.putInt(H_SIZE, size);
+        buffer.putInt(H_USED, used);
+        buffer.putLong(H_URL_USED, urlUsed);
+    }
+
+    private static int offset(int slot) {
+        return HEADER + slot * SLOT;
+    }
+}
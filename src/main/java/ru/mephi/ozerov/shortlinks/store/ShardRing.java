@@ -0,0 +1,94 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Кольцо согласованного хеширования шардов ссылок. Ключ маршрутизации — корзина: номер первого
+ * символа shortCode в алфавите {@code A-Za-z0-9} (62 корзины). Корзина принадлежит шарду, чья
+ * виртуальная точка на кольце первая по часовой стрелке от хеша корзины; при добавлении шарда к
+ * нему переходят только корзины, попавшие на его точки (в среднем 1/N), остальные остаются на
+ * месте.
+ *
+ * <p>Хеш не зависит от JVM и порядка запуска: одно и то же число шардов всегда даёт одну и ту же
+ * раскладку.
+ */
+final class ShardRing {
+
+    static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    /** Число корзин — символов, которыми может начинаться код. */
+    static final int BUCKETS = ALPHABET.length();
+
+    private static final int VIRTUAL_NODES = 128;
+
+    /** Номер корзины по символу; -1 — символ вне алфавита. */
+    private static final byte[] BUCKET_OF_CHAR = new byte[128];
+
+    static {
+        Arrays.fill(BUCKET_OF_CHAR, (byte) -1);
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            BUCKET_OF_CHAR[ALPHABET.charAt(bucket)] = (byte) bucket;
+        }
+    }
+
+    private final int shards;
+    private final int[] ownerOfBucket = new int[BUCKETS];
+    private final List<List<Integer>> bucketsOfShard = new ArrayList<>();
+
+    ShardRing(int shards) {
+        if (shards < 1 || shards > BUCKETS) {
+            throw new IllegalArgumentException(
+                    "Число шардов ссылок должно быть от 1 до " + BUCKETS + ": " + shards);
+        }
+        this.shards = shards;
+        TreeMap<Long, Integer> ring = new TreeMap<>();
+        for (int shard = 0; shard < shards; shard++) {
+            bucketsOfShard.add(new ArrayList<>());
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                ring.put(mix((long) shard << 32 | node), shard);
+            }
+        }
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            Map.Entry<Long, Integer> owner = ring.ceilingEntry(mix(0x5bd1e995L << 32 | bucket));
+            int shard = (owner != null ? owner : ring.firstEntry()).getValue();
+            ownerOfBucket[bucket] = shard;
+            bucketsOfShard.get(shard).add(bucket);
+        }
+    }
+
+    int shards() {
+        return shards;
+    }
+
+    /** Шард, которому принадлежит код. */
+    int shardOf(String shortCode) {
+        return ownerOfBucket[bucketOf(shortCode)];
+    }
+
+    /** Корзины шарда (пусто, если на его точки не попала ни одна корзина). */
+    List<Integer> bucketsOf(int shard) {
+        return bucketsOfShard.get(shard);
+    }
+
+    static int bucketOf(String shortCode) {
+        char first = shortCode.isEmpty() ? 0 : shortCode.charAt(0);
+        int bucket = first < BUCKET_OF_CHAR.length ? BUCKET_OF_CHAR[first] : -1;
+        return bucket >= 0 ? bucket : first % BUCKETS;
+    }
+
+    static char hintOf(int bucket) {
+        return ALPHABET.charAt(bucket);
+    }
+
+    /** Перемешивание splitmix64: стабильный хеш без зависимости от {@code hashCode()}. */
+    private static long mix(long value) {
+        long z = value + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,295 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.repository.LinkExpiryView;
+
+/**
+ * Ссылки, разложенные по N шардам — отдельным файлам H2 MVStore ({@link MvStoreLinkStore}). Шард
+ * ссылки определяется её кодом через {@link ShardRing}: первый символ кода — корзина, корзина
+ * принадлежит шарду по согласованному хешированию. Генератор кодов получает этот символ от {@link
+ * #codePrefix()}, поэтому переход находит шард по самому коду, без справочника.
+ *
+ * <p>id тоже несёт номер шарда: {@code id = порядковый номер * 64 + шард}. Порядковый номер общий,
+ * поэтому id растут монотонно по всем шардам, а поиск и удаление по id идут сразу в нужный шард.
+ * Список ссылок пользователя и счётчики опрашивают все шарды параллельно и сливают результаты
+ * (список — по {@code createdAt}); постраничные выборки по id сливаются по id.
+ *
+ * <p>Число шардов записывается в каталог при первом открытии и дальше не меняется: при другом числе
+ * часть корзин сменила бы владельца, а перенос их ссылок не реализован — открытие падает.
+ */
+@Slf4j
+public class ShardedLinkStore implements LinkStore, AutoCloseable {
+
+    /** Множитель порядкового номера в id; больше числа корзин, а значит и шардов. */
+    static final int ID_STRIDE = 64;
+
+    private static final String META = "shards.properties";
+
+    private final ShardRing ring;
+    private final List<MvStoreLinkStore> shards;
+    private final int[] writableShards;
+    private final AtomicLong sequence;
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private final ExecutorService fanOut;
+
+    private ShardedLinkStore(ShardRing ring, List<MvStoreLinkStore> shards, long minLastId) {
+        this.ring = ring;
+        this.shards = shards;
+        this.writableShards =
+                IntStream.range(0, ring.shards())
+                        .filter(shard -> !ring.bucketsOf(shard).isEmpty())
+                        .toArray();
+        long maxId = shards.stream().mapToLong(MvStoreLinkStore::findMaxId).max().orElse(0);
+        this.sequence = new AtomicLong(Math.max(maxId, minLastId) / ID_STRIDE + 1);
+        AtomicInteger threads = new AtomicInteger();
+        this.fanOut =
+                Executors.newFixedThreadPool(
+                        ring.shards(),
+                        task -> {
+                            Thread thread =
+                                    new Thread(task, "link-shard-" + threads.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        });
+    }
+
+    /**
+     * Открывает шарды {@code shard-NN.mv.db} в каталоге.
+     *
+     * @param dir каталог шардов; пусто — все шарды только в памяти
+     * @param shardCount число шардов, от 1 до числа корзин (62)
+     * @param minLastId id не меньше которого уже заняты (архив и уведомления)
+     */
+    public static ShardedLinkStore open(String dir, int shardCount, long minLastId) {
+        ShardRing ring = new ShardRing(shardCount);
+        boolean inMemory = dir == null || dir.isBlank();
+        if (!inMemory) {
+            checkShardCount(Path.of(dir), shardCount);
+        }
+        List<MvStoreLinkStore> shards = new ArrayList<>();
+        for (int shard = 0; shard < ring.shards(); shard++) {
+            String file =
+                    inMemory
+                            ? ""
+                            : Path.of(dir, String.format("shard-%02d.mv.db", shard)).toString();
+            shards.add(MvStoreLinkStore.open(file, 0));
+        }
+        ShardedLinkStore store = new ShardedLinkStore(ring, shards, minLastId);
+        log.info(
+                "Шарды ссылок открыты: {} (корзин по шардам: {})",
+                ring.shards(),
+                IntStream.range(0, ring.shards())
+                        .mapToObj(shard -> String.valueOf(ring.bucketsOf(shard).size()))
+                        .collect(Collectors.joining("/")));
+        return store;
+    }
+
+    /**
+     * Символ-подсказка шарда для нового кода: шарды по кругу, корзина шарда — случайная. Так шарды
+     * заполняются равномерно, даже если корзины распределены между ними неровно.
+     */
+    @Override
+    public String codePrefix() {
+        int shard =
+                writableShards[Math.floorMod(nextShard.getAndIncrement(), writableShards.length)];
+        List<Integer> buckets = ring.bucketsOf(shard);
+        int bucket = buckets.get(ThreadLocalRandom.current().nextInt(buckets.size()));
+        return String.valueOf(ShardRing.hintOf(bucket));
+    }
+
+    @Override
+    public Optional<Link> findByShortCode(String shortCode) {
+        return byCode(shortCode).findByShortCode(shortCode);
+    }
+
+    @Override
+    public Optional<Link> findById(long id) {
+        return byId(id).flatMap(shard -> shard.findById(id));
+    }
+
+    @Override
+    public boolean existsByShortCode(String shortCode) {
+        return byCode(shortCode).existsByShortCode(shortCode);
+    }
+
+    @Override
+    public Link create(Link link) {
+        int shard = ring.shardOf(link.getShortCode());
+        long id = sequence.getAndIncrement() * ID_STRIDE + shard;
+        return shards.get(shard).create(link, id);
+    }
+
+    @Override
+    public Link update(Link link) {
+        return byId(link.getId())
+                .orElseThrow(
+                        () -> new IllegalStateException("Ссылка " + link.getId() + " не найдена"))
+                .update(link);
+    }
+
+    @Override
+    public void delete(long id) {
+        byId(id).ifPresent(shard -> shard.delete(id));
+    }
+
+    @Override
+    public List<Link> findByUserId(UUID userId) {
+        return fanOut(shard -> shard.findByUserId(userId)).stream()
+                .flatMap(List::stream)
+                .sorted(
+                        Comparator.comparing(Link::getCreatedAt)
+                                .thenComparing(Link::getId)
+                                .reversed())
+                .toList();
+    }
+
+    @Override
+    public long countByUserId(UUID userId) {
+        return fanOut(shard -> shard.countByUserId(userId)).stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    @Override
+    public long countByUserIdAndActive(UUID userId, boolean active) {
+        return fanOut(shard -> shard.countByUserIdAndActive(userId, active)).stream()
+                .mapToLong(Long::longValue)
+                .sum();
+    }
+
+    @Override
+    public Optional<Link> incrementClicks(String shortCode, Instant now) {
+        return byCode(shortCode).incrementClicks(shortCode, now);
+    }
+
+    @Override
+    public List<Link> findPage(long afterId, int limit) {
+        return mergeById(fanOut(shard -> shard.findPage(afterId, limit)), Link::getId, limit);
+    }
+
+    @Override
+    public long findMaxId() {
+        return fanOut(MvStoreLinkStore::findMaxId).stream()
+                .mapToLong(Long::longValue)
+                .max()
+                .orElse(0);
+    }
+
+    @Override
+    public List<LinkExpiryView> findActiveExpiries(long afterId, int limit) {
+        return mergeById(
+                fanOut(shard -> shard.findActiveExpiries(afterId, limit)),
+                LinkExpiryView::getId,
+                limit);
+    }
+
+    @Override
+    public List<Long> findExpiredIds(long afterId, Instant now, int limit) {
+        return mergeById(
+                fanOut(shard -> shard.findExpiredIds(afterId, now, limit)), id -> id, limit);
+    }
+
+    @Override
+    public List<Link> removeExpired(Collection<Long> ids, Instant now) {
+        Map<Integer, List<Long>> byShard =
+                ids.stream().collect(Collectors.groupingBy(id -> shardOfId(id)));
+        List<Link> removed = new ArrayList<>();
+        byShard.forEach(
+                (shard, shardIds) -> {
+                    if (shard < shards.size()) {
+                        removed.addAll(shards.get(shard).removeExpired(shardIds, now));
+                    }
+                });
+        return removed;
+    }
+
+    @Override
+    public void close() {
+        fanOut.shutdown();
+        shards.forEach(MvStoreLinkStore::close);
+    }
+
+    private MvStoreLinkStore byCode(String shortCode) {
+        return shards.get(ring.shardOf(shortCode));
+    }
+
+    private Optional<MvStoreLinkStore> byId(long id) {
+        int shard = shardOfId(id);
+        return shard < shards.size() ? Optional.of(shards.get(shard)) : Optional.empty();
+    }
+
+    private static int shardOfId(long id) {
+        return (int) Math.floorMod(id, (long) ID_STRIDE);
+    }
+
+    /** Выполняет запрос на всех шардах параллельно; результаты — в порядке шардов. */
+    private <T> List<T> fanOut(Function<MvStoreLinkStore, T> query) {
+        if (shards.size() == 1) {
+            return List.of(query.apply(shards.get(0)));
+        }
+        List<CompletableFuture<T>> futures =
+                shards.stream()
+                        .map(
+                                shard ->
+                                        CompletableFuture.supplyAsync(
+                                                () -> query.apply(shard), fanOut))
+                        .toList();
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    /** Слияние страниц шардов, каждая отсортирована по id: первые limit по возрастанию id. */
+    private static <T> List<T> mergeById(List<List<T>> pages, ToLongFunction<T> id, int limit) {
+        return pages.stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparingLong(id))
+                .limit(limit)
+                .toList();
+    }
+
+    private static void checkShardCount(Path dir, int shardCount) {
+        Path meta = dir.resolve(META);
+        try {
+            Files.createDirectories(dir);
+            if (!Files.exists(meta)) {
+                Files.writeString(meta, "shards=" + shardCount + System.lineSeparator());
+                return;
+            }
+            String stored = Files.readString(meta).trim();
+            if (!stored.equals("shards=" + shardCount)) {
+                throw new IllegalStateException(
+                        "Каталог шардов "
+                                + dir
+                                + " создан с другим числом шардов ("
+                                + stored
+                                + "), задано "
+                                + shardCount
+                                + "; перенос корзин между шардами не поддерживается");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
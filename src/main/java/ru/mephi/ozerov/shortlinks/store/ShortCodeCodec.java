@@ -0,0 +1,67 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+/**
+ * Упаковка shortCode в примитивный long: биективная base62-запись (цифры 1..62 по алфавиту {@code
+ * A-Za-z0-9}, как у {@link ru.mephi.ozerov.shortlinks.service.ShortCodeGenerator}). Коды разной
+ * длины дают разные числа, 0 не соответствует ни одному коду. В long помещается до {@value
+ * #MAX_LENGTH} символов; более длинные коды и коды с другими символами не упаковываются.
+ */
+public final class ShortCodeCodec {
+
+    /** Максимальная длина упаковываемого кода. */
+    public static final int MAX_LENGTH = 10;
+
+    /** Признак «код не упаковывается». */
+    public static final long NOT_PACKABLE = 0;
+
+    private static final String ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final int BASE = ALPHABET.length();
+
+    private ShortCodeCodec() {}
+
+    /**
+     * @return упакованный код (всегда больше нуля) или {@link #NOT_PACKABLE}
+     */
+    public static long pack(String shortCode) {
+        if (shortCode == null || shortCode.isEmpty() || shortCode.length() > MAX_LENGTH) {
+            return NOT_PACKABLE;
+        }
+        long packed = 0;
+        for (int i = 0; i < shortCode.length(); i++) {
+            int digit = digit(shortCode.charAt(i));
+            if (digit < 0) {
+                return NOT_PACKABLE;
+            }
+            packed = packed * BASE + digit + 1;
+        }
+        return packed;
+    }
+
+    public static String unpack(long packed) {
+        if (packed <= 0) {
+            throw new IllegalArgumentException("Не упакованный код: " + packed);
+        }
+        char[] chars = new char[MAX_LENGTH];
+        int pos = MAX_LENGTH;
+        while (packed > 0) {
+            int digit = (int) ((packed - 1) % BASE);
+            chars[--pos] = ALPHABET.charAt(digit);
+            packed = (packed - 1 - digit) / BASE;
+        }
+        return new String(chars, pos, MAX_LENGTH - pos);
+    }
+
+    private static int digit(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        }
+        if (c >= 'a' && c <= 'z') {
+            return 26 + c - 'a';
+        }
+        if (c >= '0' && c <= '9') {
+            return 52 + c - '0';
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,485 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import lombok.extern.slf4j.Slf4j;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.repository.LinkExpiryView;
+
+/**
+ * Ссылки в памяти процесса ({@link InMemoryLinkStore}) с долговечностью через журнал и снимки.
+ * Каждое изменение — создание, правка, переход, удаление, истечение — пишется в {@link
+ * WriteAheadLog}, и вызов возвращается только после {@code fsync} пачки, в которую попала запись.
+ * Изменение в памяти и добавление записи в журнал выполняются под одной блокировкой, чтобы порядок
+ * записей совпадал с порядком изменений; ожидание диска — уже вне её, так что параллельные вызовы
+ * делят один {@code fsync}.
+ *
+ * <p>Записи журнала задают итоговое состояние (ссылка целиком, новое значение счётчика, удаление
+ * id), поэтому повторное применение безопасно. Снимок ({@link #snapshot()}) переключает журнал на
+ * новый сегмент и выписывает ссылки в {@code snapshot.bin}, не останавливая запись; после этого
+ * сегменты до переключения удаляются. При старте загружается снимок и применяются сегменты после
+ * него; оборванный хвост журнала отбрасывается.
+ *
+ * <p>Чтение — прямо из памяти, без журнала, поэтому изменение видно читателям уже до {@code fsync}
+ * своей пачки (не дольше одного сброса журнала). Ошибка записи журнала делает хранилище недоступным
+ * для изменений: вызов, не дождавшийся {@code fsync}, получает {@link UncheckedIOException}. Чтобы
+ * в памяти не остались изменения, которых нет на диске, для каждого ещё не сброшенного изменения
+ * хранится значение ссылки до него; при отказе добавления или {@code fsync} ссылки возвращаются к
+ * значению до первого несброшенного изменения — память снова совпадает с тем, что восстановится из
+ * журнала.
+ */
+@Slf4j
+public class WalLinkStore implements LinkStore, AutoCloseable {
+
+    private static final String SNAPSHOT = "snapshot.bin";
+    private static final String SNAPSHOT_TMP = "snapshot.tmp";
+    private static final long SNAPSHOT_MAGIC = 0x4c4e4b534e415031L;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_PAGE = 1000;
+
+    private static final byte PUT = 1;
+    private static final byte CLICKS = 2;
+    private static final byte DELETE = 3;
+
+    private final Path dir;
+    private final InMemoryLinkStore links;
+    private final WriteAheadLog wal;
+    private final Object writeLock = new Object();
+    private final Object snapshotLock = new Object();
+
+    /**
+     * Несброшенные изменения по ссылкам, по возрастанию номера записи: значение ссылки до каждого.
+     * Пополняется под writeLock.
+     */
+    private final Map<Long, Deque<Undo>> undo = new ConcurrentHashMap<>();
+
+    private WalLinkStore(Path dir, InMemoryLinkStore links) {
+        this.dir = dir;
+        this.links = links;
+        this.wal = new WriteAheadLog(dir);
+    }
+
+    /**
+     * Открывает хранилище: загружает снимок и применяет журнал.
+     *
+     * @param dir каталог журнала и снимка
+     * @param minLastId id не меньше которого уже заняты (см. {@link InMemoryLinkStore})
+     */
+    public static WalLinkStore open(String dir, long minLastId) {
+        Path path = Path.of(dir);
+        long started = System.nanoTime();
+        InMemoryLinkStore links = new InMemoryLinkStore(minLastId);
+        try {
+            Files.createDirectories(path);
+            long fromSegment = loadSnapshot(path, links);
+            long replayed = WriteAheadLog.replay(path, fromSegment, in -> apply(links, in));
+            log.info(
+                    "Хранилище ссылок с журналом восстановлено за {} мс: {} ссылок, {} записей журнала",
+                    (System.nanoTime() - started) / 1_000_000,
+                    links.size(),
+                    replayed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new WalLinkStore(path, links);
+    }
+
+    @Override
+    public Optional<Link> findByShortCode(String shortCode) {
+        return links.findByShortCode(shortCode);
+    }
+
+    @Override
+    public Optional<Link> findById(long id) {
+        return links.findById(id);
+    }
+
+    @Override
+    public boolean existsByShortCode(String shortCode) {
+        return links.existsByShortCode(shortCode);
+    }
+
+    @Override
+    public Link create(Link link) {
+        Link stored;
+        long lsn;
+        synchronized (writeLock) {
+            stored = links.create(link);
+            lsn = append(putRecord(stored), stored.getId(), null);
+        }
+        await(lsn, stored.getId());
+        return stored;
+    }
+
+    @Override
+    public Link update(Link link) {
+        Link stored;
+        long lsn;
+        synchronized (writeLock) {
+            Link before = links.findById(link.getId()).orElse(null);
+            stored = links.update(link);
+            lsn = append(putRecord(stored), stored.getId(), before);
+        }
+        await(lsn, stored.getId());
+        return stored;
+    }
+
+    @Override
+    public void delete(long id) {
+        long lsn;
+        synchronized (writeLock) {
+            Optional<Link> before = links.findById(id);
+            if (before.isEmpty()) {
+                return;
+            }
+            links.delete(id);
+            lsn = append(deleteRecord(id), id, before.get());
+        }
+        await(lsn, id);
+    }
+
+    @Override
+    public List<Link> findByUserId(UUID userId) {
+        return links.findByUserId(userId);
+    }
+
+    @Override
+    public long countByUserId(UUID userId) {
+        return links.countByUserId(userId);
+    }
+
+    @Override
+    public long countByUserIdAndActive(UUID userId, boolean active) {
+        return links.countByUserIdAndActive(userId, active);
+    }
+
+    @Override
+    public Optional<Link> incrementClicks(String shortCode, Instant now) {
+        Optional<Link> incremented;
+        long lsn;
+        synchronized (writeLock) {
+            incremented = links.incrementClicks(shortCode, now);
+            if (incremented.isEmpty()) {
+                return incremented;
+            }
+            Link link = incremented.get();
+            lsn =
+                    append(
+                            clicksRecord(link),
+                            link.getId(),
+                            link.toBuilder().clicksCount(link.getClicksCount() - 1).build());
+        }
+        await(lsn, incremented.get().getId());
+        return incremented;
+    }
+
+    @Override
+    public List<Link> findPage(long afterId, int limit) {
+        return links.findPage(afterId, limit);
+    }
+
+    @Override
+    public long findMaxId() {
+        return links.findMaxId();
+    }
+
+    @Override
+    public List<LinkExpiryView> findActiveExpiries(long afterId, int limit) {
+        return links.findActiveExpiries(afterId, limit);
+    }
+
+    @Override
+    public List<Long> findExpiredIds(long afterId, Instant now, int limit) {
+        return links.findExpiredIds(afterId, now, limit);
+    }
+
+    @Override
+    public List<Link> removeExpired(Collection<Long> ids, Instant now) {
+        List<Link> removed;
+        long lsn = 0;
+        synchronized (writeLock) {
+            removed = links.removeExpired(ids, now);
+            for (Link link : removed) {
+                lsn = append(deleteRecord(link.getId()), link.getId(), link);
+            }
+        }
+        if (lsn > 0) {
+            for (Link link : removed) {
+                await(lsn, link.getId());
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Записывает снимок всех ссылок и удаляет покрытые им сегменты журнала. Запись ссылок во время
+     * снимка не останавливается: изменения после переключения сегмента попадут и в новый сегмент,
+     * и, возможно, в снимок — при восстановлении они применятся повторно с тем же результатом.
+     *
+     * @return число ссылок в снимке
+     */
+    public long snapshot() {
+        synchronized (snapshotLock) {
+            long started = System.nanoTime();
+            long segment;
+            long lastId;
+            synchronized (writeLock) {
+                segment = wal.rotate();
+                lastId = links.lastId();
+            }
+            long written;
+            try {
+                written = writeSnapshot(segment, lastId);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            wal.deleteBefore(segment);
+            log.info(
+                    "Снимок ссылок записан за {} мс: {} ссылок",
+                    (System.nanoTime() - started) / 1_000_000,
+                    written);
+            return written;
+        }
+    }
+
+    /** Число {@code fsync} журнала с момента открытия. */
+    public long walBatches() {
+        return wal.batches();
+    }
+
+    /** Снимок при штатной остановке: следующий старт не будет применять журнал. */
+    @Override
+    public void close() {
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            log.warn("Снимок ссылок при остановке не записан: {}", e.getMessage());
+        }
+        wal.close();
+    }
+
+    /**
+     * Добавляет запись в журнал и запоминает значение ссылки до изменения; вызывается под writeLock
+     * сразу после изменения в памяти.
+     *
+     * @param before ссылка до изменения; {@code null} — её не было
+     */
+    private long append(byte[] record, long id, Link before) {
+        long lsn;
+        try {
+            lsn = wal.append(record);
+        } catch (RuntimeException e) {
+            remember(id, before, Long.MAX_VALUE);
+            rollback();
+            throw e;
+        }
+        remember(id, before, lsn);
+        return lsn;
+    }
+
+    private void remember(long id, Link before, long lsn) {
+        undo.compute(
+                id,
+                (k, steps) -> {
+                    Deque<Undo> chain = steps != null ? steps : new ArrayDeque<>(2);
+                    chain.addLast(new Undo(lsn, before));
+                    return chain;
+                });
+    }
+
+    /** Ждёт сброса записи; сброшенным изменениям значения для отката больше не нужны. */
+    private void await(long lsn, long id) {
+        try {
+            wal.await(lsn);
+        } catch (RuntimeException e) {
+            rollback();
+            throw e;
+        }
+        undo.computeIfPresent(
+                id,
+                (k, chain) -> {
+                    while (!chain.isEmpty() && chain.peekFirst().lsn() <= lsn) {
+                        chain.pollFirst();
+                    }
+                    return chain.isEmpty() ? null : chain;
+                });
+    }
+
+    /** Возвращает ссылки к значениям до первого несброшенного изменения. */
+    private void rollback() {
+        synchronized (writeLock) {
+            long durable = wal.durable();
+            AtomicInteger rolledBack = new AtomicInteger();
+            for (Long id : List.copyOf(undo.keySet())) {
+                undo.computeIfPresent(
+                        id,
+                        (k, chain) -> {
+                            for (Undo step : chain) {
+                                if (step.lsn() > durable) {
+                                    if (step.before() == null) {
+                                        links.delete(id);
+                                    } else {
+                                        links.restore(step.before());
+                                    }
+                                    rolledBack.incrementAndGet();
+                                    break;
+                                }
+                            }
+                            return null;
+                        });
+            }
+            if (rolledBack.get() > 0) {
+                log.warn(
+                        "Журнал ссылок недоступен: откачены несохранённые изменения {} ссылок",
+                        rolledBack.get());
+            }
+        }
+    }
+
+    private long writeSnapshot(long segment, long lastId) throws IOException {
+        Path tmp = dir.resolve(SNAPSHOT_TMP);
+        long written = 0;
+        try (FileChannel channel =
+                FileChannel.open(
+                        tmp,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream buffered =
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            CheckedOutputStream checked = new CheckedOutputStream(buffered, new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeLong(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(segment);
+            out.writeLong(lastId);
+            long afterId = 0;
+            List<Link> page;
+            do {
+                page = links.findPage(afterId, SNAPSHOT_PAGE);
+                for (Link link : page) {
+                    out.writeBoolean(true);
+                    LinkCodec.write(out, link);
+                    afterId = link.getId();
+                    written++;
+                }
+            } while (page.size() == SNAPSHOT_PAGE);
+            out.writeBoolean(false);
+            out.flush();
+            new DataOutputStream(buffered).writeLong(checked.getChecksum().getValue());
+            buffered.flush();
+            channel.force(true);
+        }
+        Files.move(
+                tmp,
+                dir.resolve(SNAPSHOT),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    /**
+     * @return номер сегмента, с которого применять журнал
+     */
+    private static long loadSnapshot(Path dir, InMemoryLinkStore links) throws IOException {
+        Path file = dir.resolve(SNAPSHOT);
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (InputStream buffered =
+                new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            CheckedInputStream checked = new CheckedInputStream(buffered, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readLong() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IllegalStateException("Неизвестный формат снимка ссылок: " + file);
+            }
+            long segment = in.readLong();
+            links.advanceSequence(in.readLong());
+            while (in.readBoolean()) {
+                links.restore(LinkCodec.read(in));
+            }
+            long expected = checked.getChecksum().getValue();
+            if (new DataInputStream(buffered).readLong() != expected) {
+                throw new IllegalStateException("Повреждён снимок ссылок: " + file);
+            }
+            return segment;
+        }
+    }
+
+    private static void apply(InMemoryLinkStore links, DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case PUT -> links.restore(LinkCodec.read(in));
+            case CLICKS -> links.restoreClicks(in.readLong(), in.readInt());
+            case DELETE -> links.delete(in.readLong());
+            default -> throw new IllegalStateException("Неизвестная запись журнала: " + type);
+        }
+    }
+
+    private static byte[] putRecord(Link link) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(PUT);
+            LinkCodec.write(out, link);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] clicksRecord(Link link) {
+        byte[] record = new byte[13];
+        record[0] = CLICKS;
+        writeLong(record, 1, link.getId());
+        writeInt(record, 9, link.getClicksCount());
+        return record;
+    }
+
+    private static byte[] deleteRecord(long id) {
+        byte[] record = new byte[9];
+        record[0] = DELETE;
+        writeLong(record, 1, id);
+        return record;
+    }
+
+    private static void writeLong(byte[] target, int offset, long value) {
+        writeInt(target, offset, (int) (value >>> 32));
+        writeInt(target, offset + 4, (int) value);
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    /** Номер записи изменения и значение ссылки до него ({@code null} — ссылки не было). */
+    private record Undo(long lsn, Link before) {}
+}
@@ -0,0 +1,342 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Журнал изменений с групповой фиксацией. Запись добавляется в общий буфер и получает номер;
+ * единственный поток сброса дописывает накопившийся буфер в файл и делает один {@code fsync} на всю
+ * пачку — пока идёт {@code fsync}, следующие записи копятся в новом буфере. Вызывающий ждёт, пока
+ * его номер станет долговечным ({@link #await(long)}).
+ *
+ * <p>Журнал разбит на сегменты {@code wal-<номер>.log}: после снимка старые сегменты удаляются
+ * ({@link #rotate()}). Формат записи: длина, CRC32, тело. Оборванная запись в хвосте последнего
+ * сегмента (авария во время записи) при чтении отбрасывается.
+ */
+@Slf4j
+final class WriteAheadLog implements AutoCloseable {
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+
+    /** Обработчик тела записи при чтении журнала. */
+    interface RecordHandler {
+        void accept(DataInputStream record) throws IOException;
+    }
+
+    private final Path dir;
+    private final Thread flusher;
+
+    private FileChannel channel;
+    private OutputStream out;
+    private long segment;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(64 * 1024);
+    private long appended;
+    private long durable;
+    private boolean flushing;
+    private boolean closed;
+    private IOException failure;
+
+    private long batches;
+
+    /** Открывает новый сегмент после последнего существующего. */
+    WriteAheadLog(Path dir) {
+        this.dir = dir;
+        List<Long> existing = segments(dir);
+        this.segment = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+        openSegment();
+        this.flusher = new Thread(this::flushLoop, "link-wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Добавляет запись в буфер (без ожидания диска).
+     *
+     * @return номер записи для {@link #await(long)}
+     */
+    synchronized long append(byte[] body) {
+        if (failure != null) {
+            throw new UncheckedIOException("Журнал ссылок недоступен", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Журнал ссылок закрыт");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        writeInt(pending, body.length);
+        writeInt(pending, (int) crc.getValue());
+        pending.writeBytes(body);
+        appended++;
+        notifyAll();
+        return appended;
+    }
+
+    /** Ждёт, пока запись с этим номером (и все предыдущие) окажется на диске. */
+    synchronized void await(long lsn) {
+        boolean interrupted = false;
+        while (durable < lsn && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (durable < lsn) {
+            throw new UncheckedIOException("Журнал ссылок недоступен", failure);
+        }
+    }
+
+    /**
+     * Дописывает буфер и переходит на новый сегмент. Вызывающий не должен добавлять записи до
+     * возврата, иначе ожидание может затянуться.
+     *
+     * @return номер нового сегмента: всё, что записано раньше, лежит в сегментах с меньшими
+     *     номерами
+     */
+    synchronized long rotate() {
+        awaitIdle();
+        closeSegment();
+        segment++;
+        openSegment();
+        return segment;
+    }
+
+    /** Удаляет сегменты с номерами меньше указанного (они покрыты снимком). */
+    void deleteBefore(long segmentNumber) {
+        for (long number : segments(dir)) {
+            if (number < segmentNumber) {
+                try {
+                    Files.deleteIfExists(file(dir, number));
+                } catch (IOException e) {
+                    log.warn("Не удалось удалить сегмент журнала {}: {}", number, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /** Номер последней записи, уже сброшенной на диск. */
+    synchronized long durable() {
+        return durable;
+    }
+
+    /** Число выполненных {@code fsync} (пачек). */
+    synchronized long batches() {
+        return batches;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closeSegment();
+        }
+    }
+
+    /**
+     * Читает сегменты начиная с {@code fromSegment} по порядку. Оборванная или повреждённая запись
+     * в последнем сегменте обрезается вместе с хвостом; в более раннем сегменте это ошибка.
+     *
+     * @return число прочитанных записей
+     */
+    static long replay(Path dir, long fromSegment, RecordHandler handler) throws IOException {
+        List<Long> numbers = segments(dir).stream().filter(n -> n >= fromSegment).toList();
+        long records = 0;
+        for (int i = 0; i < numbers.size(); i++) {
+            Path file = file(dir, numbers.get(i));
+            boolean last = i == numbers.size() - 1;
+            records += replaySegment(file, last, handler);
+        }
+        return records;
+    }
+
+    private static long replaySegment(Path file, boolean last, RecordHandler handler)
+            throws IOException {
+        long records = 0;
+        long position = 0;
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            DataInputStream in = new DataInputStream(input);
+            while (true) {
+                byte[] body;
+                try {
+                    int length = in.readInt();
+                    int expectedCrc = in.readInt();
+                    if (length < 0) {
+                        break;
+                    }
+                    body = in.readNBytes(length);
+                    if (body.length < length) {
+                        break;
+                    }
+                    CRC32 crc = new CRC32();
+                    crc.update(body);
+                    if ((int) crc.getValue() != expectedCrc) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                handler.accept(new DataInputStream(new ByteArrayInputStream(body)));
+                position += 8 + body.length;
+                records++;
+            }
+        }
+        long size = Files.size(file);
+        if (position < size) {
+            if (!last) {
+                throw new IllegalStateException(
+                        "Повреждён сегмент журнала ссылок " + file + " на позиции " + position);
+            }
+            log.warn(
+                    "Хвост журнала ссылок {} обрезан: {} байт после позиции {}",
+                    file,
+                    size - position,
+                    position);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(position);
+                channel.force(true);
+            }
+        }
+        return records;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            ByteArrayOutputStream batch;
+            long upTo;
+            OutputStream target;
+            FileChannel targetChannel;
+            synchronized (this) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Поток сброса останавливается только через close()
+                    }
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+                batch = pending;
+                pending = new ByteArrayOutputStream(Math.max(batch.size(), 64 * 1024));
+                upTo = appended;
+                target = out;
+                targetChannel = channel;
+                flushing = true;
+            }
+            try {
+                batch.writeTo(target);
+                targetChannel.force(false);
+            } catch (IOException e) {
+                log.error("Не удалось записать журнал ссылок: {}", e.getMessage());
+                synchronized (this) {
+                    failure = e;
+                    flushing = false;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                durable = upTo;
+                batches++;
+                flushing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    private void awaitIdle() {
+        while ((pending.size() > 0 || flushing) && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Прервано ожидание журнала ссылок", e);
+            }
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Журнал ссылок недоступен", failure);
+        }
+    }
+
+    private void openSegment() {
+        try {
+            channel =
+                    FileChannel.open(
+                            file(dir, segment),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND);
+            out = Channels.newOutputStream(channel);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void closeSegment() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Не удалось закрыть сегмент журнала ссылок: {}", e.getMessage());
+        }
+    }
+
+    private static void writeInt(ByteArrayOutputStream buffer, int value) {
+        buffer.write(value >>> 24);
+        buffer.write(value >>> 16);
+        buffer.write(value >>> 8);
+        buffer.write(value);
+    }
+
+    private static Path file(Path dir, long number) {
+        return dir.resolve(PREFIX + String.format("%016d", number) + SUFFIX);
+    }
+
+    /** Номера сегментов каталога по возрастанию. */
+    static List<Long> segments(Path dir) {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(f -> f.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(
+                            name ->
+                                    Long.parseLong(
+                                            name.substring(
+                                                    PREFIX.length(),
+                                                    name.length() - SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -4,6 +4,8 @@ import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +15,9 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
+import ru.mephi.ozerov.shortlinks.service.LinkService;
 import tools.jackson.databind.ObjectMapper;
 
 @SpringBootTest
@@ -24,6 +29,10 @@ class LinkControllerIntegrationTest {
 
     @Autowired private ObjectMapper objectMapper;
 
+    @Autowired private LinkRepository linkRepository;
+
+    @Autowired private LinkService linkService;
+
     private static final String CREATE_BODY =
             """
             {"originalUrl": "https://www.baeldung.com/java-9-http-client"}
@@ -129,7 +138,29 @@ class LinkControllerIntegrationTest {
                 .andExpect(jsonPath("$.id").value(linkId))
                 .andExpect(
                         jsonPath("$.originalUrl")
-                                .value("https://www.baeldung.com/java-9-http-client"));
+                                .value("https://www.baeldung.com/java-9-http-client"))
+                .andExpect(jsonPath("$.archived").value(false));
+    }
+
+    @Test
+    void getOne_afterExpiry_returnsLinkFromArchive() throws Exception {
+        UUID userId = UUID.randomUUID();
+        Link link = linkService.create("https://archived.example.com", 3, userId);
+        link.setExpiresAt(Instant.now().minusSeconds(1));
+        linkRepository.save(link);
+        linkService.expireByIds(List.of(link.getId()));
+
+        mockMvc.perform(get("/api/links/" + link.getId()).header("X-User-Id", userId.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.shortCode").value(link.getShortCode()))
+                .andExpect(jsonPath("$.originalUrl").value("https://archived.example.com"))
+                .andExpect(jsonPath("$.clickLimit").value(3))
+                .andExpect(jsonPath("$.archived").value(true))
+                .andExpect(jsonPath("$.available").value(false));
+        mockMvc.perform(
+                        get("/api/links/" + link.getId())
+                                .header("X-User-Id", UUID.randomUUID().toString()))
+                .andExpect(status().isNotFound());
     }
 
     @Test
@@ -209,4 +240,45 @@ class LinkControllerIntegrationTest {
         mockMvc.perform(get("/api/links/" + linkId).header("X-User-Id", userId.toString()))
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    void list_withMatchingIfNoneMatch_returns304UntilLinksChange() throws Exception {
+        UUID userId = UUID.randomUUID();
+        mockMvc.perform(
+                        post("/api/links")
+                                .header("X-User-Id", userId.toString())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(CREATE_BODY))
+                .andExpect(status().isCreated());
+
+        String etag =
+                mockMvc.perform(get("/api/links").header("X-User-Id", userId.toString()))
+                        .andExpect(status().isOk())
+                        .andExpect(header().exists("ETag"))
+                        .andReturn()
+                        .getResponse()
+                        .getHeader("ETag");
+
+        mockMvc.perform(
+                        get("/api/links")
+                                .header("X-User-Id", userId.toString())
+                                .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+
+        mockMvc.perform(
+                        post("/api/links")
+                                .header("X-User-Id", userId.toString())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(CREATE_BODY))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(
+                        get("/api/links")
+                                .header("X-User-Id", userId.toString())
+                                .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)))
+                .andExpect(jsonPath("$.length()").value(2));
+    }
 }
@@ -1,9 +1,11 @@
 package ru.mephi.ozerov.shortlinks.controller;
 
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.time.Instant;
 import java.util.UUID;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +15,12 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import ru.mephi.ozerov.shortlinks.entity.Notification;
+import ru.mephi.ozerov.shortlinks.entity.NotificationType;
+import ru.mephi.ozerov.shortlinks.repository.NotificationRepository;
+import ru.mephi.ozerov.shortlinks.service.NotificationStreamRegistry;
+import ru.mephi.ozerov.shortlinks.service.NotificationWriter;
+import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 
 @SpringBootTest
@@ -24,6 +32,212 @@ class NotificationControllerIntegrationTest {
 
     @Autowired private ObjectMapper objectMapper;
 
+    @Autowired private NotificationWriter notificationWriter;
+
+    @Autowired private NotificationRepository notificationRepository;
+
+    @Autowired private NotificationStreamRegistry notificationStreamRegistry;
+
+    /**
+     * Уведомление о лимите пишется асинхронно; повторная доставка по флагу outbox дописывает его
+     * синхронно (или ничего не делает, если поток записи уже успел).
+     */
+    private void awaitNotifications() {
+        notificationWriter.replayPending();
+    }
+
+    /** Ссылка с лимитом 1, исчерпанная одним переходом; возвращает короткий код. */
+    private String createExhaustedLink(UUID userId) throws Exception {
+        String createBody = "{\"originalUrl\": \"https://stream-test.com\", \"clickLimit\": 1}";
+        String shortCode =
+                objectMapper
+                        .readTree(
+                                mockMvc.perform(
+                                                post("/api/links")
+                                                        .header("X-User-Id", userId.toString())
+                                                        .contentType(MediaType.APPLICATION_JSON)
+                                                        .content(createBody))
+                                        .andExpect(status().isCreated())
+                                        .andReturn()
+                                        .getResponse()
+                                        .getContentAsString())
+                        .get("link")
+                        .get("shortCode")
+                        .asText();
+        mockMvc.perform(get("/" + shortCode).header("X-User-Id", userId.toString()))
+                .andExpect(status().is3xxRedirection());
+        awaitNotifications();
+        return shortCode;
+    }
+
+    /** Ждёт, пока в поток SSE (отправка идёт из отдельного потока) попадёт нужный текст. */
+    private String awaitStream(MvcResult stream, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String body = stream.getResponse().getContentAsString();
+        while (!body.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            body = stream.getResponse().getContentAsString();
+        }
+        return body;
+    }
+
+    @Test
+    void stream_withoutUserId_returns400() throws Exception {
+        mockMvc.perform(get("/api/notifications/stream")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void stream_pushesNotificationCreatedAfterSubscribe() throws Exception {
+        UUID userId = UUID.randomUUID();
+        String oldCode = createExhaustedLink(userId);
+
+        MvcResult stream =
+                mockMvc.perform(
+                                get("/api/notifications/stream")
+                                        .header("X-User-Id", userId.toString())
+                                        .accept(MediaType.TEXT_EVENT_STREAM))
+                        .andExpect(request().asyncStarted())
+                        .andReturn();
+        String newCode = createExhaustedLink(userId);
+
+        String body = awaitStream(stream, newCode);
+        assertThat(body, containsString("event:notification"));
+        assertThat(body, containsString("\"shortCode\":\"" + newCode + "\""));
+        assertThat(body, not(containsString(oldCode)));
+        assertThat(
+                stream.getResponse().getContentType(),
+                startsWith(MediaType.TEXT_EVENT_STREAM_VALUE));
+    }
+
+    @Test
+    void stream_deliversNotificationWrittenByAnotherNodeOnHeartbeat() throws Exception {
+        UUID userId = UUID.randomUUID();
+        MvcResult stream =
+                mockMvc.perform(
+                                get("/api/notifications/stream")
+                                        .header("X-User-Id", userId.toString())
+                                        .accept(MediaType.TEXT_EVENT_STREAM))
+                        .andExpect(request().asyncStarted())
+                        .andReturn();
+        // Начальная дочитка подписки успевает пройти до записи
+        Thread.sleep(200);
+        // Запись другого узла: строка в общей БД без локального сигнала
+        notificationRepository.save(
+                Notification.builder()
+                        .userId(userId)
+                        .linkId(1L)
+                        .shortCode("remote1")
+                        .type(NotificationType.LINK_EXPIRED)
+                        .createdAt(Instant.now())
+                        .readFlag(false)
+                        .build());
+        Thread.sleep(200);
+        assertThat(stream.getResponse().getContentAsString(), not(containsString("remote1")));
+
+        notificationStreamRegistry.heartbeat();
+
+        String body = awaitStream(stream, "remote1");
+        assertThat(body, containsString("\"shortCode\":\"remote1\""));
+    }
+
+    @Test
+    void stream_withLastEventId_replaysMissedNotifications() throws Exception {
+        UUID userId = UUID.randomUUID();
+        String firstCode = createExhaustedLink(userId);
+        String secondCode = createExhaustedLink(userId);
+        JsonNode list =
+                objectMapper.readTree(
+                        mockMvc.perform(
+                                        get("/api/notifications")
+                                                .header("X-User-Id", userId.toString()))
+                                .andReturn()
+                                .getResponse()
+                                .getContentAsString());
+        long firstId = list.get(1).get("id").asLong();
+        long secondId = list.get(0).get("id").asLong();
+
+        MvcResult stream =
+                mockMvc.perform(
+                                get("/api/notifications/stream")
+                                        .header("X-User-Id", userId.toString())
+                                        .header("Last-Event-ID", Long.toString(firstId))
+                                        .accept(MediaType.TEXT_EVENT_STREAM))
+                        .andExpect(request().asyncStarted())
+                        .andReturn();
+
+        String body = awaitStream(stream, secondCode);
+        assertThat(body, containsString("id:" + secondId));
+        assertThat(body, not(containsString(firstCode)));
+    }
+
+    @Test
+    void sinceId_returnsOnlyNewerInAscendingOrder() throws Exception {
+        UUID userId = UUID.randomUUID();
+        String firstCode = createExhaustedLink(userId);
+        String secondCode = createExhaustedLink(userId);
+        MvcResult all =
+                mockMvc.perform(
+                                get("/api/notifications")
+                                        .param("sinceId", "0")
+                                        .header("X-User-Id", userId.toString()))
+                        .andExpect(request().asyncStarted())
+                        .andReturn();
+        mockMvc.perform(asyncDispatch(all))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].shortCode").value(firstCode))
+                .andExpect(jsonPath("$[1].shortCode").value(secondCode));
+        long firstId =
+                objectMapper
+                        .readTree(all.getResponse().getContentAsString())
+                        .get(0)
+                        .get("id")
+                        .asLong();
+
+        MvcResult newer =
+                mockMvc.perform(
+                                get("/api/notifications")
+                                        .param("sinceId", Long.toString(firstId))
+                                        .header("X-User-Id", userId.toString()))
+                        .andReturn();
+        mockMvc.perform(asyncDispatch(newer))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].shortCode").value(secondCode));
+    }
+
+    @Test
+    void sinceId_withWait_completesWhenNotificationArrives() throws Exception {
+        UUID userId = UUID.randomUUID();
+        MvcResult parked =
+                mockMvc.perform(
+                                get("/api/notifications")
+                                        .param("sinceId", "0")
+                                        .param("wait", "30s")
+                                        .header("X-User-Id", userId.toString()))
+                        .andExpect(request().asyncStarted())
+                        .andReturn();
+        assertThat(parked.getResponse().getContentAsString(), emptyString());
+
+        String shortCode = createExhaustedLink(userId);
+
+        parked.getAsyncResult(5000);
+        mockMvc.perform(asyncDispatch(parked))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].shortCode").value(shortCode));
+    }
+
+    @Test
+    void sinceId_withInvalidWait_returns400() throws Exception {
+        mockMvc.perform(
+                        get("/api/notifications")
+                                .param("sinceId", "0")
+                                .param("wait", "soon")
+                                .header("X-User-Id", UUID.randomUUID().toString()))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void list_withoutUserId_returns400() throws Exception {
         mockMvc.perform(get("/api/notifications"))
@@ -62,6 +276,7 @@ class NotificationControllerIntegrationTest {
                 .andExpect(status().is3xxRedirection());
         mockMvc.perform(get("/" + shortCode).header("X-User-Id", userId.toString()))
                 .andExpect(status().isGone());
+        awaitNotifications();
 
         mockMvc.perform(get("/api/notifications").header("X-User-Id", userId.toString()))
                 .andExpect(status().isOk())
@@ -69,7 +284,20 @@ class NotificationControllerIntegrationTest {
                 .andExpect(jsonPath("$.length()").value(greaterThanOrEqualTo(1)))
                 .andExpect(jsonPath("$[0].type").value("CLICK_LIMIT_REACHED"))
                 .andExpect(jsonPath("$[0].shortCode").value(shortCode))
+                .andExpect(
+                        jsonPath("$[0].message")
+                                .value("Лимит переходов по ссылке " + shortCode + " исчерпан."))
                 .andExpect(jsonPath("$[0].read").value(false));
+
+        mockMvc.perform(
+                        get("/api/notifications")
+                                .header("X-User-Id", userId.toString())
+                                .header("Accept-Language", "en-US,en;q=0.9"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Vary", containsString("Accept-Language")))
+                .andExpect(
+                        jsonPath("$[0].message")
+                                .value("Click limit for link " + shortCode + " has been reached."));
     }
 
     @Test
@@ -96,6 +324,7 @@ class NotificationControllerIntegrationTest {
                         .asText();
         mockMvc.perform(get("/" + shortCode).header("X-User-Id", userId.toString()))
                 .andExpect(status().is3xxRedirection());
+        awaitNotifications();
 
         MvcResult notifResult =
                 mockMvc.perform(get("/api/notifications").header("X-User-Id", userId.toString()))
@@ -117,4 +346,134 @@ class NotificationControllerIntegrationTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].read").value(true));
     }
+
+    @Test
+    void bulkOperations_returnAffectedCountsAndKeepSummaryConsistent() throws Exception {
+        UUID userId = UUID.randomUUID();
+        for (int i = 0; i < 4; i++) {
+            createExhaustedLink(userId);
+        }
+        JsonNode list =
+                objectMapper.readTree(
+                        mockMvc.perform(
+                                        get("/api/notifications")
+                                                .header("X-User-Id", userId.toString()))
+                                .andReturn()
+                                .getResponse()
+                                .getContentAsString());
+        long[] ids = new long[4];
+        for (int i = 0; i < 4; i++) {
+            ids[i] = list.get(3 - i).get("id").asLong();
+        }
+
+        mockMvc.perform(
+                        patch("/api/notifications/read")
+                                .header("X-User-Id", userId.toString())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"ids\": [" + ids[0] + ", " + ids[0] + ", 0]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected").value(1));
+        mockMvc.perform(
+                        patch("/api/notifications/read-all")
+                                .param("upToId", Long.toString(ids[2]))
+                                .header("X-User-Id", userId.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected").value(2));
+        mockMvc.perform(
+                        patch("/api/notifications/read-all")
+                                .header("X-User-Id", UUID.randomUUID().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected").value(0));
+        mockMvc.perform(get("/api/users/me/summary").header("X-User-Id", userId.toString()))
+                .andExpect(jsonPath("$.unreadNotifications").value(1));
+
+        mockMvc.perform(delete("/api/notifications/read").header("X-User-Id", userId.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected").value(3));
+        mockMvc.perform(get("/api/notifications").header("X-User-Id", userId.toString()))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(ids[3]))
+                .andExpect(jsonPath("$[0].read").value(false));
+
+        mockMvc.perform(patch("/api/notifications/read-all").header("X-User-Id", userId.toString()))
+                .andExpect(jsonPath("$.affected").value(1));
+        mockMvc.perform(get("/api/users/me/summary").header("X-User-Id", userId.toString()))
+                .andExpect(jsonPath("$.unreadNotifications").value(0));
+    }
+
+    @Test
+    void unreadCount_followsCreationAndMarkRead() throws Exception {
+        UUID userId = UUID.randomUUID();
+        mockMvc.perform(
+                        get("/api/notifications/unread-count")
+                                .header("X-User-Id", userId.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.unread").value(0));
+
+        createExhaustedLink(userId);
+        createExhaustedLink(userId);
+        mockMvc.perform(
+                        get("/api/notifications/unread-count")
+                                .header("X-User-Id", userId.toString()))
+                .andExpect(jsonPath("$.unread").value(2));
+
+        mockMvc.perform(patch("/api/notifications/read-all").header("X-User-Id", userId.toString()))
+                .andExpect(jsonPath("$.affected").value(2));
+        mockMvc.perform(
+                        get("/api/notifications/unread-count")
+                                .header("X-User-Id", userId.toString()))
+                .andExpect(jsonPath("$.unread").value(0));
+    }
+
+    @Test
+    void markListAsRead_withEmptyIds_returns400() throws Exception {
+        mockMvc.perform(
+                        patch("/api/notifications/read")
+                                .header("X-User-Id", UUID.randomUUID().toString())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"ids\": []}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void list_withMatchingIfNoneMatch_returns304() throws Exception {
+        UUID userId = UUID.randomUUID();
+        String etag =
+                mockMvc.perform(get("/api/notifications").header("X-User-Id", userId.toString()))
+                        .andExpect(status().isOk())
+                        .andReturn()
+                        .getResponse()
+                        .getHeader("ETag");
+
+        mockMvc.perform(
+                        get("/api/notifications")
+                                .header("X-User-Id", userId.toString())
+                                .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(
+                        get("/api/notifications")
+                                .header("X-User-Id", UUID.randomUUID().toString())
+                                .header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void list_withEtagOfAnotherLanguage_returnsFullResponse() throws Exception {
+        UUID userId = UUID.randomUUID();
+        String etag =
+                mockMvc.perform(get("/api/notifications").header("X-User-Id", userId.toString()))
+                        .andExpect(status().isOk())
+                        .andReturn()
+                        .getResponse()
+                        .getHeader("ETag");
+
+        mockMvc.perform(
+                        get("/api/notifications")
+                                .header("X-User-Id", userId.toString())
+                                .header("Accept-Language", "en")
+                                .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Vary", containsString("Accept-Language")));
+    }
 }
@@ -1,11 +1,13 @@
 package ru.mephi.ozerov.shortlinks.controller;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.time.Instant;
 import java.util.UUID;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +18,8 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultMatcher;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 
@@ -28,6 +32,8 @@ class RedirectControllerIntegrationTest {
 
     @Autowired private ObjectMapper objectMapper;
 
+    @Autowired private LinkRepository linkRepository;
+
     /** При sendError() сообщение попадает в response.getErrorMessage(), а не в body. */
     private static ResultMatcher errorMessageContains(String substring) {
         return result -> {
@@ -119,6 +125,28 @@ class RedirectControllerIntegrationTest {
                 .andExpect(errorMessageContains("Лимит переходов"));
     }
 
+    @Test
+    void redirect_whenExpired_returns410AndExpiresLinkOnAccess() throws Exception {
+        UUID userId = UUID.randomUUID();
+        String shortCode =
+                createLinkAndGetShortCode(userId, "{\"originalUrl\": \"https://lazy-expiry.com\"}");
+        Link link = linkRepository.findByShortCode(shortCode).orElseThrow();
+        link.setExpiresAt(Instant.now().minusSeconds(1));
+        linkRepository.save(link);
+
+        mockMvc.perform(get("/" + shortCode).header("X-User-Id", userId.toString()))
+                .andExpect(status().isGone())
+                .andExpect(errorMessageContains("Время жизни ссылки истекло"));
+
+        assertFalse(linkRepository.existsById(link.getId()));
+        mockMvc.perform(get("/" + shortCode).header("X-User-Id", userId.toString()))
+                .andExpect(status().isGone())
+                .andExpect(errorMessageContains("Время жизни ссылки истекло"));
+        mockMvc.perform(get("/api/notifications").header("X-User-Id", userId.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].type").value("LINK_EXPIRED"));
+    }
+
     @Test
     void redirect_redirectsToStoredUrl() throws Exception {
         UUID userId = UUID.randomUUID();
@@ -0,0 +1,104 @@
+package ru.mephi.ozerov.shortlinks.controller;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.mephi.ozerov.shortlinks.service.NotificationWriter;
+import tools.jackson.databind.ObjectMapper;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UserControllerIntegrationTest {
+
+    @Autowired private MockMvc mockMvc;
+
+    @Autowired private ObjectMapper objectMapper;
+
+    @Autowired private NotificationWriter notificationWriter;
+
+    @Test
+    void summary_withoutUserId_returns400() throws Exception {
+        mockMvc.perform(get("/api/users/me/summary"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("X-User-Id")));
+    }
+
+    @Test
+    void summary_forNewUser_returnsZeros() throws Exception {
+        mockMvc.perform(
+                        get("/api/users/me/summary")
+                                .header("X-User-Id", UUID.randomUUID().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalLinks").value(0))
+                .andExpect(jsonPath("$.unreadNotifications").value(0));
+    }
+
+    @Test
+    void summary_tracksCreateLimitReachedAndRead() throws Exception {
+        UUID userId = UUID.randomUUID();
+        MvcResult created =
+                mockMvc.perform(
+                                post("/api/links")
+                                        .header("X-User-Id", userId.toString())
+                                        .contentType(MediaType.APPLICATION_JSON)
+                                        .content(
+                                                "{\"originalUrl\": \"https://summary.com\", \"clickLimit\": 1}"))
+                        .andExpect(status().isCreated())
+                        .andReturn();
+        mockMvc.perform(
+                        post("/api/links")
+                                .header("X-User-Id", userId.toString())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"originalUrl\": \"https://summary.com/2\"}"))
+                .andExpect(status().isCreated());
+        String shortCode =
+                objectMapper
+                        .readTree(created.getResponse().getContentAsString())
+                        .get("link")
+                        .get("shortCode")
+                        .asText();
+        mockMvc.perform(get("/" + shortCode).header("X-User-Id", userId.toString()))
+                .andExpect(status().is3xxRedirection());
+        // уведомление о лимите пишется асинхронно — дописываем его синхронно
+        notificationWriter.replayPending();
+
+        mockMvc.perform(get("/api/users/me/summary").header("X-User-Id", userId.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalLinks").value(2))
+                .andExpect(jsonPath("$.activeLinks").value(1))
+                .andExpect(jsonPath("$.limitReachedLinks").value(1))
+                .andExpect(jsonPath("$.expiredLinks").value(0))
+                .andExpect(jsonPath("$.unreadNotifications").value(1));
+
+        Long notificationId =
+                objectMapper
+                        .readTree(
+                                mockMvc.perform(
+                                                get("/api/notifications")
+                                                        .header("X-User-Id", userId.toString()))
+                                        .andReturn()
+                                        .getResponse()
+                                        .getContentAsString())
+                        .get(0)
+                        .get("id")
+                        .asLong();
+        mockMvc.perform(
+                        patch("/api/notifications/" + notificationId + "/read")
+                                .header("X-User-Id", userId.toString()))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/users/me/summary").header("X-User-Id", userId.toString()))
+                .andExpect(jsonPath("$.unreadNotifications").value(0));
+    }
+}
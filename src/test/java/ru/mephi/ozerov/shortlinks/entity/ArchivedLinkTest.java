@@ -0,0 +1,67 @@
+package ru.mephi.ozerov.shortlinks.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class ArchivedLinkTest {
+
+    private static final UUID USER_ID = UUID.randomUUID();
+
+    @Test
+    void toLink_restoresPackedFields() {
+        Instant createdAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Link link =
+                Link.builder()
+                        .id(42L)
+                        .shortCode("abc123")
+                        .originalUrl("https://example.com/some/long/path?query=value")
+                        .userId(USER_ID)
+                        .clickLimit(5)
+                        .clicksCount(5)
+                        .expiresAt(createdAt.plusSeconds(3600))
+                        .createdAt(createdAt)
+                        .active(false)
+                        .build();
+
+        ArchivedLink archived = ArchivedLink.of(link, ArchiveReason.LIMIT_REACHED, Instant.now());
+        Link restored = archived.toLink();
+
+        assertEquals(42L, archived.getId());
+        assertEquals("abc123", archived.getShortCode());
+        assertEquals(link.getOriginalUrl(), restored.getOriginalUrl());
+        assertEquals(5, restored.getClickLimit());
+        assertEquals(5, restored.getClicksCount());
+        assertEquals(link.getExpiresAt(), restored.getExpiresAt());
+        assertEquals(createdAt, restored.getCreatedAt());
+        assertEquals(USER_ID, restored.getUserId());
+        assertFalse(restored.isAvailable());
+    }
+
+    @Test
+    void toLink_keepsMissingClickLimit() {
+        Link link =
+                Link.builder()
+                        .id(7L)
+                        .shortCode("xyz789")
+                        .originalUrl("https://example.com")
+                        .userId(USER_ID)
+                        .clicksCount(0)
+                        .expiresAt(Instant.now())
+                        .createdAt(Instant.now())
+                        .build();
+
+        assertNull(
+                ArchivedLink.of(link, ArchiveReason.EXPIRED, Instant.now())
+                        .toLink()
+                        .getClickLimit());
+    }
+
+    @Test
+    void isNew_alwaysTrue_forAppendOnlyInsert() {
+        assertTrue(new ArchivedLink().isNew());
+    }
+}
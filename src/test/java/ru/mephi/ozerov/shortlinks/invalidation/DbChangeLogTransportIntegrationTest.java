@@ -0,0 +1,92 @@
+package ru.mephi.ozerov.shortlinks.invalidation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.mephi.ozerov.shortlinks.repository.LinkChangeLogRepository;
+
+/** Журнал изменений ссылок на настоящей H2: два узла с общей БД. */
+@SpringBootTest(
+        properties =
+                "spring.datasource.url=jdbc:h2:mem:changelogtest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE")
+@ActiveProfiles("test")
+class DbChangeLogTransportIntegrationTest {
+
+    @Autowired private LinkChangeLogRepository repository;
+
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void poll_deliversOtherNodesRowsOnce() {
+        DbChangeLogTransport sender = transport();
+        DbChangeLogTransport receiver = transport();
+        sender.start(messages -> {});
+        receiver.start(messages -> {});
+        sender.close();
+        receiver.close();
+
+        sender.send(
+                List.of(
+                        new InvalidationMessage("a", 1, "c1", 1000),
+                        new InvalidationMessage("a", 2, "c2", 2000)));
+
+        List<InvalidationMessage> first = receiver.poll();
+        assertEquals(
+                List.of(
+                        new InvalidationMessage("a", 1, "c1", 1000),
+                        new InvalidationMessage("a", 2, "c2", 2000)),
+                first);
+        assertTrue(receiver.poll().isEmpty());
+
+        sender.send(List.of(new InvalidationMessage("a", 3, "c3", 3000)));
+        assertEquals(
+                List.of("c3"),
+                receiver.poll().stream().map(InvalidationMessage::shortCode).toList());
+    }
+
+    @Test
+    void poll_whenWindowHoldsMoreThanOnePage_deliversAllRows() {
+        DbChangeLogTransport sender = transport();
+        DbChangeLogTransport receiver = transport();
+        receiver.start(messages -> {});
+        receiver.close();
+
+        int total = DbChangeLogTransport.POLL_LIMIT + 500;
+        sender.send(
+                IntStream.rangeClosed(1, total)
+                        .mapToObj(i -> new InvalidationMessage("a", i, "c" + i, i))
+                        .toList());
+
+        List<InvalidationMessage> first = receiver.poll();
+        assertEquals(total, first.size());
+        assertEquals("c" + total, first.get(total - 1).shortCode());
+        assertTrue(receiver.poll().isEmpty());
+
+        sender.send(List.of(new InvalidationMessage("a", total + 1, "last", 0)));
+        assertEquals(
+                List.of("last"),
+                receiver.poll().stream().map(InvalidationMessage::shortCode).toList());
+    }
+
+    private DbChangeLogTransport transport() {
+        return new DbChangeLogTransport(
+                repository,
+                transactionManager,
+                Duration.ofHours(1),
+                Duration.ofSeconds(5),
+                Duration.ofMinutes(10));
+    }
+}
@@ -0,0 +1,62 @@
+package ru.mephi.ozerov.shortlinks.scheduler;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.mephi.ozerov.shortlinks.repository.ExpiryLeaseRepository;
+import ru.mephi.ozerov.shortlinks.repository.ExpiryNodeRepository;
+import ru.mephi.ozerov.shortlinks.service.ExpiryLeaseService;
+
+@ExtendWith(MockitoExtension.class)
+class ExpiryLeaseRenewerTest {
+
+    private static final String NODE = "node-a";
+
+    @Mock private ExpiryLeaseRepository leaseRepository;
+
+    @Mock private ExpiryNodeRepository nodeRepository;
+
+    @Test
+    void slowScheduledJob_doesNotLoseLeases() throws Exception {
+        // ttl 150 мс: без продления шарды перестают считаться своими через ~100 мс
+        ExpiryLeaseService expiryLeaseService =
+                new ExpiryLeaseService(leaseRepository, nodeRepository, NODE, 4, 150);
+        when(leaseRepository.count()).thenReturn(4L);
+        when(nodeRepository.countByAliveUntilAfter(any())).thenReturn(1L);
+        when(leaseRepository.findOwnedShards(eq(NODE), any(), eq(4))).thenReturn(List.of());
+        when(leaseRepository.tryAcquire(anyInt(), eq(NODE), any(), any())).thenReturn(1);
+        ExpiryLeaseRenewer renewer = new ExpiryLeaseRenewer(expiryLeaseService, 30);
+        ExecutorService scheduler = Executors.newSingleThreadExecutor();
+        try {
+            renewer.start();
+            assertEquals(Set.of(0, 1, 2, 3), expiryLeaseService.ownedShards());
+
+            // Долгая задача занимает поток планировщика в несколько раз дольше ttl
+            Future<Set<Integer>> sweep =
+                    scheduler.submit(
+                            () -> {
+                                Thread.sleep(500);
+                                return expiryLeaseService.ownedShards();
+                            });
+
+            assertEquals(Set.of(0, 1, 2, 3), sweep.get());
+            verify(nodeRepository, atLeast(5)).countByAliveUntilAfter(any());
+        } finally {
+            renewer.stop();
+            scheduler.shutdownNow();
+        }
+        assertFalse(renewer.isRunning());
+    }
+}
@@ -0,0 +1,81 @@
+package ru.mephi.ozerov.shortlinks.scheduler;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK = 1000;
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void advance_firesOnlyAfterDeadline() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, START);
+        wheel.schedule(1L, START + 5_500);
+
+        assertTrue(fired(wheel, START + 5_000).isEmpty());
+        assertEquals(List.of(1L), fired(wheel, START + 6_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_firesPastDeadlineImmediately() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, START);
+        wheel.schedule(7L, START - 60_000);
+
+        assertEquals(List.of(7L), fired(wheel, START));
+    }
+
+    @Test
+    void advance_cascadesFromHigherLevels() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, START);
+        long oneDay = 24L * 3600 * 1000;
+        wheel.schedule(1L, START + 100_000);
+        wheel.schedule(2L, START + oneDay);
+        wheel.schedule(3L, START + 300L * oneDay);
+
+        assertEquals(List.of(1L), fired(wheel, START + 101_000));
+        assertTrue(fired(wheel, START + oneDay).isEmpty());
+        assertEquals(List.of(2L), fired(wheel, START + oneDay + 1_000));
+        assertTrue(fired(wheel, START + 300L * oneDay).isEmpty());
+        assertEquals(List.of(3L), fired(wheel, START + 300L * oneDay + 1_000));
+    }
+
+    @Test
+    void advance_neverFiresEarlyOrLate_forRandomDeadlines() {
+        HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, START);
+        Random random = new Random(42);
+        int n = 5_000;
+        long[] deadlines = new long[n];
+        for (int i = 0; i < n; i++) {
+            deadlines[i] = START + (long) (random.nextDouble() * 10L * 3600 * 1000);
+            wheel.schedule(i, deadlines[i]);
+        }
+
+        int total = 0;
+        for (long now = START; now <= START + 10L * 3600 * 1000 + TICK; now += 7 * TICK) {
+            long current = now;
+            total +=
+                    wheel.advance(
+                            now,
+                            id -> {
+                                long deadline = deadlines[(int) id];
+                                assertTrue(deadline < current, "сработало раньше срока");
+                                assertTrue(
+                                        current - deadline <= 8 * TICK, "сработало слишком поздно");
+                            });
+        }
+        assertEquals(n, total);
+        assertEquals(0, wheel.size());
+    }
+
+    private static List<Long> fired(HierarchicalTimingWheel wheel, long now) {
+        List<Long> ids = new ArrayList<>();
+        wheel.advance(now, ids::add);
+        return ids;
+    }
+}
@@ -0,0 +1,47 @@
+package ru.mephi.ozerov.shortlinks.scheduler;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.mephi.ozerov.shortlinks.service.LinkService;
+
+@ExtendWith(MockitoExtension.class)
+class LinkExpiryTickerTest {
+
+    @Mock private LinkService linkService;
+
+    @Test
+    void tick_expiresDueLinksInBatches() {
+        LinkExpiryWheel wheel = new LinkExpiryWheel(10);
+        Instant past = Instant.now().minusSeconds(1);
+        for (long id = 1; id <= 5; id++) {
+            wheel.schedule(id, past);
+        }
+        when(linkService.expireByIds(anyList()))
+                .thenAnswer(inv -> inv.<List<Long>>getArgument(0).size());
+
+        new LinkExpiryTicker(linkService, wheel, 10, 2).tick();
+
+        verify(linkService, times(3)).expireByIds(anyList());
+    }
+
+    @Test
+    void start_ticksWithoutTheSchedulerThread() {
+        LinkExpiryWheel wheel = new LinkExpiryWheel(10);
+        wheel.schedule(1L, Instant.now().plusMillis(50));
+        LinkExpiryTicker ticker = new LinkExpiryTicker(linkService, wheel, 10, 100);
+
+        ticker.start();
+        try {
+            verify(linkService, timeout(2000)).expireByIds(List.of(1L));
+        } finally {
+            ticker.stop();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import ru.mephi.ozerov.shortlinks.repository.LinkExpiryView;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
+
+@ExtendWith(MockitoExtension.class)
+class AdaptiveExpirySamplerTest {
+
+    private static final Set<Integer> SHARDS = Set.of(0);
+
+    @Mock private LinkRepository linkRepository;
+
+    @Mock private LinkExpiryService linkExpiryService;
+
+    @Mock private ExpiryLeaseService expiryLeaseService;
+
+    @Mock private RedirectTrafficMonitor trafficMonitor;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private AdaptiveExpirySampler sampler(boolean enabled) {
+        return new AdaptiveExpirySampler(
+                linkRepository,
+                linkExpiryService,
+                expiryLeaseService,
+                trafficMonitor,
+                meterRegistry,
+                enabled,
+                4,
+                0.25,
+                1000,
+                100);
+    }
+
+    private void ownShardsWithLinks() {
+        when(trafficMonitor.ratePerSecond()).thenReturn(0.0);
+        when(expiryLeaseService.ownedShards()).thenReturn(SHARDS);
+        when(expiryLeaseService.shardCount()).thenReturn(1);
+        when(linkRepository.findMaxId()).thenReturn(100L);
+    }
+
+    @Test
+    void run_whenMostOfSampleExpired_takesAnotherSample() {
+        ownShardsWithLinks();
+        when(linkRepository.findActiveExpiriesInShards(
+                        anyLong(), eq(1), eq(SHARDS), any(Pageable.class)))
+                .thenReturn(List.of(expired(1), expired(2), expired(3), alive(4)))
+                .thenReturn(List.of(expired(5), alive(6), alive(7), alive(8)));
+        when(linkExpiryService.expireSampled(eq(List.of(1L, 2L, 3L)), any())).thenReturn(3);
+        when(linkExpiryService.expireSampled(eq(List.of(5L)), any())).thenReturn(1);
+
+        assertEquals(4, sampler(true).run());
+        assertEquals(2.0, meterRegistry.counter("shortlinks.expiry.sampler.rounds").count());
+    }
+
+    @Test
+    void run_whenNothingExpired_stopsAfterOneSample() {
+        ownShardsWithLinks();
+        when(linkRepository.findActiveExpiriesInShards(
+                        anyLong(), eq(1), eq(SHARDS), any(Pageable.class)))
+                .thenReturn(List.of(alive(1), alive(2)));
+
+        assertEquals(0, sampler(true).run());
+        verifyNoInteractions(linkExpiryService);
+        verify(linkRepository, times(1))
+                .findActiveExpiriesInShards(anyLong(), anyInt(), any(), any());
+    }
+
+    @Test
+    void run_duringTrafficPeak_backsOff() {
+        when(trafficMonitor.ratePerSecond()).thenReturn(250.0);
+
+        assertEquals(0, sampler(true).run());
+        verifyNoInteractions(linkRepository, linkExpiryService);
+        assertEquals(1.0, meterRegistry.counter("shortlinks.expiry.sampler.skipped").count());
+    }
+
+    @Test
+    void run_whenDisabled_doesNothing() {
+        assertEquals(0, sampler(false).run());
+        verifyNoInteractions(trafficMonitor, linkRepository);
+    }
+
+    private static LinkExpiryView expired(long id) {
+        return view(id, Instant.now().minusSeconds(10));
+    }
+
+    private static LinkExpiryView alive(long id) {
+        return view(id, Instant.now().plusSeconds(3600));
+    }
+
+    private static LinkExpiryView view(long id, Instant expiresAt) {
+        return new LinkExpiryView() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Instant getExpiresAt() {
+                return expiresAt;
+            }
+        };
+    }
+}
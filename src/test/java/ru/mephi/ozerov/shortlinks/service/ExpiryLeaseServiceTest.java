@@ -0,0 +1,107 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.mephi.ozerov.shortlinks.entity.ExpiryNode;
+import ru.mephi.ozerov.shortlinks.repository.ExpiryLeaseRepository;
+import ru.mephi.ozerov.shortlinks.repository.ExpiryNodeRepository;
+
+@ExtendWith(MockitoExtension.class)
+class ExpiryLeaseServiceTest {
+
+    private static final String NODE = "node-a";
+
+    @Mock private ExpiryLeaseRepository leaseRepository;
+
+    @Mock private ExpiryNodeRepository nodeRepository;
+
+    private ExpiryLeaseService expiryLeaseService;
+
+    @BeforeEach
+    void setUp() {
+        expiryLeaseService =
+                new ExpiryLeaseService(leaseRepository, nodeRepository, NODE, 4, 30000);
+        when(leaseRepository.count()).thenReturn(4L);
+    }
+
+    @Test
+    void ownedShards_beforeFirstRebalance_isEmpty() {
+        reset(leaseRepository, nodeRepository);
+
+        assertTrue(expiryLeaseService.ownedShards().isEmpty());
+        assertFalse(expiryLeaseService.owns(0L));
+    }
+
+    @Test
+    void rebalance_singleNode_acquiresAllShards() {
+        when(nodeRepository.countByAliveUntilAfter(any())).thenReturn(1L);
+        when(leaseRepository.findOwnedShards(eq(NODE), any(), eq(4))).thenReturn(List.of());
+        when(leaseRepository.tryAcquire(anyInt(), eq(NODE), any(), any())).thenReturn(1);
+
+        Set<Integer> owned = expiryLeaseService.rebalance();
+
+        assertEquals(Set.of(0, 1, 2, 3), owned);
+        assertEquals(owned, expiryLeaseService.ownedShards());
+        assertTrue(expiryLeaseService.owns(7L));
+    }
+
+    @Test
+    void rebalance_whenShardsTakenByOthers_keepsOnlyAcquired() {
+        when(nodeRepository.countByAliveUntilAfter(any())).thenReturn(1L);
+        when(leaseRepository.findOwnedShards(eq(NODE), any(), eq(4))).thenReturn(List.of());
+        when(leaseRepository.tryAcquire(anyInt(), eq(NODE), any(), any())).thenReturn(0);
+        when(leaseRepository.tryAcquire(eq(2), eq(NODE), any(), any())).thenReturn(1);
+
+        assertEquals(Set.of(2), expiryLeaseService.rebalance());
+        assertTrue(expiryLeaseService.owns(6L));
+        assertFalse(expiryLeaseService.owns(5L));
+    }
+
+    @Test
+    void rebalance_whenAnotherNodeJoins_releasesShardsAboveFairShare() {
+        when(nodeRepository.countByAliveUntilAfter(any())).thenReturn(2L);
+        when(leaseRepository.findOwnedShards(eq(NODE), any(), eq(4)))
+                .thenReturn(List.of(0, 1, 2, 3));
+
+        assertEquals(Set.of(0, 1), expiryLeaseService.rebalance());
+        verify(leaseRepository).release(3, NODE);
+        verify(leaseRepository).release(2, NODE);
+        verify(leaseRepository, never()).tryAcquire(anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void rebalance_renewsLeasesAndRegistersNewNode() {
+        when(nodeRepository.countByAliveUntilAfter(any())).thenReturn(1L);
+        when(leaseRepository.findOwnedShards(eq(NODE), any(), eq(4)))
+                .thenReturn(List.of(0, 1, 2, 3));
+
+        expiryLeaseService.rebalance();
+
+        verify(nodeRepository).save(any(ExpiryNode.class));
+        verify(leaseRepository).renewAll(eq(NODE), any());
+    }
+
+    @Test
+    void rebalance_createsMissingShardRows() {
+        when(leaseRepository.count()).thenReturn(0L);
+        when(leaseRepository.findAll()).thenReturn(List.of());
+        when(nodeRepository.countByAliveUntilAfter(any())).thenReturn(1L);
+        when(leaseRepository.findOwnedShards(eq(NODE), any(), eq(4)))
+                .thenReturn(List.of(0, 1, 2, 3));
+
+        expiryLeaseService.rebalance();
+
+        verify(leaseRepository, times(4)).save(any());
+    }
+}
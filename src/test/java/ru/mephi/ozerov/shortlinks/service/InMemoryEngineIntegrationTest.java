@@ -0,0 +1,114 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.mephi.ozerov.shortlinks.entity.ArchiveReason;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.entity.Notification;
+import ru.mephi.ozerov.shortlinks.entity.NotificationType;
+import ru.mephi.ozerov.shortlinks.entity.UserSummary;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
+import ru.mephi.ozerov.shortlinks.store.InMemoryLinkStore;
+import ru.mephi.ozerov.shortlinks.store.LinkStore;
+
+/**
+ * Ссылки в памяти процесса, уведомления, архив и сводка — в БД: лимит переходов и истечение без
+ * таблицы {@code links}.
+ */
+@SpringBootTest(
+        properties = {
+            "shortlinks.store.engine=memory",
+            "spring.datasource.url=jdbc:h2:mem:memorystoretest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+        })
+@ActiveProfiles("test")
+class InMemoryEngineIntegrationTest {
+
+    @Autowired private LinkService linkService;
+
+    @Autowired private LinkStore linkStore;
+
+    @Autowired private LinkRepository linkRepository;
+
+    @Autowired private NotificationService notificationService;
+
+    @Autowired private UserSummaryService userSummaryService;
+
+    @Test
+    void engine_keepsLinksOutOfLinksTable() {
+        linkService.create("https://memory.com", null, UUID.randomUUID());
+
+        assertInstanceOf(InMemoryLinkStore.class, linkStore);
+        assertEquals(0, linkRepository.count());
+    }
+
+    @Test
+    void limitReached_deactivatesAndWritesNotificationDirectly() {
+        UUID userId = UUID.randomUUID();
+        Link link = linkService.create("https://memory.com/limit", 1, userId);
+
+        assertTrue(linkService.resolveAndIncrementClicks(link.getShortCode()).isPresent());
+        assertTrue(linkService.resolveAndIncrementClicks(link.getShortCode()).isEmpty());
+
+        assertFalse(linkService.findByShortCode(link.getShortCode()).orElseThrow().getActive());
+        List<Notification> notifications = notificationService.findByUserId(userId);
+        assertEquals(1, notifications.size());
+        assertEquals(NotificationType.CLICK_LIMIT_REACHED, notifications.get(0).getType());
+        UserSummary summary = userSummaryService.getSummary(userId);
+        assertEquals(0, summary.getActiveLinks());
+        assertEquals(1, summary.getLimitReachedLinks());
+        assertEquals(1, summary.getUnreadNotifications());
+    }
+
+    @Test
+    void deleteExpiredAndNotify_removesFromStoreAndArchivesByReason() {
+        UUID userId = UUID.randomUUID();
+        Link expired = linkService.create("https://memory.com/expired", null, userId);
+        Link exhausted = linkService.create("https://memory.com/exhausted", 1, userId);
+        Link alive = linkService.create("https://memory.com/alive", null, userId);
+        linkService.resolveAndIncrementClicks(exhausted.getShortCode());
+        expireNow(expired.getId());
+        expireNow(exhausted.getId());
+
+        assertEquals(2, linkService.deleteExpiredAndNotify());
+
+        assertEquals(
+                List.of(alive.getId()),
+                linkService.findByUserId(userId).stream().map(Link::getId).toList());
+        assertEquals(
+                ArchiveReason.EXPIRED,
+                linkService
+                        .findArchivedByIdAndUserId(expired.getId(), userId)
+                        .orElseThrow()
+                        .getReason());
+        assertEquals(
+                ArchiveReason.LIMIT_REACHED,
+                linkService
+                        .findArchivedByIdAndUserId(exhausted.getId(), userId)
+                        .orElseThrow()
+                        .getReason());
+        assertEquals(
+                List.of(NotificationType.CLICK_LIMIT_REACHED, NotificationType.LINK_EXPIRED),
+                notificationService.findByUserId(userId).stream()
+                        .map(Notification::getType)
+                        .sorted()
+                        .toList());
+        UserSummary summary = userSummaryService.getSummary(userId);
+        assertEquals(1, summary.getTotalLinks());
+        assertEquals(1, summary.getActiveLinks());
+        assertEquals(1, summary.getExpiredLinks());
+        assertEquals(1, summary.getLimitReachedLinks());
+    }
+
+    private void expireNow(long id) {
+        Link link = linkStore.findById(id).orElseThrow();
+        link.setExpiresAt(Instant.now().minusSeconds(1));
+        linkStore.update(link);
+    }
+}
@@ -0,0 +1,95 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+
+class LinkChangeStreamTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<LinkChangeStream.Change> applied =
+            Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void changes_areAppliedInOrderAsSnapshots() throws InterruptedException {
+        LinkChangeStream stream =
+                new LinkChangeStream(List.of(applied::addAll), meterRegistry, 100, 2);
+        stream.start();
+        try {
+            Link link = link("a1");
+            stream.changed(link);
+            link.setClicksCount(1);
+            stream.changed(link);
+            stream.removed("a1");
+            stream.removed(List.of(link("b1"), link("b2")));
+
+            assertTrue(stream.awaitApplied(Duration.ofSeconds(5)));
+        } finally {
+            stream.stop();
+        }
+
+        assertEquals(5, applied.size());
+        assertEquals(0, applied.get(0).link().getClicksCount());
+        assertEquals(1, applied.get(1).link().getClicksCount());
+        assertTrue(applied.get(2).removed());
+        assertEquals(
+                List.of("a1", "a1", "a1", "b1", "b2"),
+                applied.stream().map(LinkChangeStream.Change::shortCode).toList());
+        assertEquals(5, meterRegistry.timer("shortlinks.link.events.lag").count());
+    }
+
+    @Test
+    void publish_whenFull_dropsAndCounts() {
+        LinkChangeStream stream =
+                new LinkChangeStream(List.of(applied::addAll), meterRegistry, 2, 10);
+
+        stream.removed("x1");
+        stream.removed("x2");
+        stream.removed("x3");
+
+        assertEquals(1.0, meterRegistry.counter("shortlinks.link.events.dropped").count());
+        assertEquals(2.0, meterRegistry.counter("shortlinks.link.events.published").count());
+        assertEquals(2.0, meterRegistry.get("shortlinks.link.events.queue.size").gauge().value());
+    }
+
+    @Test
+    void failingListener_doesNotStopOthers() throws InterruptedException {
+        LinkChangeStream.Listener failing =
+                changes -> {
+                    throw new IllegalStateException("boom");
+                };
+        LinkChangeStream stream =
+                new LinkChangeStream(List.of(failing, applied::addAll), meterRegistry, 10, 10);
+        stream.start();
+        try {
+            stream.removed("f1");
+            stream.removed("f2");
+            assertTrue(stream.awaitApplied(Duration.ofSeconds(5)));
+        } finally {
+            stream.stop();
+        }
+
+        assertEquals(2, applied.size());
+    }
+
+    private static Link link(String shortCode) {
+        return Link.builder()
+                .id(1L)
+                .shortCode(shortCode)
+                .originalUrl("https://example.com")
+                .userId(UUID.randomUUID())
+                .clicksCount(0)
+                .expiresAt(Instant.now().plusSeconds(60))
+                .createdAt(Instant.now())
+                .active(true)
+                .build();
+    }
+}
@@ -0,0 +1,150 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.mephi.ozerov.shortlinks.entity.ArchiveReason;
+import ru.mephi.ozerov.shortlinks.entity.ArchivedLink;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.entity.Notification;
+import ru.mephi.ozerov.shortlinks.entity.NotificationType;
+import ru.mephi.ozerov.shortlinks.repository.ArchivedLinkRepository;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
+
+/** Множественные операторы истечения на настоящей H2: уведомления, удаление и сводка. */
+@SpringBootTest(
+        properties = {
+            "shortlinks.expiry.bucketed=true",
+            "shortlinks.archive.inactive-grace-minutes=0",
+            "spring.datasource.url=jdbc:h2:mem:expirytest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+        })
+@ActiveProfiles("test")
+class LinkExpiryIntegrationTest {
+
+    @Autowired private LinkService linkService;
+
+    @Autowired private LinkRepository linkRepository;
+
+    @Autowired private NotificationService notificationService;
+
+    @Autowired private UserSummaryService userSummaryService;
+
+    @Autowired private ExpiryLeaseService expiryLeaseService;
+
+    @Autowired private ArchivedLinkRepository archivedLinkRepository;
+
+    @Autowired private LinkArchiveService linkArchiveService;
+
+    @Autowired private NotificationWriter notificationWriter;
+
+    @Test
+    void startup_singleNodeLeasesAllShards() {
+        assertEquals(expiryLeaseService.shardCount(), expiryLeaseService.ownedShards().size());
+    }
+
+    @Test
+    void deleteExpiredAndNotify_insertsNotificationsAndDeletesOnlyExpired() {
+        UUID userId = UUID.randomUUID();
+        Link expired1 = linkService.create("https://expired.com/1", null, userId);
+        Link expired2 = linkService.create("https://expired.com/2", 5, userId);
+        Link alive = linkService.create("https://alive.com", null, userId);
+        expireNow(expired1);
+        expireNow(expired2);
+
+        linkService.deleteExpiredAndNotify();
+
+        assertFalse(linkRepository.existsById(expired1.getId()));
+        assertFalse(linkRepository.existsById(expired2.getId()));
+        assertTrue(linkRepository.existsById(alive.getId()));
+        ArchivedLink archived = archivedLinkRepository.findById(expired2.getId()).orElseThrow();
+        assertEquals(ArchiveReason.EXPIRED, archived.getReason());
+        assertEquals("https://expired.com/2", archived.toLink().getOriginalUrl());
+        assertEquals(5, archived.toLink().getClickLimit());
+        assertFalse(archivedLinkRepository.existsById(alive.getId()));
+        List<Notification> notifications = notificationService.findByUserId(userId);
+        assertEquals(2, notifications.size());
+        assertTrue(
+                notifications.stream().allMatch(n -> n.getType() == NotificationType.LINK_EXPIRED));
+        assertTrue(
+                notifications.stream()
+                        .anyMatch(n -> n.getShortCode().equals(expired1.getShortCode())));
+
+        var summary = userSummaryService.getSummary(userId);
+        assertEquals(1L, summary.getTotalLinks());
+        assertEquals(1L, summary.getActiveLinks());
+        assertEquals(2L, summary.getExpiredLinks());
+        assertEquals(2L, summary.getUnreadNotifications());
+    }
+
+    @Test
+    void expireByIds_ignoresLinksThatAreNotExpired() {
+        UUID userId = UUID.randomUUID();
+        Link expired = linkService.create("https://expired.com/3", null, userId);
+        Link alive = linkService.create("https://alive.com/2", null, userId);
+        expireNow(expired);
+
+        int count = linkService.expireByIds(List.of(expired.getId(), alive.getId()));
+
+        assertEquals(1, count);
+        assertTrue(linkRepository.existsById(alive.getId()));
+        assertEquals(1, notificationService.findByUserId(userId).size());
+    }
+
+    @Test
+    void deleteExpiredAndNotify_dropsPastExpiryBuckets() {
+        UUID userId = UUID.randomUUID();
+        Link old = linkService.create("https://old-bucket.com", null, userId);
+        Instant twoHoursAgo = Instant.now().minusSeconds(7200);
+        old.setExpiresAt(twoHoursAgo);
+        old.setExpiryBucket(Link.expiryBucketOf(twoHoursAgo));
+        linkRepository.save(old);
+
+        linkService.deleteExpiredAndNotify();
+
+        assertFalse(linkRepository.existsById(old.getId()));
+        assertEquals(
+                NotificationType.LINK_EXPIRED,
+                notificationService.findByUserId(userId).get(0).getType());
+    }
+
+    @Test
+    void archiveDeactivated_movesLimitReachedLinksToArchive() {
+        UUID userId = UUID.randomUUID();
+        Link link = linkService.create("https://limit-archive.com", 1, userId);
+        linkService.resolveAndIncrementClicks(link.getShortCode());
+        notificationWriter.replayPending();
+
+        linkArchiveService.archiveDeactivated(Instant.now().plusSeconds(1));
+
+        assertFalse(linkRepository.existsById(link.getId()));
+        ArchivedLink archived = archivedLinkRepository.findById(link.getId()).orElseThrow();
+        assertEquals(ArchiveReason.LIMIT_REACHED, archived.getReason());
+        assertEquals(1, archived.toLink().getClicksCount());
+        var summary = userSummaryService.getSummary(userId);
+        assertEquals(0L, summary.getTotalLinks());
+        assertEquals(1L, summary.getLimitReachedLinks());
+        assertEquals(
+                link.getId(),
+                linkService.findArchivedByIdAndUserId(link.getId(), userId).orElseThrow().getId());
+        assertTrue(
+                linkService.findArchivedByIdAndUserId(link.getId(), UUID.randomUUID()).isEmpty());
+    }
+
+    @Test
+    void create_assignsExpiryBucketOfExpiresAt() {
+        Link link = linkService.create("https://bucket.com", null, UUID.randomUUID());
+
+        assertEquals(Link.expiryBucketOf(link.getExpiresAt()), link.getExpiryBucket());
+    }
+
+    private void expireNow(Link link) {
+        link.setExpiresAt(Instant.now().minusSeconds(1));
+        linkRepository.save(link);
+    }
+}
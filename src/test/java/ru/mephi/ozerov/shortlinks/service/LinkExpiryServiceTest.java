@@ -0,0 +1,292 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.mephi.ozerov.shortlinks.entity.ArchiveReason;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.entity.Notification;
+import ru.mephi.ozerov.shortlinks.entity.NotificationType;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
+import ru.mephi.ozerov.shortlinks.repository.NotificationRepository;
+import ru.mephi.ozerov.shortlinks.store.LinkStore;
+
+@ExtendWith(MockitoExtension.class)
+class LinkExpiryServiceTest {
+
+    @Mock private LinkRepository linkRepository;
+
+    @Mock private LinkStore linkStore;
+
+    @Mock private NotificationRepository notificationRepository;
+
+    @Mock private UserSummaryService userSummaryService;
+
+    @Mock private ExpiryLeaseService expiryLeaseService;
+
+    @Mock private LinkArchiveService linkArchiveService;
+
+    @Mock private NotificationStreamRegistry streamRegistry;
+
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private LinkExpiryService linkExpiryService;
+
+    private static final UUID USER_ID = UUID.randomUUID();
+    private static final Instant NOW = Instant.now();
+    private static final Set<Integer> SHARDS = Set.of(0, 1);
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(linkStore.backedByLinksTable()).thenReturn(true);
+        linkExpiryService =
+                new LinkExpiryService(
+                        linkRepository,
+                        linkStore,
+                        notificationRepository,
+                        userSummaryService,
+                        expiryLeaseService,
+                        linkArchiveService,
+                        streamRegistry,
+                        transactionManager,
+                        meterRegistry,
+                        2,
+                        false);
+    }
+
+    private void ownAllShards() {
+        when(expiryLeaseService.ownedShards()).thenReturn(SHARDS);
+        when(expiryLeaseService.shardCount()).thenReturn(2);
+    }
+
+    @Test
+    void expireAllDue_processesIdRangesChunkByChunk() {
+        ownAllShards();
+        when(linkRepository.findExpiredActiveIds(
+                        eq(0L), eq(NOW), eq(2), eq(SHARDS), any(Pageable.class)))
+                .thenReturn(List.of(3L, 8L));
+        when(linkRepository.findExpiredActiveIds(
+                        eq(8L), eq(NOW), eq(2), eq(SHARDS), any(Pageable.class)))
+                .thenReturn(List.of(11L));
+        when(linkRepository.lockExpiredActiveInRange(
+                        anyLong(), anyLong(), eq(NOW), eq(2), eq(SHARDS)))
+                .thenReturn(links(3L, 8L))
+                .thenReturn(links(11L));
+        when(linkRepository.deleteExpiredActiveInRange(3L, 8L, NOW, 2, SHARDS)).thenReturn(2);
+        when(linkRepository.deleteExpiredActiveInRange(11L, 11L, NOW, 2, SHARDS)).thenReturn(1);
+
+        int expired = linkExpiryService.expireAllDue(NOW);
+
+        assertEquals(3, expired);
+        verify(notificationRepository).insertLinkExpiredForRange(3L, 8L, NOW, 2, SHARDS);
+        verify(notificationRepository).insertLinkExpiredForRange(11L, 11L, NOW, 2, SHARDS);
+        verify(userSummaryService).onLinksExpired(USER_ID, 2L);
+        verify(userSummaryService).onLinksExpired(USER_ID, 1L);
+        verify(linkArchiveService, times(2)).archive(any(), eq(ArchiveReason.EXPIRED), eq(NOW));
+        verify(transactionManager, times(2)).commit(any());
+        assertEquals(
+                3.0, meterRegistry.counter("shortlinks.expiry.expired", "source", "sweep").count());
+        assertEquals(2, meterRegistry.timer("shortlinks.expiry.chunk").count());
+    }
+
+    @Test
+    void expireAllDue_whenLeaseLostBetweenChunks_stopsBeforeNextChunk() {
+        when(expiryLeaseService.ownedShards()).thenReturn(SHARDS, SHARDS, Set.of(0));
+        when(expiryLeaseService.shardCount()).thenReturn(2);
+        when(linkRepository.findExpiredActiveIds(
+                        eq(0L), eq(NOW), eq(2), eq(SHARDS), any(Pageable.class)))
+                .thenReturn(List.of(3L, 8L));
+        when(linkRepository.lockExpiredActiveInRange(3L, 8L, NOW, 2, SHARDS))
+                .thenReturn(links(3L, 8L));
+        when(linkRepository.deleteExpiredActiveInRange(3L, 8L, NOW, 2, SHARDS)).thenReturn(2);
+
+        assertEquals(2, linkExpiryService.expireAllDue(NOW));
+        verify(linkRepository, never())
+                .findExpiredActiveIds(eq(8L), any(), anyInt(), any(), any(Pageable.class));
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void expireAllDue_whenNothingExpired_opensNoTransaction() {
+        ownAllShards();
+        when(linkRepository.findExpiredActiveIds(
+                        eq(0L), eq(NOW), eq(2), eq(SHARDS), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        assertEquals(0, linkExpiryService.expireAllDue(NOW));
+        verifyNoInteractions(transactionManager, notificationRepository);
+    }
+
+    @Test
+    void expireAllDue_whenNodeHoldsNoLeases_doesNothing() {
+        when(expiryLeaseService.ownedShards()).thenReturn(Set.of());
+
+        assertEquals(0, linkExpiryService.expireAllDue(NOW));
+        verifyNoInteractions(linkRepository, notificationRepository, transactionManager);
+    }
+
+    @Test
+    void expireIds_skipsLinksOfForeignShards() {
+        when(expiryLeaseService.owns(4L)).thenReturn(true);
+        when(expiryLeaseService.owns(5L)).thenReturn(false);
+        when(linkRepository.lockExpiredActiveByIds(List.of(4L), NOW)).thenReturn(links(4L));
+        when(linkRepository.deleteExpiredActiveByIds(List.of(4L), NOW)).thenReturn(1);
+
+        assertEquals(1, linkExpiryService.expireIds(List.of(4L, 5L), NOW));
+        verify(notificationRepository).insertLinkExpiredForIds(List.of(4L), NOW);
+    }
+
+    @Test
+    void expireIds_whenNoneOwned_opensNoTransaction() {
+        when(expiryLeaseService.owns(anyLong())).thenReturn(false);
+
+        assertEquals(0, linkExpiryService.expireIds(List.of(5L), NOW));
+        verifyNoInteractions(transactionManager, linkRepository);
+    }
+
+    @Test
+    void expireOnAccess_countsUnderAccessSource() {
+        when(expiryLeaseService.owns(12L)).thenReturn(true);
+        when(linkRepository.lockExpiredActiveByIds(List.of(12L), NOW)).thenReturn(links(12L));
+        when(linkRepository.deleteExpiredActiveByIds(List.of(12L), NOW)).thenReturn(1);
+
+        assertEquals(1, linkExpiryService.expireOnAccess(12L, NOW));
+        assertEquals(
+                1.0,
+                meterRegistry.counter("shortlinks.expiry.expired", "source", "access").count());
+    }
+
+    @Test
+    void expireIds_whenNoneExpired_skipsInsertAndDelete() {
+        when(expiryLeaseService.owns(5L)).thenReturn(true);
+        when(linkRepository.lockExpiredActiveByIds(List.of(5L), NOW)).thenReturn(List.of());
+
+        assertEquals(0, linkExpiryService.expireIds(List.of(5L), NOW));
+        verifyNoInteractions(notificationRepository, linkArchiveService);
+        verify(linkRepository, never()).deleteExpiredActiveByIds(any(), any());
+    }
+
+    @Test
+    void expireAllDue_whenBucketed_dropsPastBucketsBeforeRangeSweep() {
+        LinkExpiryService bucketedService =
+                new LinkExpiryService(
+                        linkRepository,
+                        linkStore,
+                        notificationRepository,
+                        userSummaryService,
+                        expiryLeaseService,
+                        linkArchiveService,
+                        streamRegistry,
+                        transactionManager,
+                        meterRegistry,
+                        2,
+                        true);
+        ownAllShards();
+        when(linkRepository.findActiveExpiryBucketsBefore(anyLong(), eq(2), eq(SHARDS)))
+                .thenReturn(List.of(470L));
+        when(linkRepository.findActiveIdsInBucket(eq(470L), eq(2), eq(SHARDS), any(Pageable.class)))
+                .thenReturn(List.of(4L));
+        when(linkRepository.lockActiveInBucket(470L, 4L, 4L, 2, SHARDS)).thenReturn(links(4L));
+        when(linkRepository.deleteActiveInBucket(470L, 4L, 4L, 2, SHARDS)).thenReturn(1);
+        when(linkRepository.findExpiredActiveIds(
+                        eq(0L), eq(NOW), eq(2), eq(SHARDS), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        assertEquals(1, bucketedService.expireAllDue(NOW));
+        verify(notificationRepository).insertLinkExpiredForBucket(470L, 4L, 4L, NOW, 2, SHARDS);
+        assertEquals(
+                1.0,
+                meterRegistry.counter("shortlinks.expiry.expired", "source", "bucket").count());
+    }
+
+    @Test
+    void expireAllDue_withExternalStore_recordsConsequencesThenRemovesFromStore() {
+        when(linkStore.backedByLinksTable()).thenReturn(false);
+        Link expired = expiredLink(3L, true);
+        Link deactivated = expiredLink(4L, false);
+        when(linkStore.findExpiredIds(0L, NOW, 2)).thenReturn(List.of(3L, 4L));
+        when(linkStore.findExpiredIds(4L, NOW, 2)).thenReturn(List.of());
+        when(linkStore.findById(3L)).thenReturn(Optional.of(expired));
+        when(linkStore.findById(4L)).thenReturn(Optional.of(deactivated));
+        when(linkStore.removeExpired(List.of(3L, 4L), NOW))
+                .thenReturn(List.of(expired, deactivated));
+
+        assertEquals(2, linkExpiryService.expireAllDue(NOW));
+
+        InOrder order = inOrder(notificationRepository, linkArchiveService, linkStore);
+        order.verify(notificationRepository)
+                .saveAll(
+                        argThat(
+                                (List<Notification> n) ->
+                                        n.size() == 1
+                                                && n.get(0).getLinkId() == 3L
+                                                && n.get(0).getType()
+                                                        == NotificationType.LINK_EXPIRED));
+        order.verify(linkArchiveService).archive(List.of(expired), ArchiveReason.EXPIRED, NOW);
+        order.verify(linkArchiveService)
+                .archive(List.of(deactivated), ArchiveReason.LIMIT_REACHED, NOW);
+        order.verify(linkStore).removeExpired(List.of(3L, 4L), NOW);
+        verify(userSummaryService).onLinksExpired(USER_ID, 1L);
+        verify(userSummaryService).onLinksArchived(USER_ID, 1L);
+        verifyNoInteractions(expiryLeaseService, linkRepository);
+    }
+
+    @Test
+    void expireIds_withExternalStore_whenDbFails_keepsLinkInStore() {
+        when(linkStore.backedByLinksTable()).thenReturn(false);
+        when(linkStore.findById(3L)).thenReturn(Optional.of(expiredLink(3L, true)));
+        when(notificationRepository.saveAll(any())).thenThrow(new IllegalStateException("db"));
+
+        assertThrows(
+                IllegalStateException.class, () -> linkExpiryService.expireIds(List.of(3L), NOW));
+
+        verify(linkStore, never()).removeExpired(any(), any());
+    }
+
+    @Test
+    void expireIds_withExternalStore_whenAlreadyArchived_onlyRemovesFromStore() {
+        when(linkStore.backedByLinksTable()).thenReturn(false);
+        Link expired = expiredLink(3L, true);
+        when(linkStore.findById(3L)).thenReturn(Optional.of(expired));
+        when(linkArchiveService.findArchivedIds(List.of(3L))).thenReturn(Set.of(3L));
+        when(linkStore.removeExpired(List.of(3L), NOW)).thenReturn(List.of(expired));
+
+        assertEquals(1, linkExpiryService.expireIds(List.of(3L), NOW));
+
+        verify(linkArchiveService, never()).archive(any(), any(), any());
+        verifyNoInteractions(notificationRepository, userSummaryService);
+    }
+
+    private static Link expiredLink(Long id, boolean active) {
+        return Link.builder()
+                .id(id)
+                .userId(USER_ID)
+                .active(active)
+                .expiresAt(NOW.minusSeconds(1))
+                .build();
+    }
+
+    private static List<Link> links(Long... ids) {
+        return Arrays.stream(ids).map(id -> Link.builder().id(id).userId(USER_ID).build()).toList();
+    }
+}
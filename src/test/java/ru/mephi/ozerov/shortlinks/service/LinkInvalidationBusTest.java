@@ -0,0 +1,154 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.invalidation.InvalidationMessage;
+import ru.mephi.ozerov.shortlinks.invalidation.InvalidationTransport;
+import ru.mephi.ozerov.shortlinks.invalidation.UdpInvalidationTransport;
+
+class LinkInvalidationBusTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RedirectIndex redirectIndex = mock(RedirectIndex.class);
+
+    @Test
+    void onLinkChanges_sendsOnlyInvalidatingChangesWithIncreasingSeq() {
+        RecordingTransport transport = new RecordingTransport(true);
+        LinkInvalidationBus bus = bus(transport);
+
+        bus.onLinkChanges(
+                List.of(
+                        new LinkChangeStream.Change("a1", link("a1"), false, 0),
+                        new LinkChangeStream.Change("a2", link("a2"), true, 0),
+                        new LinkChangeStream.Change("a3", null, true, 0)));
+
+        assertEquals(
+                List.of("a2", "a3"),
+                transport.sent.stream().map(InvalidationMessage::shortCode).toList());
+        assertEquals(
+                List.of(1L, 2L), transport.sent.stream().map(InvalidationMessage::seq).toList());
+        assertEquals(bus.origin(), transport.sent.get(0).origin());
+        assertEquals(2.0, meterRegistry.counter("shortlinks.invalidation.sent").count());
+    }
+
+    @Test
+    void receive_skipsOwnMessagesAndRemovesCopyForEveryPeerMessage() {
+        LinkInvalidationBus bus = bus(new RecordingTransport(true));
+
+        bus.receive(
+                List.of(
+                        new InvalidationMessage(bus.origin(), 1, "own", 0),
+                        new InvalidationMessage("peer", 5, "c1", 0),
+                        new InvalidationMessage("peer", 4, "c1", 0),
+                        new InvalidationMessage("peer", 5, "c1", 0),
+                        new InvalidationMessage("other", 1, "c1", 0)));
+
+        verify(redirectIndex, never()).remove("own");
+        verify(redirectIndex, times(4)).remove("c1");
+        assertEquals(4.0, meterRegistry.counter("shortlinks.invalidation.received").count());
+        assertEquals(4, meterRegistry.timer("shortlinks.invalidation.lag").count());
+    }
+
+    @Test
+    void receive_unreliableTransport_clearsIndexOnGap() {
+        LinkInvalidationBus bus = bus(new RecordingTransport(false));
+
+        bus.receive(List.of(new InvalidationMessage("peer", 1, "c1", 0)));
+        bus.receive(List.of(new InvalidationMessage("peer", 2, "c2", 0)));
+        verify(redirectIndex, never()).invalidateAll();
+
+        bus.receive(List.of(new InvalidationMessage("peer", 4, "c4", 0)));
+        verify(redirectIndex, times(1)).invalidateAll();
+
+        bus.receive(List.of(new InvalidationMessage("peer", 5, null, 0)));
+        verify(redirectIndex, times(2)).invalidateAll();
+
+        bus.receive(List.of(new InvalidationMessage("peer", 5, null, 0)));
+        verify(redirectIndex, times(2)).invalidateAll();
+        assertEquals(2.0, meterRegistry.counter("shortlinks.invalidation.gaps").count());
+    }
+
+    @Test
+    void receive_reliableTransport_ignoresGaps() {
+        LinkInvalidationBus bus = bus(new RecordingTransport(true));
+
+        bus.receive(List.of(new InvalidationMessage("peer", 1, "c1", 0)));
+        bus.receive(List.of(new InvalidationMessage("peer", 10, "c2", 0)));
+
+        verify(redirectIndex, never()).invalidateAll();
+        verify(redirectIndex).remove("c2");
+    }
+
+    @Test
+    void udpTransport_deliversBetweenNodesOnLoopback() throws InterruptedException {
+        UdpInvalidationTransport second = new UdpInvalidationTransport(0, "");
+        UdpInvalidationTransport first =
+                new UdpInvalidationTransport(0, "127.0.0.1:" + second.localPort());
+        List<InvalidationMessage> delivered = new CopyOnWriteArrayList<>();
+        try {
+            second.start(delivered::addAll);
+            List<InvalidationMessage> messages = new ArrayList<>();
+            for (int i = 1; i <= 100; i++) {
+                messages.add(new InvalidationMessage("node-1", i, "code" + i, 42));
+            }
+            messages.add(new InvalidationMessage("node-1", 100, null, 43));
+            first.send(messages);
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (delivered.size() < messages.size() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            first.close();
+            second.close();
+        }
+
+        assertEquals(101, delivered.size());
+        assertEquals(new InvalidationMessage("node-1", 1, "code1", 42), delivered.get(0));
+        assertTrue(delivered.get(100).heartbeat());
+    }
+
+    private LinkInvalidationBus bus(InvalidationTransport transport) {
+        return new LinkInvalidationBus(transport, redirectIndex, meterRegistry, "node", 0);
+    }
+
+    private static Link link(String code) {
+        return Link.builder().shortCode(code).originalUrl("https://example.com").build();
+    }
+
+    private static class RecordingTransport implements InvalidationTransport {
+
+        private final boolean reliable;
+        private final List<InvalidationMessage> sent =
+                Collections.synchronizedList(new ArrayList<>());
+
+        RecordingTransport(boolean reliable) {
+            this.reliable = reliable;
+        }
+
+        @Override
+        public void send(List<InvalidationMessage> messages) {
+            sent.addAll(messages);
+        }
+
+        @Override
+        public void start(Consumer<List<InvalidationMessage>> receiver) {}
+
+        @Override
+        public boolean reliable() {
+            return reliable;
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -2,7 +2,6 @@ package ru.mephi.ozerov.shortlinks.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 import java.time.Instant;
@@ -12,24 +11,40 @@ import java.util.UUID;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 import ru.mephi.ozerov.shortlinks.entity.Link;
 import ru.mephi.ozerov.shortlinks.entity.NotificationType;
-import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
+import ru.mephi.ozerov.shortlinks.scheduler.LinkExpiryWheel;
+import ru.mephi.ozerov.shortlinks.store.LinkStore;
 
 @ExtendWith(MockitoExtension.class)
 class LinkServiceTest {
 
-    @Mock private LinkRepository linkRepository;
+    @Mock private LinkStore linkStore;
 
     @Mock private ShortCodeGenerator shortCodeGenerator;
 
+    @Mock private NotificationQueue notificationQueue;
+
     @Mock private NotificationService notificationService;
 
+    @Mock private UserSummaryService userSummaryService;
+
+    @Mock private UserVersionService userVersionService;
+
+    @Mock private LinkExpiryWheel linkExpiryWheel;
+
+    @Mock private LinkExpiryService linkExpiryService;
+
+    @Mock private LinkArchiveService linkArchiveService;
+
+    @Mock private RedirectIndex redirectIndex;
+
+    @Mock private LinkChangeStream linkChangeStream;
+
     @InjectMocks private LinkService linkService;
 
     private static final UUID USER_ID = UUID.randomUUID();
@@ -42,9 +57,10 @@ class LinkServiceTest {
 
     @Test
     void create_generatesUniqueShortCodeAndSavesLink() {
-        when(shortCodeGenerator.generate()).thenReturn("3DZHeG");
-        when(linkRepository.existsByShortCode("3DZHeG")).thenReturn(false);
-        when(linkRepository.save(any(Link.class)))
+        when(linkStore.codePrefix()).thenReturn("");
+        when(shortCodeGenerator.generate("")).thenReturn("3DZHeG");
+        when(linkStore.existsByShortCode("3DZHeG")).thenReturn(false);
+        when(linkStore.create(any(Link.class)))
                 .thenAnswer(
                         inv -> {
                             Link l = inv.getArgument(0);
@@ -62,15 +78,18 @@ class LinkServiceTest {
         assertEquals(0, result.getClicksCount());
         assertTrue(result.getExpiresAt().isAfter(Instant.now()));
         assertTrue(result.getActive());
-        verify(linkRepository).save(any(Link.class));
+        verify(linkStore).create(any(Link.class));
+        verify(userSummaryService).onLinkCreated(USER_ID);
+        verify(linkExpiryWheel).schedule(1L, result.getExpiresAt());
     }
 
     @Test
     void create_retriesWhenShortCodeExists() {
-        when(shortCodeGenerator.generate()).thenReturn("exists1").thenReturn("unique1");
-        when(linkRepository.existsByShortCode("exists1")).thenReturn(true);
-        when(linkRepository.existsByShortCode("unique1")).thenReturn(false);
-        when(linkRepository.save(any(Link.class)))
+        when(linkStore.codePrefix()).thenReturn("");
+        when(shortCodeGenerator.generate("")).thenReturn("exists1").thenReturn("unique1");
+        when(linkStore.existsByShortCode("exists1")).thenReturn(true);
+        when(linkStore.existsByShortCode("unique1")).thenReturn(false);
+        when(linkStore.create(any(Link.class)))
                 .thenAnswer(
                         inv -> {
                             Link l = inv.getArgument(0);
@@ -81,12 +100,12 @@ class LinkServiceTest {
         Link result = linkService.create(ORIGINAL_URL, null, USER_ID);
 
         assertEquals("unique1", result.getShortCode());
-        verify(shortCodeGenerator, times(2)).generate();
+        verify(shortCodeGenerator, times(2)).generate("");
     }
 
     @Test
     void findByShortCode_returnsEmptyWhenNotFound() {
-        when(linkRepository.findByShortCode("unknown")).thenReturn(Optional.empty());
+        when(linkStore.findByShortCode("unknown")).thenReturn(Optional.empty());
 
         Optional<Link> result = linkService.findByShortCode("unknown");
 
@@ -96,7 +115,7 @@ class LinkServiceTest {
     @Test
     void findByShortCode_returnsLinkWhenFound() {
         Link link = createActiveLink("abc123", 5, 0);
-        when(linkRepository.findByShortCode("abc123")).thenReturn(Optional.of(link));
+        when(linkStore.findByShortCode("abc123")).thenReturn(Optional.of(link));
 
         Optional<Link> result = linkService.findByShortCode("abc123");
 
@@ -105,69 +124,108 @@ class LinkServiceTest {
     }
 
     @Test
-    void resolveAndIncrementClicks_whenLinkNotFound_returnsEmpty() {
-        when(linkRepository.findByShortCode("unknown")).thenReturn(Optional.empty());
+    void findForRedirect_availableInIndex_doesNotReadStore() {
+        Link link = createActiveLink("abc123", 5, 1);
+        when(redirectIndex.find("abc123")).thenReturn(Optional.of(link));
 
-        Optional<Link> result = linkService.resolveAndIncrementClicks("unknown");
+        assertSame(link, linkService.findForRedirect("abc123").orElseThrow());
+        verifyNoInteractions(linkStore);
+    }
 
-        assertTrue(result.isEmpty());
-        verify(linkRepository, never()).save(any());
+    @Test
+    void findForRedirect_unavailableInIndex_readsStoreAndRefreshesIndex() {
+        when(redirectIndex.find("abc123"))
+                .thenReturn(Optional.of(createActiveLink("abc123", 5, 5)));
+        Link current = createActiveLink("abc123", 10, 5);
+        when(linkStore.findByShortCode("abc123")).thenReturn(Optional.of(current));
+
+        assertSame(current, linkService.findForRedirect("abc123").orElseThrow());
+        verify(redirectIndex).put(current);
+    }
+
+    @Test
+    void findForRedirect_missingInStore_removesFromIndex() {
+        when(linkStore.findByShortCode("gone")).thenReturn(Optional.empty());
+
+        assertTrue(linkService.findForRedirect("gone").isEmpty());
+        verify(redirectIndex).remove("gone");
     }
 
     @Test
-    void resolveAndIncrementClicks_whenLinkExpired_returnsEmpty() {
-        Link expired = createActiveLink("exp1", null, 0);
-        expired.setExpiresAt(Instant.now().minusSeconds(60));
-        when(linkRepository.findByShortCode("exp1")).thenReturn(Optional.of(expired));
+    void resolveAndIncrementClicks_whenStoreRejectsClick_returnsEmpty() {
+        when(linkStore.incrementClicks(eq("unknown"), any(Instant.class)))
+                .thenReturn(Optional.empty());
 
-        Optional<Link> result = linkService.resolveAndIncrementClicks("exp1");
+        Optional<Link> result = linkService.resolveAndIncrementClicks("unknown");
 
         assertTrue(result.isEmpty());
-        verify(linkRepository, never()).save(any());
+        verify(linkStore, never()).update(any());
+        verifyNoInteractions(userVersionService);
+        verify(linkChangeStream).removed("unknown");
+        verifyNoInteractions(redirectIndex);
     }
 
     @Test
-    void resolveAndIncrementClicks_incrementsClicksAndReturnsLink() {
-        Link link = createActiveLink("inc1", null, 2);
-        when(linkRepository.findByShortCode("inc1")).thenReturn(Optional.of(link));
-        when(linkRepository.save(any(Link.class))).thenAnswer(inv -> inv.getArgument(0));
+    void resolveAndIncrementClicks_returnsIncrementedLink() {
+        Link link = createActiveLink("inc1", null, 3);
+        when(linkStore.incrementClicks(eq("inc1"), any(Instant.class)))
+                .thenReturn(Optional.of(link));
 
         Optional<Link> result = linkService.resolveAndIncrementClicks("inc1");
 
         assertTrue(result.isPresent());
         assertEquals(3, result.get().getClicksCount());
-        verify(linkRepository).save(link);
-        verify(notificationService, never()).create(any(), any(), any(), any(), any());
+        verify(userVersionService).bump(USER_ID);
+        verify(linkStore, never()).update(any());
+        verify(notificationQueue, never()).publishAfterCommit(anyLong());
+        verify(linkChangeStream).changed(link);
+        verifyNoInteractions(redirectIndex);
     }
 
     @Test
-    void resolveAndIncrementClicks_whenLimitReachedAfterClick_deactivatesAndNotifies() {
-        Link link = createActiveLink("lim1", 2, 1);
+    void
+            resolveAndIncrementClicks_whenLimitReachedAfterClick_deactivatesAndPublishesNotification() {
+        Link link = createActiveLink("lim1", 2, 2);
         link.setId(10L);
-        when(linkRepository.findByShortCode("lim1")).thenReturn(Optional.of(link));
-        when(linkRepository.save(any(Link.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(linkStore.incrementClicks(eq("lim1"), any(Instant.class)))
+                .thenReturn(Optional.of(link));
+        when(linkStore.backedByLinksTable()).thenReturn(true);
 
         Optional<Link> result = linkService.resolveAndIncrementClicks("lim1");
 
         assertTrue(result.isPresent());
-        assertEquals(2, result.get().getClicksCount());
         assertFalse(result.get().getActive());
+        assertTrue(result.get().getNotificationPending());
+        assertNotNull(result.get().getDeactivatedAt());
+        verify(linkStore).update(link);
+        verify(notificationQueue).publishAfterCommit(10L);
+        verify(userSummaryService).onLinkLimitReached(USER_ID);
+        verifyNoInteractions(userVersionService);
+        verifyNoInteractions(notificationService);
+    }
 
-        ArgumentCaptor<String> msgCaptor = ArgumentCaptor.forClass(String.class);
+    @Test
+    void resolveAndIncrementClicks_whenLimitReachedInExternalStore_writesNotificationDirectly() {
+        Link link = createActiveLink("lim2", 1, 1);
+        link.setId(11L);
+        when(linkStore.incrementClicks(eq("lim2"), any(Instant.class)))
+                .thenReturn(Optional.of(link));
+        when(linkStore.backedByLinksTable()).thenReturn(false);
+
+        linkService.resolveAndIncrementClicks("lim2");
+
+        assertFalse(link.getActive());
+        assertFalse(link.getNotificationPending());
+        verify(linkStore).update(link);
         verify(notificationService)
-                .create(
-                        eq(USER_ID),
-                        eq(10L),
-                        eq("lim1"),
-                        eq(NotificationType.CLICK_LIMIT_REACHED),
-                        msgCaptor.capture());
-        assertTrue(msgCaptor.getValue().contains("Лимит переходов"));
+                .create(USER_ID, 11L, "lim2", NotificationType.CLICK_LIMIT_REACHED);
+        verify(notificationQueue, never()).publishAfterCommit(anyLong());
     }
 
     @Test
-    void findByUserId_returnsLinksFromRepository() {
+    void findByUserId_returnsLinksFromStore() {
         List<Link> links = List.of(createActiveLink("a", null, 0), createActiveLink("b", null, 0));
-        when(linkRepository.findByUserIdOrderByCreatedAtDesc(USER_ID)).thenReturn(links);
+        when(linkStore.findByUserId(USER_ID)).thenReturn(links);
 
         List<Link> result = linkService.findByUserId(USER_ID);
 
@@ -178,73 +236,82 @@ class LinkServiceTest {
     void update_whenLinkBelongsToUser_updatesAndSaves() {
         Link link = createActiveLink("up1", 5, 0);
         link.setId(1L);
-        when(linkRepository.findById(1L)).thenReturn(Optional.of(link));
-        when(linkRepository.save(any(Link.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(linkStore.findById(1L)).thenReturn(Optional.of(link));
+        when(linkStore.update(any(Link.class))).thenAnswer(inv -> inv.getArgument(0));
 
         Optional<Link> result = linkService.update(1L, USER_ID, "https://new-url.com", 10);
 
         assertTrue(result.isPresent());
         assertEquals("https://new-url.com", result.get().getOriginalUrl());
         assertEquals(10, result.get().getClickLimit());
-        verify(linkRepository).save(link);
+        verify(linkStore).update(link);
     }
 
     @Test
     void update_whenLinkBelongsToOtherUser_returnsEmpty() {
         Link link = createActiveLink("up1", 5, 0);
         link.setId(1L);
-        when(linkRepository.findById(1L)).thenReturn(Optional.of(link));
+        when(linkStore.findById(1L)).thenReturn(Optional.of(link));
         UUID otherUser = UUID.randomUUID();
 
         Optional<Link> result = linkService.update(1L, otherUser, "https://new.com", null);
 
         assertTrue(result.isEmpty());
-        verify(linkRepository, never()).save(any());
+        verify(linkStore, never()).update(any());
     }
 
     @Test
     void delete_whenLinkBelongsToUser_deletesAndReturnsTrue() {
         Link link = createActiveLink("del1", null, 0);
         link.setId(1L);
-        when(linkRepository.findById(1L)).thenReturn(Optional.of(link));
+        when(linkStore.findById(1L)).thenReturn(Optional.of(link));
 
         boolean result = linkService.delete(1L, USER_ID);
 
         assertTrue(result);
-        verify(linkRepository).delete(link);
+        verify(linkStore).delete(1L);
+        verify(userSummaryService).onLinkDeleted(USER_ID, true);
     }
 
     @Test
     void delete_whenLinkBelongsToOtherUser_returnsFalse() {
         Link link = createActiveLink("del1", null, 0);
         link.setId(1L);
-        when(linkRepository.findById(1L)).thenReturn(Optional.of(link));
+        when(linkStore.findById(1L)).thenReturn(Optional.of(link));
 
         boolean result = linkService.delete(1L, UUID.randomUUID());
 
         assertFalse(result);
-        verify(linkRepository, never()).delete(any());
+        verify(linkStore, never()).delete(anyLong());
     }
 
     @Test
-    void deleteExpiredAndNotify_findsExpiredNotifiesAndDeletes() {
-        Link expired = createActiveLink("ex1", null, 0);
-        expired.setId(5L);
-        expired.setExpiresAt(Instant.now().minusSeconds(60));
-        when(linkRepository.findExpiredActiveLinks(any(Instant.class)))
-                .thenReturn(List.of(expired));
+    void deleteExpiredAndNotify_delegatesToChunkedExpiry() {
+        when(linkExpiryService.expireAllDue(any(Instant.class))).thenReturn(3);
 
-        int count = linkService.deleteExpiredAndNotify();
+        assertEquals(3, linkService.deleteExpiredAndNotify());
+    }
 
-        assertEquals(1, count);
-        verify(notificationService)
-                .create(
-                        eq(USER_ID),
-                        eq(5L),
-                        eq("ex1"),
-                        eq(NotificationType.LINK_EXPIRED),
-                        anyString());
-        verify(linkRepository).delete(expired);
+    @Test
+    void expireByIds_delegatesToExpiryService() {
+        when(linkExpiryService.expireIds(eq(List.of(6L, 7L)), any(Instant.class))).thenReturn(1);
+
+        assertEquals(1, linkService.expireByIds(List.of(6L, 7L)));
+    }
+
+    @Test
+    void expireOnAccess_expiresOnlyActiveExpiredLink() {
+        Link expired = createActiveLink("exp2", null, 0);
+        expired.setId(9L);
+        expired.setExpiresAt(Instant.now().minusSeconds(1));
+        Link alive = createActiveLink("alive", null, 0);
+        alive.setId(10L);
+
+        linkService.expireOnAccess(expired);
+        linkService.expireOnAccess(alive);
+
+        verify(linkExpiryService).expireOnAccess(eq(9L), any(Instant.class));
+        verify(linkExpiryService, never()).expireOnAccess(eq(10L), any(Instant.class));
     }
 
     private static Link createActiveLink(String shortCode, Integer clickLimit, int clicksCount) {
@@ -0,0 +1,69 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.entity.Notification;
+import ru.mephi.ozerov.shortlinks.entity.NotificationType;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
+
+/** Доставка уведомлений о лимите через флаг outbox: поток записи и повторная доставка. */
+@SpringBootTest
+@ActiveProfiles("test")
+class NotificationOutboxIntegrationTest {
+
+    @Autowired private LinkService linkService;
+
+    @Autowired private LinkRepository linkRepository;
+
+    @Autowired private NotificationService notificationService;
+
+    @Autowired private NotificationWriter notificationWriter;
+
+    @Autowired private UserSummaryService userSummaryService;
+
+    @Autowired private NotificationMessages notificationMessages;
+
+    @Test
+    void limitReached_notificationWrittenOnceAndFlagCleared() {
+        UUID userId = UUID.randomUUID();
+        Link link = linkService.create("https://outbox.com", 1, userId);
+
+        linkService.resolveAndIncrementClicks(link.getShortCode());
+        notificationWriter.replayPending();
+        notificationWriter.replayPending();
+
+        List<Notification> notifications = notificationService.findByUserId(userId);
+        assertEquals(1, notifications.size());
+        assertEquals(NotificationType.CLICK_LIMIT_REACHED, notifications.get(0).getType());
+        assertEquals(
+                "Лимит переходов по ссылке " + link.getShortCode() + " исчерпан.",
+                notificationMessages.render(notifications.get(0), Locale.forLanguageTag("ru")));
+        assertEquals(
+                "Click limit for link " + link.getShortCode() + " has been reached.",
+                notificationMessages.render(notifications.get(0), Locale.ENGLISH));
+        assertFalse(linkRepository.findById(link.getId()).orElseThrow().getNotificationPending());
+        assertEquals(1L, userSummaryService.getSummary(userId).getUnreadNotifications());
+    }
+
+    @Test
+    void replayPending_deliversNotificationLostBeforeWrite() {
+        UUID userId = UUID.randomUUID();
+        Link link = linkService.create("https://lost.com", 3, userId);
+        link.setActive(false);
+        link.setNotificationPending(true);
+        linkRepository.save(link);
+
+        assertEquals(1, notificationWriter.replayPending());
+
+        assertEquals(1, notificationService.findByUserId(userId).size());
+        assertFalse(linkRepository.findById(link.getId()).orElseThrow().getNotificationPending());
+    }
+}
@@ -0,0 +1,39 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class NotificationQueueTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void publish_whenFull_dropsAndCounts() {
+        NotificationQueue queue = new NotificationQueue(meterRegistry, 2);
+
+        queue.publishAfterCommit(1L);
+        queue.publishAfterCommit(2L);
+        queue.publishAfterCommit(3L);
+
+        assertEquals(2, queue.size());
+        assertEquals(1.0, meterRegistry.counter("shortlinks.notifications.dropped").count());
+        assertEquals(2.0, meterRegistry.counter("shortlinks.notifications.published").count());
+        assertEquals(2.0, meterRegistry.get("shortlinks.notifications.queue.size").gauge().value());
+    }
+
+    @Test
+    void poll_drainsUpToMaxInOrder() throws InterruptedException {
+        NotificationQueue queue = new NotificationQueue(meterRegistry, 10);
+        for (long id = 1; id <= 5; id++) {
+            queue.publish(id);
+        }
+
+        assertEquals(List.of(1L, 2L, 3L), queue.poll(3, Duration.ofMillis(10)));
+        assertEquals(List.of(4L, 5L), queue.poll(3, Duration.ofMillis(10)));
+        assertEquals(List.of(), queue.poll(3, Duration.ofMillis(10)));
+    }
+}
@@ -0,0 +1,122 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.mephi.ozerov.shortlinks.entity.Notification;
+import ru.mephi.ozerov.shortlinks.entity.NotificationType;
+import ru.mephi.ozerov.shortlinks.repository.NotificationRepository;
+
+/**
+ * Очистка и схлопывание уведомлений на настоящей H2: запросы со смещением, группировкой и сводка.
+ */
+@SpringBootTest(
+        properties = {
+            "shortlinks.notifications.retention.max-per-user=3",
+            "shortlinks.notifications.retention.chunk-size=2",
+            "spring.datasource.url=jdbc:h2:mem:retentiontest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"
+        })
+@ActiveProfiles("test")
+class NotificationRetentionIntegrationTest {
+
+    @Autowired private NotificationRetentionService retentionService;
+
+    @Autowired private NotificationRepository notificationRepository;
+
+    @Autowired private NotificationService notificationService;
+
+    @Autowired private UserSummaryService userSummaryService;
+
+    private static final Instant NOW = Instant.now();
+
+    @BeforeEach
+    void setUp() {
+        notificationRepository.deleteAll();
+    }
+
+    private Notification save(UUID userId, long linkId, Instant createdAt, boolean read) {
+        return notificationRepository.save(
+                Notification.builder()
+                        .userId(userId)
+                        .linkId(linkId)
+                        .shortCode("code" + linkId)
+                        .type(NotificationType.CLICK_LIMIT_REACHED)
+                        .createdAt(createdAt)
+                        .readFlag(read)
+                        .build());
+    }
+
+    private long unread(UUID userId) {
+        return userSummaryService.getSummary(userId).getUnreadNotifications();
+    }
+
+    @Test
+    void purgeOlderThan_deletesOldRowsInChunksAndAdjustsUnread() {
+        UUID userId = UUID.randomUUID();
+        for (long link = 1; link <= 3; link++) {
+            save(userId, link, NOW.minus(Duration.ofDays(100)), false);
+        }
+        save(userId, 4, NOW.minus(Duration.ofDays(100)), true);
+        Notification fresh = save(userId, 5, NOW, false);
+        assertEquals(4, unread(userId));
+
+        assertEquals(4, retentionService.purgeOlderThan(NOW.minus(Duration.ofDays(90))));
+
+        assertEquals(
+                List.of(fresh.getId()),
+                notificationService.findByUserId(userId).stream()
+                        .map(Notification::getId)
+                        .toList());
+        assertEquals(1, unread(userId));
+    }
+
+    @Test
+    void purgeOverCap_keepsNewestPerUser() {
+        UUID heavy = UUID.randomUUID();
+        UUID light = UUID.randomUUID();
+        for (long link = 1; link <= 6; link++) {
+            save(heavy, link, NOW, link <= 2);
+        }
+        save(light, 100, NOW, false);
+        assertEquals(4, unread(heavy));
+
+        assertEquals(3, retentionService.purgeOverCap());
+
+        assertEquals(
+                List.of(6L, 5L, 4L),
+                notificationService.findByUserId(heavy).stream()
+                        .map(Notification::getLinkId)
+                        .sorted((a, b) -> Long.compare(b, a))
+                        .toList());
+        assertEquals(3, unread(heavy));
+        assertEquals(1, notificationService.findByUserId(light).size());
+    }
+
+    @Test
+    void coalesce_mergesUnreadDuplicatesIntoNewestRow() {
+        UUID userId = UUID.randomUUID();
+        save(userId, 7, NOW.minusSeconds(30), false);
+        save(userId, 7, NOW.minusSeconds(20), true);
+        save(userId, 7, NOW.minusSeconds(10), false);
+        Notification newest = save(userId, 7, NOW, false);
+        save(userId, 8, NOW, false);
+        assertEquals(4, unread(userId));
+
+        assertEquals(2, retentionService.coalesce());
+
+        Notification merged = notificationRepository.findById(newest.getId()).orElseThrow();
+        assertEquals(3, merged.getOccurrences());
+        assertFalse(merged.getReadFlag());
+        assertEquals(3, notificationService.findByUserId(userId).size());
+        assertEquals(2, unread(userId));
+        assertEquals(0, retentionService.coalesce());
+    }
+}
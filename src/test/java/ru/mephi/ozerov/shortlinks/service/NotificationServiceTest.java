@@ -2,10 +2,11 @@ package ru.mephi.ozerov.shortlinks.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,8 +14,10 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import ru.mephi.ozerov.shortlinks.entity.Link;
 import ru.mephi.ozerov.shortlinks.entity.Notification;
 import ru.mephi.ozerov.shortlinks.entity.NotificationType;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
 import ru.mephi.ozerov.shortlinks.repository.NotificationRepository;
 
 @ExtendWith(MockitoExtension.class)
@@ -22,6 +25,14 @@ class NotificationServiceTest {
 
     @Mock private NotificationRepository notificationRepository;
 
+    @Mock private UserSummaryService userSummaryService;
+
+    @Mock private UserVersionService userVersionService;
+
+    @Mock private LinkRepository linkRepository;
+
+    @Mock private NotificationStreamRegistry streamRegistry;
+
     @InjectMocks private NotificationService notificationService;
 
     private static final UUID USER_ID = UUID.randomUUID();
@@ -34,11 +45,7 @@ class NotificationServiceTest {
         ArgumentCaptor<Notification> captor = ArgumentCaptor.forClass(Notification.class);
         Notification result =
                 notificationService.create(
-                        USER_ID,
-                        10L,
-                        "abc123",
-                        NotificationType.CLICK_LIMIT_REACHED,
-                        "Лимит исчерпан");
+                        USER_ID, 10L, "abc123", NotificationType.CLICK_LIMIT_REACHED);
 
         verify(notificationRepository).save(captor.capture());
         Notification captured = captor.getValue();
@@ -46,10 +53,10 @@ class NotificationServiceTest {
         assertEquals(10L, captured.getLinkId());
         assertEquals("abc123", captured.getShortCode());
         assertEquals(NotificationType.CLICK_LIMIT_REACHED, captured.getType());
-        assertEquals("Лимит исчерпан", captured.getMessage());
         assertFalse(captured.getReadFlag());
         assertNotNull(captured.getCreatedAt());
         assertEquals(saved, result);
+        verify(userSummaryService).onNotificationCreated(USER_ID);
     }
 
     @Test
@@ -64,35 +71,76 @@ class NotificationServiceTest {
     }
 
     @Test
-    void markAsRead_whenNotificationExistsAndBelongsToUser_setsReadFlag() {
-        Notification n = Notification.builder().id(1L).userId(USER_ID).readFlag(false).build();
-        when(notificationRepository.findById(1L)).thenReturn(Optional.of(n));
-        when(notificationRepository.save(any(Notification.class)))
-                .thenAnswer(inv -> inv.getArgument(0));
+    void markAsRead_whenNotificationUnreadAndBelongsToUser_updatesInOneStatement() {
+        when(notificationRepository.markReadByIds(USER_ID, List.of(1L))).thenReturn(1);
 
         notificationService.markAsRead(1L, USER_ID);
 
-        ArgumentCaptor<Notification> captor = ArgumentCaptor.forClass(Notification.class);
-        verify(notificationRepository).save(captor.capture());
-        assertTrue(captor.getValue().getReadFlag());
+        verify(notificationRepository, never()).findById(any());
+        verify(notificationRepository, never()).save(any());
+        verify(userSummaryService).onNotificationsRead(USER_ID, 1);
+        verifyNoInteractions(userVersionService);
     }
 
     @Test
-    void markAsRead_whenNotificationBelongsToOtherUser_doesNothing() {
-        Notification n = Notification.builder().id(1L).userId(USER_ID).readFlag(false).build();
-        when(notificationRepository.findById(1L)).thenReturn(Optional.of(n));
+    void markAsRead_whenAlreadyReadOrForeignOrMissing_doesNotTouchSummary() {
+        when(notificationRepository.markReadByIds(USER_ID, List.of(999L))).thenReturn(0);
 
-        notificationService.markAsRead(1L, UUID.randomUUID());
+        notificationService.markAsRead(999L, USER_ID);
 
-        verify(notificationRepository, never()).save(any());
+        verifyNoInteractions(userSummaryService, userVersionService);
     }
 
     @Test
-    void markAsRead_whenNotificationNotFound_doesNothing() {
-        when(notificationRepository.findById(999L)).thenReturn(Optional.empty());
+    void markRead_withList_returnsAffectedAndDecrementsUnreadByIt() {
+        when(notificationRepository.markReadByIds(USER_ID, List.of(1L, 2L, 3L))).thenReturn(2);
 
-        notificationService.markAsRead(999L, USER_ID);
+        assertEquals(2, notificationService.markRead(USER_ID, List.of(1L, 2L, 3L)));
+        verify(userSummaryService).onNotificationsRead(USER_ID, 2);
+    }
 
-        verify(notificationRepository, never()).save(any());
+    @Test
+    void markAllRead_andMarkReadUpTo_runSingleOwnershipScopedUpdates() {
+        when(notificationRepository.markAllRead(USER_ID)).thenReturn(5);
+        when(notificationRepository.markReadUpTo(USER_ID, 10L)).thenReturn(0);
+
+        assertEquals(5, notificationService.markAllRead(USER_ID));
+        assertEquals(0, notificationService.markReadUpTo(USER_ID, 10L));
+        verify(userSummaryService).onNotificationsRead(USER_ID, 5);
+        verify(userSummaryService, times(1)).onNotificationsRead(any(), anyLong());
+    }
+
+    @Test
+    void deleteRead_doesNotTouchUnreadCounter() {
+        when(notificationRepository.deleteRead(USER_ID)).thenReturn(3);
+
+        assertEquals(3, notificationService.deleteRead(USER_ID));
+        verifyNoInteractions(userSummaryService);
+        verify(userVersionService).bump(USER_ID);
+    }
+
+    @Test
+    void writeLimitReached_insertsForPendingLinksAndClearsFlag() {
+        Link link1 = Link.builder().id(3L).userId(USER_ID).build();
+        Link link2 = Link.builder().id(4L).userId(USER_ID).build();
+        when(linkRepository.lockNotificationPending(List.of(3L, 4L, 5L)))
+                .thenReturn(List.of(link1, link2));
+        when(notificationRepository.insertLimitReachedForPending(eq(List.of(3L, 4L)), any()))
+                .thenReturn(2);
+
+        assertEquals(2, notificationService.writeLimitReached(List.of(3L, 4L, 5L)));
+        verify(linkRepository).clearNotificationPending(List.of(3L, 4L));
+        verify(userSummaryService).onNotificationsCreated(USER_ID, 2L);
+        verifyNoInteractions(userVersionService);
+        verify(streamRegistry).signalAfterCommit(USER_ID);
+    }
+
+    @Test
+    void writeLimitReached_whenAlreadyDelivered_writesNothing() {
+        when(linkRepository.lockNotificationPending(List.of(3L))).thenReturn(List.of());
+
+        assertEquals(0, notificationService.writeLimitReached(List.of(3L)));
+        verifyNoInteractions(notificationRepository, userSummaryService, streamRegistry);
+        verify(linkRepository, never()).clearNotificationPending(any());
     }
 }
@@ -0,0 +1,160 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.mephi.ozerov.shortlinks.service.RateLimiter.Endpoint;
+
+class RateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void acquire_allowsBurstThenRejectsWithWaitUntilNextToken() {
+        RateLimiter limiter = limiter(true, 100, 10, 5);
+        long now = SECOND;
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.acquire(Endpoint.CREATE, "u1", now));
+        }
+        assertEquals(SECOND / 10, limiter.acquire(Endpoint.CREATE, "u1", now));
+        assertEquals(
+                1.0,
+                meterRegistry
+                        .counter("shortlinks.rate-limit.rejected", "endpoint", "create")
+                        .count());
+
+        assertEquals(0, limiter.acquire(Endpoint.CREATE, "u2", now));
+        assertEquals(0, limiter.acquire(Endpoint.CREATE, "u1", now + SECOND / 10));
+        assertTrue(limiter.acquire(Endpoint.CREATE, "u1", now + SECOND / 10) > 0);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.acquire(Endpoint.CREATE, "u1", now + 2 * SECOND));
+        }
+    }
+
+    @Test
+    void acquire_endpointsHaveSeparateLimits() {
+        RateLimiter limiter = limiter(true, 100, 1, 1);
+
+        assertEquals(0, limiter.acquire(Endpoint.CREATE, "k", SECOND));
+        assertTrue(limiter.acquire(Endpoint.CREATE, "k", SECOND) > 0);
+        assertEquals(0, limiter.acquire(Endpoint.REDIRECT, "k", SECOND));
+    }
+
+    @Test
+    void acquire_disabled_alwaysAllowsAndKeepsNoState() {
+        RateLimiter limiter = limiter(false, 100, 1, 1);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.acquire(Endpoint.CREATE, "u1", SECOND));
+        }
+        assertEquals(0, limiter.size(Endpoint.CREATE));
+    }
+
+    @Test
+    void acquire_atMaxKeys_evictsFullBucketsFirst() {
+        RateLimiter limiter = limiter(true, 3, 1, 2);
+
+        limiter.acquire(Endpoint.CREATE, "busy", SECOND);
+        limiter.acquire(Endpoint.CREATE, "busy", SECOND);
+        limiter.acquire(Endpoint.CREATE, "idle1", SECOND);
+        limiter.acquire(Endpoint.CREATE, "idle2", SECOND);
+
+        // через секунду бак idle1/idle2 снова полон, а busy ещё нет
+        limiter.acquire(Endpoint.CREATE, "new", 2 * SECOND);
+
+        assertEquals(2, limiter.size(Endpoint.CREATE));
+        assertEquals(0, limiter.acquire(Endpoint.CREATE, "busy", 2 * SECOND));
+        assertTrue(limiter.acquire(Endpoint.CREATE, "busy", 2 * SECOND) > 0);
+    }
+
+    @Test
+    void acquire_atMaxKeysWithoutFullBuckets_keepsDrainedBucketsAndSharesOverflow() {
+        RateLimiter limiter = limiter(true, 2, 1, 1);
+
+        limiter.acquire(Endpoint.CREATE, "a", SECOND);
+        limiter.acquire(Endpoint.CREATE, "b", SECOND);
+
+        // места нет и ни один бак не полон: новые ключи делят общий бак
+        assertEquals(0, limiter.acquire(Endpoint.CREATE, "new1", SECOND));
+        assertTrue(limiter.acquire(Endpoint.CREATE, "new2", SECOND) > 0);
+        assertEquals(2, limiter.size(Endpoint.CREATE));
+        assertTrue(limiter.acquire(Endpoint.CREATE, "a", SECOND) > 0);
+        assertTrue(limiter.acquire(Endpoint.CREATE, "b", SECOND) > 0);
+    }
+
+    @Test
+    void acquire_concurrent_grantsExactlyBurst() throws InterruptedException {
+        RateLimiter limiter = limiter(true, 100, 0.001, 1000);
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] =
+                    new Thread(
+                            () -> {
+                                try {
+                                    start.await();
+                                } catch (InterruptedException e) {
+                                    return;
+                                }
+                                for (int i = 0; i < 500; i++) {
+                                    if (limiter.acquire(Endpoint.REDIRECT, "hot", SECOND) == 0) {
+                                        granted.incrementAndGet();
+                                    }
+                                }
+                            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1000, granted.get());
+    }
+
+    @Test
+    void retryAfterSeconds_roundsUpToWholeSeconds() {
+        assertEquals(1, RateLimiter.retryAfterSeconds(1));
+        assertEquals(1, RateLimiter.retryAfterSeconds(SECOND));
+        assertEquals(2, RateLimiter.retryAfterSeconds(SECOND + 1));
+    }
+
+    /** Время решения для известного ключа. Включается {@code -Dshortlinks.bench=true}. */
+    @Test
+    @EnabledIfSystemProperty(named = "shortlinks.bench", matches = "true")
+    void benchmark_decision() {
+        RateLimiter limiter = limiter(true, 100_000, 1e9, 1_000_000);
+        UUID[] users = new UUID[10_000];
+        String[] codes = new String[10_000];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = UUID.randomUUID();
+            codes[i] = "c" + Integer.toString(i * 7919, 36);
+        }
+        long sink = 0;
+        for (int round = 0; round < 5; round++) {
+            int ops = 5_000_000;
+            long started = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                sink += limiter.acquire(Endpoint.CREATE, users[i % users.length]);
+                sink += limiter.acquire(Endpoint.REDIRECT, codes[i % codes.length]);
+            }
+            long elapsed = System.nanoTime() - started;
+            System.out.printf(
+                    "rate limiter: %.1f ns/decision (round %d)%n", elapsed / (2.0 * ops), round);
+        }
+        assertTrue(sink >= 0);
+    }
+
+    private RateLimiter limiter(boolean enabled, int maxKeys, double perSecond, int burst) {
+        return new RateLimiter(meterRegistry, enabled, maxKeys, perSecond, burst, perSecond, burst);
+    }
+}
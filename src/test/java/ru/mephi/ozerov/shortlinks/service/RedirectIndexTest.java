@@ -0,0 +1,127 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.store.InMemoryLinkStore;
+
+class RedirectIndexTest {
+
+    private static final UUID USER_ID = UUID.randomUUID();
+
+    @TempDir Path dir;
+
+    private final InMemoryLinkStore linkStore = new InMemoryLinkStore();
+
+    @Test
+    void rebuild_scansAllRangesInParallel() {
+        for (int i = 0; i < 2_500; i++) {
+            linkStore.create(link("w" + i));
+        }
+        // Дыры в id: диапазоны сканирования не обязаны быть заполнены
+        for (int i = 0; i < 2_500; i += 7) {
+            linkStore.delete(linkStore.findByShortCode("w" + i).orElseThrow().getId());
+        }
+        RedirectIndex redirectIndex = redirectIndex(3, 1.0, "");
+
+        assertEquals(2_500 - 358, redirectIndex.rebuild());
+
+        assertEquals(1.0, redirectIndex.progress());
+        assertTrue(redirectIndex.find("w1").isPresent());
+        assertTrue(redirectIndex.find("w2498").isPresent());
+        assertTrue(redirectIndex.find("w7").isEmpty());
+    }
+
+    @Test
+    void warmUp_waitsForReadyFraction() {
+        for (int i = 0; i < 1_500; i++) {
+            linkStore.create(link("r" + i));
+        }
+        RedirectIndex redirectIndex = redirectIndex(2, 1.0, "");
+
+        redirectIndex.warmUp();
+
+        assertEquals(1.0, redirectIndex.progress());
+        assertTrue(redirectIndex.find("r1499").isPresent());
+    }
+
+    @Test
+    void warmUp_emptyStore_isImmediatelyReady() {
+        RedirectIndex redirectIndex = redirectIndex(4, 0.8, "");
+
+        redirectIndex.warmUp();
+
+        assertEquals(1.0, redirectIndex.progress());
+    }
+
+    @Test
+    void close_persistsRequestedCodesForNextWarmUp() throws IOException {
+        linkStore.create(link("hot1"));
+        linkStore.create(link("hot2"));
+        Path hotKeys = dir.resolve("hot.txt");
+        RedirectIndex first = redirectIndex(2, 1.0, hotKeys.toString());
+        first.find("hot1");
+        first.find("hot2");
+        first.find("missing");
+        first.close();
+
+        assertEquals(
+                List.of("hot1", "hot2", "missing"),
+                Files.readAllLines(hotKeys).stream().sorted().toList());
+
+        RedirectIndex second = redirectIndex(2, 1.0, hotKeys.toString());
+        second.warmUp();
+        assertTrue(second.find("hot1").isPresent());
+        assertTrue(second.find("missing").isEmpty());
+    }
+
+    @Test
+    void saveHotKeys_persistsRequestedCodesWithoutShutdown() throws IOException {
+        Path hotKeys = dir.resolve("hot.txt");
+        RedirectIndex crashed = redirectIndex(2, 1.0, hotKeys.toString());
+        crashed.find("hot1");
+
+        crashed.saveHotKeys();
+
+        assertEquals(List.of("hot1"), Files.readAllLines(hotKeys));
+        crashed.close();
+    }
+
+    private RedirectIndex redirectIndex(int parallelism, double readyFraction, String hotKeys) {
+        return new RedirectIndex(
+                linkStore,
+                new SimpleMeterRegistry(),
+                true,
+                "",
+                4096,
+                1,
+                false,
+                parallelism,
+                readyFraction,
+                10_000,
+                hotKeys,
+                100);
+    }
+
+    private static Link link(String shortCode) {
+        return Link.builder()
+                .shortCode(shortCode)
+                .originalUrl("https://example.com/" + shortCode)
+                .userId(USER_ID)
+                .clicksCount(0)
+                .expiresAt(Instant.now().plusSeconds(3600))
+                .createdAt(Instant.now())
+                .active(true)
+                .notificationPending(false)
+                .build();
+    }
+}
@@ -25,6 +25,14 @@ class ShortCodeGeneratorTest {
         assertEquals(1, generator.generate(1).length());
     }
 
+    @Test
+    void generate_withPrefix_keepsDefaultLength() {
+        String code = generator.generate("Q");
+        assertEquals(6, code.length());
+        assertTrue(code.startsWith("Q"));
+        assertEquals(6, generator.generate("").length());
+    }
+
     @RepeatedTest(20)
     void generate_containsOnlyAlphabetCharacters() {
         String code = generator.generate();
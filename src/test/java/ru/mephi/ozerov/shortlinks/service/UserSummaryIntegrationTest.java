@@ -0,0 +1,52 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.mephi.ozerov.shortlinks.entity.UserSummary;
+import ru.mephi.ozerov.shortlinks.repository.UserSummaryRepository;
+
+/** Первая запись сводки на настоящей H2: проигравшая вставка не откатывает транзакцию. */
+@SpringBootTest(
+        properties =
+                "spring.datasource.url=jdbc:h2:mem:summarytest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE")
+@ActiveProfiles("test")
+class UserSummaryIntegrationTest {
+
+    @Autowired private UserSummaryRepository userSummaryRepository;
+
+    @Autowired private UserSummaryService userSummaryService;
+
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    void insertIfAbsent_whenRowExists_keepsCallerTransactionUsable() {
+        UUID userId = UUID.randomUUID();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Boolean inserted =
+                tx.execute(
+                        status ->
+                                userSummaryRepository.insertIfAbsent(
+                                        UserSummary.builder()
+                                                .userId(userId)
+                                                .unreadNotifications(2L)
+                                                .build()));
+        assertEquals(Boolean.TRUE, inserted);
+
+        tx.executeWithoutResult(
+                status -> {
+                    assertFalse(
+                            userSummaryRepository.insertIfAbsent(
+                                    UserSummary.builder().userId(userId).build()));
+                    userSummaryService.onNotificationsCreated(userId, 3);
+                });
+
+        assertEquals(5L, userSummaryService.getSummary(userId).getUnreadNotifications());
+    }
+}
@@ -0,0 +1,127 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.mephi.ozerov.shortlinks.entity.ArchiveReason;
+import ru.mephi.ozerov.shortlinks.entity.UserSummary;
+import ru.mephi.ozerov.shortlinks.repository.ArchivedLinkRepository;
+import ru.mephi.ozerov.shortlinks.repository.NotificationRepository;
+import ru.mephi.ozerov.shortlinks.repository.UserSummaryRepository;
+import ru.mephi.ozerov.shortlinks.store.LinkStore;
+
+@ExtendWith(MockitoExtension.class)
+class UserSummaryServiceTest {
+
+    @Mock private UserSummaryRepository userSummaryRepository;
+
+    @Mock private LinkStore linkStore;
+
+    @Mock private NotificationRepository notificationRepository;
+
+    @Mock private ArchivedLinkRepository archivedLinkRepository;
+
+    @InjectMocks private UserSummaryService userSummaryService;
+
+    private static final UUID USER_ID = UUID.randomUUID();
+
+    @Test
+    void onLinksExpired_whenRowExists_appliesDeltaOnly() {
+        when(userSummaryRepository.applyDelta(USER_ID, -2, -2, 2, 0, 2)).thenReturn(1);
+
+        userSummaryService.onLinksExpired(USER_ID, 2);
+
+        verify(userSummaryRepository, never()).insertIfAbsent(any());
+        verifyNoInteractions(linkStore, notificationRepository, archivedLinkRepository);
+    }
+
+    @Test
+    void onLinkCreated_whenRowMissing_rebuildsFromTables() {
+        when(userSummaryRepository.applyDelta(
+                        eq(USER_ID), anyLong(), anyLong(), anyLong(), anyLong(), anyLong()))
+                .thenReturn(0);
+        when(linkStore.countByUserId(USER_ID)).thenReturn(3L);
+        when(linkStore.countByUserIdAndActive(USER_ID, true)).thenReturn(2L);
+        when(linkStore.countByUserIdAndActive(USER_ID, false)).thenReturn(1L);
+        when(archivedLinkRepository.countByUserIdAndReason(USER_ID, ArchiveReason.LIMIT_REACHED))
+                .thenReturn(2L);
+        when(archivedLinkRepository.countByUserIdAndReason(USER_ID, ArchiveReason.EXPIRED))
+                .thenReturn(5L);
+        when(notificationRepository.countByUserIdAndReadFlag(USER_ID, false)).thenReturn(4L);
+        when(userSummaryRepository.insertIfAbsent(any())).thenReturn(true);
+
+        userSummaryService.onLinkCreated(USER_ID);
+
+        ArgumentCaptor<UserSummary> captor = ArgumentCaptor.forClass(UserSummary.class);
+        verify(userSummaryRepository).insertIfAbsent(captor.capture());
+        UserSummary saved = captor.getValue();
+        assertEquals(3L, saved.getTotalLinks());
+        assertEquals(2L, saved.getActiveLinks());
+        assertEquals(3L, saved.getLimitReachedLinks());
+        assertEquals(5L, saved.getExpiredLinks());
+        assertEquals(4L, saved.getUnreadNotifications());
+    }
+
+    @Test
+    void onLinksExpired_whenRowMissing_rebuildsExpiredFromArchive() {
+        when(userSummaryRepository.applyDelta(USER_ID, -3, -3, 3, 0, 3)).thenReturn(0);
+        when(archivedLinkRepository.countByUserIdAndReason(USER_ID, ArchiveReason.EXPIRED))
+                .thenReturn(3L);
+        when(userSummaryRepository.insertIfAbsent(any())).thenReturn(true);
+
+        userSummaryService.onLinksExpired(USER_ID, 3);
+
+        ArgumentCaptor<UserSummary> captor = ArgumentCaptor.forClass(UserSummary.class);
+        verify(userSummaryRepository).insertIfAbsent(captor.capture());
+        assertEquals(3L, captor.getValue().getExpiredLinks());
+    }
+
+    @Test
+    void onLinkCreated_whenConcurrentCallInsertedRow_appliesDeltaToIt() {
+        when(userSummaryRepository.applyDelta(USER_ID, 1, 1, 0, 0, 0)).thenReturn(0, 1);
+        when(userSummaryRepository.insertIfAbsent(any())).thenReturn(false);
+
+        userSummaryService.onLinkCreated(USER_ID);
+
+        verify(userSummaryRepository, times(2)).applyDelta(USER_ID, 1, 1, 0, 0, 0);
+    }
+
+    @Test
+    void onLinksArchived_decrementsStoredLinksOnly() {
+        when(userSummaryRepository.applyDelta(USER_ID, -2, 0, 0, 0, 0)).thenReturn(1);
+
+        userSummaryService.onLinksArchived(USER_ID, 2);
+
+        verify(userSummaryRepository, never()).insertIfAbsent(any());
+    }
+
+    @Test
+    void getSummary_whenUnknownUser_returnsZerosWithoutSaving() {
+        when(userSummaryRepository.findById(USER_ID)).thenReturn(Optional.empty());
+
+        UserSummary summary = userSummaryService.getSummary(USER_ID);
+
+        assertEquals(0L, summary.getTotalLinks());
+        verify(userSummaryRepository, never()).insertIfAbsent(any());
+    }
+
+    @Test
+    void getSummary_whenRowExists_returnsIt() {
+        UserSummary existing = UserSummary.builder().userId(USER_ID).totalLinks(7L).build();
+        when(userSummaryRepository.findById(USER_ID)).thenReturn(Optional.of(existing));
+
+        assertSame(existing, userSummaryService.getSummary(USER_ID));
+        verifyNoInteractions(linkStore, notificationRepository, archivedLinkRepository);
+    }
+}
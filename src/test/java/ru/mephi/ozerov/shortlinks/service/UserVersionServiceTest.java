@@ -0,0 +1,65 @@
+package ru.mephi.ozerov.shortlinks.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.mephi.ozerov.shortlinks.repository.UserSummaryRepository;
+
+/** Версия для ETag хранится в сводке: её видит любой экземпляр сервиса над той же БД. */
+@SpringBootTest(
+        properties =
+                "spring.datasource.url=jdbc:h2:mem:versiontest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE")
+@ActiveProfiles("test")
+class UserVersionServiceTest {
+
+    @Autowired private UserVersionService userVersionService;
+
+    @Autowired private UserSummaryService userSummaryService;
+
+    @Autowired private UserSummaryRepository userSummaryRepository;
+
+    @Test
+    void etag_isStrongAndStableWithoutChanges() {
+        UUID userId = UUID.randomUUID();
+        String etag = userVersionService.etag(userId);
+
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        assertEquals(etag, userVersionService.etag(userId));
+        assertEquals(0, userVersionService.currentVersion(userId));
+    }
+
+    @Test
+    void bump_changesEtagSeenByAnotherNode() {
+        UUID userId = UUID.randomUUID();
+        UserVersionService otherNode =
+                new UserVersionService(userSummaryService, userSummaryRepository);
+        String before = otherNode.etag(userId);
+
+        userVersionService.bump(userId);
+
+        assertNotEquals(before, otherNode.etag(userId));
+        assertEquals(userVersionService.etag(userId), otherNode.etag(userId));
+    }
+
+    @Test
+    void summaryChange_bumpsVersionWithoutExplicitBump() {
+        UUID userId = UUID.randomUUID();
+        userVersionService.bump(userId);
+        long before = userVersionService.currentVersion(userId);
+
+        userSummaryService.onNotificationsCreated(userId, 2);
+
+        assertEquals(before + 1, userVersionService.currentVersion(userId));
+    }
+
+    @Test
+    void etag_differsBetweenUsers() {
+        assertNotEquals(
+                userVersionService.etag(UUID.randomUUID()),
+                userVersionService.etag(UUID.randomUUID()));
+    }
+}
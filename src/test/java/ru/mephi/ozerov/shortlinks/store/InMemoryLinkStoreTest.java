@@ -0,0 +1,18 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import org.junit.jupiter.api.BeforeEach;
+
+class InMemoryLinkStoreTest extends LinkStoreContractTest {
+
+    private InMemoryLinkStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new InMemoryLinkStore();
+    }
+
+    @Override
+    protected LinkStore store() {
+        return store;
+    }
+}
@@ -0,0 +1,84 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.mephi.ozerov.shortlinks.config.LinkSchemaMigration;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.repository.LinkRepository;
+
+/** Движок по умолчанию на настоящей H2: условный UPDATE, блокировки и уникальный индекс. */
+@SpringBootTest(
+        properties =
+                "spring.datasource.url=jdbc:h2:mem:linkstoretest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE")
+@ActiveProfiles("test")
+class JpaLinkStoreTest extends LinkStoreContractTest {
+
+    @Autowired private LinkStore linkStore;
+
+    @Autowired private LinkRepository linkRepository;
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Autowired private LinkSchemaMigration linkSchemaMigration;
+
+    @BeforeEach
+    void setUp() {
+        linkRepository.deleteAll();
+    }
+
+    @Override
+    protected LinkStore store() {
+        return linkStore;
+    }
+
+    @Test
+    void defaultEngine_isLinksTable() {
+        assertInstanceOf(JpaLinkStore.class, linkStore);
+        assertTrue(linkStore.backedByLinksTable());
+    }
+
+    @Test
+    void create_storesPackedShortCode() {
+        Link saved = linkStore.create(link(UUID.randomUUID(), "num1", null, NOW.plusSeconds(60)));
+
+        assertEquals(
+                ShortCodeCodec.pack("num1"),
+                linkRepository.findById(saved.getId()).orElseThrow().getShortCodeNum());
+    }
+
+    @Test
+    void notPackableCode_isFoundByString() {
+        linkStore.create(link(UUID.randomUUID(), "custom-code", 2, NOW.plusSeconds(60)));
+
+        assertNull(linkRepository.findByShortCode("custom-code").orElseThrow().getShortCodeNum());
+        assertTrue(linkStore.existsByShortCode("custom-code"));
+        assertEquals(
+                1, linkStore.incrementClicks("custom-code", NOW).orElseThrow().getClicksCount());
+    }
+
+    @Test
+    void backfill_fillsNumericCodeOfLegacyRows() {
+        jdbcTemplate.update(
+                "INSERT INTO links (short_code, original_url, user_id, clicks_count, expires_at,"
+                        + " created_at, active, notification_pending)"
+                        + " VALUES ('legacy', 'https://example.com', ?, 0, ?, ?, TRUE, FALSE)",
+                UUID.randomUUID(),
+                Timestamp.from(Instant.now().plusSeconds(3600)),
+                Timestamp.from(Instant.now()));
+        assertTrue(linkStore.findByShortCode("legacy").isEmpty());
+
+        linkSchemaMigration.backfillShortCodeNum();
+
+        assertTrue(linkStore.findByShortCode("legacy").isPresent());
+        assertTrue(linkStore.incrementClicks("legacy", Instant.now()).isPresent());
+    }
+}
@@ -0,0 +1,305 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.repository.LinkExpiryView;
+
+/**
+ * Общие требования к {@link LinkStore}: каждый движок наследует этот класс и получает пустое
+ * хранилище перед каждым тестом. Замер производительности включается {@code
+ * -Dshortlinks.bench=true}.
+ */
+abstract class LinkStoreContractTest {
+
+    protected static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    private static final UUID USER_ID = UUID.randomUUID();
+
+    protected abstract LinkStore store();
+
+    @Test
+    void create_assignsIncreasingIdsAndRoundTripsAllFields() {
+        Link first = store().create(link(USER_ID, "rt1", 5, NOW.plusSeconds(3600)));
+        Link second = store().create(link(USER_ID, "rt2", null, NOW.plusSeconds(3600)));
+
+        assertNotNull(first.getId());
+        assertTrue(second.getId() > first.getId());
+        Link found = store().findByShortCode("rt1").orElseThrow();
+        assertEquals(first.getId(), found.getId());
+        assertEquals("https://example.com/rt1", found.getOriginalUrl());
+        assertEquals(USER_ID, found.getUserId());
+        assertEquals(5, found.getClickLimit());
+        assertEquals(0, found.getClicksCount());
+        assertEquals(NOW.plusSeconds(3600), found.getExpiresAt());
+        assertEquals(Link.expiryBucketOf(NOW.plusSeconds(3600)), found.getExpiryBucket());
+        assertEquals(NOW, found.getCreatedAt());
+        assertTrue(found.getActive());
+        assertNull(found.getDeactivatedAt());
+        assertFalse(found.getNotificationPending());
+        assertNull(store().findById(second.getId()).orElseThrow().getClickLimit());
+        assertTrue(store().existsByShortCode("rt2"));
+        assertFalse(store().existsByShortCode("missing"));
+    }
+
+    @Test
+    void create_rejectsDuplicateShortCode() {
+        store().create(link(USER_ID, "dup", null, NOW.plusSeconds(3600)));
+
+        assertThrows(
+                DataIntegrityViolationException.class,
+                () -> store().create(link(UUID.randomUUID(), "dup", null, NOW.plusSeconds(60))));
+        assertEquals(USER_ID, store().findByShortCode("dup").orElseThrow().getUserId());
+    }
+
+    @Test
+    void incrementClicks_stopsAtClickLimit() {
+        store().create(link(USER_ID, "lim", 2, NOW.plusSeconds(3600)));
+
+        assertEquals(1, store().incrementClicks("lim", NOW).orElseThrow().getClicksCount());
+        assertEquals(2, store().incrementClicks("lim", NOW).orElseThrow().getClicksCount());
+        assertTrue(store().incrementClicks("lim", NOW).isEmpty());
+        assertEquals(2, store().findByShortCode("lim").orElseThrow().getClicksCount());
+    }
+
+    @Test
+    void incrementClicks_rejectsExpiredInactiveAndUnknownLinks() {
+        store().create(link(USER_ID, "old", null, NOW.minusSeconds(1)));
+        Link inactive = store().create(link(USER_ID, "off", null, NOW.plusSeconds(3600)));
+        inactive.setActive(false);
+        store().update(inactive);
+
+        assertTrue(store().incrementClicks("old", NOW).isEmpty());
+        assertTrue(store().incrementClicks("off", NOW).isEmpty());
+        assertTrue(store().incrementClicks("unknown", NOW).isEmpty());
+        assertEquals(0, store().findByShortCode("old").orElseThrow().getClicksCount());
+    }
+
+    @Test
+    void incrementClicks_neverExceedsLimitUnderContention() throws Exception {
+        store().create(link(USER_ID, "race", 50, NOW.plusSeconds(3600)));
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(
+                    pool.submit(
+                            () -> {
+                                start.await();
+                                for (int i = 0; i < 20; i++) {
+                                    if (store().incrementClicks("race", NOW).isPresent()) {
+                                        accepted.incrementAndGet();
+                                    }
+                                }
+                                return null;
+                            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(50, accepted.get());
+        assertEquals(50, store().findByShortCode("race").orElseThrow().getClicksCount());
+    }
+
+    @Test
+    void update_persistsChanges() {
+        Link link = store().create(link(USER_ID, "upd", 3, NOW.plusSeconds(3600)));
+        link.setOriginalUrl("https://example.com/new");
+        link.setActive(false);
+        link.setDeactivatedAt(NOW);
+
+        store().update(link);
+
+        Link found = store().findById(link.getId()).orElseThrow();
+        assertEquals("https://example.com/new", found.getOriginalUrl());
+        assertFalse(found.getActive());
+        assertEquals(NOW, found.getDeactivatedAt());
+    }
+
+    @Test
+    void delete_removesLinkFromAllLookups() {
+        Link link = store().create(link(USER_ID, "del", null, NOW.plusSeconds(3600)));
+
+        store().delete(link.getId());
+
+        assertTrue(store().findById(link.getId()).isEmpty());
+        assertTrue(store().findByShortCode("del").isEmpty());
+        assertFalse(store().existsByShortCode("del"));
+        assertEquals(0, store().countByUserId(USER_ID));
+    }
+
+    @Test
+    void findByUserId_returnsOwnLinksNewestFirst() {
+        UUID other = UUID.randomUUID();
+        store().create(link(USER_ID, "u1", null, NOW.plusSeconds(3600), NOW.minusSeconds(20)));
+        store().create(link(USER_ID, "u2", null, NOW.plusSeconds(3600), NOW.minusSeconds(10)));
+        store().create(link(other, "o1", null, NOW.plusSeconds(3600), NOW));
+        Link off = store().create(link(USER_ID, "u3", null, NOW.plusSeconds(3600), NOW));
+        off.setActive(false);
+        store().update(off);
+
+        assertEquals(
+                List.of("u3", "u2", "u1"),
+                store().findByUserId(USER_ID).stream().map(Link::getShortCode).toList());
+        assertEquals(3, store().countByUserId(USER_ID));
+        assertEquals(2, store().countByUserIdAndActive(USER_ID, true));
+        assertEquals(1, store().countByUserIdAndActive(USER_ID, false));
+        assertEquals(1, store().countByUserId(other));
+    }
+
+    @Test
+    void findPage_pagesAllLinksById() {
+        Link a = store().create(link(USER_ID, "p1", null, NOW.plusSeconds(10)));
+        Link off = store().create(link(USER_ID, "p2", 1, NOW.minusSeconds(10)));
+        off.setActive(false);
+        store().update(off);
+        Link c = store().create(link(UUID.randomUUID(), "p3", null, NOW.plusSeconds(30)));
+
+        List<Link> first = store().findPage(0, 2);
+
+        assertEquals(List.of(a.getId(), off.getId()), first.stream().map(Link::getId).toList());
+        assertFalse(first.get(1).getActive());
+        assertEquals(
+                List.of(c.getId()),
+                store().findPage(off.getId(), 2).stream().map(Link::getId).toList());
+        assertTrue(store().findPage(c.getId(), 2).isEmpty());
+    }
+
+    @Test
+    void findMaxId_tracksHighestStoredId() {
+        assertEquals(0, store().findMaxId());
+        Link a = store().create(link(USER_ID, "m1", null, NOW.plusSeconds(10)));
+        Link b = store().create(link(USER_ID, "m2", null, NOW.plusSeconds(10)));
+
+        assertEquals(b.getId(), store().findMaxId());
+        store().delete(b.getId());
+        assertEquals(a.getId(), store().findMaxId());
+    }
+
+    @Test
+    void findActiveExpiries_pagesByIdAndSkipsInactive() {
+        Link a = store().create(link(USER_ID, "e1", null, NOW.plusSeconds(10)));
+        Link off = store().create(link(USER_ID, "e2", null, NOW.plusSeconds(20)));
+        off.setActive(false);
+        store().update(off);
+        Link c = store().create(link(USER_ID, "e3", null, NOW.plusSeconds(30)));
+        Link d = store().create(link(USER_ID, "e4", null, NOW.plusSeconds(40)));
+
+        List<LinkExpiryView> first = store().findActiveExpiries(0, 2);
+        List<LinkExpiryView> rest = store().findActiveExpiries(first.get(1).getId(), 2);
+
+        assertEquals(
+                List.of(a.getId(), c.getId()), first.stream().map(LinkExpiryView::getId).toList());
+        assertEquals(NOW.plusSeconds(30), first.get(1).getExpiresAt());
+        assertEquals(List.of(d.getId()), rest.stream().map(LinkExpiryView::getId).toList());
+    }
+
+    @Test
+    void removeExpired_removesOnlyLinksExpiredByNow() {
+        Link expired = store().create(link(USER_ID, "x1", null, NOW.minusSeconds(5)));
+        Link deactivated = store().create(link(USER_ID, "x2", 1, NOW.minusSeconds(5)));
+        deactivated.setActive(false);
+        store().update(deactivated);
+        Link alive = store().create(link(USER_ID, "x3", null, NOW.plusSeconds(3600)));
+
+        List<Long> ids = store().findExpiredIds(0, NOW, 10);
+        assertEquals(List.of(expired.getId(), deactivated.getId()), ids);
+        assertEquals(
+                List.of(deactivated.getId()), store().findExpiredIds(expired.getId(), NOW, 10));
+
+        List<Link> removed =
+                store().removeExpired(
+                                List.of(expired.getId(), deactivated.getId(), alive.getId()), NOW);
+
+        assertEquals(
+                List.of("x1", "x2"), removed.stream().map(Link::getShortCode).sorted().toList());
+        assertTrue(store().findByShortCode("x1").isEmpty());
+        assertTrue(store().findByShortCode("x2").isEmpty());
+        assertTrue(store().findByShortCode("x3").isPresent());
+        assertTrue(store().removeExpired(List.of(expired.getId()), NOW).isEmpty());
+        assertEquals(1, store().countByUserId(USER_ID));
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "shortlinks.bench", matches = "true")
+    void benchmark_lookupAndIncrement() throws Exception {
+        int links = 2_000;
+        int threads = 4;
+        int opsPerThread = 50_000;
+        for (int i = 0; i < links; i++) {
+            store().create(link(USER_ID, "b" + i, null, NOW.plus(Duration.ofDays(1))));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long lookups =
+                timeOps(pool, threads, opsPerThread, i -> store().findByShortCode("b" + i % links));
+        long increments =
+                timeOps(
+                        pool,
+                        threads,
+                        opsPerThread,
+                        i -> store().incrementClicks("b" + i % links, NOW));
+        pool.shutdown();
+        System.out.printf(
+                "%s: поиск %d оп/с, инкремент %d оп/с (%d потоков)%n",
+                getClass().getSimpleName(), lookups, increments, threads);
+    }
+
+    private static long timeOps(ExecutorService pool, int threads, int opsPerThread, IntConsumer op)
+            throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(
+                    pool.submit(
+                            () -> {
+                                for (int i = 0; i < opsPerThread; i++) {
+                                    op.accept(i);
+                                }
+                            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        long elapsed = Math.max(System.nanoTime() - started, 1);
+        return (long) threads * opsPerThread * 1_000_000_000L / elapsed;
+    }
+
+    protected static Link link(UUID userId, String shortCode, Integer limit, Instant expiresAt) {
+        return link(userId, shortCode, limit, expiresAt, NOW);
+    }
+
+    private static Link link(
+            UUID userId, String shortCode, Integer limit, Instant expiresAt, Instant createdAt) {
+        return Link.builder()
+                .shortCode(shortCode)
+                .originalUrl("https://example.com/" + shortCode)
+                .userId(userId)
+                .clickLimit(limit)
+                .clicksCount(0)
+                .expiresAt(expiresAt)
+                .expiryBucket(Link.expiryBucketOf(expiresAt))
+                .createdAt(createdAt)
+                .active(true)
+                .build();
+    }
+}
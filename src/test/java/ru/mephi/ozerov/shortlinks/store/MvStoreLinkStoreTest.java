@@ -0,0 +1,65 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+
+class MvStoreLinkStoreTest extends LinkStoreContractTest {
+
+    @TempDir Path dir;
+
+    private MvStoreLinkStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = MvStoreLinkStore.open(file(), 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Override
+    protected LinkStore store() {
+        return store;
+    }
+
+    @Test
+    void reopen_keepsLinksAndContinuesIds() {
+        UUID userId = UUID.randomUUID();
+        Link saved = store.create(link(userId, "keep", 3, NOW.plusSeconds(3600)));
+        store.incrementClicks("keep", NOW);
+        store.close();
+
+        store = MvStoreLinkStore.open(file(), 0);
+
+        Link found = store.findByShortCode("keep").orElseThrow();
+        assertEquals(saved.getId(), found.getId());
+        assertEquals(1, found.getClicksCount());
+        assertEquals(1, store.countByUserId(userId));
+        assertTrue(
+                store.create(link(userId, "next", null, NOW.plusSeconds(60))).getId()
+                        > saved.getId());
+    }
+
+    @Test
+    void open_continuesAfterIdsTakenElsewhere() {
+        store.close();
+        store = MvStoreLinkStore.open(dir.resolve("fresh.kv").toString(), 40);
+
+        assertEquals(
+                41,
+                store.create(link(UUID.randomUUID(), "c41", null, NOW.plusSeconds(60))).getId());
+    }
+
+    private String file() {
+        return dir.resolve("links.kv").toString();
+    }
+}
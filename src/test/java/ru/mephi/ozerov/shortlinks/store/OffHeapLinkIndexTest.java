@@ -0,0 +1,177 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+
+class OffHeapLinkIndexTest {
+
+    private static final Instant EXPIRES =
+            Instant.now().plus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.MILLIS);
+
+    @TempDir Path dir;
+
+    @Test
+    void put_get_returnsSnapshot() {
+        try (OffHeapLinkIndex index = OffHeapLinkIndex.open(null, 16, 1024)) {
+            Link link = link(7L, "abc123", "https://example.com/путь", 5, 2);
+            assertTrue(index.put(link));
+
+            Link found = index.get("abc123").orElseThrow();
+            assertEquals(7L, found.getId());
+            assertEquals("abc123", found.getShortCode());
+            assertEquals(link.getOriginalUrl(), found.getOriginalUrl());
+            assertEquals(link.getUserId(), found.getUserId());
+            assertEquals(5, found.getClickLimit());
+            assertEquals(2, found.getClicksCount());
+            assertEquals(EXPIRES, found.getExpiresAt());
+            assertTrue(found.getActive());
+            assertTrue(index.get("abc124").isEmpty());
+            assertEquals(1, index.size());
+        }
+    }
+
+    @Test
+    void put_withoutLimit_andInactive() {
+        try (OffHeapLinkIndex index = OffHeapLinkIndex.open(null, 16, 1024)) {
+            Link link = link(1L, "free", "https://a.b", null, 0);
+            link.setActive(false);
+            index.put(link);
+
+            Link found = index.get("free").orElseThrow();
+            assertNull(found.getClickLimit());
+            assertFalse(found.getActive());
+            assertFalse(found.isAvailable());
+        }
+    }
+
+    @Test
+    void put_sameUrl_reusesUrlSpace() {
+        String url = "https://example.com/" + "x".repeat(80);
+        try (OffHeapLinkIndex index = OffHeapLinkIndex.open(null, 16, 128)) {
+            for (int clicks = 0; clicks < 10; clicks++) {
+                assertTrue(index.put(link(1L, "same", url, 100, clicks)));
+            }
+            assertEquals(9, index.get("same").orElseThrow().getClicksCount());
+            assertEquals(1, index.size());
+        }
+    }
+
+    @Test
+    void put_urlHeapExhausted_rejectsAndDropsChangedEntry() {
+        try (OffHeapLinkIndex index = OffHeapLinkIndex.open(null, 16, 64)) {
+            assertTrue(index.put(link(1L, "one", "https://a.b/" + "1".repeat(40), null, 0)));
+            assertFalse(index.put(link(2L, "two", "https://a.b/" + "2".repeat(40), null, 0)));
+            assertFalse(index.put(link(1L, "one", "https://a.b/" + "3".repeat(40), null, 0)));
+            assertTrue(index.get("one").isEmpty());
+            // URL удалённой записи занимает кучу до перестройки
+            assertTrue(index.load() > 0.8);
+        }
+    }
+
+    @Test
+    void remove_leavesTombstoneThatIsReused() {
+        try (OffHeapLinkIndex index = OffHeapLinkIndex.open(null, 16, 4096)) {
+            for (int i = 0; i < 12; i++) {
+                assertTrue(index.put(link(i, "c" + i, "https://a.b", null, 0)));
+            }
+            assertFalse(index.put(link(12, "c12", "https://a.b", null, 0)), "заполнено на 3/4");
+
+            assertTrue(index.remove("c3"));
+            assertFalse(index.remove("c3"));
+            for (int i = 0; i < 12; i++) {
+                assertEquals(i != 3, index.get("c" + i).isPresent(), "c" + i);
+            }
+            // Удалённый слот остаётся занятым до перестройки, но служит тому же ключу
+            assertFalse(index.put(link(12, "c12", "https://a.b", null, 0)));
+            assertTrue(index.put(link(3, "c3", "https://a.b", null, 0)));
+            assertEquals(12, index.size());
+            assertEquals(1.0, index.load());
+        }
+    }
+
+    @Test
+    void clear_removesEverything() {
+        try (OffHeapLinkIndex index = OffHeapLinkIndex.open(null, 16, 1024)) {
+            index.put(link(1L, "abc", "https://a.b", null, 0));
+            index.clear();
+            assertEquals(0, index.size());
+            assertEquals(0, index.load());
+            assertTrue(index.get("abc").isEmpty());
+        }
+    }
+
+    @Test
+    void notPackableCode_isNotIndexed() {
+        try (OffHeapLinkIndex index = OffHeapLinkIndex.open(null, 16, 1024)) {
+            assertFalse(index.put(link(1L, "my-alias", "https://a.b", null, 0)));
+            assertTrue(index.get("my-alias").isEmpty());
+        }
+    }
+
+    @Test
+    void reopen_afterClose_keepsEntries() {
+        Path file = dir.resolve("index.bin");
+        Link link = link(5L, "keep", "https://example.com", 3, 1);
+        OffHeapLinkIndex index = OffHeapLinkIndex.open(file, 16, 1024);
+        index.put(link);
+        index.put(link(6L, "gone", "https://example.org", null, 0));
+        index.remove("gone");
+        index.close();
+
+        try (OffHeapLinkIndex reopened = OffHeapLinkIndex.open(file, 16, 1024)) {
+            assertTrue(reopened.reopened());
+            assertEquals(1, reopened.size());
+            assertEquals(
+                    "https://example.com", reopened.get("keep").orElseThrow().getOriginalUrl());
+            assertTrue(reopened.get("gone").isEmpty());
+            assertTrue(reopened.put(link(7L, "next", "https://example.net", null, 0)));
+            assertEquals(
+                    "https://example.com", reopened.get("keep").orElseThrow().getOriginalUrl());
+        }
+    }
+
+    @Test
+    void reopen_withoutClose_orOtherLayout_startsEmpty() {
+        Path file = dir.resolve("index.bin");
+        OffHeapLinkIndex crashed = OffHeapLinkIndex.open(file, 16, 1024);
+        crashed.put(link(1L, "lost", "https://a.b", null, 0));
+
+        try (OffHeapLinkIndex reopened = OffHeapLinkIndex.open(file, 16, 1024)) {
+            assertFalse(reopened.reopened());
+            assertEquals(0, reopened.size());
+            assertTrue(reopened.get("lost").isEmpty());
+            reopened.put(link(1L, "lost", "https://a.b", null, 0));
+        }
+        try (OffHeapLinkIndex resized = OffHeapLinkIndex.open(file, 32, 1024)) {
+            assertFalse(resized.reopened());
+            assertEquals(0, resized.size());
+        }
+    }
+
+    @Test
+    void open_rejectsCapacityNotPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> OffHeapLinkIndex.open(null, 100, 1024));
+    }
+
+    private static Link link(long id, String shortCode, String url, Integer limit, int clicks) {
+        return Link.builder()
+                .id(id)
+                .shortCode(shortCode)
+                .originalUrl(url)
+                .userId(UUID.randomUUID())
+                .clickLimit(limit)
+                .clicksCount(clicks)
+                .expiresAt(EXPIRES)
+                .createdAt(Instant.now())
+                .active(true)
+                .notificationPending(false)
+                .build();
+    }
+}
@@ -0,0 +1,116 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+import ru.mephi.ozerov.shortlinks.service.ShortCodeGenerator;
+
+class ShardedLinkStoreTest extends LinkStoreContractTest {
+
+    @TempDir Path dir;
+
+    private ShardedLinkStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = ShardedLinkStore.open(dir.toString(), 4, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Override
+    protected LinkStore store() {
+        return store;
+    }
+
+    @Test
+    void codePrefix_spreadsNewLinksOverAllShardsAndRoutesByCode() {
+        ShortCodeGenerator generator = new ShortCodeGenerator();
+        UUID userId = UUID.randomUUID();
+        ShardRing ring = new ShardRing(4);
+        int[] perShard = new int[4];
+        for (int i = 0; i < 400; i++) {
+            Link link =
+                    store.create(
+                            link(
+                                    userId,
+                                    generator.generate(store.codePrefix()),
+                                    null,
+                                    NOW.plusSeconds(60)));
+            int shard = ring.shardOf(link.getShortCode());
+            perShard[shard]++;
+            assertEquals(shard, link.getId() % ShardedLinkStore.ID_STRIDE);
+        }
+
+        assertArrayEquals(new int[] {100, 100, 100, 100}, perShard);
+        assertEquals(400, store.countByUserId(userId));
+        assertEquals(400, store.findByUserId(userId).size());
+    }
+
+    @Test
+    void reopen_keepsShardsAndContinuesIds() {
+        UUID userId = UUID.randomUUID();
+        Link a = store.create(link(userId, "Akeep", null, NOW.plusSeconds(3600)));
+        Link z = store.create(link(userId, "zkeep", null, NOW.plusSeconds(3600)));
+        store.incrementClicks("zkeep", NOW);
+        store.close();
+
+        store = ShardedLinkStore.open(dir.toString(), 4, 0);
+
+        assertEquals(a.getId(), store.findByShortCode("Akeep").orElseThrow().getId());
+        assertEquals(1, store.findById(z.getId()).orElseThrow().getClicksCount());
+        assertTrue(
+                store.create(link(userId, "next", null, NOW.plusSeconds(60))).getId() > z.getId());
+    }
+
+    @Test
+    void open_rejectsChangedShardCount() {
+        store.close();
+
+        assertThrows(
+                IllegalStateException.class, () -> ShardedLinkStore.open(dir.toString(), 5, 0));
+
+        store = ShardedLinkStore.open(dir.toString(), 4, 0);
+    }
+
+    @Test
+    void open_continuesAfterIdsTakenElsewhere() {
+        try (ShardedLinkStore fresh = ShardedLinkStore.open("", 3, 1000)) {
+            assertTrue(
+                    fresh.create(link(UUID.randomUUID(), "c1", null, NOW.plusSeconds(60))).getId()
+                            > 1000);
+        }
+    }
+
+    @Test
+    void ring_isStableAndMovesFewBucketsWhenShardAdded() {
+        ShardRing four = new ShardRing(4);
+        ShardRing five = new ShardRing(5);
+        Set<Integer> covered = new HashSet<>();
+        int moved = 0;
+        for (int bucket = 0; bucket < ShardRing.BUCKETS; bucket++) {
+            String code = String.valueOf(ShardRing.hintOf(bucket));
+            assertEquals(four.shardOf(code), new ShardRing(4).shardOf(code));
+            covered.add(four.shardOf(code));
+            int after = five.shardOf(code);
+            if (after != four.shardOf(code)) {
+                moved++;
+                assertEquals(4, after, "корзина может перейти только к новому шарду");
+            }
+        }
+        assertEquals(Set.of(0, 1, 2, 3), covered);
+        assertTrue(moved > 0 && moved < ShardRing.BUCKETS / 2, "перешло корзин: " + moved);
+        assertEquals(ShardRing.BUCKETS, new ShardRing(1).bucketsOf(0).size());
+    }
+}
@@ -0,0 +1,40 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import ru.mephi.ozerov.shortlinks.service.ShortCodeGenerator;
+
+class ShortCodeCodecTest {
+
+    @Test
+    void pack_unpack_roundTrip() {
+        ShortCodeGenerator generator = new ShortCodeGenerator();
+        for (int length = 1; length <= ShortCodeCodec.MAX_LENGTH; length++) {
+            String code = generator.generate(length);
+            long packed = ShortCodeCodec.pack(code);
+            assertTrue(packed > 0, code);
+            assertEquals(code, ShortCodeCodec.unpack(packed));
+        }
+        assertEquals("9999999999", ShortCodeCodec.unpack(ShortCodeCodec.pack("9999999999")));
+    }
+
+    @Test
+    void pack_distinguishesLengthAndLeadingSymbols() {
+        Set<Long> packed = new HashSet<>();
+        for (String code : new String[] {"A", "AA", "AAA", "B", "BA", "AB", "9", "a"}) {
+            assertTrue(packed.add(ShortCodeCodec.pack(code)), code);
+        }
+    }
+
+    @Test
+    void pack_rejectsNotPackableCodes() {
+        assertEquals(ShortCodeCodec.NOT_PACKABLE, ShortCodeCodec.pack(null));
+        assertEquals(ShortCodeCodec.NOT_PACKABLE, ShortCodeCodec.pack(""));
+        assertEquals(ShortCodeCodec.NOT_PACKABLE, ShortCodeCodec.pack("ABCDEFGHIJK"));
+        assertEquals(ShortCodeCodec.NOT_PACKABLE, ShortCodeCodec.pack("my-link"));
+        assertThrows(IllegalArgumentException.class, () -> ShortCodeCodec.unpack(0));
+    }
+}
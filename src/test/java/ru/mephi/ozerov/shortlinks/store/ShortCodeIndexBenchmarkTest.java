@@ -0,0 +1,146 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import ru.mephi.ozerov.shortlinks.service.ShortCodeGenerator;
+
+/**
+ * Строковый индекс {@code short_code VARCHAR(16)} против числового {@code short_code_num BIGINT} на
+ * файловой H2: размер индекса (разница {@code DISK_SPACE_USED} таблицы с индексом и без) и скорость
+ * точечного поиска. Включается {@code -Dshortlinks.bench=true}.
+ */
+@EnabledIfSystemProperty(named = "shortlinks.bench", matches = "true")
+class ShortCodeIndexBenchmarkTest {
+
+    private static final int ROWS = 500_000;
+    private static final int LOOKUPS = 200_000;
+
+    @TempDir Path dir;
+
+    @Test
+    void stringVersusNumericIndex() throws Exception {
+        String[] codes = new String[ROWS];
+        ShortCodeGenerator generator = new ShortCodeGenerator();
+        for (int i = 0; i < ROWS; i++) {
+            codes[i] = generator.generate() + Integer.toString(i, 36);
+        }
+        long stringIndex =
+                indexSize(
+                        "string",
+                        "CREATE TABLE links (id BIGINT PRIMARY KEY, short_code VARCHAR(16))",
+                        "CREATE UNIQUE INDEX idx_code ON links (short_code)",
+                        codes,
+                        false);
+        long numberIndex =
+                indexSize(
+                        "number",
+                        "CREATE TABLE links (id BIGINT PRIMARY KEY, short_code_num BIGINT)",
+                        "CREATE UNIQUE INDEX idx_code ON links (short_code_num)",
+                        codes,
+                        true);
+        double stringLookups;
+        double numberLookups;
+        try (Connection connection = open("string")) {
+            stringLookups =
+                    lookups(connection, "SELECT id FROM links WHERE short_code = ?", codes, false);
+        }
+        try (Connection connection = open("number")) {
+            numberLookups =
+                    lookups(
+                            connection,
+                            "SELECT id FROM links WHERE short_code_num = ?",
+                            codes,
+                            true);
+        }
+        System.out.printf(
+                "%d строк: индекс VARCHAR %d КБ, индекс BIGINT %d КБ;"
+                        + " поиск по строке %.0f/с, по числу (с упаковкой) %.0f/с%n",
+                ROWS, stringIndex / 1024, numberIndex / 1024, stringLookups, numberLookups);
+    }
+
+    /** Размер индекса: разница размеров сжатого файла БД до и после его создания. */
+    private long indexSize(
+            String name, String createTable, String createIndex, String[] codes, boolean packed)
+            throws Exception {
+        try (Connection connection = open(name)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(createTable);
+            }
+            fill(connection, codes, packed);
+            shutdownCompact(connection);
+        }
+        long withoutIndex = Files.size(file(name));
+        try (Connection connection = open(name)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(createIndex);
+            }
+            shutdownCompact(connection);
+        }
+        return Files.size(file(name)) - withoutIndex;
+    }
+
+    private Connection open(String name) throws SQLException {
+        return DriverManager.getConnection("jdbc:h2:file:" + dir.resolve(name), "sa", "");
+    }
+
+    private Path file(String name) {
+        return dir.resolve(name + ".mv.db");
+    }
+
+    private static void shutdownCompact(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN COMPACT");
+        }
+    }
+
+    private static void fill(Connection connection, String[] codes, boolean packed)
+            throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert =
+                connection.prepareStatement("INSERT INTO links VALUES (?, ?)")) {
+            for (int i = 0; i < codes.length; i++) {
+                insert.setLong(1, i);
+                if (packed) {
+                    insert.setLong(2, ShortCodeCodec.pack(codes[i]));
+                } else {
+                    insert.setString(2, codes[i]);
+                }
+                insert.addBatch();
+                if (i % 10_000 == 9_999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+    }
+
+    private static double lookups(Connection connection, String sql, String[] codes, boolean packed)
+            throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            long started = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                String code = codes[ThreadLocalRandom.current().nextInt(codes.length)];
+                if (packed) {
+                    statement.setLong(1, ShortCodeCodec.pack(code));
+                } else {
+                    statement.setString(1, code);
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                }
+            }
+            return LOOKUPS * 1e9 / (System.nanoTime() - started);
+        }
+    }
+}
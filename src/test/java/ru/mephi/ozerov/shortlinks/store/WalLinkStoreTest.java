@@ -0,0 +1,234 @@
+package ru.mephi.ozerov.shortlinks.store;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import ru.mephi.ozerov.shortlinks.entity.Link;
+
+class WalLinkStoreTest extends LinkStoreContractTest {
+
+    @TempDir Path dir;
+
+    private WalLinkStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = WalLinkStore.open(dir.resolve("wal").toString(), 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Override
+    protected LinkStore store() {
+        return store;
+    }
+
+    @Test
+    void crash_recoversEveryMutationFromLog() throws IOException {
+        UUID userId = UUID.randomUUID();
+        Link kept = store.create(link(userId, "kept", 5, NOW.plusSeconds(3600)));
+        store.incrementClicks("kept", NOW);
+        store.incrementClicks("kept", NOW);
+        Link edited = store.create(link(userId, "edited", null, NOW.plusSeconds(3600)));
+        edited.setOriginalUrl("https://example.com/new");
+        store.update(edited);
+        Link deleted = store.create(link(userId, "deleted", null, NOW.plusSeconds(3600)));
+        store.delete(deleted.getId());
+        Link expired = store.create(link(userId, "expired", null, NOW.minusSeconds(1)));
+        store.removeExpired(List.of(expired.getId()), NOW);
+
+        try (WalLinkStore recovered = WalLinkStore.open(crashCopy().toString(), 0)) {
+            assertEquals(2, recovered.findByShortCode("kept").orElseThrow().getClicksCount());
+            assertEquals(
+                    "https://example.com/new",
+                    recovered.findByShortCode("edited").orElseThrow().getOriginalUrl());
+            assertTrue(recovered.findByShortCode("deleted").isEmpty());
+            assertTrue(recovered.findByShortCode("expired").isEmpty());
+            assertEquals(2, recovered.countByUserId(userId));
+            assertTrue(
+                    recovered.create(link(userId, "next", null, NOW.plusSeconds(60))).getId()
+                            > expired.getId());
+            assertEquals(kept.getId(), recovered.findByShortCode("kept").orElseThrow().getId());
+        }
+    }
+
+    @Test
+    void snapshot_dropsCoveredSegmentsAndKeepsTail() throws IOException {
+        UUID userId = UUID.randomUUID();
+        for (int i = 0; i < 5; i++) {
+            store.create(link(userId, "s" + i, null, NOW.plusSeconds(3600)));
+        }
+        Link last = store.create(link(userId, "last", null, NOW.plusSeconds(3600)));
+        store.delete(last.getId());
+
+        assertEquals(5, store.snapshot());
+        assertEquals(1, WriteAheadLog.segments(dir.resolve("wal")).size());
+
+        store.incrementClicks("s0", NOW);
+        store.delete(store.findByShortCode("s1").orElseThrow().getId());
+
+        try (WalLinkStore recovered = WalLinkStore.open(crashCopy().toString(), 0)) {
+            assertEquals(1, recovered.findByShortCode("s0").orElseThrow().getClicksCount());
+            assertTrue(recovered.findByShortCode("s1").isEmpty());
+            assertEquals(4, recovered.countByUserId(userId));
+            // id удалённой до снимка ссылки не выдаётся повторно
+            assertTrue(
+                    recovered.create(link(userId, "next", null, NOW.plusSeconds(60))).getId()
+                            > last.getId());
+        }
+    }
+
+    @Test
+    void crash_tornTailIsDiscarded() throws IOException {
+        UUID userId = UUID.randomUUID();
+        store.create(link(userId, "whole", null, NOW.plusSeconds(3600)));
+        Path copy = crashCopy();
+        List<Long> segments = WriteAheadLog.segments(copy);
+        Path tail = copy.resolve(String.format("wal-%016d.log", segments.get(segments.size() - 1)));
+        // Запись оборвалась посередине: длина есть, тела нет
+        Files.write(tail, new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+        long sizeBefore = Files.size(tail);
+
+        try (WalLinkStore recovered = WalLinkStore.open(copy.toString(), 0)) {
+            assertTrue(recovered.findByShortCode("whole").isPresent());
+            assertEquals(sizeBefore - 6, Files.size(tail));
+            recovered.create(link(userId, "after", null, NOW.plusSeconds(3600)));
+        }
+        try (WalLinkStore reopened = WalLinkStore.open(copy.toString(), 0)) {
+            assertEquals(2, reopened.countByUserId(userId));
+        }
+    }
+
+    @Test
+    void close_writesSnapshotSoRestartReplaysNothing() {
+        UUID userId = UUID.randomUUID();
+        store.create(link(userId, "c1", null, NOW.plusSeconds(3600)));
+        store.incrementClicks("c1", NOW);
+        store.close();
+
+        store = WalLinkStore.open(dir.resolve("wal").toString(), 0);
+
+        assertEquals(1, store.findByShortCode("c1").orElseThrow().getClicksCount());
+    }
+
+    @Test
+    void logFailure_rollsBackInMemoryChangeToWhatRecoveryWillSee() {
+        UUID userId = UUID.randomUUID();
+        Link kept = store.create(link(userId, "kept", null, NOW.plusSeconds(3600)));
+        store.incrementClicks("kept", NOW);
+        store.close();
+
+        kept.setOriginalUrl("https://example.com/lost");
+        assertThrows(RuntimeException.class, () -> store.update(kept));
+        assertThrows(RuntimeException.class, () -> store.incrementClicks("kept", NOW));
+        assertThrows(RuntimeException.class, () -> store.delete(kept.getId()));
+        assertThrows(
+                RuntimeException.class,
+                () -> store.create(link(userId, "lost", null, NOW.plusSeconds(3600))));
+
+        Link inMemory = store.findByShortCode("kept").orElseThrow();
+        assertEquals("https://example.com/kept", inMemory.getOriginalUrl());
+        assertEquals(1, inMemory.getClicksCount());
+        assertFalse(store.existsByShortCode("lost"));
+        assertEquals(1, store.countByUserId(userId));
+
+        store = WalLinkStore.open(dir.resolve("wal").toString(), 0);
+        Link recovered = store.findByShortCode("kept").orElseThrow();
+        assertEquals(inMemory.getOriginalUrl(), recovered.getOriginalUrl());
+        assertEquals(inMemory.getClicksCount(), recovered.getClicksCount());
+        assertFalse(store.existsByShortCode("lost"));
+    }
+
+    @Test
+    void open_continuesAfterIdsTakenElsewhere() {
+        try (WalLinkStore fresh = WalLinkStore.open(dir.resolve("fresh").toString(), 40)) {
+            assertEquals(
+                    41,
+                    fresh.create(link(UUID.randomUUID(), "c41", null, NOW.plusSeconds(60)))
+                            .getId());
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "shortlinks.bench", matches = "true")
+    void benchmark_groupCommitAndRecovery() throws Exception {
+        int links = 100_000;
+        UUID userId = UUID.randomUUID();
+        for (int i = 0; i < links; i++) {
+            store.create(link(userId, "r" + i, null, NOW.plus(Duration.ofDays(1))));
+        }
+        for (int threads : new int[] {1, 16, 64}) {
+            long batchesBefore = store.walBatches();
+            int opsPerThread = 20_000 / threads;
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            long started = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures.add(
+                        pool.submit(
+                                () -> {
+                                    for (int i = 0; i < opsPerThread; i++) {
+                                        store.incrementClicks("r" + (offset + i * 64) % links, NOW);
+                                    }
+                                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            long elapsed = System.nanoTime() - started;
+            pool.shutdown();
+            long ops = (long) threads * opsPerThread;
+            System.out.printf(
+                    "Журнал: %d потоков — %d инкрементов/с, %.1f записей на fsync%n",
+                    threads,
+                    ops * 1_000_000_000L / elapsed,
+                    (double) ops / Math.max(store.walBatches() - batchesBefore, 1));
+        }
+
+        long started = System.nanoTime();
+        try (WalLinkStore recovered = WalLinkStore.open(crashCopy().toString(), 0)) {
+            System.out.printf(
+                    "Восстановление только из журнала (%d ссылок): %d мс%n",
+                    recovered.countByUserId(userId), (System.nanoTime() - started) / 1_000_000);
+        }
+        store.snapshot();
+        started = System.nanoTime();
+        try (WalLinkStore recovered = WalLinkStore.open(crashCopy().toString(), 0)) {
+            System.out.printf(
+                    "Восстановление из снимка (%d ссылок): %d мс%n",
+                    recovered.countByUserId(userId), (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    /** Копия каталога журнала работающего хранилища — то, что осталось бы на диске при аварии. */
+    private Path crashCopy() throws IOException {
+        Path source = dir.resolve("wal");
+        Path copy = Files.createTempDirectory(dir, "crash");
+        try (Stream<Path> files = Files.list(source)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, copy.resolve(file.getFileName()));
+            }
+        }
+        return copy;
+    }
+}